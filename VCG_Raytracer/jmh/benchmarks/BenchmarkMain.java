@@ -0,0 +1,34 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import utils.io.Log;
+
+import java.io.IOException;
+
+/**
+ * Class BenchmarkMain
+ * Runs the JMH benchmarks with the command line options of JMH and always adds the GC profiler,
+ * so every benchmark reports its allocation rate (gc.alloc.rate.norm) next to its throughput.
+ * The forks get the Vector API, so the renderer uses the vector intersection kernels like in production.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        Log.setEnabled(false);
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Djava.awt.headless=true", "--add-modules", "jdk.incubator.vector")
+                .build()).run();
+    }
+}
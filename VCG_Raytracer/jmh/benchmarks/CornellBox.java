@@ -0,0 +1,63 @@
+package benchmarks;
+
+import raytracer.Raytracer;
+import scene.*;
+import ui.FrameBuffer;
+import ui.ImageFrameBuffer;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+
+/**
+ * Class CornellBox
+ * The scene of Main, rebuilt for the benchmarks, since Main lives in the default package.
+ */
+public class CornellBox {
+
+    static final float AMBIENT_INTENSITY = 0.125f;
+    static final RgbColor AMBIENT_LIGHT = new RgbColor(1f, 1f, 1f).multScalar(AMBIENT_INTENSITY);
+    static final int RECURSIONS = 2;
+    // Samples on the area light per shading point, like the default quality level of Main
+    static final int LIGHT_SAMPLES = 16;
+    static final int LIGHTS_PER_SHADING_POINT = 8;
+
+    /**
+     * Creates the Cornell box with the three spheres and the area light of Main.
+     * @return The scene
+     */
+    public static Scene createScene() {
+        Scene scene = new Scene();
+        scene.createPerspCamera(new Vec3(0, 0, 9), new Vec3(0, 0, 0), new Vec3(0, 1, 0), 70f, 1f);
+
+        Material white = new Lambert(RgbColor.WHITE, AMBIENT_LIGHT);
+        scene.createPlane(new Vec3(0f, 0f, -5f), new Vec3(0f, 0f, 1f), white);
+        scene.createPlane(new Vec3(6f, 0f, 0f), new Vec3(-1f, 0f, 0f), new Lambert(RgbColor.BLUE, AMBIENT_LIGHT));
+        scene.createPlane(new Vec3(-6f, 0f, 0f), new Vec3(1f, 0f, 0f), new Lambert(RgbColor.RED, AMBIENT_LIGHT));
+        scene.createPlane(new Vec3(0f, -4.5f, 0f), new Vec3(0f, 1f, 0f), white);
+        scene.createPlane(new Vec3(0f, 4.5f, 0f), new Vec3(0f, -1f, 0f), white);
+        scene.createSquare(new Vec3(0f, 4.3f, 0f), new Vec3(0f, -1f, 0f), new Unlit(RgbColor.WHITE), 2f);
+
+        scene.createSphere(-1f, -3.5f, -2f, 1f, new Phong(RgbColor.RED, RgbColor.WHITE, 80f, AMBIENT_LIGHT, 0.0f, 0.0f));
+        scene.createSphere(1f, -3.5f, 0f, 1f, new Phong(RgbColor.WHITE, RgbColor.WHITE, 80f, AMBIENT_LIGHT, 1.0f, 0.0f));
+        scene.createSphere(-2f, -3.5f, 0f, 1f, new Phong(RgbColor.CYAN, RgbColor.WHITE, 80f, AMBIENT_LIGHT, 0.0f, 2.4f));
+
+        scene.createArealight(RgbColor.WHITE, new Vec3(0, 4, 0), 2f, LIGHT_SAMPLES);
+        return scene;
+    }
+
+    /**
+     * Creates a raytracer for the Cornell box, which renders on all cores without writing any files.
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param antiAliasing The number of anti aliasing samples per row and column of a pixel
+     * @return The raytracer
+     */
+    public static Raytracer createRaytracer(int width, int height, int antiAliasing) {
+        FrameBuffer frameBuffer = new ImageFrameBuffer(width, height);
+        Raytracer raytracer = new Raytracer(createScene(), frameBuffer, RECURSIONS, RgbColor.BLACK, AMBIENT_LIGHT,
+                antiAliasing, false, width, height);
+        raytracer.setTiledRendering(32, Runtime.getRuntime().availableProcessors());
+        raytracer.setManyLightSampling(LIGHTS_PER_SHADING_POINT);
+        raytracer.setExportEnabled(false);
+        return raytracer;
+    }
+}
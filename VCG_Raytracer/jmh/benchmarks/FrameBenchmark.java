@@ -0,0 +1,58 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import raytracer.Raytracer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class FrameBenchmark
+ * Renders whole frames of the Cornell box of Main on all cores. Besides frames per second, the primary rays
+ * of the frames are counted, so the result also shows rays per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class FrameBenchmark {
+
+    @Param({"160x120", "400x300", "800x600"})
+    public String resolution;
+
+    @Param({"1", "2", "4"})
+    public int aa;
+
+    // Traces the samples breadth-first with the wavefront renderer instead of depth-first
+    @Param({"false", "true"})
+    public boolean wavefront;
+
+    private Raytracer raytracer;
+    private long raysPerFrame;
+
+    /**
+     * Counts the primary rays, JMH reports them per second next to the frames.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rays {
+        public long primaryRays;
+    }
+
+    @Setup
+    public void setup() {
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        raytracer = CornellBox.createRaytracer(width, height, aa);
+        raytracer.setWavefrontRendering(wavefront);
+        raysPerFrame = (long) width * height * aa * aa;
+    }
+
+    @Benchmark
+    public void renderScene(Rays rays) {
+        raytracer.renderScene();
+        rays.primaryRays += raysPerFrame;
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import raytracer.IntersectionKernel;
+import raytracer.Ray;
+import raytracer.RayPack;
+import raytracer.SpherePack;
+import utils.algebra.Vec3;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class KernelBenchmark
+ * The intersection kernels on the widths of the Vector API next to the scalar kernel. One ray is tested against
+ * 8 or 16 spheres at once, and a batch of rays against one plane. The throughput is reported in rays per second,
+ * so the speed-up of 256 bit (AVX2) and 512 bit (AVX-512) vectors is the ratio to the scalar kernel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+
+    static final int RAY_COUNT = 1024;
+
+    // The width of the vectors in bits, 0 for the scalar kernel
+    @Param({"0", "128", "256", "512"})
+    public int vectorBits;
+
+    @Param({"8", "16"})
+    public int sphereCount;
+
+    private IntersectionKernel kernel;
+    private Ray[] rays;
+    private RayPack rayPack;
+    private SpherePack spheres;
+
+    @Setup
+    public void setup() {
+        kernel = vectorBits == 0 ? IntersectionKernel.createScalar() : IntersectionKernel.createVector(vectorBits);
+        if (kernel == null) {
+            throw new IllegalStateException("No vector kernel for " + vectorBits + " bits");
+        }
+
+        // Spheres on the floor of the Cornell box, rays from the camera into the lower half of the box
+        Random random = new Random(42);
+        spheres = new SpherePack(sphereCount);
+        for (int i = 0; i < sphereCount; i++) {
+            spheres.set(i, new Vec3(random.nextFloat() * 8f - 4f, -4f, random.nextFloat() * 4f - 2f), 0.5f, 0);
+        }
+
+        Vec3 camera = new Vec3(0, 0, 9);
+        rays = new Ray[RAY_COUNT];
+        rayPack = new RayPack(RAY_COUNT);
+        for (int i = 0; i < RAY_COUNT; i++) {
+            Vec3 target = new Vec3(random.nextFloat() * 8f - 4f, random.nextFloat() * 1.5f - 4.5f, random.nextFloat() * 4f - 2f);
+            rays[i] = new Ray(camera, target);
+            rayPack.set(i, rays[i], Float.MAX_VALUE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int closestSphere() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            if (kernel.closestSphere(spheres, 0, sphereCount, -1, ray.getStartPoint(), ray.getDirection(), Float.MAX_VALUE) >= 0) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public RayPack intersectPlane() {
+        rayPack.resetHits(RAY_COUNT, Float.MAX_VALUE);
+        // The floor of the Cornell box
+        kernel.intersectPlane(0f, 1f, 0f, 0f, -4.5f, 0f, rayPack, RAY_COUNT, 0);
+        return rayPack;
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import raytracer.Raytracer;
+import scene.Scene;
+import ui.ImageFrameBuffer;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class ManyLightBenchmark
+ * Renders the Cornell box lit by a grid of point lights below the ceiling instead of the area light.
+ * The lights together are as bright as a single white light, so only the number of lights changes.
+ * With the light tree the frame time should hardly grow with the light count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ManyLightBenchmark {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    @Param({"16", "256", "4096"})
+    public int lightCount;
+
+    @Param({"true", "false"})
+    public boolean lightTree;
+
+    private Raytracer raytracer;
+
+    @Setup
+    public void setup() {
+        Scene scene = CornellBox.createScene();
+        scene.getLightList().clear();
+        int columns = (int) Math.ceil(Math.sqrt(lightCount));
+        RgbColor color = new RgbColor(1f, 1f, 1f).multScalar(1f / lightCount);
+        for (int i = 0; i < lightCount; i++) {
+            float x = -5f + 10f * (i % columns + 0.5f) / columns;
+            float z = -4.5f + 9f * (i / columns + 0.5f) / columns;
+            scene.createPointlight(color, new Vec3(x, 4f, z));
+        }
+
+        raytracer = new Raytracer(scene, new ImageFrameBuffer(WIDTH, HEIGHT), CornellBox.RECURSIONS, RgbColor.BLACK,
+                CornellBox.AMBIENT_LIGHT, 1, false, WIDTH, HEIGHT);
+        raytracer.setTiledRendering(32, Runtime.getRuntime().availableProcessors());
+        raytracer.setManyLightSampling(lightTree ? CornellBox.LIGHTS_PER_SHADING_POINT : 0);
+        raytracer.setExportEnabled(false);
+    }
+
+    @Benchmark
+    public void renderScene() {
+        raytracer.renderScene();
+    }
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import utils.algebra.Matrix4x4;
+import utils.algebra.Vec3;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class MatrixBenchmark
+ * Inversion of an affine and a general matrix. The inverse is cached by the matrix, so every invocation
+ * changes a value first, which invalidates the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatrixBenchmark {
+
+    private Matrix4x4 affine;
+    private Matrix4x4 general;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        affine = Matrix4x4.translation(new Vec3(1f, -3.5f, 2f)).mult(Matrix4x4.rotationY(30f)).mult(Matrix4x4.scaling(new Vec3(1f, 2f, 0.5f)));
+        general = affine.mult(Matrix4x4.rotationX(10f));
+        general.setValueAt(3, 2, 0.1);
+    }
+
+    @Benchmark
+    public Matrix4x4 invertAffine() {
+        affine.setValueAt(0, 3, counter++ & 7);
+        return affine.invert();
+    }
+
+    @Benchmark
+    public Matrix4x4 invertGeneral() {
+        general.setValueAt(0, 3, counter++ & 7);
+        return general.invert();
+    }
+}
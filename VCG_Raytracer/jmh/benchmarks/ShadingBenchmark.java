@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import scene.Light;
+import scene.Phong;
+import scene.PointLight;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class ShadingBenchmark
+ * Shading of a single point with the Phong material, with one light or with the lights of the area light of Main.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShadingBenchmark {
+
+    @Param({"1", "40"})
+    public int lightCount;
+
+    private Phong phong;
+    private List<Light> lights;
+    private final Vec3 point = new Vec3(1.2f, -2.8f, 0.6f);
+    private final Vec3 normal = new Vec3(0.2f, 0.7f, 0.6f).normalize();
+    private final Vec3 viewVector = new Vec3(0, 0, 9).sub(point).normalize();
+    private final RgbColor outColor = new RgbColor(0f, 0f, 0f);
+
+    @Setup
+    public void setup() {
+        phong = new Phong(RgbColor.RED, RgbColor.WHITE, 80f, CornellBox.AMBIENT_LIGHT, 0.0f, 0.0f);
+        lights = new ArrayList<>();
+        RgbColor color = RgbColor.WHITE.multScalar(1f / lightCount);
+        for (int i = 0; i < lightCount; i++) {
+            lights.add(new PointLight(color, new Vec3(-1f + 0.3f * (i % 7), 4f, -1f + 0.3f * (i / 7))));
+        }
+    }
+
+    @Benchmark
+    public RgbColor phongGetColor() {
+        return phong.getColor(point, normal, lights, viewVector, outColor);
+    }
+
+    @Benchmark
+    public RgbColor phongGetColorNewObject() {
+        return phong.getColor(point, normal, lights, viewVector);
+    }
+}
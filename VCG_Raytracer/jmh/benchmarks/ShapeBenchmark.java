@@ -0,0 +1,94 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import raytracer.Intersection;
+import raytracer.Ray;
+import scene.*;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class ShapeBenchmark
+ * Intersection tests of the single shapes of the Cornell box. Every invocation tests a fixed set of camera rays,
+ * so the throughput is reported in rays per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShapeBenchmark {
+
+    static final int RAY_COUNT = 1024;
+
+    private Ray[] rays;
+    private final Intersection hit = new Intersection();
+
+    private Sphere sphere;
+    private Plane plane;
+    private Square square;
+
+    @Setup
+    public void setup() {
+        Material material = new Lambert(RgbColor.WHITE, CornellBox.AMBIENT_LIGHT);
+        sphere = new Sphere(new Vec3(1f, -3.5f, 0f), 1f, material);
+        plane = new Plane(new Vec3(0f, -4.5f, 0f), new Vec3(0f, 1f, 0f), material);
+        square = new Square(new Vec3(0f, 4.3f, 0f), new Vec3(0f, -1f, 0f), 2f, material);
+
+        // Rays from the camera into the lower half of the box, about half of them hit the sphere and the square
+        Random random = new Random(42);
+        Vec3 camera = new Vec3(0, 0, 9);
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            Vec3 target = i % 2 == 0
+                    ? new Vec3(random.nextFloat() * 3f - 0.5f, random.nextFloat() * 3f - 5f, random.nextFloat() * 2f - 1f)
+                    : new Vec3(random.nextFloat() * 4f - 2f, 4.3f, random.nextFloat() * 4f - 2f);
+            rays[i] = new Ray(camera, target);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int sphereIntersect() {
+        return intersectAll(sphere);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int planeIntersect() {
+        return intersectAll(plane);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int squareIntersect() {
+        return intersectAll(square);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAY_COUNT)
+    public int sphereOccludes() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            if (sphere.occludes(ray, 100f)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private int intersectAll(Shape shape) {
+        int hits = 0;
+        for (Ray ray : rays) {
+            hit.reset(Float.MAX_VALUE);
+            if (shape.intersect(ray, hit)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -23,11 +23,29 @@
 
 ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~*/
 
+import raytracer.Animation;
+import raytracer.AnimationRenderer;
+import raytracer.BatchRenderer;
+import raytracer.RenderJob;
+import raytracer.RenderSettings;
 import raytracer.Raytracer;
+import raytracer.SceneFile;
 import scene.*;
+import ui.FrameBuffer;
+import ui.HdrFrameBuffer;
+import ui.ImageFrameBuffer;
 import ui.Window;
 import utils.RgbColor;
 import utils.algebra.Vec3;
+import utils.io.AnimationLoader;
+import utils.io.DataExporter;
+import utils.io.JobManifest;
+import utils.io.SceneLoader;
+import utils.jfr.SceneSetupEvent;
+
+import java.awt.GraphicsEnvironment;
+import java.util.Arrays;
+import java.util.List;
 
 
 
@@ -60,6 +78,39 @@ public class Main {
     static final int ANTI_ALIASING = 4;
     static final boolean USE_SOFT_SHADOWS = false;
 
+    // Only pixels whose samples or neighbours differ by more than the threshold get all anti aliasing samples
+    static final boolean USE_ADAPTIVE_AA = true;
+    static final float ADAPTIVE_AA_THRESHOLD = 0.02f;
+
+    /** MULTI-CORE **/
+
+    static final boolean USE_TILES = true;
+    static final int TILE_SIZE = 32;
+    static final int RENDER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Renders coarse blocks first and refines them, the final image stays the same
+    static final boolean USE_PROGRESSIVE = true;
+    static final int PROGRESSIVE_BLOCK_SIZE = 8;
+
+    /** OUTPUT **/
+
+    // Without a display, or when started with --headless, the image is only written to the PNG
+    static final String HEADLESS_ARGUMENT = "--headless";
+    // Started with --wavefront, the samples are traced breadth-first in batches, the image stays the same
+    static final String WAVEFRONT_ARGUMENT = "--wavefront";
+    // Started with --scene <file>, the scene and its render settings are loaded from a JSON or a compiled scene file
+    static final String SCENE_ARGUMENT = "--scene";
+    // Started with --compile <file>, the scene is written into a compiled scene file instead of being rendered
+    static final String COMPILE_ARGUMENT = "--compile";
+    // Started with --batch <manifest>, the jobs of a JSON manifest are rendered one after another without a window
+    static final String BATCH_ARGUMENT = "--batch";
+    static final String BATCH_REPORT_FILE = "batch_report.json";
+    // Started with --animation <file>, the frames of a JSON animation are rendered into an image sequence without a window
+    static final String ANIMATION_ARGUMENT = "--animation";
+    // Started with --hdr <file>, the float colors of the rendering are also written as PFM or OpenEXR (.pfm, .exr)
+    static final String HDR_ARGUMENT = "--hdr";
+    static final int PREVIEW_FPS = 10;
+
     /** LIGHT **/
     static final short LIGHT_DENSITY = 20;
     static final short LIGHT_SAMPLES = 40;
@@ -69,6 +120,13 @@ public class Main {
     static final Vec3 LIGHT_POSITION = new Vec3( 0, 4, 0);
     static final short AREA_LIGHT_SIZE = 2;
 
+    // Samples taken on the area light per shading point for the quality levels draft, preview, default and final
+    static final int[] AREA_LIGHT_SAMPLES = {1, 4, 16, 64};
+    static final int RENDER_QUALITY = 2;
+
+    // Scenes with more lights pick this many lights per shading point from a light tree
+    static final int LIGHTS_PER_SHADING_POINT = 8;
+
     /** GI **/
     static final boolean USE_GI = false;
     static final int GI_LEVEL = 0;
@@ -108,19 +166,127 @@ public class Main {
 
     /** Initial method. This is where the show begins. **/
     public static void main(String[] args){
-        Window renderWindow = new Window(IMAGE_WIDTH, IMAGE_HEIGHT);
+        List<String> arguments = Arrays.asList(args);
+        int batchArgument = arguments.indexOf(BATCH_ARGUMENT);
+        if (batchArgument >= 0 && batchArgument + 1 < args.length) {
+            renderBatch(args[batchArgument + 1]);
+            return;
+        }
+        int animationArgument = arguments.indexOf(ANIMATION_ARGUMENT);
+        if (animationArgument >= 0 && animationArgument + 1 < args.length) {
+            renderAnimation(args[animationArgument + 1]);
+            return;
+        }
+        boolean headless = GraphicsEnvironment.isHeadless() || arguments.contains(HEADLESS_ARGUMENT);
+        int sceneArgument = arguments.indexOf(SCENE_ARGUMENT);
+        String scenePath = sceneArgument >= 0 && sceneArgument + 1 < args.length ? args[sceneArgument + 1] : null;
+        int compileArgument = arguments.indexOf(COMPILE_ARGUMENT);
+        String compilePath = compileArgument >= 0 && compileArgument + 1 < args.length ? args[compileArgument + 1] : null;
+        int hdrArgument = arguments.indexOf(HDR_ARGUMENT);
+        String hdrPath = hdrArgument >= 0 && hdrArgument + 1 < args.length ? args[hdrArgument + 1] : null;
+
+        RenderSettings settings = createSettings();
+        Scene renderScene = createScene(scenePath, settings);
+        if (renderScene == null) {
+            return;
+        }
+        if (compilePath != null) {
+            SceneFile.write(renderScene, settings, compilePath);
+            return;
+        }
+        if (arguments.contains(WAVEFRONT_ARGUMENT)) {
+            settings.setWavefront(true);
+        }
+
+        HdrFrameBuffer hdrFrameBuffer = hdrPath != null ? new HdrFrameBuffer(settings.getWidth(), settings.getHeight()) : null;
+        FrameBuffer frameBuffer = hdrFrameBuffer != null ? hdrFrameBuffer : new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+        Window renderWindow = headless ? null : new Window(frameBuffer, PREVIEW_FPS);
 
         System.out.printf("Hello World! Again!");
-        draw(renderWindow);
+        raytraceScene(frameBuffer, renderScene, settings);
+        if (hdrFrameBuffer != null) {
+            DataExporter.exportColors(hdrFrameBuffer.getColors(), hdrFrameBuffer.getWidth(), hdrFrameBuffer.getHeight(), hdrPath);
+        }
+
+        if (renderWindow != null) {
+            renderWindow.stopRefresh();
+        }
     }
 
-    /**  Draw the scene using our Raytracer **/
-    private static void draw(Window renderWindow){
-        Scene renderScene = new Scene();
+    /** Renders the jobs of a manifest in this process and writes their timings **/
+    private static void renderBatch(String manifestPath){
+        List<RenderJob> jobs = JobManifest.load(manifestPath);
+        if (jobs == null) {
+            return;
+        }
+        BatchRenderer batch = new BatchRenderer(RENDER_THREADS);
+        try {
+            batch.render(jobs);
+            batch.exportJson(BATCH_REPORT_FILE);
+        } finally {
+            batch.shutdown();
+        }
+    }
+
+    /** Renders the frames of an animation in this process **/
+    private static void renderAnimation(String animationPath){
+        Animation animation = AnimationLoader.load(animationPath);
+        if (animation == null) {
+            return;
+        }
+        AnimationRenderer renderer = new AnimationRenderer(RENDER_THREADS);
+        try {
+            renderer.render(animation);
+        } finally {
+            renderer.shutdown();
+        }
+    }
 
-        setupScene(renderScene);
+    /** The render settings of the constants above, a scene file may override them **/
+    private static RenderSettings createSettings(){
+        RenderSettings settings = new RenderSettings();
+        settings.setSize(IMAGE_WIDTH, IMAGE_HEIGHT);
+        settings.setRecursions(RECURSIONS);
+        settings.setAntiAliasing(ANTI_ALIASING);
+        settings.setBackgroundColor(BACKGROUND_COLOR);
+        settings.setAmbientLight(AMBIENT_LIGHT);
+        settings.setShowLabel(SHOW_PARAM_LABEL);
+        settings.setLightSamples(AREA_LIGHT_SAMPLES[RENDER_QUALITY]);
+        settings.setLightsPerPoint(LIGHTS_PER_SHADING_POINT);
+        if (USE_TILES) {
+            settings.setTileSize(TILE_SIZE);
+            settings.setThreads(RENDER_THREADS);
+        }
+        if (USE_ADAPTIVE_AA) {
+            settings.setAdaptiveThreshold(ADAPTIVE_AA_THRESHOLD);
+        }
+        if (USE_PROGRESSIVE) {
+            settings.setProgressiveBlockSize(PROGRESSIVE_BLOCK_SIZE);
+        }
+        return settings;
+    }
 
-        raytraceScene(renderWindow, renderScene);
+    /** Loads the scene file, or creates the scene of the setup methods below without one **/
+    private static Scene createScene(String scenePath, RenderSettings settings){
+        SceneSetupEvent setupEvent = new SceneSetupEvent();
+        setupEvent.begin();
+        Scene renderScene;
+        if (scenePath != null && scenePath.endsWith(SceneFile.EXTENSION)) {
+            renderScene = SceneFile.load(scenePath, settings);
+        } else if (scenePath != null) {
+            renderScene = SceneLoader.load(scenePath, settings);
+        } else {
+            renderScene = new Scene();
+            setupScene(renderScene);
+        }
+        setupEvent.end();
+        if (renderScene != null && setupEvent.shouldCommit()) {
+            setupEvent.shapes = renderScene.getAccelerationStructure() != null
+                    ? renderScene.getAccelerationStructure().getScene().getPrimitiveCount() : renderScene.getShapeList().size();
+            setupEvent.lights = renderScene.getLightList().size();
+            setupEvent.commit();
+        }
+        return renderScene;
     }
 
     /** Setup all components that we want to see in our scene **/
@@ -137,7 +303,7 @@ public class Main {
     private static void setupLights(Scene renderScene) {
         // Light Setup
         //renderScene.createPointlight(RgbColor.WHITE, LIGHT_POSITION);
-        renderScene.createArealight(RgbColor.WHITE, LIGHT_POSITION, LIGHT_SAMPLES);
+        renderScene.createArealight(RgbColor.WHITE, LIGHT_POSITION, AREA_LIGHT_SIZE, LIGHT_SAMPLES);
     }
 
     private static void setupCameras(Scene renderScene) {
@@ -179,18 +345,9 @@ public class Main {
     }
 
     /** Create our personal renderer and give it all of our items and prefs to calculate our scene **/
-    private static void raytraceScene(Window renderWindow, Scene renderScene){
-        Raytracer raytracer = new Raytracer(
-                renderScene,
-                renderWindow,
-                RECURSIONS,
-                BACKGROUND_COLOR,
-                AMBIENT_LIGHT,
-                ANTI_ALIASING,
-                SHOW_PARAM_LABEL,
-                IMAGE_WIDTH,
-                IMAGE_HEIGHT);
+    private static void raytraceScene(FrameBuffer frameBuffer, Scene renderScene, RenderSettings settings){
+        Raytracer raytracer = settings.createRaytracer(renderScene, frameBuffer);
 
         raytracer.renderScene();
     }
-}
\ No newline at end of file
+}
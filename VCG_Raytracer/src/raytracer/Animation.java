@@ -0,0 +1,242 @@
+package raytracer;
+
+import utils.algebra.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class Animation
+ * A camera flight and moving objects through a scene file, rendered into a numbered sequence of images.
+ * The camera and the objects are keyframed: between two keys vectors follow a Catmull-Rom spline through the
+ * neighbouring keys and lens values are interpolated linearly, before the first and after the last key the
+ * nearest key is held. Objects are moved by a translation from the location they have in the scene file.
+ */
+public class Animation {
+
+    private final String scenePath;
+    private final String outputPattern;
+    private final int frameCount;
+
+    private final Track cameraTrack = new Track();
+    private final List<ObjectTrack> objectTracks = new ArrayList<>();
+
+    /**
+     * A key of a track. The camera keys hold the position, the center of interest and the up vector, followed by
+     * the view angle and the focal length; null vectors and values of 0 keep the setting of the scene camera.
+     * The object keys hold the translation.
+     */
+    private static final class Key {
+        final int frame;
+        final Vec3[] vectors;
+        final float[] values;
+
+        Key(int _frame, Vec3[] _vectors, float[] _values) {
+            this.frame = _frame;
+            this.vectors = _vectors;
+            this.values = _values;
+        }
+    }
+
+    /**
+     * The keys of a camera or an object, sorted by frame.
+     */
+    private static class Track {
+        final List<Key> keys = new ArrayList<>();
+
+        void add(Key key) {
+            int index = keys.size();
+            while (index > 0 && keys.get(index - 1).frame > key.frame) {
+                index--;
+            }
+            keys.add(index, key);
+        }
+
+        /**
+         * Returns the index of the key at or before a frame, clamped to the keys.
+         */
+        int keyBefore(float frame) {
+            int index = 0;
+            while (index < keys.size() - 2 && keys.get(index + 1).frame <= frame) {
+                index++;
+            }
+            return index;
+        }
+
+        /**
+         * Interpolates a vector of the keys.
+         * @param vector The index of the vector in the keys
+         * @param frame The frame
+         * @param fallback The vector of keys which do not set it
+         * @param out The vector which receives the result
+         * @return The interpolated vector
+         */
+        Vec3 vectorAt(int vector, float frame, Vec3 fallback, Vec3 out) {
+            if (keys.size() == 1) {
+                return out.set(vectorOf(0, vector, fallback));
+            }
+            int i = keyBefore(frame);
+            float t = parameter(i, frame);
+            Vec3 p0 = vectorOf(Math.max(i - 1, 0), vector, fallback);
+            Vec3 p1 = vectorOf(i, vector, fallback);
+            Vec3 p2 = vectorOf(i + 1, vector, fallback);
+            Vec3 p3 = vectorOf(Math.min(i + 2, keys.size() - 1), vector, fallback);
+            return out.set(catmullRom(p0.x, p1.x, p2.x, p3.x, t), catmullRom(p0.y, p1.y, p2.y, p3.y, t),
+                    catmullRom(p0.z, p1.z, p2.z, p3.z, t));
+        }
+
+        /**
+         * Interpolates a value of the keys linearly.
+         * @param value The index of the value in the keys
+         * @param frame The frame
+         * @param fallback The value of keys which do not set it
+         * @return The interpolated value
+         */
+        float valueAt(int value, float frame, float fallback) {
+            if (keys.size() == 1) {
+                return valueOf(0, value, fallback);
+            }
+            int i = keyBefore(frame);
+            float t = parameter(i, frame);
+            return valueOf(i, value, fallback) * (1 - t) + valueOf(i + 1, value, fallback) * t;
+        }
+
+        private float parameter(int key, float frame) {
+            int start = keys.get(key).frame;
+            int end = keys.get(key + 1).frame;
+            return end > start ? Math.max(0f, Math.min(1f, (frame - start) / (end - start))) : 1f;
+        }
+
+        private Vec3 vectorOf(int key, int vector, Vec3 fallback) {
+            Vec3 value = keys.get(key).vectors[vector];
+            return value != null ? value : fallback;
+        }
+
+        private float valueOf(int key, int value, float fallback) {
+            float keyValue = keys.get(key).values[value];
+            return keyValue > 0 ? keyValue : fallback;
+        }
+    }
+
+    /**
+     * The translations of a shape of the scene file.
+     */
+    public static final class ObjectTrack extends Track {
+        private final int shape;
+
+        ObjectTrack(int _shape) {
+            this.shape = _shape;
+        }
+
+        /**
+         * @return The index of the shape in the shape list of the scene file
+         */
+        public int getShape() {
+            return shape;
+        }
+
+        /**
+         * Returns the translation of the shape in a frame.
+         * @param frame The frame
+         * @param translation The vector which receives the translation
+         * @return The translation
+         */
+        public Vec3 getTranslation(int frame, Vec3 translation) {
+            return vectorAt(0, frame, null, translation);
+        }
+    }
+
+    /**
+     * @param _scenePath The path of the JSON or compiled scene file
+     * @param _outputPattern The path of the images with a format for the frame number, like frames/orbit_%04d.png
+     * @param _frameCount The number of frames, which are numbered from 0
+     */
+    public Animation(String _scenePath, String _outputPattern, int _frameCount) {
+        this.scenePath = _scenePath;
+        this.outputPattern = _outputPattern;
+        this.frameCount = _frameCount;
+    }
+
+    /**
+     * Adds a key of the camera. Settings which are not given keep the setting of the scene camera.
+     * @param frame The frame of the key
+     * @param position The camera position, null for the scene camera
+     * @param lookAt The center of interest, null for the scene camera
+     * @param up The up vector, null for the scene camera
+     * @param viewAngle The view angle, 0 for the scene camera
+     * @param focalLength The focal length, 0 for the scene camera
+     */
+    public void addCameraKey(int frame, Vec3 position, Vec3 lookAt, Vec3 up, float viewAngle, float focalLength) {
+        cameraTrack.add(new Key(frame, new Vec3[]{position, lookAt, up}, new float[]{viewAngle, focalLength}));
+    }
+
+    /**
+     * Adds a key of a moving shape.
+     * @param shape The index of the shape in the shape list of the scene file
+     * @param frame The frame of the key
+     * @param translation The translation from the location of the shape in the scene file
+     */
+    public void addObjectKey(int shape, int frame, Vec3 translation) {
+        ObjectTrack track = null;
+        for (ObjectTrack objectTrack : objectTracks) {
+            if (objectTrack.shape == shape) {
+                track = objectTrack;
+            }
+        }
+        if (track == null) {
+            track = new ObjectTrack(shape);
+            objectTracks.add(track);
+        }
+        track.add(new Key(frame, new Vec3[]{translation}, new float[0]));
+    }
+
+    /**
+     * Creates the camera of a frame.
+     * @param frame The frame
+     * @param sceneCamera The camera of the scene file
+     * @return The camera, the scene camera if the animation has no camera keys
+     */
+    Camera createCamera(int frame, Camera sceneCamera) {
+        if (cameraTrack.keys.isEmpty()) {
+            return sceneCamera;
+        }
+        return new PerspCam(cameraTrack.vectorAt(0, frame, sceneCamera.getCameraPosition(), new Vec3()),
+                cameraTrack.vectorAt(1, frame, sceneCamera.getCenterOfInterest(), new Vec3()),
+                cameraTrack.vectorAt(2, frame, sceneCamera.getUserUpVector(), new Vec3()),
+                cameraTrack.valueAt(0, frame, sceneCamera.getViewAngle()),
+                cameraTrack.valueAt(1, frame, sceneCamera.getFocalLength()));
+    }
+
+    private static float catmullRom(float p0, float p1, float p2, float p3, float t) {
+        return 0.5f * (2 * p1 + (p2 - p0) * t + (2 * p0 - 5 * p1 + 4 * p2 - p3) * t * t + (3 * p1 - p0 - 3 * p2 + p3) * t * t * t);
+    }
+
+    /**
+     * Returns the image file of a frame.
+     * @param frame The frame
+     * @return The output pattern formatted with the frame number
+     */
+    public String getOutputFile(int frame) {
+        return String.format(Locale.ROOT, outputPattern, frame);
+    }
+
+    public String getScenePath() {
+        return scenePath;
+    }
+
+    public String getOutputPattern() {
+        return outputPattern;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return The tracks of the moving shapes
+     */
+    public List<ObjectTrack> getObjectTracks() {
+        return objectTracks;
+    }
+}
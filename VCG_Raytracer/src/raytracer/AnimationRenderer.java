@@ -0,0 +1,205 @@
+package raytracer;
+
+import scene.Scene;
+import ui.FrameBuffer;
+import ui.HdrFrameBuffer;
+import ui.ImageFrameBuffer;
+import utils.algebra.Vec3;
+import utils.io.DataExporter;
+import utils.io.ImageExportQueue;
+import utils.io.Log;
+import utils.io.SceneLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class AnimationRenderer
+ * Renders the frames of an animation. The scene is loaded and its hierarchy built once; for every frame the camera
+ * is set, the moving shapes are moved and the boxes of the hierarchy are refitted to them instead of building a new
+ * hierarchy. Finished frames are copied into an export queue: while a frame is encoded and written in the
+ * background, the render threads already trace the next frame into the same frame buffer.
+ */
+public class AnimationRenderer {
+
+    // Frames which may wait for the export, rendering only waits when the export falls further behind
+    private static final int EXPORT_QUEUE_SIZE = 2;
+
+    private final ForkJoinPool pool;
+    private final ImageExportQueue exportQueue = new ImageExportQueue(EXPORT_QUEUE_SIZE);
+
+    private long animationTime;
+    private long renderTime;
+    private long refitTime;
+    private long waitTime;
+    private long encodeTime;
+    private int frames;
+    private int failedExports;
+
+    /**
+     * @param threads The number of render threads. The threads of the scene file are ignored
+     */
+    public AnimationRenderer(int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Renders every frame of an animation into its image file.
+     * @param animation The animation
+     * @return false if the scene could not be loaded or a frame could not be written
+     */
+    public boolean render(Animation animation) {
+        long tStart = System.nanoTime();
+        renderTime = 0;
+        refitTime = 0;
+        waitTime = 0;
+        encodeTime = 0;
+        frames = 0;
+        failedExports = 0;
+
+        RenderSettings settings = new RenderSettings();
+        String path = animation.getScenePath();
+        Scene scene = path.endsWith(SceneFile.EXTENSION) ? SceneFile.load(path, settings) : SceneLoader.load(path, settings);
+        if (scene == null || !createDirectories(animation.getOutputFile(0))) {
+            return false;
+        }
+        BVH bvh = scene.buildAccelerationStructure();
+        List<MovingPrimitive> moving = findMovingPrimitives(animation, bvh.getScene());
+        Camera sceneCamera = scene.getCamera();
+
+        // Sequences of PFM or OpenEXR files are rendered into a float buffer
+        FrameBuffer frameBuffer = DataExporter.isHdrFile(animation.getOutputFile(0))
+                ? new HdrFrameBuffer(settings.getWidth(), settings.getHeight())
+                : new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+        long encodeStart = exportQueue.getEncodeTime();
+        int failedBefore = exportQueue.getFailedCount();
+        Log.print(this, "Rendering " + animation.getFrameCount() + " frames of " + path + " on " + pool.getParallelism()
+                + " threads, " + moving.size() + " moving primitives");
+        try {
+            Vec3 location = new Vec3();
+            for (int frame = 0; frame < animation.getFrameCount(); frame++) {
+                long tFrame = System.nanoTime();
+                scene.setCamera(animation.createCamera(frame, sceneCamera));
+                long frameRefit = 0;
+                if (!moving.isEmpty()) {
+                    for (MovingPrimitive primitive : moving) {
+                        primitive.track.getTranslation(frame, location).addInPlace(primitive.restLocation);
+                        bvh.getScene().setLocation(primitive.primitive, location);
+                    }
+                    frameRefit = bvh.refit();
+                    refitTime += frameRefit;
+                }
+
+                Raytracer raytracer = settings.createRaytracer(scene, frameBuffer);
+                raytracer.setRenderPool(pool);
+                raytracer.setOutputFiles(animation.getOutputFile(frame), null, null);
+                raytracer.setExportQueue(exportQueue);
+                raytracer.renderScene();
+                long frameRender = raytracer.getRenderStats().getRenderTime();
+                renderTime += frameRender;
+                // Copying the frame into the queue, which waits while the queue is full
+                long frameWait = raytracer.getRenderStats().getExportTime();
+                waitTime += frameWait;
+                frames++;
+
+                Log.print(this, String.format(Locale.ROOT, "Frame %d/%d -> %s: render %.1f ms, refit %.3f ms, waited %.1f ms for the export, %.1f ms in total",
+                        frame + 1, animation.getFrameCount(), animation.getOutputFile(frame),
+                        frameRender / 1e6, frameRefit / 1e6, frameWait / 1e6, (System.nanoTime() - tFrame) / 1e6));
+            }
+        } finally {
+            exportQueue.flush();
+            failedExports = exportQueue.getFailedCount() - failedBefore;
+            encodeTime = exportQueue.getEncodeTime() - encodeStart;
+            // The scene keeps the locations of the last frame, they are moved back for later renderings
+            for (MovingPrimitive primitive : moving) {
+                bvh.getScene().setLocation(primitive.primitive, primitive.restLocation);
+            }
+            if (!moving.isEmpty()) {
+                bvh.refit();
+            }
+            scene.setCamera(sceneCamera);
+        }
+        animationTime = System.nanoTime() - tStart;
+        Log.print(this, getSummary());
+        return failedExports == 0;
+    }
+
+    /**
+     * A primitive which is moved by a track of the animation.
+     */
+    private static final class MovingPrimitive {
+        final int primitive;
+        final Animation.ObjectTrack track;
+        final Vec3 restLocation;
+
+        MovingPrimitive(int _primitive, Animation.ObjectTrack _track, Vec3 _restLocation) {
+            this.primitive = _primitive;
+            this.track = _track;
+            this.restLocation = _restLocation;
+        }
+    }
+
+    /**
+     * Finds the primitives of the moving shapes. Shapes which are not in the scene or can not be moved are skipped.
+     */
+    private List<MovingPrimitive> findMovingPrimitives(Animation animation, CompiledScene compiledScene) {
+        List<MovingPrimitive> moving = new ArrayList<>();
+        for (Animation.ObjectTrack track : animation.getObjectTracks()) {
+            int shape = track.getShape();
+            if (shape < 0 || shape >= compiledScene.getShapeCount()) {
+                Log.warn(this, "Skipping the track of shape " + shape + ", the scene has " + compiledScene.getShapeCount() + " shapes");
+                continue;
+            }
+            int primitive = compiledScene.getPrimitiveOfShape(shape);
+            if (!compiledScene.isMovable(primitive)) {
+                Log.warn(this, "Skipping the track of shape " + shape + ", only spheres, squares and planes can be moved");
+                continue;
+            }
+            moving.add(new MovingPrimitive(primitive, track, compiledScene.getLocation(primitive, new Vec3())));
+        }
+        return moving;
+    }
+
+    /**
+     * Creates the missing directories of an output file.
+     * @return false if they could not be created
+     */
+    private static boolean createDirectories(String outputPath) {
+        Path directory = Paths.get(outputPath).toAbsolutePath().getParent();
+        try {
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not create " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns a short summary of the last animation for the log.
+     * @return The summary
+     */
+    public String getSummary() {
+        return String.format(Locale.ROOT, "%d frames (%d not written) in %.2f s, %.1f ms per frame: render %.1f ms, refit %.3f ms, "
+                        + "encoding %.1f ms in the background, waited %.1f ms for the export on average",
+                frames, failedExports, animationTime / 1e9, frames == 0 ? 0 : animationTime / 1e6 / frames,
+                frames == 0 ? 0 : renderTime / 1e6 / frames, frames == 0 ? 0 : refitTime / 1e6 / frames,
+                frames == 0 ? 0 : encodeTime / 1e6 / frames, frames == 0 ? 0 : waitTime / 1e6 / frames);
+    }
+
+    /**
+     * Stops the render threads and the export thread, the animation renderer can not be used afterwards.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        exportQueue.shutdown();
+    }
+}
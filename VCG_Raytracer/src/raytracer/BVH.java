@@ -0,0 +1,384 @@
+package raytracer;
+
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import java.io.IOException;
+
+/**
+ * Class BVH
+ * A bounding volume hierarchy over the primitives of a compiled scene. Every primitive with bounds is sorted into the
+ * hierarchy, primitives without bounds (like infinite planes) are tested for every ray.
+ * The primitives of a leaf are tested by type, with the loops of the compiled scene.
+ */
+public class BVH {
+
+    // Boxes are slightly widened during traversal, so rounding never culls a shape touching the box
+    private static final float BOX_TOLERANCE = 1.0001f;
+
+    private final CompiledScene scene;
+
+    private final float[] nodeBounds;
+    // Inner nodes: the index of the right child, leaves: the index of the leaf
+    private final int[] nodeOffsets;
+    private final int[] nodeCounts;
+    private final int nodeCount;
+    private final int stackSize;
+
+    // The primitives of leaf i are the spheres from leafSpheres[i] to leafSpheres[i + 1],
+    // and likewise the squares and the other shapes
+    private final int[] leafSpheres;
+    private final int[] leafSquares;
+    private final int[] leafShapes;
+
+    private final long buildTime;
+
+    /**
+     * Builds the hierarchy for a compiled scene and sorts its primitives into the order of the leaves.
+     * @param _scene The compiled scene
+     */
+    public BVH(CompiledScene _scene) {
+        long tStart = System.nanoTime();
+        this.scene = _scene;
+
+        int primitiveCount = scene.getBoundedCount();
+        BVHBuilder builder = new BVHBuilder(scene.getPrimitiveBounds(), primitiveCount);
+        int[] order = builder.getPrimitiveOrder();
+        scene.reorder(order);
+        this.nodeBounds = builder.getNodeBounds();
+        this.nodeOffsets = builder.getNodeOffsets();
+        this.nodeCounts = builder.getNodeCounts();
+        this.nodeCount = builder.getNodeCount();
+        this.stackSize = builder.getMaxDepth() + 1;
+
+        // The leaves cover the primitives one after another, counted by type they form the ranges of the leaves
+        int[] leafNodes = new int[primitiveCount];
+        for (int node = 0; node < nodeCount; node++) {
+            if (nodeCounts[node] > 0) {
+                leafNodes[nodeOffsets[node]] = node;
+            }
+        }
+        int leafCount = builder.getLeafCount();
+        this.leafSpheres = new int[leafCount + 1];
+        this.leafSquares = new int[leafCount + 1];
+        this.leafShapes = new int[leafCount + 1];
+        int sphereCount = scene.getSphereCount();
+        int squareEnd = sphereCount + scene.getSquareCount();
+        int spheres = 0;
+        int squares = 0;
+        int shapes = 0;
+        int leaf = 0;
+        for (int position = 0; position < primitiveCount; leaf++) {
+            int node = leafNodes[position];
+            leafSpheres[leaf] = spheres;
+            leafSquares[leaf] = squares;
+            leafShapes[leaf] = shapes;
+            for (int i = position; i < position + nodeCounts[node]; i++) {
+                if (order[i] < sphereCount) {
+                    spheres++;
+                } else if (order[i] < squareEnd) {
+                    squares++;
+                } else {
+                    shapes++;
+                }
+            }
+            position += nodeCounts[node];
+            nodeOffsets[node] = leaf;
+        }
+        leafSpheres[leaf] = spheres;
+        leafSquares[leaf] = squares;
+        leafShapes[leaf] = shapes;
+
+        this.buildTime = System.nanoTime() - tStart;
+        Log.print(this, "Built for " + primitiveCount + " primitives in " + (buildTime / 1000000.0) + " ms: "
+                + nodeCount + " nodes, " + leafCount + " leaves, depth " + builder.getMaxDepth());
+    }
+
+    /**
+     * Reads a prebuilt hierarchy from a scene file.
+     * @param _scene The compiled scene read from the file, whose primitives are in the order of the leaves
+     * @param in The scene file positioned at the hierarchy
+     */
+    BVH(CompiledScene _scene, SceneFile.Input in) throws IOException {
+        long tStart = System.nanoTime();
+        this.scene = _scene;
+        this.nodeCount = in.readCount(32);
+        this.stackSize = in.readInt();
+        int leafCount = in.readCount(12);
+        this.nodeBounds = in.readFloats(nodeCount * 6);
+        this.nodeOffsets = in.readInts(nodeCount);
+        this.nodeCounts = in.readInts(nodeCount);
+        this.leafSpheres = in.readInts(leafCount + 1);
+        this.leafSquares = in.readInts(leafCount + 1);
+        this.leafShapes = in.readInts(leafCount + 1);
+        if (leafSpheres[leafCount] != scene.getSphereCount() || leafSquares[leafCount] != scene.getSquareCount()
+                || leafShapes[leafCount] != scene.getBoundedShapeCount()) {
+            throw new IOException("the leaves do not match the primitives");
+        }
+        this.buildTime = System.nanoTime() - tStart;
+    }
+
+    /**
+     * Writes the hierarchy into a scene file: the node count, the stack size and the leaf count, followed by
+     * the node bounds, offsets and counts and the first sphere, square and shape of every leaf.
+     * @param out The scene file
+     */
+    void write(SceneFile.Output out) throws IOException {
+        int leafCount = leafSpheres.length - 1;
+        out.writeInt(nodeCount);
+        out.writeInt(stackSize);
+        out.writeInt(leafCount);
+        out.writeFloats(nodeBounds, nodeCount * 6);
+        out.writeInts(nodeOffsets, nodeCount);
+        out.writeInts(nodeCounts, nodeCount);
+        out.writeInts(leafSpheres, leafCount + 1);
+        out.writeInts(leafSquares, leafCount + 1);
+        out.writeInts(leafShapes, leafCount + 1);
+    }
+
+    /**
+     * Fits the boxes of the nodes to the primitives again after they have been moved, see CompiledScene.setLocation().
+     * The tree and the order of the primitives stay the same, so this is much faster than building a new hierarchy.
+     * Boxes grow with primitives which move apart and traversal gets slower, a new hierarchy is better after large
+     * movements. The children of a node always follow it, so the nodes are refitted from the last to the first.
+     * @return The time it took in nanoseconds
+     */
+    public long refit() {
+        long tStart = System.nanoTime();
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int b = node * 6;
+            BVHBuilder.resetBounds(nodeBounds, b);
+            if (nodeCounts[node] > 0) {
+                int leaf = nodeOffsets[node];
+                scene.extendBounds(leafSpheres[leaf], leafSpheres[leaf + 1], leafSquares[leaf], leafSquares[leaf + 1],
+                        leafShapes[leaf], leafShapes[leaf + 1], nodeBounds, b);
+            } else {
+                BVHBuilder.extendBounds(nodeBounds, b, nodeBounds, (node + 1) * 6);
+                BVHBuilder.extendBounds(nodeBounds, b, nodeBounds, nodeOffsets[node] * 6);
+            }
+        }
+        return System.nanoTime() - tStart;
+    }
+
+    /**
+     * Finds the closest primitive hit by the ray.
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @return true if a primitive has been hit
+     */
+    public boolean closestHit(Ray ray, Intersection hit) {
+        return closestHit(ray, hit, -1);
+    }
+
+    /**
+     * Finds the closest primitive hit by the ray.
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @param ignore The index of a primitive which is skipped, for example the one the ray starts on. -1 to test all
+     * @return true if a primitive has been hit
+     */
+    public boolean closestHit(Ray ray, Intersection hit, int ignore) {
+        boolean found = scene.intersectUnbounded(ray, hit, ignore);
+        return closestBoundedHit(ray, hit, ignore) || found;
+    }
+
+    /**
+     * Finds the closest primitive with bounds hit by the ray, the unbounded primitives are not tested.
+     * Renderers which test the unbounded primitives themselves continue with this.
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @param ignore The index of a primitive which is skipped, for example the one the ray starts on. -1 to test all
+     * @return true if a primitive has been hit
+     */
+    public boolean closestBoundedHit(Ray ray, Intersection hit, int ignore) {
+        if (nodeCount == 0) {
+            return false;
+        }
+
+        Vec3 start = ray.getStartPoint();
+        Vec3 direction = ray.getDirection();
+        float invX = 1f / direction.x;
+        float invY = 1f / direction.y;
+        float invZ = 1f / direction.z;
+
+        ray.boxTests++;
+        if (intersectNode(0, start, invX, invY, invZ, hit.getDistance()) == Float.POSITIVE_INFINITY) {
+            return false;
+        }
+
+        boolean found = false;
+        int[] stack = ray.getTraversalStack(stackSize + 1);
+        // The distance at which the ray enters every node on the stack
+        float[] stackDistances = ray.getTraversalDistances(stackSize + 1);
+        int stackPointer = 0;
+        int node = 0;
+        while (true) {
+            if (nodeCounts[node] > 0) {
+                // Leaf: test the primitives by type
+                int leaf = nodeOffsets[node];
+                ray.primitiveTests += nodeCounts[node];
+                if (scene.intersectSpheres(leafSpheres[leaf], leafSpheres[leaf + 1], ray, hit, ignore)) {
+                    found = true;
+                }
+                if (scene.intersectSquares(leafSquares[leaf], leafSquares[leaf + 1], ray, hit, ignore)) {
+                    found = true;
+                }
+                if (scene.intersectShapes(leafShapes[leaf], leafShapes[leaf + 1], ray, hit, ignore)) {
+                    found = true;
+                }
+                node = -1;
+            } else {
+                // Inner node: visit the closer child first and remember the other one
+                int left = node + 1;
+                int right = nodeOffsets[node];
+                float maxDistance = hit.getDistance();
+                ray.boxTests += 2;
+                float tLeft = intersectNode(left, start, invX, invY, invZ, maxDistance);
+                float tRight = intersectNode(right, start, invX, invY, invZ, maxDistance);
+                if (tLeft == Float.POSITIVE_INFINITY && tRight == Float.POSITIVE_INFINITY) {
+                    node = -1;
+                } else if (tRight == Float.POSITIVE_INFINITY) {
+                    node = left;
+                } else if (tLeft == Float.POSITIVE_INFINITY) {
+                    node = right;
+                } else if (tLeft <= tRight) {
+                    stackDistances[stackPointer] = tRight;
+                    stack[stackPointer++] = right;
+                    node = left;
+                } else {
+                    stackDistances[stackPointer] = tLeft;
+                    stack[stackPointer++] = left;
+                    node = right;
+                }
+            }
+
+            if (node < 0) {
+                // Skip the remembered nodes which the ray only enters behind the closest hit found since
+                float maxDistance = hit.getDistance();
+                while (stackPointer > 0 && stackDistances[stackPointer - 1] >= maxDistance) {
+                    stackPointer--;
+                }
+                if (stackPointer == 0) {
+                    break;
+                }
+                node = stack[--stackPointer];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks if any primitive blocks the ray before the maximum distance.
+     * The traversal stops at the first blocking primitive and does not calculate points or normals.
+     * @param ray The ray to trace, for example a shadow ray towards a light
+     * @param maxDistance The distance at which the ray stops, for example the distance to the light
+     * @param ignore The index of a primitive which is skipped, for example the one the ray starts on. -1 to test all
+     * @return true if a primitive is hit closer than the maximum distance
+     */
+    public boolean occluded(Ray ray, float maxDistance, int ignore) {
+        if (scene.occludedByUnbounded(ray, maxDistance, ignore)) {
+            return true;
+        }
+        if (nodeCount == 0) {
+            return false;
+        }
+
+        Vec3 start = ray.getStartPoint();
+        Vec3 direction = ray.getDirection();
+        float invX = 1f / direction.x;
+        float invY = 1f / direction.y;
+        float invZ = 1f / direction.z;
+
+        int[] stack = ray.getTraversalStack(stackSize + 1);
+        int stackPointer = 0;
+        stack[stackPointer++] = 0;
+        while (stackPointer > 0) {
+            int node = stack[--stackPointer];
+            ray.boxTests++;
+            if (intersectNode(node, start, invX, invY, invZ, maxDistance) == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            if (nodeCounts[node] > 0) {
+                int leaf = nodeOffsets[node];
+                ray.primitiveTests += nodeCounts[node];
+                if (scene.occludedBySpheres(leafSpheres[leaf], leafSpheres[leaf + 1], ray, maxDistance, ignore)
+                        || scene.occludedBySquares(leafSquares[leaf], leafSquares[leaf + 1], ray, maxDistance, ignore)
+                        || scene.occludedByShapes(leafShapes[leaf], leafShapes[leaf + 1], ray, maxDistance, ignore)) {
+                    return true;
+                }
+            } else {
+                // The order does not matter, any blocking shape ends the search
+                stack[stackPointer++] = nodeOffsets[node];
+                stack[stackPointer++] = node + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Intersects the ray with the box of a node.
+     */
+    private float intersectNode(int node, Vec3 start, float invX, float invY, float invZ, float maxDistance) {
+        return intersectBox(nodeBounds, node, start, invX, invY, invZ, maxDistance);
+    }
+
+    /**
+     * Intersects a ray with a box of a flat node array, as created by the BVHBuilder, using the slab test.
+     * Shapes with their own hierarchy, like triangle meshes, use it for their nodes as well.
+     * @param bounds The bounds of the boxes as minX, minY, minZ, maxX, maxY, maxZ
+     * @param box The index of the box
+     * @param start The start point of the ray
+     * @param invX The inverse of the x component of the ray direction
+     * @param invY The inverse of the y component of the ray direction
+     * @param invZ The inverse of the z component of the ray direction
+     * @param maxDistance The distance at which the ray stops
+     * @return The distance at which the ray enters the box, positive infinity if the box is missed
+     *         or only reached behind the maximum distance
+     */
+    public static float intersectBox(float[] bounds, int box, Vec3 start, float invX, float invY, float invZ, float maxDistance) {
+        int b = box * 6;
+        float tNear = 0f;
+        float tFar = maxDistance;
+
+        float t0 = (bounds[b] - start.x) * invX;
+        float t1 = (bounds[b + 3] - start.x) * invX;
+        // NaN appears if the ray lies in a slab boundary, the comparisons below ignore it
+        if (t0 > t1) { float t = t0; t0 = t1; t1 = t; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 * BOX_TOLERANCE < tFar) tFar = t1 * BOX_TOLERANCE;
+
+        t0 = (bounds[b + 1] - start.y) * invY;
+        t1 = (bounds[b + 4] - start.y) * invY;
+        if (t0 > t1) { float t = t0; t0 = t1; t1 = t; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 * BOX_TOLERANCE < tFar) tFar = t1 * BOX_TOLERANCE;
+
+        t0 = (bounds[b + 2] - start.z) * invZ;
+        t1 = (bounds[b + 5] - start.z) * invZ;
+        if (t0 > t1) { float t = t0; t0 = t1; t1 = t; }
+        if (t0 > tNear) tNear = t0;
+        if (t1 * BOX_TOLERANCE < tFar) tFar = t1 * BOX_TOLERANCE;
+
+        return tNear <= tFar ? tNear : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the compiled scene, whose primitives are referenced by their index in the hit records.
+     * @return The compiled scene
+     */
+    public CompiledScene getScene() {
+        return scene;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the time it took to build the hierarchy, or to read it from a scene file.
+     * @return The build time in nanoseconds
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+}
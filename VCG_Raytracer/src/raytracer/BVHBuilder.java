@@ -0,0 +1,266 @@
+package raytracer;
+
+import java.util.Arrays;
+
+/**
+ * Class BVHBuilder
+ * Builds the nodes of a bounding volume hierarchy with the surface area heuristic (SAH).
+ * The primitives are only known by their bounding boxes, so the same builder serves every kind of primitive.
+ *
+ * The nodes are stored depth first in flat arrays. The left child of an inner node directly follows its parent,
+ * the offset of an inner node points to its right child. The offset of a leaf points to its first entry in the
+ * primitive order, the count holds the number of primitives in the leaf and is 0 for inner nodes.
+ */
+public class BVHBuilder {
+
+    // Number of buckets the centroids are sorted into to evaluate the SAH
+    private static final int BIN_COUNT = 16;
+    // Nodes with this many primitives or less become leaves
+    private static final int MAX_LEAF_SIZE = 4;
+    // Relative cost of visiting a node compared to testing a primitive
+    private static final float TRAVERSAL_COST = 1f;
+
+    private final float[] primitiveBounds;
+    private final float[] centroids;
+    private final int[] primitiveOrder;
+
+    private float[] nodeBounds;
+    private int[] nodeOffsets;
+    private int[] nodeCounts;
+    private int nodeCount;
+    private int leafCount;
+    private int maxDepth;
+
+    // Scratch space for the bins, reused by every split
+    private final int[] binCounts = new int[BIN_COUNT];
+    private final float[] binBounds = new float[BIN_COUNT * 6];
+    private final float[] rightAreas = new float[BIN_COUNT];
+    private final int[] rightCounts = new int[BIN_COUNT];
+    private final float[] sweepBounds = new float[6];
+
+    /**
+     * Builds the hierarchy for the given primitives.
+     * @param _primitiveBounds The bounds of every primitive as minX, minY, minZ, maxX, maxY, maxZ
+     * @param primitiveCount The number of primitives
+     */
+    public BVHBuilder(float[] _primitiveBounds, int primitiveCount) {
+        this.primitiveBounds = _primitiveBounds;
+        this.centroids = new float[primitiveCount * 3];
+        this.primitiveOrder = new int[primitiveCount];
+
+        for (int i = 0; i < primitiveCount; i++) {
+            primitiveOrder[i] = i;
+            for (int axis = 0; axis < 3; axis++) {
+                centroids[i * 3 + axis] = (primitiveBounds[i * 6 + axis] + primitiveBounds[i * 6 + axis + 3]) * 0.5f;
+            }
+        }
+
+        int maxNodes = Math.max(1, 2 * primitiveCount - 1);
+        this.nodeBounds = new float[maxNodes * 6];
+        this.nodeOffsets = new int[maxNodes];
+        this.nodeCounts = new int[maxNodes];
+
+        if (primitiveCount > 0) {
+            buildNode(0, primitiveCount, 1);
+        }
+        this.nodeBounds = Arrays.copyOf(nodeBounds, nodeCount * 6);
+        this.nodeOffsets = Arrays.copyOf(nodeOffsets, nodeCount);
+        this.nodeCounts = Arrays.copyOf(nodeCounts, nodeCount);
+    }
+
+    /**
+     * Creates the node for the primitives from start (inclusive) to end (exclusive) and all nodes below it.
+     * @return The index of the created node
+     */
+    private int buildNode(int start, int end, int depth) {
+        int node = nodeCount++;
+        maxDepth = Math.max(maxDepth, depth);
+
+        // Bounds of the node and of the centroids inside of it
+        float[] centroidBounds = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        int b = node * 6;
+        resetBounds(nodeBounds, b);
+        for (int i = start; i < end; i++) {
+            int primitive = primitiveOrder[i];
+            extendBounds(nodeBounds, b, primitiveBounds, primitive * 6);
+            for (int axis = 0; axis < 3; axis++) {
+                float centroid = centroids[primitive * 3 + axis];
+                if (centroid < centroidBounds[axis]) centroidBounds[axis] = centroid;
+                if (centroid > centroidBounds[axis + 3]) centroidBounds[axis + 3] = centroid;
+            }
+        }
+
+        int count = end - start;
+        if (count <= MAX_LEAF_SIZE) {
+            makeLeaf(node, start, count);
+            return node;
+        }
+
+        // Split along the axis with the largest spread of centroids
+        int axis = 0;
+        float extent = centroidBounds[3] - centroidBounds[0];
+        for (int a = 1; a < 3; a++) {
+            if (centroidBounds[a + 3] - centroidBounds[a] > extent) {
+                axis = a;
+                extent = centroidBounds[a + 3] - centroidBounds[a];
+            }
+        }
+
+        int middle;
+        if (extent <= 0f) {
+            // All centroids are in the same spot, the SAH cannot separate them
+            middle = (start + end) >>> 1;
+        } else {
+            middle = splitSAH(node, start, end, axis, centroidBounds[axis], extent);
+            if (middle < 0) {
+                makeLeaf(node, start, count);
+                return node;
+            }
+            if (middle <= start || middle >= end) {
+                middle = (start + end) >>> 1;
+            }
+        }
+
+        buildNode(start, middle, depth + 1);
+        nodeOffsets[node] = buildNode(middle, end, depth + 1);
+        nodeCounts[node] = 0;
+        return node;
+    }
+
+    /**
+     * Sorts the centroids into bins, finds the split between two bins with the lowest SAH cost
+     * and partitions the primitives accordingly.
+     * @return The index of the first primitive of the right child, -1 if a leaf is cheaper than any split
+     */
+    private int splitSAH(int node, int start, int end, int axis, float centroidMin, float extent) {
+        float binScale = BIN_COUNT / extent;
+
+        for (int i = 0; i < BIN_COUNT; i++) {
+            binCounts[i] = 0;
+            resetBounds(binBounds, i * 6);
+        }
+        for (int i = start; i < end; i++) {
+            int primitive = primitiveOrder[i];
+            int bin = binIndex(centroids[primitive * 3 + axis], centroidMin, binScale);
+            binCounts[bin]++;
+            extendBounds(binBounds, bin * 6, primitiveBounds, primitive * 6);
+        }
+
+        // Sweep from the right to know the area and count right of every split
+        float[] sweep = sweepBounds;
+        resetBounds(sweep, 0);
+        int count = 0;
+        for (int i = BIN_COUNT - 1; i > 0; i--) {
+            extendBounds(sweep, 0, binBounds, i * 6);
+            count += binCounts[i];
+            rightAreas[i] = surfaceArea(sweep, 0);
+            rightCounts[i] = count;
+        }
+
+        // Sweep from the left and evaluate the cost of splitting in front of every bin
+        resetBounds(sweep, 0);
+        count = 0;
+        int bestSplit = -1;
+        float bestCost = Float.POSITIVE_INFINITY;
+        for (int i = 1; i < BIN_COUNT; i++) {
+            extendBounds(sweep, 0, binBounds, (i - 1) * 6);
+            count += binCounts[i - 1];
+            if (count == 0 || rightCounts[i] == 0) {
+                continue;
+            }
+            float cost = count * surfaceArea(sweep, 0) + rightCounts[i] * rightAreas[i];
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestSplit = i;
+            }
+        }
+        if (bestSplit < 0) {
+            return start;
+        }
+
+        float nodeArea = surfaceArea(nodeBounds, node * 6);
+        if (nodeArea > 0f && TRAVERSAL_COST + bestCost / nodeArea >= end - start && end - start <= 2 * MAX_LEAF_SIZE) {
+            // Testing all primitives is cheaper than splitting, as long as the leaf does not grow too large
+            return -1;
+        }
+
+        // Partition the primitives left and right of the split
+        int left = start;
+        int right = end - 1;
+        while (left <= right) {
+            int primitive = primitiveOrder[left];
+            if (binIndex(centroids[primitive * 3 + axis], centroidMin, binScale) < bestSplit) {
+                left++;
+            } else {
+                primitiveOrder[left] = primitiveOrder[right];
+                primitiveOrder[right] = primitive;
+                right--;
+            }
+        }
+        return left;
+    }
+
+    private static int binIndex(float centroid, float centroidMin, float binScale) {
+        int bin = (int) ((centroid - centroidMin) * binScale);
+        return bin < 0 ? 0 : (bin >= BIN_COUNT ? BIN_COUNT - 1 : bin);
+    }
+
+    private void makeLeaf(int node, int start, int count) {
+        nodeOffsets[node] = start;
+        nodeCounts[node] = count;
+        leafCount++;
+    }
+
+    static void resetBounds(float[] bounds, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[offset + axis] = Float.POSITIVE_INFINITY;
+            bounds[offset + axis + 3] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    static void extendBounds(float[] bounds, int offset, float[] other, int otherOffset) {
+        for (int axis = 0; axis < 3; axis++) {
+            if (other[otherOffset + axis] < bounds[offset + axis]) bounds[offset + axis] = other[otherOffset + axis];
+            if (other[otherOffset + axis + 3] > bounds[offset + axis + 3]) bounds[offset + axis + 3] = other[otherOffset + axis + 3];
+        }
+    }
+
+    private static float surfaceArea(float[] bounds, int offset) {
+        float dx = bounds[offset + 3] - bounds[offset];
+        float dy = bounds[offset + 4] - bounds[offset + 1];
+        float dz = bounds[offset + 5] - bounds[offset + 2];
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0f;
+        }
+        return 2f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    public float[] getNodeBounds() {
+        return nodeBounds;
+    }
+
+    public int[] getNodeOffsets() {
+        return nodeOffsets;
+    }
+
+    public int[] getNodeCounts() {
+        return nodeCounts;
+    }
+
+    public int[] getPrimitiveOrder() {
+        return primitiveOrder;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+}
@@ -0,0 +1,277 @@
+package raytracer;
+
+import scene.Scene;
+import ui.FrameBuffer;
+import ui.HdrFrameBuffer;
+import ui.ImageFrameBuffer;
+import utils.io.DataExporter;
+import utils.io.ImageExportQueue;
+import utils.io.Log;
+import utils.io.SceneLoader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class BatchRenderer
+ * Renders the jobs of a batch one after another in the same process, so only the first frames pay for starting the
+ * JVM, loading the classes and compiling the hot code. Everything which does not change between jobs is shared:
+ * the render threads, the loaded scenes with their compiled primitives and hierarchy, and the frame buffer while
+ * the image size stays the same. The images are written by an export queue in the background while the next job
+ * renders. Every job is timed, the timings are printed and can be exported as JSON.
+ */
+public class BatchRenderer {
+
+    // Scenes which stay loaded for later jobs, the least recently used scene is dropped beyond this
+    private static final int MAX_CACHED_SCENES = 8;
+    // Images which may wait for the export before a finished job waits for the queue
+    private static final int EXPORT_QUEUE_SIZE = 2;
+
+    private final ForkJoinPool pool;
+    private final Map<String, LoadedScene> scenes = new LinkedHashMap<String, LoadedScene>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LoadedScene> eldest) {
+            return size() > MAX_CACHED_SCENES;
+        }
+    };
+    private FrameBuffer frameBuffer;
+    private final ImageExportQueue exportQueue = new ImageExportQueue(EXPORT_QUEUE_SIZE);
+
+    private final List<JobResult> results = new ArrayList<>();
+    private long batchTime;
+    private long encodeTime;
+    // Images of finished jobs which could not be written
+    private int failedExports;
+
+    /**
+     * A scene file as it has been loaded, before the settings and the camera of a job are applied.
+     */
+    private static final class LoadedScene {
+        final Scene scene;
+        final RenderSettings settings;
+        final Camera camera;
+
+        LoadedScene(Scene _scene, RenderSettings _settings) {
+            this.scene = _scene;
+            this.settings = _settings;
+            this.camera = _scene.getCamera();
+        }
+    }
+
+    /**
+     * The timings of a finished job.
+     */
+    private static final class JobResult {
+        String scene;
+        String output;
+        int width;
+        int height;
+        boolean success;
+        long loadTime;
+        long renderTime;
+        long exportTime;
+        long totalTime;
+        long rays;
+    }
+
+    /**
+     * @param threads The number of render threads, which all jobs share. The threads of the scene files are ignored
+     */
+    public BatchRenderer(int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Renders the jobs in their order. A job whose scene can not be loaded fails, the batch continues with the next job.
+     * @param jobs The jobs
+     * @return The number of failed jobs
+     */
+    public int render(List<RenderJob> jobs) {
+        Log.print(this, "Rendering " + jobs.size() + " jobs on " + pool.getParallelism() + " threads");
+        results.clear();
+        long tStart = System.nanoTime();
+        long encodeStart = exportQueue.getEncodeTime();
+        int failedBefore = exportQueue.getFailedCount();
+        int failed = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            JobResult result = render(jobs.get(i));
+            results.add(result);
+            if (!result.success) {
+                failed++;
+            }
+            Log.print(this, String.format(Locale.ROOT, "Job %d/%d %s -> %s: %s in %.1f ms (load %.1f ms, render %.1f ms, export %.1f ms)",
+                    i + 1, jobs.size(), result.scene, result.output, result.success ? "done" : "failed",
+                    result.totalTime / 1e6, result.loadTime / 1e6, result.renderTime / 1e6, result.exportTime / 1e6));
+        }
+        exportQueue.flush();
+        failedExports = exportQueue.getFailedCount() - failedBefore;
+        failed += failedExports;
+        encodeTime = exportQueue.getEncodeTime() - encodeStart;
+        batchTime = System.nanoTime() - tStart;
+        Log.print(this, getSummary());
+        return failed;
+    }
+
+    private JobResult render(RenderJob job) {
+        long tStart = System.nanoTime();
+        JobResult result = new JobResult();
+        result.scene = job.getScenePath();
+        result.output = job.getOutputPath();
+
+        LoadedScene loaded = scenes.get(job.getScenePath());
+        if (loaded == null) {
+            loaded = load(job.getScenePath());
+            result.loadTime = System.nanoTime() - tStart;
+        }
+        if (loaded != null && createDirectories(job.getOutputPath())) {
+            RenderSettings settings = new RenderSettings(loaded.settings);
+            job.apply(settings);
+            loaded.scene.setCamera(job.hasCamera() ? job.createCamera(loaded.camera) : loaded.camera);
+            // Jobs writing PFM or OpenEXR files are rendered into a float buffer
+            boolean hdr = DataExporter.isHdrFile(job.getOutputPath());
+            if (frameBuffer == null || frameBuffer.getWidth() != settings.getWidth() || frameBuffer.getHeight() != settings.getHeight()
+                    || (frameBuffer instanceof HdrFrameBuffer) != hdr) {
+                frameBuffer = hdr
+                        ? new HdrFrameBuffer(settings.getWidth(), settings.getHeight())
+                        : new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+            }
+
+            Raytracer raytracer = settings.createRaytracer(loaded.scene, frameBuffer);
+            raytracer.setRenderPool(pool);
+            raytracer.setOutputFiles(job.getOutputPath(), null, null);
+            raytracer.setExportQueue(exportQueue);
+            raytracer.renderScene();
+
+            RenderStats stats = raytracer.getRenderStats();
+            result.width = settings.getWidth();
+            result.height = settings.getHeight();
+            result.renderTime = stats.getRenderTime();
+            result.exportTime = stats.getExportTime();
+            result.rays = stats.getTotalRays();
+            result.success = true;
+        }
+        result.totalTime = System.nanoTime() - tStart;
+        return result;
+    }
+
+    /**
+     * Creates the missing directories of an output file.
+     * @return false if they could not be created
+     */
+    private static boolean createDirectories(String outputPath) {
+        Path directory = Paths.get(outputPath).toAbsolutePath().getParent();
+        try {
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not create " + directory + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads a scene file and compiles its shapes once, so every job of the scene shares the hierarchy.
+     * @return The loaded scene, null if it could not be loaded
+     */
+    private LoadedScene load(String path) {
+        RenderSettings settings = new RenderSettings();
+        Scene scene = path.endsWith(SceneFile.EXTENSION) ? SceneFile.load(path, settings) : SceneLoader.load(path, settings);
+        if (scene == null) {
+            return null;
+        }
+        scene.buildAccelerationStructure();
+        LoadedScene loaded = new LoadedScene(scene, settings);
+        scenes.put(path, loaded);
+        return loaded;
+    }
+
+    /**
+     * Returns a short summary of the batch for the log. The first job includes the warm-up of the JVM, so it is
+     * compared to the average of the others. The images are encoded in the background, which is summed up apart.
+     * @return The summary
+     */
+    public String getSummary() {
+        int failed = failedExports;
+        long laterTime = 0;
+        for (int i = 0; i < results.size(); i++) {
+            failed += results.get(i).success ? 0 : 1;
+            laterTime += i > 0 ? results.get(i).totalTime : 0;
+        }
+        return String.format(Locale.ROOT, "%d jobs (%d failed) in %.2f s, %.1f ms per job, first job %.1f ms, later jobs %.1f ms on average, "
+                        + "%.1f ms encoding per image in the background",
+                results.size(), failed, batchTime / 1e9, results.isEmpty() ? 0 : batchTime / 1e6 / results.size(),
+                results.isEmpty() ? 0 : results.get(0).totalTime / 1e6,
+                results.size() > 1 ? laterTime / 1e6 / (results.size() - 1) : 0,
+                results.isEmpty() ? 0 : encodeTime / 1e6 / results.size());
+    }
+
+    /**
+     * Returns the timings of the last batch as a JSON object, including every job.
+     * @return The JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"threads\": ").append(pool.getParallelism()).append(",\n");
+        json.append("  \"batchTimeMs\": ").append(format(batchTime / 1e6)).append(",\n");
+        json.append("  \"encodeTimeMs\": ").append(format(encodeTime / 1e6)).append(",\n");
+        json.append("  \"jobs\": [");
+        for (int i = 0; i < results.size(); i++) {
+            JobResult result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"scene\": \"").append(escape(result.scene))
+                    .append("\", \"output\": \"").append(escape(result.output))
+                    .append("\", \"success\": ").append(result.success)
+                    .append(", \"width\": ").append(result.width)
+                    .append(", \"height\": ").append(result.height)
+                    .append(", \"loadTimeMs\": ").append(format(result.loadTime / 1e6))
+                    .append(", \"renderTimeMs\": ").append(format(result.renderTime / 1e6))
+                    .append(", \"exportTimeMs\": ").append(format(result.exportTime / 1e6))
+                    .append(", \"totalTimeMs\": ").append(format(result.totalTime / 1e6))
+                    .append(", \"rays\": ").append(result.rays).append("}");
+        }
+        json.append(results.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Writes the timings of the last batch as JSON into a file.
+     * @param fileName The name of the file
+     */
+    public void exportJson(String fileName) {
+        try {
+            Files.write(Paths.get(fileName), toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println(e.getMessage()); // print any export errors to stderr.
+        }
+    }
+
+    /**
+     * Stops the render threads and the export queue once the last images are written, the batch renderer can not
+     * be used afterwards.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        exportQueue.shutdown();
+    }
+}
@@ -60,6 +60,20 @@ public abstract class Camera extends SceneObject {
         return destinationPoint;
     }
 
+    /**
+     * Calculates the point on the viewplane the ray has to travel through, without creating a new vector.
+     * @param x The x Coordinate of the Viewplane
+     * @param y The y Coordinate of the Viewplane
+     * @param destinationPoint The vector which receives the point
+     * @return destinationPoint
+     */
+    public Vec3 calculateDestinationPoint(float x, float y, Vec3 destinationPoint) {
+        return destinationPoint.set(
+                focalPoint.x + sideVector.x * x + cameraUpVector.x * y,
+                focalPoint.y + sideVector.y * x + cameraUpVector.y * y,
+                focalPoint.z + sideVector.z * x + cameraUpVector.z * y);
+    }
+
     public Vec3 getViewVector(){
         return this.viewVector;
     }
@@ -76,6 +90,14 @@ public abstract class Camera extends SceneObject {
         return this.cameraUpVector;
     }
 
+    public Vec3 getCenterOfInterest(){
+        return this.centerOfInterest;
+    }
+
+    public Vec3 getUserUpVector(){
+        return this.userUpVector;
+    }
+
     public float getViewAngle(){
         return this.viewAngle;
     }
@@ -0,0 +1,919 @@
+package raytracer;
+
+import scene.Material;
+import scene.Plane;
+import scene.Scene;
+import scene.Shape;
+import scene.Sphere;
+import scene.Square;
+import scene.TriangleMesh;
+import utils.algebra.BoundingBox;
+import utils.algebra.Matrix4x4;
+import utils.algebra.Vec3;
+import utils.io.Log;
+import utils.io.MeshData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class CompiledScene
+ * A read-only copy of the shapes of a scene, which is built before rendering. The shapes are sorted by type into
+ * flat arrays: spheres by center and radius, squares and planes by normal and origin, and every primitive refers
+ * to its material by an index. The intersection tests of a type are loops over the arrays of that type, which
+ * neither visit the shape objects nor call their intersect(). Shapes without such a type, like triangle meshes
+ * and transformed spheres, are kept as objects and tested through intersect().
+ *
+ * Every primitive has an index: first the spheres, then the squares and the other bounded shapes, which are
+ * sorted into the bounding volume hierarchy, followed by the planes and the other unbounded shapes.
+ */
+public class CompiledScene {
+
+    // Runs of at least this many spheres are tested with the intersection kernel,
+    // fewer spheres are tested one by one just as fast (KernelBenchmark)
+    private static final int MIN_KERNEL_SPHERES = 4;
+
+    private final IntersectionKernel kernel = IntersectionKernel.getDefault();
+    private final IntersectionKernel scalarKernel = IntersectionKernel.createScalar();
+
+    private final Material[] materials;
+
+    // Spheres which are only moved to their location
+    private final SpherePack spheres;
+
+    // Squares: their plane as normal and origin, the first three rows of the transformation into
+    // object space and the size, like Square.contains()
+    private final float[] squareNormals;
+    private final float[] squareOrigins;
+    private final float[] squareTransforms;
+    private final float[] squareSizes;
+    private final int[] squareMaterials;
+    // Bounds of the squares, which are needed again when the hierarchy is refitted
+    private final float[] squareBounds;
+
+    // Bounded shapes of other types
+    private final Shape[] shapes;
+
+    // Infinite planes as normal and origin
+    private final float[] planeNormals;
+    private final float[] planeOrigins;
+    private final int[] planeMaterials;
+
+    // Unbounded shapes of other types
+    private final Shape[] unboundedShapes;
+
+    // Bounds of the bounded primitives until the hierarchy has sorted them
+    private float[] primitiveBounds;
+
+    // The primitive every shape of the shape list has been compiled into
+    private final int[] shapePrimitives;
+
+    /**
+     * Compiles the shapes of a scene.
+     * @param scene The scene
+     */
+    public CompiledScene(Scene scene) {
+        this(scene.getShapeList());
+    }
+
+    /**
+     * Compiles a list of shapes.
+     * @param shapeList The shapes
+     */
+    public CompiledScene(List<Shape> shapeList) {
+        long tStart = System.nanoTime();
+
+        List<Sphere> sphereList = new ArrayList<>();
+        List<Square> squareList = new ArrayList<>();
+        List<Shape> boundedList = new ArrayList<>();
+        List<Plane> planeList = new ArrayList<>();
+        List<Shape> unboundedList = new ArrayList<>();
+        // The list of every shape and its index in that list, until the primitive indices are known
+        List<?>[] shapeLists = new List<?>[shapeList.size()];
+        int[] listIndices = new int[shapeList.size()];
+        for (int i = 0; i < shapeList.size(); i++) {
+            Shape shape = shapeList.get(i);
+            // Subclasses may change the intersection, so only the exact types are compiled
+            if (shape.getClass() == Sphere.class && !((Sphere) shape).isTransformed()) {
+                shapeLists[i] = sphereList;
+                listIndices[i] = sphereList.size();
+                sphereList.add((Sphere) shape);
+            } else if (shape.getClass() == Square.class) {
+                shapeLists[i] = squareList;
+                listIndices[i] = squareList.size();
+                squareList.add((Square) shape);
+            } else if (shape.getClass() == Plane.class) {
+                shapeLists[i] = planeList;
+                listIndices[i] = planeList.size();
+                planeList.add((Plane) shape);
+            } else {
+                BoundingBox box = shape.getBounds();
+                if (box == null || box.isEmpty()) {
+                    shapeLists[i] = unboundedList;
+                    listIndices[i] = unboundedList.size();
+                    unboundedList.add(shape);
+                } else {
+                    shapeLists[i] = boundedList;
+                    listIndices[i] = boundedList.size();
+                    boundedList.add(shape);
+                }
+            }
+        }
+
+        Map<Material, Integer> materialIndices = new IdentityHashMap<>();
+        List<Material> materialList = new ArrayList<>();
+
+        this.spheres = new SpherePack(sphereList.size());
+        for (int i = 0; i < sphereList.size(); i++) {
+            Sphere sphere = sphereList.get(i);
+            spheres.set(i, sphere.getLocation(), sphere.getRadius(), indexOf(sphere.getMaterial(), materialIndices, materialList));
+        }
+
+        int squareCount = squareList.size();
+        this.squareNormals = new float[squareCount * 3];
+        this.squareOrigins = new float[squareCount * 3];
+        this.squareTransforms = new float[squareCount * 12];
+        this.squareSizes = new float[squareCount];
+        this.squareMaterials = new int[squareCount];
+        this.squareBounds = new float[squareCount * 6];
+        for (int i = 0; i < squareCount; i++) {
+            Square square = squareList.get(i);
+            setVector(squareNormals, i, square.getNormal());
+            setVector(squareOrigins, i, square.getOrigin());
+            Matrix4x4 transform = square.getInverseTransform();
+            for (int entry = 0; entry < 12; entry++) {
+                squareTransforms[i * 12 + entry] = (float) transform.getValueAt(entry / 4, entry % 4);
+            }
+            squareSizes[i] = square.getSize();
+            squareMaterials[i] = indexOf(square.getMaterial(), materialIndices, materialList);
+            setBounds(squareBounds, i, square.getBounds());
+        }
+
+        this.shapes = boundedList.toArray(new Shape[0]);
+
+        int planeCount = planeList.size();
+        this.planeNormals = new float[planeCount * 3];
+        this.planeOrigins = new float[planeCount * 3];
+        this.planeMaterials = new int[planeCount];
+        for (int i = 0; i < planeCount; i++) {
+            Plane plane = planeList.get(i);
+            setVector(planeNormals, i, plane.getNormal());
+            setVector(planeOrigins, i, plane.getOrigin());
+            planeMaterials[i] = indexOf(plane.getMaterial(), materialIndices, materialList);
+        }
+
+        this.unboundedShapes = unboundedList.toArray(new Shape[0]);
+        // Meshes refer to their material by its index when they are written into a scene file
+        for (Shape shape : shapeList) {
+            if (shape.getClass() == TriangleMesh.class) {
+                indexOf(shape.getMaterial(), materialIndices, materialList);
+            }
+        }
+        this.materials = materialList.toArray(new Material[0]);
+
+        this.primitiveBounds = new float[getBoundedCount() * 6];
+        int primitive = 0;
+        for (Sphere sphere : sphereList) {
+            setBounds(primitiveBounds, primitive++, sphere.getBounds());
+        }
+        System.arraycopy(squareBounds, 0, primitiveBounds, primitive * 6, squareBounds.length);
+        primitive += squareCount;
+        for (Shape shape : boundedList) {
+            setBounds(primitiveBounds, primitive++, shape.getBounds());
+        }
+
+        this.shapePrimitives = new int[shapeList.size()];
+        for (int i = 0; i < shapeList.size(); i++) {
+            int first = shapeLists[i] == sphereList ? 0
+                    : shapeLists[i] == squareList ? spheres.size()
+                    : shapeLists[i] == boundedList ? spheres.size() + squareCount
+                    : shapeLists[i] == planeList ? getBoundedCount()
+                    : getBoundedCount() + planeCount;
+            shapePrimitives[i] = first + listIndices[i];
+        }
+
+        Log.print(this, "Compiled " + spheres.size() + " spheres, " + squareCount + " squares, " + planeCount + " planes, "
+                + (shapes.length + unboundedShapes.length) + " other shapes and " + materials.length + " materials in "
+                + ((System.nanoTime() - tStart) / 1000000.0) + " ms, " + (getByteSize() / 1024) + " KB");
+    }
+
+    /**
+     * Reads a compiled scene from a scene file, whose primitives are already in the order of its hierarchy.
+     * @param in The scene file positioned at the primitives
+     * @param _materials The materials the primitives refer to
+     */
+    CompiledScene(SceneFile.Input in, Material[] _materials) throws IOException {
+        this.materials = _materials;
+
+        int sphereCount = in.readCount(20);
+        this.spheres = new SpherePack(sphereCount);
+        in.readFloats(spheres.centerX, sphereCount);
+        in.readFloats(spheres.centerY, sphereCount);
+        in.readFloats(spheres.centerZ, sphereCount);
+        in.readFloats(spheres.radii, sphereCount);
+        System.arraycopy(in.readInts(sphereCount), 0, spheres.materials, 0, sphereCount);
+
+        int squareCount = in.readCount(104);
+        this.squareNormals = in.readFloats(squareCount * 3);
+        this.squareOrigins = in.readFloats(squareCount * 3);
+        this.squareTransforms = in.readFloats(squareCount * 12);
+        this.squareSizes = in.readFloats(squareCount);
+        this.squareMaterials = in.readInts(squareCount);
+        this.squareBounds = in.readFloats(squareCount * 6);
+
+        int planeCount = in.readCount(28);
+        this.planeNormals = in.readFloats(planeCount * 3);
+        this.planeOrigins = in.readFloats(planeCount * 3);
+        this.planeMaterials = in.readInts(planeCount);
+
+        this.shapes = readMeshes(in, _materials);
+        this.unboundedShapes = readMeshes(in, _materials);
+
+        this.shapePrimitives = in.readInts(in.readCount(4));
+    }
+
+    /**
+     * Writes the primitives into a scene file: the spheres by center coordinates, radii and materials, the squares
+     * by normals, origins, transformations, sizes, materials and bounds and the planes by normals, origins and
+     * materials and the bounded and unbounded triangle meshes, see writeMesh(), followed by the primitive of
+     * every shape. Shapes of other types can not be written, see isWritable().
+     * @param out The scene file
+     */
+    void write(SceneFile.Output out) throws IOException {
+        int sphereCount = spheres.size();
+        out.writeInt(sphereCount);
+        out.writeFloats(spheres.centerX, sphereCount);
+        out.writeFloats(spheres.centerY, sphereCount);
+        out.writeFloats(spheres.centerZ, sphereCount);
+        out.writeFloats(spheres.radii, sphereCount);
+        out.writeInts(spheres.materials, sphereCount);
+
+        out.writeInt(squareSizes.length);
+        out.writeFloats(squareNormals, squareNormals.length);
+        out.writeFloats(squareOrigins, squareOrigins.length);
+        out.writeFloats(squareTransforms, squareTransforms.length);
+        out.writeFloats(squareSizes, squareSizes.length);
+        out.writeInts(squareMaterials, squareMaterials.length);
+        out.writeFloats(squareBounds, squareBounds.length);
+
+        out.writeInt(planeMaterials.length);
+        out.writeFloats(planeNormals, planeNormals.length);
+        out.writeFloats(planeOrigins, planeOrigins.length);
+        out.writeInts(planeMaterials, planeMaterials.length);
+
+        writeMeshes(out, shapes);
+        writeMeshes(out, unboundedShapes);
+
+        out.writeInt(shapePrimitives.length);
+        out.writeInts(shapePrimitives, shapePrimitives.length);
+    }
+
+    /**
+     * Returns if the scene can be written into a scene file, which is the case if its shapes of other types
+     * are all triangle meshes.
+     * @return true if write() can write every primitive
+     */
+    boolean isWritable() {
+        for (Shape shape : shapes) {
+            if (shape.getClass() != TriangleMesh.class) {
+                return false;
+            }
+        }
+        for (Shape shape : unboundedShapes) {
+            if (shape.getClass() != TriangleMesh.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeMeshes(SceneFile.Output out, Shape[] meshes) throws IOException {
+        out.writeInt(meshes.length);
+        for (Shape mesh : meshes) {
+            writeMesh(out, (TriangleMesh) mesh);
+        }
+    }
+
+    /**
+     * Writes a triangle mesh with its hierarchy: the material index, the location, the first three rows of the
+     * transformation into the world, the vertices and normals in world space, the vertex and normal indices of
+     * the triangles in the order of the hierarchy, which are empty if the mesh has no normals, and the node
+     * bounds, offsets and counts of the hierarchy with its stack size.
+     */
+    private void writeMesh(SceneFile.Output out, TriangleMesh mesh) throws IOException {
+        int material = 0;
+        while (materials[material] != mesh.getMaterial()) {
+            material++;
+        }
+        out.writeInt(material);
+        out.writeVector(mesh.getLocation());
+        Matrix4x4 transform = mesh.getTransform();
+        for (int entry = 0; entry < 12; entry++) {
+            out.writeFloat((float) transform.getValueAt(entry / 4, entry % 4));
+        }
+
+        MeshData data = mesh.getMeshData();
+        int[] normalIndices = data.getNormalIndices() == null ? new int[0] : data.getNormalIndices();
+        out.writeInt(data.getPositions().length);
+        out.writeFloats(data.getPositions(), data.getPositions().length);
+        out.writeInt(data.getNormals().length);
+        out.writeFloats(data.getNormals(), data.getNormals().length);
+        out.writeInt(data.getPositionIndices().length);
+        out.writeInts(data.getPositionIndices(), data.getPositionIndices().length);
+        out.writeInt(normalIndices.length);
+        out.writeInts(normalIndices, normalIndices.length);
+
+        int nodeCount = mesh.getNodeCounts().length;
+        out.writeInt(nodeCount);
+        out.writeFloats(mesh.getNodeBounds(), nodeCount * 6);
+        out.writeInts(mesh.getNodeOffsets(), nodeCount);
+        out.writeInts(mesh.getNodeCounts(), nodeCount);
+        out.writeInt(mesh.getStackSize());
+    }
+
+    private static Shape[] readMeshes(SceneFile.Input in, Material[] materials) throws IOException {
+        Shape[] meshes = new Shape[in.readCount(88)];
+        for (int i = 0; i < meshes.length; i++) {
+            meshes[i] = readMesh(in, materials);
+        }
+        return meshes;
+    }
+
+    private static TriangleMesh readMesh(SceneFile.Input in, Material[] materials) throws IOException {
+        int material = in.readInt();
+        if (material < 0 || material >= materials.length) {
+            throw new IOException("invalid material " + material + " of a triangle mesh");
+        }
+        Vec3 location = in.readVector();
+        Matrix4x4 transform = new Matrix4x4();
+        for (int entry = 0; entry < 12; entry++) {
+            transform.setValueAt(entry / 4, entry % 4, in.readFloat());
+        }
+
+        float[] positions = in.readFloats(in.readCount(4));
+        float[] normals = in.readFloats(in.readCount(4));
+        int[] positionIndices = in.readInts(in.readCount(4));
+        int[] normalIndices = in.readInts(in.readCount(4));
+
+        int nodeCount = in.readCount(32);
+        float[] nodeBounds = in.readFloats(nodeCount * 6);
+        int[] nodeOffsets = in.readInts(nodeCount);
+        int[] nodeCounts = in.readInts(nodeCount);
+        int stackSize = in.readInt();
+
+        MeshData data = new MeshData(positions, normals, positionIndices, normalIndices.length == 0 ? null : normalIndices);
+        return new TriangleMesh(data, nodeBounds, nodeOffsets, nodeCounts, stackSize, location, materials[material], transform);
+    }
+
+    private static int indexOf(Material material, Map<Material, Integer> materialIndices, List<Material> materialList) {
+        Integer index = materialIndices.get(material);
+        if (index == null) {
+            index = materialList.size();
+            materialIndices.put(material, index);
+            materialList.add(material);
+        }
+        return index;
+    }
+
+    private static void setVector(float[] values, int index, Vec3 vector) {
+        values[index * 3] = vector.x;
+        values[index * 3 + 1] = vector.y;
+        values[index * 3 + 2] = vector.z;
+    }
+
+    private static void setBounds(float[] bounds, int index, BoundingBox box) {
+        int b = index * 6;
+        bounds[b] = box.minX;
+        bounds[b + 1] = box.minY;
+        bounds[b + 2] = box.minZ;
+        bounds[b + 3] = box.maxX;
+        bounds[b + 4] = box.maxY;
+        bounds[b + 5] = box.maxZ;
+    }
+
+    /**
+     * Returns the bounds of the bounded primitives for building the hierarchy.
+     * @return The bounds as minX, minY, minZ, maxX, maxY, maxZ per primitive
+     */
+    float[] getPrimitiveBounds() {
+        return primitiveBounds;
+    }
+
+    /**
+     * Sorts the bounded primitives into the order of the hierarchy. The primitives of every type keep the
+     * order in which they appear, so the primitives of a leaf follow each other in the arrays of their type.
+     * The bounds are not needed anymore afterwards and are released.
+     * @param order The indices of the bounded primitives in the order of the hierarchy
+     */
+    void reorder(int[] order) {
+        int sphereCount = spheres.size();
+        int squareCount = squareSizes.length;
+
+        SpherePack sphereCopy = new SpherePack(sphereCount);
+        for (int i = 0; i < sphereCount; i++) {
+            sphereCopy.set(i, spheres, i);
+        }
+        float[] normalCopy = squareNormals.clone();
+        float[] originCopy = squareOrigins.clone();
+        float[] transformCopy = squareTransforms.clone();
+        float[] sizeCopy = squareSizes.clone();
+        int[] materialCopy = squareMaterials.clone();
+        float[] boundsCopy = squareBounds.clone();
+        Shape[] shapeCopy = shapes.clone();
+
+        int sphere = 0;
+        int square = 0;
+        int shape = 0;
+        for (int primitive : order) {
+            if (primitive < sphereCount) {
+                spheres.set(sphere++, sphereCopy, primitive);
+            } else if (primitive < sphereCount + squareCount) {
+                int from = primitive - sphereCount;
+                System.arraycopy(normalCopy, from * 3, squareNormals, square * 3, 3);
+                System.arraycopy(originCopy, from * 3, squareOrigins, square * 3, 3);
+                System.arraycopy(transformCopy, from * 12, squareTransforms, square * 12, 12);
+                squareSizes[square] = sizeCopy[from];
+                squareMaterials[square] = materialCopy[from];
+                System.arraycopy(boundsCopy, from * 6, squareBounds, square * 6, 6);
+                square++;
+            } else {
+                shapes[shape++] = shapeCopy[primitive - sphereCount - squareCount];
+            }
+        }
+
+        // The primitives of the shape list move to their new index
+        int[] newIndices = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            newIndices[order[i]] = i;
+        }
+        for (int i = 0; i < shapePrimitives.length; i++) {
+            if (shapePrimitives[i] < order.length) {
+                shapePrimitives[i] = newIndices[shapePrimitives[i]];
+            }
+        }
+        primitiveBounds = null;
+    }
+
+    /**
+     * Finds the closest sphere of a run of spheres hit by the ray.
+     * @param first The index of the first sphere
+     * @param end The index after the last sphere
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @param ignore The index of a primitive which is skipped, -1 to test all of them
+     * @return true if a sphere has been hit
+     */
+    boolean intersectSpheres(int first, int end, Ray ray, Intersection hit, int ignore) {
+        int sphere = closestSphere(first, end, ray, hit.getDistance(), ignore);
+        if (sphere < 0) {
+            return false;
+        }
+        setSphereHit(sphere, ray, hit);
+        return true;
+    }
+
+    boolean occludedBySpheres(int first, int end, Ray ray, float maxDistance, int ignore) {
+        return closestSphere(first, end, ray, maxDistance, ignore) >= 0;
+    }
+
+    private int closestSphere(int first, int end, Ray ray, float maxDistance, int ignore) {
+        int count = end - first;
+        if (count == 0) {
+            return -1;
+        }
+        IntersectionKernel spheresKernel = count >= MIN_KERNEL_SPHERES ? kernel : scalarKernel;
+        return spheresKernel.closestSphere(spheres, first, count, ignore, ray.getStartPoint(), ray.getDirection(), maxDistance);
+    }
+
+    /**
+     * Fills the hit record with the intersection of a sphere, like Sphere.intersect() in object space.
+     */
+    private void setSphereHit(int sphere, Ray ray, Intersection hit) {
+        Vec3 start = ray.getStartPoint();
+        float t = ScalarIntersectionKernel.sphereParameter(spheres, sphere, start, ray.getDirection());
+        hit.set(Math.abs(t), sphere, materials[spheres.materials[sphere]]);
+
+        // The point relative to the center is the normal, before it is moved back to the world
+        float centerX = spheres.centerX[sphere];
+        float centerY = spheres.centerY[sphere];
+        float centerZ = spheres.centerZ[sphere];
+        Vec3 point = hit.getPointOfIntersection().set(start.x - centerX, start.y - centerY, start.z - centerZ);
+        point.setPointAt(point, ray.getDirection(), t);
+        hit.getNormal().set(point).normalizeInPlace();
+        point.set(point.x + centerX, point.y + centerY, point.z + centerZ);
+    }
+
+    /**
+     * Finds the closest square of a run of squares hit by the ray.
+     * @param first The index of the first square, counted among the squares
+     * @param end The index after the last square
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @param ignore The index of a primitive which is skipped, -1 to test all of them
+     * @return true if a square has been hit
+     */
+    boolean intersectSquares(int first, int end, Ray ray, Intersection hit, int ignore) {
+        boolean found = false;
+        int firstSquare = spheres.size();
+        for (int square = first; square < end; square++) {
+            if (firstSquare + square != ignore && intersectSquare(square, ray, hit)) {
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    boolean occludedBySquares(int first, int end, Ray ray, float maxDistance, int ignore) {
+        int firstSquare = spheres.size();
+        for (int square = first; square < end; square++) {
+            if (firstSquare + square != ignore && squareParameter(square, ray) < maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean intersectSquare(int square, Ray ray, Intersection hit) {
+        float t = squareParameter(square, ray);
+        if (!(t < hit.getDistance())) {
+            return false;
+        }
+        hit.set(t, spheres.size() + square, materials[squareMaterials[square]]);
+        hit.getPointOfIntersection().setPointAt(ray.getStartPoint(), ray.getDirection(), t);
+        hit.getNormal().set(squareNormals[square * 3], squareNormals[square * 3 + 1], squareNormals[square * 3 + 2]);
+        return true;
+    }
+
+    /**
+     * Calculates the ray parameter of the intersection with a square, like Square.intersect().
+     * @return The ray parameter, NaN if the square is not hit
+     */
+    private float squareParameter(int square, Ray ray) {
+        Vec3 start = ray.getStartPoint();
+        Vec3 direction = ray.getDirection();
+        int v = square * 3;
+        float t = ScalarIntersectionKernel.planeParameter(squareNormals[v], squareNormals[v + 1], squareNormals[v + 2],
+                squareOrigins[v], squareOrigins[v + 1], squareOrigins[v + 2], start.x, start.y, start.z, direction.x, direction.y, direction.z);
+        if (Float.isNaN(t)) {
+            return t;
+        }
+
+        // The point on the plane has to lie inside the square in object space
+        float[] m = squareTransforms;
+        int r = square * 12;
+        float startX = start.x * m[r] + start.y * m[r + 1] + start.z * m[r + 2] + m[r + 3];
+        float startY = start.x * m[r + 4] + start.y * m[r + 5] + start.z * m[r + 6] + m[r + 7];
+        float startZ = start.x * m[r + 8] + start.y * m[r + 9] + start.z * m[r + 10] + m[r + 11];
+        float directionX = direction.x * m[r] + direction.y * m[r + 1] + direction.z * m[r + 2];
+        float directionY = direction.x * m[r + 4] + direction.y * m[r + 5] + direction.z * m[r + 6];
+        float directionZ = direction.x * m[r + 8] + direction.y * m[r + 9] + direction.z * m[r + 10];
+        float x = startX + directionX * t;
+        float y = startY + directionY * t;
+        float z = startZ + directionZ * t;
+        float size = squareSizes[square];
+        if (x > -size / 2 && x < size / 2 && y > -size / 2 && y < size / 2 && z > -size / 2 && z < size / 2) {
+            return t;
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Finds the closest shape of a run of bounded shapes of other types hit by the ray.
+     * @param first The index of the first shape, counted among these shapes
+     * @param end The index after the last shape
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @param ignore The index of a primitive which is skipped, -1 to test all of them
+     * @return true if a shape has been hit
+     */
+    boolean intersectShapes(int first, int end, Ray ray, Intersection hit, int ignore) {
+        boolean found = false;
+        int firstShape = spheres.size() + squareSizes.length;
+        for (int shape = first; shape < end; shape++) {
+            if (firstShape + shape != ignore && shapes[shape].intersect(ray, hit)) {
+                hit.setPrimitive(firstShape + shape);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    boolean occludedByShapes(int first, int end, Ray ray, float maxDistance, int ignore) {
+        int firstShape = spheres.size() + squareSizes.length;
+        for (int shape = first; shape < end; shape++) {
+            if (firstShape + shape != ignore && shapes[shape].occludes(ray, maxDistance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the closest unbounded primitive hit by the ray, the planes and the unbounded shapes.
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @param ignore The index of a primitive which is skipped, -1 to test all of them
+     * @return true if a primitive has been hit
+     */
+    boolean intersectUnbounded(Ray ray, Intersection hit, int ignore) {
+        ray.primitiveTests += planeMaterials.length + unboundedShapes.length;
+        boolean found = false;
+        int firstPlane = getBoundedCount();
+        for (int plane = 0; plane < planeMaterials.length; plane++) {
+            if (firstPlane + plane != ignore && intersectPlane(plane, ray, hit)) {
+                found = true;
+            }
+        }
+        int firstShape = firstPlane + planeMaterials.length;
+        for (int shape = 0; shape < unboundedShapes.length; shape++) {
+            if (firstShape + shape != ignore && unboundedShapes[shape].intersect(ray, hit)) {
+                hit.setPrimitive(firstShape + shape);
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    boolean occludedByUnbounded(Ray ray, float maxDistance, int ignore) {
+        ray.primitiveTests += planeMaterials.length + unboundedShapes.length;
+        int firstPlane = getBoundedCount();
+        for (int plane = 0; plane < planeMaterials.length; plane++) {
+            if (firstPlane + plane != ignore && planeParameter(plane, ray) < maxDistance) {
+                return true;
+            }
+        }
+        int firstShape = firstPlane + planeMaterials.length;
+        for (int shape = 0; shape < unboundedShapes.length; shape++) {
+            if (firstShape + shape != ignore && unboundedShapes[shape].occludes(ray, maxDistance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Intersects a batch of rays with the unbounded primitives, the planes all rays at once with the kernel.
+     * Rays which hit a primitive closer than their current distance get its distance and index.
+     * @param rays The rays
+     * @param count The number of rays
+     * @param ray A ray for testing the unbounded shapes one ray after another, it counts the tests of the batch
+     * @param hit A hit record for testing the unbounded shapes
+     */
+    void intersectUnbounded(RayPack rays, int count, Ray ray, Intersection hit) {
+        ray.primitiveTests += (long) count * (planeMaterials.length + unboundedShapes.length);
+        int firstPlane = getBoundedCount();
+        for (int plane = 0; plane < planeMaterials.length; plane++) {
+            int v = plane * 3;
+            kernel.intersectPlane(planeNormals[v], planeNormals[v + 1], planeNormals[v + 2],
+                    planeOrigins[v], planeOrigins[v + 1], planeOrigins[v + 2], rays, count, firstPlane + plane);
+        }
+        int firstShape = firstPlane + planeMaterials.length;
+        for (int shape = 0; shape < unboundedShapes.length; shape++) {
+            for (int i = 0; i < count; i++) {
+                hit.reset(rays.getDistance(i));
+                if (unboundedShapes[shape].intersect(rays.get(i, ray), hit)) {
+                    rays.setHit(i, hit.getDistance(), firstShape + shape);
+                }
+            }
+        }
+    }
+
+    private boolean intersectPlane(int plane, Ray ray, Intersection hit) {
+        float t = planeParameter(plane, ray);
+        if (!(t < hit.getDistance())) {
+            return false;
+        }
+        hit.set(t, getBoundedCount() + plane, materials[planeMaterials[plane]]);
+        hit.getPointOfIntersection().setPointAt(ray.getStartPoint(), ray.getDirection(), t);
+        hit.getNormal().set(planeNormals[plane * 3], planeNormals[plane * 3 + 1], planeNormals[plane * 3 + 2]);
+        return true;
+    }
+
+    private float planeParameter(int plane, Ray ray) {
+        Vec3 start = ray.getStartPoint();
+        Vec3 direction = ray.getDirection();
+        int v = plane * 3;
+        return ScalarIntersectionKernel.planeParameter(planeNormals[v], planeNormals[v + 1], planeNormals[v + 2],
+                planeOrigins[v], planeOrigins[v + 1], planeOrigins[v + 2], start.x, start.y, start.z, direction.x, direction.y, direction.z);
+    }
+
+    /**
+     * Intersects the ray with a single primitive.
+     * @param primitive The index of the primitive
+     * @param ray The ray to trace
+     * @param hit The hit record, only intersections closer than its distance are accepted
+     * @return true if the primitive has been hit
+     */
+    boolean intersect(int primitive, Ray ray, Intersection hit) {
+        ray.primitiveTests++;
+        int sphereCount = spheres.size();
+        int squareEnd = sphereCount + squareSizes.length;
+        int shapeEnd = squareEnd + shapes.length;
+        int planeEnd = shapeEnd + planeMaterials.length;
+        if (primitive < sphereCount) {
+            return intersectSpheres(primitive, primitive + 1, ray, hit, -1);
+        } else if (primitive < squareEnd) {
+            return intersectSquare(primitive - sphereCount, ray, hit);
+        } else if (primitive < shapeEnd) {
+            return intersectShapes(primitive - squareEnd, primitive - squareEnd + 1, ray, hit, -1);
+        } else if (primitive < planeEnd) {
+            return intersectPlane(primitive - shapeEnd, ray, hit);
+        }
+        if (!unboundedShapes[primitive - planeEnd].intersect(ray, hit)) {
+            return false;
+        }
+        hit.setPrimitive(primitive);
+        return true;
+    }
+
+    /**
+     * Returns if a primitive can cast shadows onto itself, see Shape.canShadowItself().
+     * @param primitive The index of the primitive
+     * @return false for spheres, squares and planes, the answer of the shape for other shapes
+     */
+    boolean canShadowItself(int primitive) {
+        int firstShape = spheres.size() + squareSizes.length;
+        int firstPlane = getBoundedCount();
+        if (primitive >= firstShape && primitive < firstPlane) {
+            return shapes[primitive - firstShape].canShadowItself();
+        }
+        int firstUnboundedShape = firstPlane + planeMaterials.length;
+        return primitive >= firstUnboundedShape && unboundedShapes[primitive - firstUnboundedShape].canShadowItself();
+    }
+
+    /**
+     * Returns the number of shapes in the shape list the scene has been compiled from.
+     * @return The number of shapes
+     */
+    public int getShapeCount() {
+        return shapePrimitives.length;
+    }
+
+    /**
+     * Returns the primitive a shape of the shape list has been compiled into.
+     * @param shape The index of the shape in the shape list
+     * @return The index of the primitive
+     */
+    public int getPrimitiveOfShape(int shape) {
+        return shapePrimitives[shape];
+    }
+
+    /**
+     * Returns if a primitive can be moved with setLocation(). Spheres, squares and planes are moved in their
+     * arrays, shapes of other types are kept as objects and can not be moved.
+     * @param primitive The index of the primitive
+     * @return true if the primitive can be moved
+     */
+    public boolean isMovable(int primitive) {
+        int firstShape = spheres.size() + squareSizes.length;
+        int firstPlane = getBoundedCount();
+        return primitive < firstShape || (primitive >= firstPlane && primitive < firstPlane + planeMaterials.length);
+    }
+
+    /**
+     * Returns the location of a movable primitive: the center of a sphere or square, the origin of a plane.
+     * @param primitive The index of the primitive
+     * @param location The vector which receives the location
+     * @return The location
+     */
+    public Vec3 getLocation(int primitive, Vec3 location) {
+        int sphereCount = spheres.size();
+        if (primitive < sphereCount) {
+            return location.set(spheres.centerX[primitive], spheres.centerY[primitive], spheres.centerZ[primitive]);
+        }
+        float[] origins = primitive < sphereCount + squareSizes.length ? squareOrigins : planeOrigins;
+        int v = (origins == squareOrigins ? primitive - sphereCount : primitive - getBoundedCount()) * 3;
+        return location.set(origins[v], origins[v + 1], origins[v + 2]);
+    }
+
+    /**
+     * Moves a movable primitive to a new location, keeping its orientation and size. Bounded primitives leave
+     * their leaf of the hierarchy, which has to be refitted before the next frame, see BVH.refit().
+     * @param primitive The index of the primitive
+     * @param location The new center of a sphere or square, or the new origin of a plane
+     */
+    public void setLocation(int primitive, Vec3 location) {
+        int sphereCount = spheres.size();
+        int squareEnd = sphereCount + squareSizes.length;
+        if (primitive < sphereCount) {
+            spheres.centerX[primitive] = location.x;
+            spheres.centerY[primitive] = location.y;
+            spheres.centerZ[primitive] = location.z;
+        } else if (primitive < squareEnd) {
+            int square = primitive - sphereCount;
+            int v = square * 3;
+            float dx = location.x - squareOrigins[v];
+            float dy = location.y - squareOrigins[v + 1];
+            float dz = location.z - squareOrigins[v + 2];
+            squareOrigins[v] = location.x;
+            squareOrigins[v + 1] = location.y;
+            squareOrigins[v + 2] = location.z;
+            // The transformation into object space subtracts the location before it rotates
+            float[] m = squareTransforms;
+            int r = square * 12;
+            for (int row = 0; row < 3; row++) {
+                m[r + row * 4 + 3] -= m[r + row * 4] * dx + m[r + row * 4 + 1] * dy + m[r + row * 4 + 2] * dz;
+            }
+            int b = square * 6;
+            squareBounds[b] += dx;
+            squareBounds[b + 1] += dy;
+            squareBounds[b + 2] += dz;
+            squareBounds[b + 3] += dx;
+            squareBounds[b + 4] += dy;
+            squareBounds[b + 5] += dz;
+        } else if (isMovable(primitive)) {
+            setVector(planeOrigins, primitive - getBoundedCount(), location);
+        } else {
+            throw new IllegalArgumentException("Primitive " + primitive + " can not be moved");
+        }
+    }
+
+    /**
+     * Extends bounds by the current bounds of the primitives of a leaf.
+     * @param firstSphere The index of the first sphere
+     * @param endSphere The index after the last sphere
+     * @param firstSquare The index of the first square, counted among the squares
+     * @param endSquare The index after the last square
+     * @param firstShape The index of the first shape, counted among the bounded shapes of other types
+     * @param endShape The index after the last shape
+     * @param bounds The bounds as minX, minY, minZ, maxX, maxY, maxZ
+     * @param offset The index of minX in the bounds
+     */
+    void extendBounds(int firstSphere, int endSphere, int firstSquare, int endSquare, int firstShape, int endShape,
+                      float[] bounds, int offset) {
+        for (int sphere = firstSphere; sphere < endSphere; sphere++) {
+            float radius = spheres.radii[sphere];
+            bounds[offset] = Math.min(bounds[offset], spheres.centerX[sphere] - radius);
+            bounds[offset + 1] = Math.min(bounds[offset + 1], spheres.centerY[sphere] - radius);
+            bounds[offset + 2] = Math.min(bounds[offset + 2], spheres.centerZ[sphere] - radius);
+            bounds[offset + 3] = Math.max(bounds[offset + 3], spheres.centerX[sphere] + radius);
+            bounds[offset + 4] = Math.max(bounds[offset + 4], spheres.centerY[sphere] + radius);
+            bounds[offset + 5] = Math.max(bounds[offset + 5], spheres.centerZ[sphere] + radius);
+        }
+        for (int square = firstSquare; square < endSquare; square++) {
+            BVHBuilder.extendBounds(bounds, offset, squareBounds, square * 6);
+        }
+        for (int shape = firstShape; shape < endShape; shape++) {
+            BoundingBox box = shapes[shape].getBounds();
+            bounds[offset] = Math.min(bounds[offset], box.minX);
+            bounds[offset + 1] = Math.min(bounds[offset + 1], box.minY);
+            bounds[offset + 2] = Math.min(bounds[offset + 2], box.minZ);
+            bounds[offset + 3] = Math.max(bounds[offset + 3], box.maxX);
+            bounds[offset + 4] = Math.max(bounds[offset + 4], box.maxY);
+            bounds[offset + 5] = Math.max(bounds[offset + 5], box.maxZ);
+        }
+    }
+
+    int getSphereCount() {
+        return spheres.size();
+    }
+
+    int getSquareCount() {
+        return squareSizes.length;
+    }
+
+    int getBoundedShapeCount() {
+        return shapes.length;
+    }
+
+    /**
+     * Returns the materials the primitives refer to by index.
+     * @return The materials
+     */
+    Material[] getMaterials() {
+        return materials;
+    }
+
+    /**
+     * Returns the number of primitives which are sorted into the hierarchy.
+     * @return The number of spheres, squares and other bounded shapes
+     */
+    int getBoundedCount() {
+        return spheres.size() + squareSizes.length + shapes.length;
+    }
+
+    /**
+     * Returns the number of all primitives, bounded and unbounded.
+     * @return The number of primitives
+     */
+    public int getPrimitiveCount() {
+        return getBoundedCount() + planeMaterials.length + unboundedShapes.length;
+    }
+
+    /**
+     * Returns the memory used by the compiled primitives.
+     * The shapes of other types are only counted by their reference, not with their own memory.
+     * @return The size of the arrays in bytes
+     */
+    public long getByteSize() {
+        long bytes = spheres.getByteSize();
+        bytes += (squareNormals.length + squareOrigins.length + squareTransforms.length + squareSizes.length + squareMaterials.length) * 4L;
+        bytes += squareBounds.length * 4L;
+        bytes += (planeNormals.length + planeOrigins.length + planeMaterials.length + shapePrimitives.length) * 4L;
+        bytes += (shapes.length + unboundedShapes.length + materials.length) * 8L;
+        return bytes;
+    }
+}
@@ -1,37 +1,108 @@
 package raytracer;
 
+import scene.Material;
 import scene.Shape;
 import utils.algebra.Vec3;
 
 /**
- * Class Responsible for checking Intersections between a Ray and a Shape.
+ * Class Intersection
+ * The hit record of a single ray. It holds the closest intersection found so far, so a ray can be tested
+ * against several shapes without changing the shapes themselves.
+ * The record owns its point and normal, so it can be reset and reused for the next ray.
+ * Primitives of the compiled scene have no shape object, they are identified by their index in the compiled
+ * scene and bring their material. Shapes which are tested as objects set themselves and their material.
  */
 public class Intersection {
 
-    private Vec3 pointOfIntersection;
-    private Vec3 normal;
-    private Ray inRay;
+    private final Vec3 pointOfIntersection = new Vec3();
+    private final Vec3 normal = new Vec3();
     private Shape shape;
+    private Material material;
+    private int primitive = -1;
 
-    private double distance;
-    private boolean hit;
+    private float distance;
 
     /**
-     * Calculates if a Ray hits a given Shape.
-     * If it hits it also calculates the distance between the Start Point of the Ray and the Intersection point.
-     * @param _inRay ray The Ray that for which the Intersection is tested.
-     * @param _shape shape The shape for which the Intersection is tested.
+     * Creates an empty hit record without a distance limit.
      */
-    public Intersection(Ray _inRay, Shape _shape) {
-        this.inRay = _inRay;
+    public Intersection() {
+        this(Float.MAX_VALUE);
+    }
+
+    /**
+     * Creates an empty hit record. Only intersections closer than the given distance are accepted.
+     * @param _maxDistance The maximum distance of an intersection
+     */
+    public Intersection(float _maxDistance) {
+        this.distance = _maxDistance;
+    }
+
+    /**
+     * Empties the hit record, so it can be used for another ray.
+     * @param _maxDistance The maximum distance of an intersection
+     */
+    public void reset(float _maxDistance) {
+        this.distance = _maxDistance;
+        this.shape = null;
+        this.material = null;
+        this.primitive = -1;
+    }
+
+    /**
+     * Stores an intersection in the hit record, the vectors are copied.
+     * @param _distance The distance between the start point of the ray and the intersection point
+     * @param _pointOfIntersection The intersection point in world space
+     * @param _normal The normal of the shape at the intersection point
+     * @param _shape The shape which has been hit
+     */
+    public void set(float _distance, Vec3 _pointOfIntersection, Vec3 _normal, Shape _shape) {
+        set(_distance, _shape);
+        this.pointOfIntersection.set(_pointOfIntersection);
+        this.normal.set(_normal);
+    }
+
+    /**
+     * Stores an intersection in the hit record without its point and normal.
+     * The shape has to write them into getPointOfIntersection() and getNormal() afterwards.
+     * @param _distance The distance between the start point of the ray and the intersection point
+     * @param _shape The shape which has been hit
+     */
+    public void set(float _distance, Shape _shape) {
+        this.distance = _distance;
         this.shape = _shape;
-        this.distance = this.shape.intersect(_inRay.getStartPoint(), _inRay.getDirection());
-        this.pointOfIntersection = this.shape.getPointOfIntersection();
-        this.normal = this.shape.getNormal();
-        this.hit = false;
-        if (distance > 0) {
-            this.hit = true;
-        }
+        this.material = _shape.getMaterial();
+        this.primitive = -1;
+    }
+
+    /**
+     * Stores an intersection with a primitive of the compiled scene in the hit record.
+     * The point and normal have to be written into getPointOfIntersection() and getNormal() afterwards.
+     * @param _distance The distance between the start point of the ray and the intersection point
+     * @param _primitive The index of the primitive in the compiled scene
+     * @param _material The material of the primitive
+     */
+    public void set(float _distance, int _primitive, Material _material) {
+        this.distance = _distance;
+        this.shape = null;
+        this.material = _material;
+        this.primitive = _primitive;
+    }
+
+    /**
+     * Stores an intersection with a primitive of the compiled scene in the hit record, the vectors are copied.
+     */
+    void set(float _distance, Vec3 _pointOfIntersection, Vec3 _normal, int _primitive, Material _material) {
+        set(_distance, _primitive, _material);
+        this.pointOfIntersection.set(_pointOfIntersection);
+        this.normal.set(_normal);
+    }
+
+    /**
+     * Sets the index in the compiled scene of the shape which has stored its intersection.
+     * @param _primitive The index of the shape in the compiled scene
+     */
+    void setPrimitive(int _primitive) {
+        this.primitive = _primitive;
     }
 
     /**
@@ -39,14 +110,15 @@ public class Intersection {
      * @return hit
      */
     public boolean isHit() {
-        return hit;
+        return material != null;
     }
 
     /**
-     * Returns the Distance to the Intersection
+     * Returns the Distance to the Intersection.
+     * As long as nothing is hit, this is the maximum distance of the record.
      * @return The Distance to the Intersection
      */
-    public double getDistance() {
+    public float getDistance() {
         return distance;
     }
 
@@ -58,7 +130,23 @@ public class Intersection {
         return normal;
     }
 
+    /**
+     * Returns the shape which has been hit, if it has been tested as an object.
+     * @return The shape, null for primitives of the compiled scene
+     */
     public Shape getShape() {
         return shape;
     }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * Returns the index of the hit primitive in the compiled scene.
+     * @return The index, -1 if nothing has been hit or the hit has not been found through the compiled scene
+     */
+    public int getPrimitive() {
+        return primitive;
+    }
 }
@@ -0,0 +1,102 @@
+package raytracer;
+
+import utils.algebra.Vec3;
+
+/**
+ * Class IntersectionKernel
+ * Intersection tests which work on several shapes or several rays at once. One kernel tests a single ray against
+ * a run of packed spheres, the other one tests a batch of rays against a single plane.
+ *
+ * The kernels use the Vector API of the JDK if the module jdk.incubator.vector has been added to the JVM
+ * (java --add-modules jdk.incubator.vector). Otherwise a scalar version with the same results is used.
+ * Both calculate every value with the same float operations as Sphere and Plane, so all of them find exactly
+ * the same hits. The spheres are tested like spheres without a transformation, by their center and radius.
+ */
+public abstract class IntersectionKernel {
+
+    // The most lanes of a kernel, 512 bit vectors of floats. Packs keep this much space behind their last entry
+    static final int MAX_LANES = 16;
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "raytracer.VectorIntersectionKernel";
+
+    private static final IntersectionKernel DEFAULT = createDefault();
+
+    /**
+     * Returns the kernel used by the renderer, the vector kernel with the preferred width of the CPU if the
+     * Vector API is available and the scalar kernel otherwise.
+     * @return The kernel
+     */
+    public static IntersectionKernel getDefault() {
+        return DEFAULT;
+    }
+
+    private static IntersectionKernel createDefault() {
+        IntersectionKernel kernel = isVectorAvailable() ? createVector(0) : null;
+        return kernel != null ? kernel : createScalar();
+    }
+
+    /**
+     * Returns if the Vector API has been added to the JVM.
+     * @return true if the vector kernels can be used
+     */
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    public static IntersectionKernel createScalar() {
+        return new ScalarIntersectionKernel();
+    }
+
+    /**
+     * Creates a kernel working on vectors of the given width.
+     * @param vectorBits The width of the vectors, 128, 256 or 512 bits, or 0 for the preferred width of the CPU
+     * @return The kernel, null if the Vector API is not available or does not support the width
+     */
+    public static IntersectionKernel createVector(int vectorBits) {
+        if (!isVectorAvailable()) {
+            System.err.println("The vector kernels need the module " + VECTOR_MODULE + ", start java with --add-modules " + VECTOR_MODULE);
+            return null;
+        }
+        try {
+            // The kernel is only loaded by name, so the renderer still runs without the module
+            return (IntersectionKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor(int.class).newInstance(vectorBits);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Could not create the vector kernel for " + vectorBits + " bits: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Finds the closest sphere hit by a ray among a run of packed spheres.
+     * A sphere is hit if the distance lies between 0 and the maximum distance, like in Sphere.intersect().
+     * Of several spheres at the same distance the first one is returned.
+     * @param spheres The packed spheres
+     * @param first The index of the first sphere to test
+     * @param count The number of spheres to test, all of them must be spheres
+     * @param ignore The index of a sphere which is skipped, -1 to test all of them
+     * @param start The start point of the ray
+     * @param direction The direction of the ray
+     * @param maxDistance The maximum distance of an intersection
+     * @return The index of the closest sphere, -1 if no sphere is hit
+     */
+    public abstract int closestSphere(SpherePack spheres, int first, int count, int ignore, Vec3 start, Vec3 direction, float maxDistance);
+
+    /**
+     * Intersects a batch of rays with an infinite plane, like Plane.intersect().
+     * Rays which hit the plane closer than their current distance get the distance and the given index.
+     * @param normalX The x component of the normal of the plane, followed by y and z
+     * @param originX The x component of a point of the plane, followed by y and z
+     * @param rays The rays
+     * @param count The number of rays to test, starting with the first ray of the pack
+     * @param hit The index stored for the rays which hit the plane
+     */
+    public abstract void intersectPlane(float normalX, float normalY, float normalZ, float originX, float originY, float originZ,
+                                        RayPack rays, int count, int hit);
+
+    /**
+     * Returns the number of spheres or rays tested at once.
+     * @return The number of lanes, 1 for the scalar kernel
+     */
+    public abstract int getLaneCount();
+}
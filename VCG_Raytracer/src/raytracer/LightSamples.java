@@ -0,0 +1,76 @@
+package raytracer;
+
+import utils.RgbColor;
+import utils.algebra.Vec3;
+
+import java.util.Arrays;
+
+/**
+ * Class LightSamples
+ * The points on the lights picked for shading, in flat arrays: the position, the color and the weight of every sample.
+ * Picking the samples is separate from testing their shadow rays, so the depth-first renderer can test them right away
+ * and the wavefront renderer can collect them for a whole batch of paths.
+ */
+class LightSamples {
+
+    private float[] positions = new float[3 * 16];
+    private float[] colors = new float[3 * 16];
+    private float[] weights = new float[16];
+    private int count;
+
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds a sample, the vector and the color are copied.
+     * @param position The point on the light
+     * @param color The color of the light arriving from the point
+     * @param weight The factor the light is counted with
+     */
+    void add(Vec3 position, RgbColor color, float weight) {
+        add(position.x, position.y, position.z, color.red(), color.green(), color.blue(), weight);
+    }
+
+    /**
+     * Adds a sample of another buffer.
+     */
+    void add(LightSamples samples, int index) {
+        int i = index * 3;
+        add(samples.positions[i], samples.positions[i + 1], samples.positions[i + 2],
+                samples.colors[i], samples.colors[i + 1], samples.colors[i + 2], samples.weights[index]);
+    }
+
+    private void add(float x, float y, float z, float red, float green, float blue, float weight) {
+        if (count == weights.length) {
+            positions = Arrays.copyOf(positions, count * 6);
+            colors = Arrays.copyOf(colors, count * 6);
+            weights = Arrays.copyOf(weights, count * 2);
+        }
+        int i = count * 3;
+        positions[i] = x;
+        positions[i + 1] = y;
+        positions[i + 2] = z;
+        colors[i] = red;
+        colors[i + 1] = green;
+        colors[i + 2] = blue;
+        weights[count] = weight;
+        count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    Vec3 getPosition(int index, Vec3 outPosition) {
+        return outPosition.set(positions[index * 3], positions[index * 3 + 1], positions[index * 3 + 2]);
+    }
+
+    RgbColor getColor(int index, RgbColor outColor) {
+        return outColor.set(colors[index * 3], colors[index * 3 + 1], colors[index * 3 + 2]);
+    }
+
+    float getWeight(int index) {
+        return weights[index];
+    }
+}
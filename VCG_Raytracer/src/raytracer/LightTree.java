@@ -0,0 +1,223 @@
+package raytracer;
+
+import scene.Light;
+import utils.algebra.BoundingBox;
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import java.util.List;
+
+/**
+ * Class LightTree
+ * A hierarchy over the lights of a scene for scenes with many lights. Instead of testing every light,
+ * a shading point walks down the tree and picks one child at every node, with a probability following the
+ * estimated contribution of the lights below it: their power, their distance and how much they face the surface.
+ * Picking a light costs a walk of the depth of the tree, so it hardly depends on the number of lights.
+ *
+ * Every light keeps a probability above zero, so dividing the light of a picked light by its probability
+ * gives an unbiased estimate of the light of all lights.
+ * The nodes are built by the BVHBuilder over the bounds of the lights.
+ */
+class LightTree {
+
+    // Lowest orientation factor of a node, so lights behind the surface keep a small probability.
+    // The specular part of Phong can still receive light from slightly behind the surface
+    private static final float MIN_ORIENTATION = 0.05f;
+
+    private final Light[] lights;
+    // Power, center and radius of every light in the order of the tree
+    private final float[] lightPower;
+    private final float[] lightSpheres;
+
+    private final int[] nodeOffsets;
+    private final int[] nodeCounts;
+    // Power, center and radius of the bounding sphere of every node
+    private final float[] nodePower;
+    private final float[] nodeSpheres;
+
+    /**
+     * Builds the tree for the given lights.
+     * @param lightList The lights of the scene
+     */
+    LightTree(List<Light> lightList) {
+        long tStart = System.nanoTime();
+        int count = lightList.size();
+
+        float[] lightBounds = new float[count * 6];
+        for (int i = 0; i < count; i++) {
+            BoundingBox box = lightList.get(i).getBounds();
+            lightBounds[i * 6] = box.minX;
+            lightBounds[i * 6 + 1] = box.minY;
+            lightBounds[i * 6 + 2] = box.minZ;
+            lightBounds[i * 6 + 3] = box.maxX;
+            lightBounds[i * 6 + 4] = box.maxY;
+            lightBounds[i * 6 + 5] = box.maxZ;
+        }
+
+        BVHBuilder builder = new BVHBuilder(lightBounds, count);
+        int[] order = builder.getPrimitiveOrder();
+        this.lights = new Light[count];
+        this.lightPower = new float[count];
+        this.lightSpheres = new float[count * 4];
+        for (int i = 0; i < count; i++) {
+            Light light = lightList.get(order[i]);
+            lights[i] = light;
+            lightPower[i] = light.getPower();
+            boundingSphere(lightBounds, order[i], lightSpheres, i);
+        }
+
+        this.nodeOffsets = builder.getNodeOffsets();
+        this.nodeCounts = builder.getNodeCounts();
+        float[] nodeBounds = builder.getNodeBounds();
+        int nodeCount = builder.getNodeCount();
+        this.nodePower = new float[nodeCount];
+        this.nodeSpheres = new float[nodeCount * 4];
+        for (int node = 0; node < nodeCount; node++) {
+            boundingSphere(nodeBounds, node, nodeSpheres, node);
+        }
+        if (nodeCount > 0) {
+            sumPower(0);
+        }
+
+        Log.print(this, "Built for " + count + " lights in " + ((System.nanoTime() - tStart) / 1000000.0) + " ms: "
+                + nodeCount + " nodes, depth " + builder.getMaxDepth());
+    }
+
+    /**
+     * Sums up the power of the lights below a node.
+     * @return The power of the node
+     */
+    private float sumPower(int node) {
+        float power = 0f;
+        int count = nodeCounts[node];
+        if (count > 0) {
+            int first = nodeOffsets[node];
+            for (int i = first; i < first + count; i++) {
+                power += lightPower[i];
+            }
+        } else {
+            power = sumPower(node + 1) + sumPower(nodeOffsets[node]);
+        }
+        nodePower[node] = power;
+        return power;
+    }
+
+    /**
+     * Stores the sphere around a box as center and radius.
+     */
+    private static void boundingSphere(float[] bounds, int box, float[] spheres, int sphere) {
+        int b = box * 6;
+        int s = sphere * 4;
+        float dx = bounds[b + 3] - bounds[b];
+        float dy = bounds[b + 4] - bounds[b + 1];
+        float dz = bounds[b + 5] - bounds[b + 2];
+        spheres[s] = (bounds[b] + bounds[b + 3]) * 0.5f;
+        spheres[s + 1] = (bounds[b + 1] + bounds[b + 4]) * 0.5f;
+        spheres[s + 2] = (bounds[b + 2] + bounds[b + 5]) * 0.5f;
+        spheres[s + 3] = (float) Math.sqrt(dx * dx + dy * dy + dz * dz) * 0.5f;
+    }
+
+    /**
+     * Picks a light for a shading point.
+     * @param context The scratch objects of the render thread, its random numbers are used and the
+     *                probability of the picked light is stored in it
+     * @param point The shading point
+     * @param normal The normal at the shading point
+     * @return The picked light, null if no light has any power
+     */
+    Light sample(TraceContext context, Vec3 point, Vec3 normal) {
+        if (nodePower.length == 0 || nodePower[0] <= 0f) {
+            return null;
+        }
+        float normalLength = normal.length();
+        float nx = normal.x / normalLength;
+        float ny = normal.y / normalLength;
+        float nz = normal.z / normalLength;
+
+        float probability = 1f;
+        int node = 0;
+        while (nodeCounts[node] == 0) {
+            int left = node + 1;
+            int right = nodeOffsets[node];
+            float importanceLeft = importance(nodePower[left], nodeSpheres, left, point, nx, ny, nz);
+            float importanceRight = importance(nodePower[right], nodeSpheres, right, point, nx, ny, nz);
+            float total = importanceLeft + importanceRight;
+            if (total <= 0f) {
+                return null;
+            }
+            float probabilityLeft = importanceLeft / total;
+            if (context.random.nextFloat() < probabilityLeft) {
+                node = left;
+                probability *= probabilityLeft;
+            } else {
+                node = right;
+                probability *= 1f - probabilityLeft;
+            }
+        }
+
+        // Pick one of the lights of the leaf
+        int first = nodeOffsets[node];
+        int count = nodeCounts[node];
+        float total = 0f;
+        for (int i = first; i < first + count; i++) {
+            total += importance(lightPower[i], lightSpheres, i, point, nx, ny, nz);
+        }
+        if (total <= 0f) {
+            return null;
+        }
+        float target = context.random.nextFloat() * total;
+        int picked = first + count - 1;
+        float pickedImportance = 0f;
+        for (int i = first; i < first + count; i++) {
+            pickedImportance = importance(lightPower[i], lightSpheres, i, point, nx, ny, nz);
+            if (target < pickedImportance) {
+                picked = i;
+                break;
+            }
+            target -= pickedImportance;
+        }
+        if (pickedImportance <= 0f) {
+            return null;
+        }
+        context.lightProbability = probability * pickedImportance / total;
+        return lights[picked];
+    }
+
+    /**
+     * Estimates how much light reaches the point from the lights inside a sphere.
+     * The power falls off with the squared distance, which is limited by the radius so points inside or close
+     * to the sphere do not get infinite weights. The orientation is the largest cosine between the normal
+     * and a direction into the sphere.
+     */
+    private static float importance(float power, float[] spheres, int sphere, Vec3 point, float nx, float ny, float nz) {
+        if (power <= 0f) {
+            return 0f;
+        }
+        int s = sphere * 4;
+        float dx = spheres[s] - point.x;
+        float dy = spheres[s + 1] - point.y;
+        float dz = spheres[s + 2] - point.z;
+        float radius = spheres[s + 3];
+        float distanceSquared = dx * dx + dy * dy + dz * dz;
+        float radiusSquared = radius * radius;
+
+        float orientation = 1f;
+        if (distanceSquared > radiusSquared) {
+            float distance = (float) Math.sqrt(distanceSquared);
+            // Angle to the center and half the opening angle of the sphere
+            float cosCenter = (nx * dx + ny * dy + nz * dz) / distance;
+            float sinRadius = radius / distance;
+            float cosRadius = (float) Math.sqrt(1f - sinRadius * sinRadius);
+            if (cosCenter < cosRadius) {
+                // cos(center angle - radius angle)
+                float sinCenter = (float) Math.sqrt(Math.max(0f, 1f - cosCenter * cosCenter));
+                orientation = cosCenter * cosRadius + sinCenter * sinRadius;
+            }
+        }
+        return power * Math.max(orientation, MIN_ORIENTATION) / Math.max(distanceSquared, radiusSquared);
+    }
+
+    int getLightCount() {
+        return lights.length;
+    }
+}
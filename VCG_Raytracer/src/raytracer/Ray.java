@@ -1,13 +1,34 @@
 package raytracer;
 
+import utils.algebra.Matrix4x4;
 import utils.algebra.Vec3;
 
 /**
  * A single Ray, which can be sent into a Scene and perform Intersections.
+ * A ray owns its vectors and can be set again for the next ray, so the render loop does not create new rays.
+ * It also carries scratch space for the shapes and the bounding volume hierarchy, therefore a ray must only be
+ * used by one render thread at a time.
  */
 public class Ray {
-    private Vec3 startPoint;
-    private Vec3 direction;
+    private final Vec3 startPoint = new Vec3();
+    private final Vec3 direction = new Vec3();
+
+    // Scratch space, created on first use and reused by every following test
+    private Ray objectRay;
+    private int[] traversalStack;
+    private float[] traversalDistances;
+    private int[] shapeTraversalStack;
+
+    // Number of bounding box and primitive tests of this ray object, collected by the render statistics.
+    // A shape with its own hierarchy, like a triangle mesh, counts as a single primitive test
+    long boxTests;
+    long primitiveTests;
+
+    /**
+     * Creates an empty Ray, which has to be set before it is used.
+     */
+    public Ray() {
+    }
 
     /**
      * A single Ray, which can be sent into a Scene and perform Intersections.
@@ -16,8 +37,84 @@ public class Ray {
      * @param _endPoint A point laying on the direction of the Path.
      */
     public Ray(Vec3 _startPoint, Vec3 _endPoint) {
-        this.startPoint = _startPoint;
-        this.direction = _endPoint.sub(_startPoint).normalize();
+        set(_startPoint, _endPoint);
+    }
+
+    /**
+     * Sets the ray to a new start point and end point, the vectors are copied.
+     * @param _startPoint The start position of a ray.
+     * @param _endPoint A point laying on the direction of the Path.
+     * @return The ray itself
+     */
+    public Ray set(Vec3 _startPoint, Vec3 _endPoint) {
+        this.startPoint.set(_startPoint);
+        this.direction.set(_endPoint).subInPlace(_startPoint).normalizeInPlace();
+        return this;
+    }
+
+    /**
+     * Sets the ray to a start point and a direction, which is used as it is and not normalized again.
+     * This restores a ray which has been stored as single values.
+     * @return The ray itself
+     */
+    Ray set(float startX, float startY, float startZ, float directionX, float directionY, float directionZ) {
+        this.startPoint.set(startX, startY, startZ);
+        this.direction.set(directionX, directionY, directionZ);
+        return this;
+    }
+
+    /**
+     * Returns this ray transformed into the object space of a shape.
+     * The direction is transformed as well but not normalized, so the ray parameter stays the same in both spaces.
+     * The returned ray is scratch space of this ray and is overwritten by the next call.
+     * @param worldToObject The transformation from world space to object space
+     * @return The ray in object space
+     */
+    public Ray toObjectSpace(Matrix4x4 worldToObject) {
+        if (objectRay == null) {
+            objectRay = new Ray();
+        }
+        worldToObject.transformPoint(startPoint, objectRay.startPoint);
+        worldToObject.transformVector(direction, objectRay.direction);
+        return objectRay;
+    }
+
+    /**
+     * Returns a stack for traversing a hierarchy of the given depth.
+     * The stack is scratch space of this ray and is shared by every traversal.
+     * @param size The minimum size of the stack
+     * @return The stack
+     */
+    int[] getTraversalStack(int size) {
+        if (traversalStack == null || traversalStack.length < size) {
+            traversalStack = new int[size];
+        }
+        return traversalStack;
+    }
+
+    /**
+     * Returns the entry distances of the nodes on the traversal stack, at the same positions as the nodes.
+     * @param size The minimum size of the stack
+     * @return The distances
+     */
+    float[] getTraversalDistances(int size) {
+        if (traversalDistances == null || traversalDistances.length < size) {
+            traversalDistances = new float[size];
+        }
+        return traversalDistances;
+    }
+
+    /**
+     * Returns a stack for traversing the hierarchy inside of a shape, like the triangles of a mesh.
+     * It is separate from the stack of the scene hierarchy, which is still in use while the shape is tested.
+     * @param size The minimum size of the stack
+     * @return The stack
+     */
+    public int[] getShapeTraversalStack(int size) {
+        if (shapeTraversalStack == null || shapeTraversalStack.length < size) {
+            shapeTraversalStack = new int[size];
+        }
+        return shapeTraversalStack;
     }
 
     /**
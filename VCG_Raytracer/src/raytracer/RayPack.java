@@ -0,0 +1,116 @@
+package raytracer;
+
+/**
+ * Class RayPack
+ * A batch of rays stored value by value, one array per value, so an intersection kernel can load the same
+ * value of several rays at once. Next to every ray the pack holds the distance of its closest hit so far
+ * and the index of the shape which has been hit.
+ */
+public class RayPack {
+
+    final float[] startX;
+    final float[] startY;
+    final float[] startZ;
+    final float[] directionX;
+    final float[] directionY;
+    final float[] directionZ;
+    final float[] distances;
+    final int[] hits;
+
+    private final int capacity;
+
+    /**
+     * Creates an empty pack.
+     * @param _capacity The maximum number of rays
+     */
+    public RayPack(int _capacity) {
+        this.capacity = _capacity;
+        // The arrays are longer than needed, so kernels can always load and store whole vectors
+        int length = _capacity + IntersectionKernel.MAX_LANES;
+        this.startX = new float[length];
+        this.startY = new float[length];
+        this.startZ = new float[length];
+        this.directionX = new float[length];
+        this.directionY = new float[length];
+        this.directionZ = new float[length];
+        this.distances = new float[length];
+        this.hits = new int[length];
+    }
+
+    /**
+     * Stores a ray in the pack, nothing has been hit by it yet.
+     * @param index The index of the ray in the pack
+     * @param ray The ray, its vectors are copied
+     * @param maxDistance The maximum distance of an intersection
+     */
+    public void set(int index, Ray ray, float maxDistance) {
+        set(index, ray.getStartPoint().x, ray.getStartPoint().y, ray.getStartPoint().z,
+                ray.getDirection().x, ray.getDirection().y, ray.getDirection().z, maxDistance);
+    }
+
+    void set(int index, float sx, float sy, float sz, float dx, float dy, float dz, float maxDistance) {
+        startX[index] = sx;
+        startY[index] = sy;
+        startZ[index] = sz;
+        directionX[index] = dx;
+        directionY[index] = dy;
+        directionZ[index] = dz;
+        distances[index] = maxDistance;
+        hits[index] = -1;
+    }
+
+    /**
+     * Forgets the hits of the first rays of the pack, so they can be tested again.
+     * @param count The number of rays
+     * @param maxDistance The maximum distance of an intersection
+     */
+    public void resetHits(int count, float maxDistance) {
+        for (int i = 0; i < count; i++) {
+            distances[i] = maxDistance;
+            hits[i] = -1;
+        }
+    }
+
+    /**
+     * Copies a ray of the pack into the given ray.
+     * @param index The index of the ray in the pack
+     * @param out The ray receiving the start point and direction
+     * @return The given ray
+     */
+    public Ray get(int index, Ray out) {
+        return out.set(startX[index], startY[index], startZ[index], directionX[index], directionY[index], directionZ[index]);
+    }
+
+    /**
+     * Stores a hit of a ray, which has been found outside of a kernel.
+     * @param index The index of the ray in the pack
+     * @param distance The distance of the hit
+     * @param hit The index of the shape which has been hit
+     */
+    public void setHit(int index, float distance, int hit) {
+        distances[index] = distance;
+        hits[index] = hit;
+    }
+
+    /**
+     * Returns the distance of the closest hit of a ray, as long as nothing is hit this is the maximum distance.
+     * @param index The index of the ray in the pack
+     * @return The distance
+     */
+    public float getDistance(int index) {
+        return distances[index];
+    }
+
+    /**
+     * Returns the index of the shape closest hit by a ray.
+     * @param index The index of the ray in the pack
+     * @return The index of the shape, -1 if nothing has been hit
+     */
+    public int getHit(int index) {
+        return hits[index];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -16,19 +16,26 @@
 
 package raytracer;
 
-import scene.AreaLight;
 import scene.Light;
+import scene.Material;
 import scene.Scene;
-import scene.Shape;
-import ui.Window;
+import ui.FrameBuffer;
 import utils.RgbColor;
 import utils.algebra.Vec2;
 import utils.algebra.Vec3;
+import utils.io.ImageExportQueue;
 import utils.io.Log;
+import utils.jfr.AccelerationBuildEvent;
+import utils.jfr.FrameEvent;
+import utils.jfr.TileEvent;
 
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Class Raytracer
@@ -36,16 +43,18 @@ import java.util.List;
  */
 public class Raytracer {
 
-    private BufferedImage mBufferedImage;
+    // Longest path through reflections and refractions, the last surface of a longer path is shaded directly
+    static final int MAX_PATH_DEPTH = 32;
+    // Paths carrying less of their light than this are ended by Russian roulette
+    static final float ROULETTE_THRESHOLD = 0.05f;
 
     private Scene mScene;
-    private Window mRenderWindow;
+    private FrameBuffer mFrameBuffer;
 
     private int pixelWidth;
     private int pixelHeight;
 
     private int mMaxRecursions;
-    private int currentRecursion;
 
     private RgbColor mBackgroundColor;
     private RgbColor mAmbientLight;
@@ -53,6 +62,12 @@ public class Raytracer {
     private int mAntiAliasingSamples;
 
     private boolean mDebug;
+    private boolean mExport = true;
+    private String mOutputFile = "raytracing.png";
+    private String mStatsFile = "render_stats.json";
+    private String mHeatmapFile = "sample_heatmap.png";
+    // Queue which writes the rendering in the background, null to write it before renderScene() returns
+    private ImageExportQueue mExportQueue;
     private long tStart;
 
     private float imageWidth;
@@ -60,11 +75,48 @@ public class Raytracer {
 
     private Camera camera;
 
+    private float[] mGaussList;
+    private BVH mBVH;
+
+    private boolean mUseTiles;
+    private int mTileSize;
+    private int mThreadCount;
+    // Pool shared with other renderings, null to start a pool for every rendering
+    private ForkJoinPool mSharedPool;
+
+    private boolean mProgressive;
+    private int mCoarseBlockSize;
+    // Sum of the weighted samples of every pixel, three floats per pixel, row by row, provided by the frame buffer
+    private float[] mAccumulation;
+
+    private boolean mAdaptive;
+    private float mAdaptiveThreshold;
+    private SampleBuffer mSampleBuffer;
+
+    // Samples taken on every area light per shading point, 0 to use the samples of the lights
+    private int mLightSamples;
+
+    // Scenes with more lights pick this many lights per shading point from the light tree, 0 to use every light
+    private int mLightsPerPoint;
+    private LightTree mLightTree;
+    // The lights the light tree has been built from
+    private List<Light> mLightTreeLights;
+
+    private boolean mWavefront;
+
+    private final RenderStats mStats = new RenderStats();
+
+    // Trace contexts of the render threads which are not rendering a tile right now, kept from one rendering to the next
+    private final ConcurrentLinkedQueue<TraceContext> mContexts = new ConcurrentLinkedQueue<>();
+    // Number of the current rendering, the wavefront renderer of a context is only used in the rendering it was made for
+    private int mRenderCount;
+
 
     /**
      * Constructor
+     * @param frameBuffer The frame buffer the image is rendered into
      **/
-    public Raytracer(Scene scene, Window renderWindow, int recursions, RgbColor backColor, RgbColor ambientLight, int antiAliasingSamples, boolean debugOn, int pixelWidth, int pixelHeight) {
+    public Raytracer(Scene scene, FrameBuffer frameBuffer, int recursions, RgbColor backColor, RgbColor ambientLight, int antiAliasingSamples, boolean debugOn, int pixelWidth, int pixelHeight) {
         Log.print(this, "Init");
 
         this.pixelWidth = pixelWidth;
@@ -72,23 +124,147 @@ public class Raytracer {
 
         mMaxRecursions = recursions;
 
-        mBufferedImage = renderWindow.getBufferedImage();
-
         mAntiAliasingSamples = antiAliasingSamples;
 
         mBackgroundColor = backColor;
         mAmbientLight = ambientLight;
         mScene = scene;
-        mRenderWindow = renderWindow;
+        mFrameBuffer = frameBuffer;
         mDebug = debugOn;
         tStart = System.currentTimeMillis();
     }
 
     /**
-     * Send the created window to the frame delivered by JAVA to display our result
+     * Enables the tiled multi-core rendering.
+     * The image is split into tiles of the given size, which are rendered by a work-stealing ForkJoin pool.
+     * @param tileSize The width and height of a tile in pixels
+     * @param threadCount The number of render threads
+     */
+    public void setTiledRendering(int tileSize, int threadCount) {
+        mUseTiles = true;
+        mTileSize = Math.max(1, tileSize);
+        mThreadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Enables the progressive rendering.
+     * A first pass traces one sample per block of the given size, every following pass halves the block size
+     * until every pixel has its first sample. A last pass adds the remaining anti aliasing samples.
+     * The samples accumulate in the float buffer of the frame buffer, so every sample is traced exactly once.
+     * @param coarseBlockSize The block size of the first pass, rounded down to a power of two
+     */
+    public void setProgressiveRendering(int coarseBlockSize) {
+        mProgressive = true;
+        mCoarseBlockSize = Integer.highestOneBit(Math.max(1, coarseBlockSize));
+    }
+
+    /**
+     * Enables the adaptive anti aliasing.
+     * Every pixel starts with the samples in the corners of its sample grid. Only pixels whose samples deviate
+     * from each other or from the neighbouring pixels by more than the threshold get all remaining samples.
+     * @param threshold The largest accepted deviation of a color channel, from 0 to 1
+     */
+    public void setAdaptiveAntiAliasing(float threshold) {
+        mAdaptive = true;
+        mAdaptiveThreshold = threshold;
+    }
+
+    /**
+     * Sets the number of samples taken on every area light per shading point, for example by quality level.
+     * Fewer samples render faster with noisier soft shadows.
+     * @param samples The number of samples, rounded to a square number by the lights. 0 to use the samples of the lights
+     */
+    public void setLightSamples(int samples) {
+        mLightSamples = Math.max(0, samples);
+    }
+
+    /**
+     * Enables the many-light sampling. Scenes with more lights than the given number do not test every light
+     * at a shading point, but pick this many lights from a light tree, weighted by their estimated contribution.
+     * The cost of a shading point then hardly depends on the number of lights.
+     * @param lightsPerPoint The number of lights picked per shading point, 0 to always use every light
+     */
+    public void setManyLightSampling(int lightsPerPoint) {
+        mLightsPerPoint = Math.max(0, lightsPerPoint);
+    }
+
+    /**
+     * Selects the wavefront renderer, which traces the samples of a tile breadth-first in batches instead of
+     * one after another. It produces the same image. Progressive and adaptive rendering only apply to the
+     * depth-first renderer, the wavefront renderer renders every tile completely.
+     * @param wavefront true for the wavefront renderer, false for the depth-first renderer
+     */
+    public void setWavefrontRendering(boolean wavefront) {
+        mWavefront = wavefront;
+    }
+
+    /**
+     * Sets whether the finished rendering is written to the PNG files.
+     * @param export false to only render into the frame buffer, for example while benchmarking
+     */
+    public void setExportEnabled(boolean export) {
+        mExport = export;
+    }
+
+    /**
+     * Sets the files the finished rendering is written to.
+     * @param outputFile The PNG image
+     * @param statsFile The JSON file of the render statistics, null to skip it
+     * @param heatmapFile The PNG image of the samples of adaptive anti aliasing, null to skip it
+     */
+    public void setOutputFiles(String outputFile, String statsFile, String heatmapFile) {
+        mOutputFile = outputFile;
+        mStatsFile = statsFile;
+        mHeatmapFile = heatmapFile;
+    }
+
+    /**
+     * Writes the finished rendering through a queue in the background, so renderScene() returns as soon as the
+     * image has been copied into the queue. The statistics and the heatmap are still written right away.
+     * @param queue The export queue, null to write the rendering before renderScene() returns
+     */
+    public void setExportQueue(ImageExportQueue queue) {
+        mExportQueue = queue;
+    }
+
+    /**
+     * Renders the tiles with a pool which is shared with other renderings, like the frames of a batch, so the
+     * render threads are started once. The pool is not shut down after the rendering.
+     * Only used with tiled rendering, the number of threads is the parallelism of the pool.
+     * @param pool The shared pool
+     */
+    public void setRenderPool(ForkJoinPool pool) {
+        mSharedPool = pool;
+    }
+
+    /**
+     * Returns the statistics of the last rendering, which are cleared when the next rendering starts.
+     * @return The render statistics
+     */
+    public RenderStats getRenderStats() {
+        return mStats;
+    }
+
+    /**
+     * Export the frame buffer with the rendering information
+     * @return false if the rendering could not be written. Renderings written through the export queue are
+     * counted by the queue, see ImageExportQueue.getFailedCount()
      **/
-    public void exportRendering() {
-        mRenderWindow.exportRendering(String.valueOf(stopTime(tStart)), mMaxRecursions, mAntiAliasingSamples, mDebug);
+    public boolean exportRendering() {
+        long tExport = System.nanoTime();
+        String time = String.valueOf(stopTime(tStart));
+        boolean success = true;
+        if (mExportQueue != null) {
+            mFrameBuffer.exportRendering(time, mMaxRecursions, mAntiAliasingSamples, mDebug, mOutputFile, mExportQueue);
+        } else {
+            success = mFrameBuffer.exportRendering(time, mMaxRecursions, mAntiAliasingSamples, mDebug, mOutputFile);
+        }
+        mStats.setExportTime(System.nanoTime() - tExport);
+        if (success) {
+            Log.print(this, String.format(Locale.ROOT, "%s %s in %.1f ms", mExportQueue != null ? "Queued" : "Exported",
+                    mOutputFile, mStats.getExportTime() / 1e6));
+        }
+        return success;
     }
 
     /**
@@ -105,54 +281,429 @@ public class Raytracer {
      **/
     public void renderScene() {
         Log.print(this, "Prepare rendering at " + String.valueOf(stopTime(tStart)));
+        FrameEvent frameEvent = new FrameEvent();
+        frameEvent.begin();
 
         camera = mScene.getCamera();
+        mRenderCount++;
 
         //  Calculates Viewplane Dimensions
         float ratio = (float) pixelWidth / (float) pixelHeight;
         this.imageHeight = (float) (2 * Math.tan(Math.toRadians(camera.getViewAngle()) / 2)) * camera.getFocalLength();
         this.imageWidth = ratio * this.imageHeight;
 
-        float[][] gaussArray = getGaussArray();
-        float[] gaussList = getGaussList(mAntiAliasingSamples);
+        mGaussList = getGaussList(mAntiAliasingSamples);
 
-        // Primary rays ...
-        for (int y = pixelHeight - 1; y >= 0; y--) {
-            for (int x = pixelWidth - 1; x >= 0; x--) {
+        // Acceleration structure for the intersection tests
+        AccelerationBuildEvent buildEvent = new AccelerationBuildEvent();
+        buildEvent.begin();
+        // Scenes loaded from a compiled scene file bring their hierarchy along, otherwise the scene keeps the
+        // hierarchy compiled for the first rendering
+        mBVH = mScene.buildAccelerationStructure();
+        CompiledScene compiledScene = mBVH.getScene();
+        List<Light> lights = mScene.getLightList();
+        if (mLightsPerPoint == 0 || lights.size() <= mLightsPerPoint) {
+            mLightTree = null;
+        } else if (mLightTree == null || !lights.equals(mLightTreeLights)) {
+            // The tree is kept for the next rendering as long as the scene has the same lights
+            mLightTree = new LightTree(lights);
+            mLightTreeLights = new ArrayList<>(lights);
+        }
+        buildEvent.end();
+        if (buildEvent.shouldCommit()) {
+            buildEvent.primitives = compiledScene.getPrimitiveCount();
+            buildEvent.nodes = mBVH.getNodeCount();
+            buildEvent.compiledBytes = compiledScene.getByteSize();
+            buildEvent.commit();
+        }
 
-                float xAntiAliasing = x;
-                float yAntiAliasing = y;
-                RgbColor colorFinal = new RgbColor(0f, 0f, 0f);
+        // Blocks of the progressive passes must not cross tiles, so tiles are a multiple of the coarsest block
+        int tileSize = mUseTiles && mProgressive ? (mTileSize + mCoarseBlockSize - 1) / mCoarseBlockSize * mCoarseBlockSize : mTileSize;
+        List<Tile> tiles = createTiles(mUseTiles ? tileSize : 0);
+        int threadCount = !mUseTiles ? 1 : mSharedPool != null ? mSharedPool.getParallelism() : mThreadCount;
+        mStats.reset(pixelWidth, pixelHeight, threadCount);
+        long tRender = System.nanoTime();
+        ForkJoinPool pool = null;
+        if (mUseTiles) {
+            Log.print(this, "Rendering " + tiles.size() + " tiles on " + threadCount + " threads");
+            pool = mSharedPool != null ? mSharedPool : new ForkJoinPool(mThreadCount);
+        }
+        try {
+            if (mWavefront) {
+                if (mProgressive || isAdaptive()) {
+                    Log.print(this, "Wavefront rendering renders every tile completely, progressive and adaptive rendering are skipped");
+                }
+                runPass(pool, tiles, "wavefront", this::renderTileWavefront);
+            } else if (mProgressive) {
+                renderProgressive(pool, tiles);
+            } else if (isAdaptive()) {
+                renderAdaptive(pool, tiles, false);
+            } else {
+                runPass(pool, tiles, "render", this::renderTile);
+            }
+        } finally {
+            if (pool != null && pool != mSharedPool) {
+                pool.shutdown();
+            }
+        }
+        mStats.setRenderTime(System.nanoTime() - tRender);
+        Log.print(this, mStats.getSummary());
+        // Yeeaahhh, raytracing is so much fun ...
+        if (mExport) {
+            this.exportRendering();
+            if (mStatsFile != null) {
+                mStats.exportJson(mStatsFile);
+            }
+        }
+        frameEvent.end();
+        if (frameEvent.shouldCommit()) {
+            frameEvent.width = pixelWidth;
+            frameEvent.height = pixelHeight;
+            frameEvent.threads = threadCount;
+            frameEvent.samples = mStats.getPrimaryRays();
+            frameEvent.rays = mStats.getTotalRays();
+            frameEvent.commit();
+        }
+    }
 
-                for (int ySample = 0; ySample < mAntiAliasingSamples; ySample++) {
-                    yAntiAliasing += gaussList[ySample];
-                    for (int xSample = 0; xSample < mAntiAliasingSamples; xSample++) {
-                        //new ray directions
-                        xAntiAliasing += gaussList[xSample];
+    /**
+     * Splits the image into tiles.
+     * @param tileSize The width and height of a tile, 0 for a single tile covering the image
+     * @return The tiles of the image
+     */
+    private List<Tile> createTiles(int tileSize) {
+        List<Tile> tiles = new ArrayList<>();
+        if (tileSize <= 0) {
+            tiles.add(new Tile(0, 0, pixelWidth, pixelHeight));
+            return tiles;
+        }
+        for (int y = 0; y < pixelHeight; y += tileSize) {
+            for (int x = 0; x < pixelWidth; x += tileSize) {
+                tiles.add(new Tile(x, y, Math.min(x + tileSize, pixelWidth), Math.min(y + tileSize, pixelHeight)));
+            }
+        }
+        return tiles;
+    }
 
-                        Intersection closestIntersection = sendRayThroughPixel(xAntiAliasing, yAntiAliasing);
+    /**
+     * Renders all tiles with the given pass.
+     * With a pool the tiles are distributed by the ForkJoin pool, so idle threads steal the remaining tiles
+     * of busy ones. Otherwise they are rendered one after another on the calling thread.
+     * A tile takes a trace context which is not used by another thread, so there are no more contexts than
+     * threads. Its counts are added to the render statistics with the time spent on the tile, before the
+     * context is handed back for the next tile. While the flight recorder is recording, every tile is also recorded as a tile event.
+     * @param pool The pool of the render threads, null to render on the calling thread
+     * @param tiles The tiles of the image
+     * @param name The name of the pass in the tile events
+     * @param pass The work done for every tile
+     */
+    private void runPass(ForkJoinPool pool, List<Tile> tiles, String name, BiConsumer<Tile, TraceContext> pass) {
+        Consumer<Tile> countedPass = tile -> {
+            TraceContext context = mContexts.poll();
+            if (context == null) {
+                context = new TraceContext();
+            }
+            TileEvent event = new TileEvent();
+            event.begin();
+            long tTile = System.nanoTime();
+            pass.accept(tile, context);
+            long tileTime = System.nanoTime() - tTile;
+            event.end();
+            if (event.shouldCommit()) {
+                event.pass = name;
+                event.x = tile.getStartX();
+                event.y = tile.getStartY();
+                event.width = tile.getEndX() - tile.getStartX();
+                event.height = tile.getEndY() - tile.getStartY();
+                event.samples = context.primaryRays;
+                event.rays = context.primaryRays + context.reflectionRays + context.refractionRays + context.shadowRays;
+                event.commit();
+            }
+            mStats.addTile(tile, context, tileTime);
+            mContexts.offer(context);
+        };
+        if (pool == null) {
+            for (Tile tile : tiles) {
+                countedPass.accept(tile);
+            }
+        } else {
+            pool.invoke(new TileTask(countedPass, tiles, 0, tiles.size()));
+        }
+    }
 
-                        RgbColor color = mBackgroundColor;
-                        // If a shape has been hit send secondary Rays from Intersection Point to the Lights
-                        if (closestIntersection != null) {
-                            color = secondaryRays(closestIntersection);
-                        }
+    /**
+     * Renders the image in several passes from coarse blocks to the full anti aliasing quality.
+     * @param pool The pool of the render threads, null to render on the calling thread
+     * @param tiles The tiles of the image, a multiple of the coarsest block size
+     */
+    private void renderProgressive(ForkJoinPool pool, List<Tile> tiles) {
+        if (isAdaptive()) {
+            mSampleBuffer = new SampleBuffer(pixelWidth, pixelHeight);
+        } else {
+            mAccumulation = mFrameBuffer.getAccumulationBuffer();
+        }
+        long tPass = System.nanoTime();
 
-                        if (mAntiAliasingSamples > 1) {
-                            //color = color.multScalar(gaussArray[xSample][ySample]);
-                            color = color.divide(mAntiAliasingSamples * mAntiAliasingSamples);
-                        }
-                        //color = color.divide(mAntiAliasingSamples * mAntiAliasingSamples);
-                        colorFinal = colorFinal.add(color);
+        for (int blockSize = mCoarseBlockSize; blockSize >= 1; blockSize /= 2) {
+            final int passBlockSize = blockSize;
+            runPass(pool, tiles, "progressive " + blockSize + "x" + blockSize, (tile, context) -> refineTile(tile, context, passBlockSize));
+            Log.print(this, "Progressive pass with " + blockSize + "x" + blockSize + " blocks finished after "
+                    + ((System.nanoTime() - tPass) / 1000000.0) + " ms");
+        }
+        if (isAdaptive()) {
+            renderAdaptive(pool, tiles, true);
+            Log.print(this, "Progressive adaptive passes finished after " + ((System.nanoTime() - tPass) / 1000000.0) + " ms");
+        } else if (mAntiAliasingSamples > 1) {
+            runPass(pool, tiles, "progressive finish", this::finishTile);
+            Log.print(this, "Progressive pass with " + mAntiAliasingSamples * mAntiAliasingSamples
+                    + " samples per pixel finished after " + ((System.nanoTime() - tPass) / 1000000.0) + " ms");
+        }
+        mAccumulation = null;
+    }
+
+    private boolean isAdaptive() {
+        return mAdaptive && mAntiAliasingSamples > 1;
+    }
+
+    /**
+     * Renders the image with adaptive anti aliasing in three passes: the corner samples of every pixel,
+     * the decision which pixels need more samples and the remaining samples of those pixels.
+     * Reports the average number of samples per pixel and writes a heatmap of the sample counts.
+     * @param pool The pool of the render threads, null to render on the calling thread
+     * @param tiles The tiles of the image
+     * @param firstSampleTraced true if a progressive pass already added the first sample of every pixel
+     */
+    private void renderAdaptive(ForkJoinPool pool, List<Tile> tiles, boolean firstSampleTraced) {
+        if (mSampleBuffer == null) {
+            mSampleBuffer = new SampleBuffer(pixelWidth, pixelHeight);
+        }
+        runPass(pool, tiles, "adaptive corners", (tile, context) -> sampleTile(tile, context, true, firstSampleTraced));
+        runPass(pool, tiles, "adaptive decision", (tile, context) -> decideTile(tile));
+        runPass(pool, tiles, "adaptive refinement", (tile, context) -> sampleTile(tile, context, false, false));
 
+        int maxSamples = mAntiAliasingSamples * mAntiAliasingSamples;
+        double averageSamples = mSampleBuffer.getAverageSampleCount();
+        Log.print(this, "Adaptive anti aliasing sent " + averageSamples + " primary rays per pixel instead of "
+                + maxSamples + " (" + (maxSamples / averageSamples) + "x fewer)");
+        if (mExport && mHeatmapFile != null) {
+            mSampleBuffer.exportHeatmap(maxSamples, mHeatmapFile);
+        }
+        mSampleBuffer = null;
+    }
+
+    /**
+     * Sends either the corner samples or the remaining samples of every pixel of the tile, which needs them,
+     * and shows the mean of all samples of the pixel.
+     * @param tile The tile to sample
+     * @param context The scratch objects of the render thread
+     * @param initial true for the corner samples, false for the remaining samples of the pixels which need them
+     * @param skipFirst true if the first sample is already in the sample buffer
+     */
+    void sampleTile(Tile tile, TraceContext context, boolean initial, boolean skipFirst) {
+        for (int y = tile.getEndY() - 1; y >= tile.getStartY(); y--) {
+            for (int x = tile.getEndX() - 1; x >= tile.getStartX(); x--) {
+                if (!initial && !mSampleBuffer.needsRefinement(x, y)) {
+                    continue;
+                }
+                addAdaptiveSamples(context, x, y, initial, skipFirst);
+                mFrameBuffer.setPixel(x, y, mSampleBuffer.getMean(x, y, context.pixelColor));
+            }
+        }
+    }
+
+    /**
+     * Decides for every pixel of the tile if it needs more samples.
+     * @param tile The tile to check
+     */
+    void decideTile(Tile tile) {
+        for (int y = tile.getStartY(); y < tile.getEndY(); y++) {
+            for (int x = tile.getStartX(); x < tile.getEndX(); x++) {
+                mSampleBuffer.decideRefinement(x, y, mAdaptiveThreshold);
+            }
+        }
+    }
+
+    /**
+     * Sends the corner samples or the remaining samples of a pixel and adds them to the sample buffer.
+     * The sample positions are the same as in renderSamples().
+     * @param context The scratch objects of the render thread
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @param corners true for the samples in the corners of the sample grid, false for all others
+     * @param skipFirst true to skip the first sample, which is a corner sample
+     */
+    private void addAdaptiveSamples(TraceContext context, int x, int y, boolean corners, boolean skipFirst) {
+        float[] gaussList = mGaussList;
+        int last = mAntiAliasingSamples - 1;
+
+        float xAntiAliasing = x;
+        float yAntiAliasing = y;
+
+        for (int ySample = 0; ySample < mAntiAliasingSamples; ySample++) {
+            yAntiAliasing += gaussList[ySample];
+            for (int xSample = 0; xSample < mAntiAliasingSamples; xSample++) {
+                xAntiAliasing += gaussList[xSample];
+                boolean corner = (xSample == 0 || xSample == last) && (ySample == 0 || ySample == last);
+                if (corner != corners || skipFirst && xSample == 0 && ySample == 0) {
+                    continue;
+                }
+                mSampleBuffer.add(x, y, traceSample(context, xAntiAliasing, yAntiAliasing));
+            }
+        }
+    }
+
+    /**
+     * Traces the first sample of every pixel on the grid of the block size, which has not been traced by a
+     * coarser pass, and shows its color for the whole block until a finer pass refines it.
+     * @param tile The tile to refine, it starts on a multiple of the block size
+     * @param context The scratch objects of the render thread
+     * @param blockSize The block size of the pass
+     */
+    void refineTile(Tile tile, TraceContext context, int blockSize) {
+        int coarserBlockSize = blockSize * 2;
+        for (int y = tile.getStartY(); y < tile.getEndY(); y += blockSize) {
+            for (int x = tile.getStartX(); x < tile.getEndX(); x += blockSize) {
+                if (blockSize < mCoarseBlockSize && x % coarserBlockSize == 0 && y % coarserBlockSize == 0) {
+                    continue;
+                }
+                RgbColor color = traceFirstSample(context, x, y);
+                for (int blockY = y; blockY < Math.min(y + blockSize, tile.getEndY()); blockY++) {
+                    for (int blockX = x; blockX < Math.min(x + blockSize, tile.getEndX()); blockX++) {
+                        mFrameBuffer.setPreviewPixel(blockX, blockY, color);
                     }
                 }
-                // Set Pixel
-                mRenderWindow.setPixel(mBufferedImage, colorFinal, new Vec2(x, y));
             }
         }
-        // Yeeaahhh, raytracing is so much fun ...
-        this.exportRendering();
+    }
+
+    /**
+     * Adds the remaining anti aliasing samples to every pixel of the tile and writes the final colors.
+     * @param tile The tile to finish, whose first samples are in the accumulation buffer
+     * @param context The scratch objects of the render thread
+     */
+    void finishTile(Tile tile, TraceContext context) {
+        for (int y = tile.getEndY() - 1; y >= tile.getStartY(); y--) {
+            for (int x = tile.getEndX() - 1; x >= tile.getStartX(); x--) {
+                int index = (y * pixelWidth + x) * 3;
+                context.pixelColor.set(mAccumulation[index], mAccumulation[index + 1], mAccumulation[index + 2]);
+                mFrameBuffer.setPixel(x, y, renderSamples(context, x, y, 1));
+            }
+        }
+    }
+
+    /**
+     * Traces the first anti aliasing sample of a pixel and stores its weighted color in the accumulation buffer,
+     * or in the sample buffer with adaptive anti aliasing.
+     * @param context The scratch objects of the render thread
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The color of the sample, which is reused for the next sample of the context
+     */
+    private RgbColor traceFirstSample(TraceContext context, int x, int y) {
+        RgbColor color = traceSample(context, x + mGaussList[0], y + mGaussList[0]);
+        if (mSampleBuffer != null) {
+            mSampleBuffer.add(x, y, color);
+            return color;
+        }
+
+        // Weighted like in renderSamples(), so the finished pixel is the same as without progressive rendering
+        RgbColor weighted = context.pixelColor.set(color);
+        if (mAntiAliasingSamples > 1) {
+            weighted.divideInPlace(mAntiAliasingSamples * mAntiAliasingSamples);
+        }
+        int index = (y * pixelWidth + x) * 3;
+        mAccumulation[index] = weighted.red();
+        mAccumulation[index + 1] = weighted.green();
+        mAccumulation[index + 2] = weighted.blue();
+        return color;
+    }
+
+    /**
+     * Renders every pixel of a single tile.
+     * @param tile The tile to render
+     * @param context The scratch objects of the render thread
+     */
+    void renderTile(Tile tile, TraceContext context) {
+        for (int y = tile.getEndY() - 1; y >= tile.getStartY(); y--) {
+            for (int x = tile.getEndX() - 1; x >= tile.getStartX(); x--) {
+                mFrameBuffer.setPixel(x, y, renderPixel(context, x, y));
+            }
+        }
+    }
+
+    /**
+     * Renders a tile with the wavefront renderer.
+     * The renderer and its arrays are created for the first tile a context renders in this rendering and
+     * reused for its other tiles.
+     * @param tile The tile to render
+     * @param context The scratch objects of the render thread
+     */
+    void renderTileWavefront(Tile tile, TraceContext context) {
+        if (context.wavefront == null || context.wavefrontRender != mRenderCount) {
+            context.wavefront = new WavefrontRenderer(this, context, mBVH, camera, mFrameBuffer, mGaussList, mAntiAliasingSamples, mMaxRecursions, mBackgroundColor);
+            context.wavefrontRender = mRenderCount;
+        }
+        context.wavefront.renderTile(tile);
+    }
+
+    /**
+     * Calculates the final color of a pixel by sending all anti aliasing samples through it.
+     * @param context The scratch objects of the render thread
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The averaged color of the pixel, which is reused for the next pixel of the context
+     */
+    private RgbColor renderPixel(TraceContext context, int x, int y) {
+        context.pixelColor.set(0f, 0f, 0f);
+        return renderSamples(context, x, y, 0);
+    }
+
+    /**
+     * Sends the anti aliasing samples of a pixel, starting with the given one, and adds their weighted colors
+     * to the pixel color of the context.
+     * @param context The scratch objects of the render thread
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @param firstSample The index of the first sample to send, the samples before are skipped
+     * @return The pixel color of the context
+     */
+    private RgbColor renderSamples(TraceContext context, int x, int y, int firstSample) {
+        float[] gaussList = mGaussList;
+
+        float xAntiAliasing = x;
+        float yAntiAliasing = y;
+        RgbColor colorFinal = context.pixelColor;
+        int sample = 0;
+
+        for (int ySample = 0; ySample < mAntiAliasingSamples; ySample++) {
+            yAntiAliasing += gaussList[ySample];
+            for (int xSample = 0; xSample < mAntiAliasingSamples; xSample++) {
+                //new ray directions
+                xAntiAliasing += gaussList[xSample];
+                if (sample++ < firstSample) {
+                    continue;
+                }
+
+                RgbColor color = traceSample(context, xAntiAliasing, yAntiAliasing);
+                if (mAntiAliasingSamples > 1) {
+                    color.divideInPlace(mAntiAliasingSamples * mAntiAliasingSamples);
+                }
+                colorFinal.addInPlace(color);
+            }
+        }
+        return colorFinal;
+    }
+
+    /**
+     * Sends a single sample through the image.
+     * @param context The scratch objects of the render thread
+     * @param x The x coordinate of the sample in pixels
+     * @param y The y coordinate of the sample in pixels
+     * @return The color of the sample, which is reused for the next sample of the context
+     */
+    private RgbColor traceSample(TraceContext context, float x, float y) {
+        context.random.seed(x, y);
+        return sendRayThroughPixel(context, x, y);
     }
 
     private float[][] getGaussArray() {
@@ -206,158 +757,295 @@ public class Raytracer {
     }
 
     /**
-     * Calculates where the Ray should be send in World Space
+     * Calculates where the Ray should be send in World Space and traces its path
      *
+     * @param context The scratch objects of the render thread
+     * @param x The X Coordinate of the pixel
+     * @param y The Y Coordinate of the pixel
+     * @return The color of the path, which is reused for the next sample of the context
+     */
+    private RgbColor sendRayThroughPixel(TraceContext context, float x, float y) {
+        setCameraRay(context, x, y);
+        return tracePath(context, context.sampleColor);
+    }
+
+    /**
+     * Sets the ray of the context to the ray from the camera through a point of the image.
+     * @param context The scratch objects of the render thread
      * @param x The X Coordinate of the pixel
      * @param y The Y Coordinate of the pixel
-     * @return An Intersection Object, with the information what the ray hit.
-     *         Null when there is no intersection
      */
-    public Intersection sendRayThroughPixel(float x, float y) {
-        currentRecursion = 0;
+    void setCameraRay(TraceContext context, float x, float y) {
         // Position on the Viewplane
-        Vec2 normalizedPixel = normalizePixel(x, y);
+        Vec2 normalizedPixel = normalizePixel(x, y, context.viewplanePoint);
 
         // Calculate destination point
-        Vec3 destinationPoint = camera.calculateDestinationPoint(normalizedPixel.x, normalizedPixel.y);
+        Vec3 destinationPoint = camera.calculateDestinationPoint(normalizedPixel.x, normalizedPixel.y, context.destinationPoint);
 
         // Send Ray from the Camera Position in the direction of the Pixel
-        return primaryRay(camera.getCameraPosition(), destinationPoint);
+        context.ray.set(camera.getCameraPosition(), destinationPoint);
+        context.primaryRays++;
     }
 
     /**
-     * Sends a primary Ray and checks intersections.
+     * Follows the ray of the context through reflections and refractions in a loop.
+     * The path keeps its throughput, the share of its light which still reaches the camera. Every surface adds
+     * its own shaded color weighted by the throughput and the part of the light it neither reflects nor transmits.
+     * Paths with a throughput below the roulette threshold are ended by chance, the surviving paths are
+     * weighted up, so the image stays the same on average. The number of mirror reflections is limited by the
+     * recursions of the raytracer and the length of any path by MAX_PATH_DEPTH.
      *
-     * @param startPoint The start point of the ray.
-     * @param destinationPoint The direction of the ray.
-     * @return An Intersection Object, with the information what the ray hit.
-     *         Null when there is no intersection
-     */
-    private Intersection primaryRay(Vec3 startPoint, Vec3 destinationPoint) {
-        // Calculate ray with start point and end point
-        Ray ray = new Ray(startPoint, destinationPoint);
-        // Set the distance to a location very far away if nothing has been hit yet
-        double distanceToIntersection = 99999d;
-        Intersection intersection = null;
-        boolean reflective = false;
-        boolean transmittive = false;
-
-        List<Shape> shapeList = mScene.getShapeList();
-        // Checks Intersections with each Object
-        for (Shape shape : shapeList) {
-            boolean hit = false;
-
-            // Calculates the intersection of the ray and shape
-            Intersection currentIntersection = new Intersection(ray, shape);
-            hit = currentIntersection.isHit();
-            if (hit) {
-                // Checking with the distance which the closest shape is
-                if (currentIntersection.getDistance() < distanceToIntersection) {
-                    distanceToIntersection = currentIntersection.getDistance();
-                    intersection = currentIntersection;
-                    reflective = shape.isReflective();
-                    transmittive = shape.isTransmittive();
+     * @param context The scratch objects of the render thread, its ray is the ray to send
+     * @param outColor The color which receives the result
+     * @return outColor
+     */
+    private RgbColor tracePath(TraceContext context, RgbColor outColor) {
+        Intersection intersection = context.hit;
+        outColor.set(0f, 0f, 0f);
+        float throughput = 1f;
+        int reflections = 0;
+
+        for (int depth = 0; ; depth++) {
+            // Set the distance to a location very far away if nothing has been hit yet
+            intersection.reset(99999f);
+
+            // Finds the closest intersection through the bounding volume hierarchy
+            if (!mBVH.closestHit(context.ray, intersection)) {
+                return addWeighted(outColor, mBackgroundColor, throughput);
+            }
+            context.hits++;
+            Material material = intersection.getMaterial();
+            boolean lastSegment = depth + 1 >= MAX_PATH_DEPTH;
+
+            if (material.isReflective() && reflections < mMaxRecursions && !lastSegment) {
+                // The part of the light which is not reflected comes from the surface itself
+                float reflectivity = material.getReflectivity();
+                if (reflectivity < 1f) {
+                    addWeighted(outColor, secondaryRays(context, intersection, context.surfaceColor), throughput * (1f - reflectivity));
+                }
+                throughput *= reflectivity;
+                reflections++;
+                reflectRay(context, intersection);
+            } else if (material.isTransmittive() && !lastSegment) {
+                // Light reflected at the surface and the reflective part of the material come from the surface itself
+                float transmission = refractRay(context, intersection) * (1f - material.getReflectivity());
+                if (transmission < 1f) {
+                    addWeighted(outColor, secondaryRays(context, intersection, context.surfaceColor), throughput * (1f - transmission));
                 }
+                if (transmission == 0f) {
+                    return outColor;
+                }
+                throughput *= transmission;
+            } else {
+                return addWeighted(outColor, secondaryRays(context, intersection, context.surfaceColor), throughput);
             }
-        }
 
-        // Recursion if shape is Reflective
-        if (reflective && currentRecursion < mMaxRecursions) {
-            currentRecursion++;
-            Vec3 l = ray.getDirection().normalize().multScalar(-1.0f);
-            Vec3 n = intersection.getNormal().normalize();
-            Vec3 direction = n.multScalar(n.scalar(l) * 2).sub(l);
-            // Add direction to avoid self collision
-            Vec3 pointOfIntersection = intersection.getPointOfIntersection().add(direction);
-            Vec3 pointInDirection = pointOfIntersection.add(direction);
-            return primaryRay(pointOfIntersection, pointInDirection);
-        } if(transmittive) {
-            // iorOfMedium1 is the index of refraction of the medium they ray is in before entering the other medium
-            float n1;
-            // iorOfMedium2 is the given index of refraction, the ior of the medium the ray is entering from the first medium
-            float n2;
-            // incident ray
-            Vec3 I = ray.getDirection().negate().normalize();
-            // normal
-            Vec3 refractNormal = intersection.getNormal().normalize();
-            // cos alpha is the result of the scalar between normal and incident ray
-            float cosAlpha = I.scalar(refractNormal);
-
-            n1 = 1.0f;
-            n2 = intersection.getShape().getRefractionIndex();
-            // if the scalar between normal and incident ray is less than 0, we are inside the surface
-            if(cosAlpha < 0){
-                // else we are outside the surface, so cos is positive but the normal has the reverse direction so it needs to be negated
-                refractNormal = refractNormal.negate().normalize();
-                // swap refraction indices
-                n1 = intersection.getShape().getRefractionIndex();
-                n2 = 1.0f;
-                // if we are outside, we want cos to be positive so we have to negate the scalar
-                cosAlpha = cosAlpha * (-1);
+            // Russian roulette
+            if (throughput < ROULETTE_THRESHOLD) {
+                float survival = throughput / ROULETTE_THRESHOLD;
+                if (context.random.nextFloat() >= survival) {
+                    return outColor;
+                }
+                throughput /= survival;
             }
-            // Snellius (sin alpha/ sin beta = n2/n1) here n1/n2
-            float snellius = n1 / n2;
-            // Check if there is a total internal reflection
-            float sinT = 1 - ((snellius * snellius) * (1- (cosAlpha * cosAlpha)));
-            float cosBeta = (float) Math.sqrt(sinT);
-
-            // calculate transmission Ray
-            Vec3 firstHalf = (refractNormal.multScalar(cosAlpha).sub(I)).multScalar(snellius);
-            Vec3 secondHalf = refractNormal.multScalar(cosBeta);
-            Vec3 transmissionRay = firstHalf.sub(secondHalf).normalize();
-            Vec3 pointOfIntersection = intersection.getPointOfIntersection().add(refractNormal.multScalar(100f));
-            return primaryRay(pointOfIntersection,transmissionRay);
-        } else {
-            return intersection;
         }
     }
 
     /**
-     * Sends the secondary rays for an intersection
+     * Adds a color to the color of a path.
+     * @param pathColor The color of the path, which receives the sum
+     * @param color The color to add
+     * @param weight The factor the color is added with
+     * @return pathColor
+     */
+    static RgbColor addWeighted(RgbColor pathColor, RgbColor color, float weight) {
+        return pathColor.set(pathColor.red() + color.red() * weight, pathColor.green() + color.green() * weight, pathColor.blue() + color.blue() * weight);
+    }
+
+    /**
+     * Sets the ray of the context to the mirror reflection of the ray at the intersection.
+     */
+    void reflectRay(TraceContext context, Intersection intersection) {
+        Ray ray = context.ray;
+        Vec3 l = context.incident.set(ray.getDirection()).normalizeInPlace().multScalarInPlace(-1.0f);
+        Vec3 n = context.normal.set(intersection.getNormal()).normalizeInPlace();
+        Vec3 direction = context.direction.set(n).multScalarInPlace(n.scalar(l) * 2).subInPlace(l);
+        // Add direction to avoid self collision
+        Vec3 pointOfIntersection = context.startPoint.set(intersection.getPointOfIntersection()).addInPlace(direction);
+        Vec3 pointInDirection = context.endPoint.set(pointOfIntersection).addInPlace(direction);
+        ray.set(pointOfIntersection, pointInDirection);
+        context.reflectionRays++;
+    }
+
+    /**
+     * Sets the ray of the context to the ray refracted into or out of the shape at the intersection.
+     * @return The part of the light which passes through the surface by the Fresnel equations, 0 for a total
+     * internal reflection, which leaves the ray unchanged
+     */
+    float refractRay(TraceContext context, Intersection intersection) {
+        Ray ray = context.ray;
+        // iorOfMedium1 is the index of refraction of the medium they ray is in before entering the other medium
+        float n1;
+        // iorOfMedium2 is the given index of refraction, the ior of the medium the ray is entering from the first medium
+        float n2;
+        // incident ray
+        Vec3 I = context.incident.set(ray.getDirection()).negateInPlace().normalizeInPlace();
+        // normal
+        Vec3 refractNormal = context.normal.set(intersection.getNormal()).normalizeInPlace();
+        // cos alpha is the result of the scalar between normal and incident ray
+        float cosAlpha = I.scalar(refractNormal);
+
+        n1 = 1.0f;
+        n2 = intersection.getMaterial().getRefractionIndex();
+        // if the scalar between normal and incident ray is less than 0, we are inside the surface
+        if(cosAlpha < 0){
+            // else we are outside the surface, so cos is positive but the normal has the reverse direction so it needs to be negated
+            refractNormal.negateInPlace().normalizeInPlace();
+            // swap refraction indices
+            n1 = intersection.getMaterial().getRefractionIndex();
+            n2 = 1.0f;
+            // if we are outside, we want cos to be positive so we have to negate the scalar
+            cosAlpha = cosAlpha * (-1);
+        }
+        // Snellius (sin alpha/ sin beta = n2/n1) here n1/n2
+        float snellius = n1 / n2;
+        // Check if there is a total internal reflection
+        float sinT = 1 - ((snellius * snellius) * (1- (cosAlpha * cosAlpha)));
+        if (sinT <= 0f) {
+            return 0f;
+        }
+        float cosBeta = (float) Math.sqrt(sinT);
+
+        // calculate transmission Ray
+        Vec3 transmissionRay = context.direction.set(refractNormal).multScalarInPlace(cosAlpha).subInPlace(I).multScalarInPlace(snellius);
+        Vec3 secondHalf = context.endPoint.set(refractNormal).multScalarInPlace(cosBeta);
+        transmissionRay.subInPlace(secondHalf).normalizeInPlace();
+        Vec3 pointOfIntersection = context.startPoint.set(refractNormal).multScalarInPlace(100f).addInPlace(intersection.getPointOfIntersection());
+        ray.set(pointOfIntersection, transmissionRay);
+        context.refractionRays++;
+
+        // Unpolarized light, the reflected part is the mean of both polarizations
+        float s = (n1 * cosAlpha - n2 * cosBeta) / (n1 * cosAlpha + n2 * cosBeta);
+        float p = (n2 * cosAlpha - n1 * cosBeta) / (n2 * cosAlpha + n1 * cosBeta);
+        return 1f - (s * s + p * p) * 0.5f;
+    }
+
+    /**
+     * Sends the secondary rays for an intersection.
+     * Every light is sampled at its sample positions, the light of every unblocked position is added to the color.
+     * Scenes with many lights only sample a few lights picked from the light tree.
+     * @param context The scratch objects of the render thread
      * @param closestIntersection The intersection for which the secondary rays will be calculated
+     * @param outColor The color which receives the result
      * @return The Color calculated after the seconadry rays have been send.
      */
-    public RgbColor secondaryRays(Intersection closestIntersection) {
+    private RgbColor secondaryRays(TraceContext context, Intersection closestIntersection, RgbColor outColor) {
         Vec3 pointOfIntersection = closestIntersection.getPointOfIntersection();
-        Shape closestShape = closestIntersection.getShape();
+        Material material = closestIntersection.getMaterial();
+        if (material == null) {
+            return outColor.set(mBackgroundColor);
+        }
+        int ignoredPrimitive = getIgnoredPrimitive(closestIntersection.getPrimitive());
+        Vec3 viewVector = context.viewVector.set(camera.getCameraPosition()).subInPlace(pointOfIntersection).normalizeInPlace();
+
+        LightSamples samples = sampleLights(context, pointOfIntersection, closestIntersection.getNormal(), material);
+        // The direct light is summed up in the output color
+        outColor.set(0f, 0f, 0f);
+        for (int i = 0; i < samples.size(); i++) {
+            Vec3 lightLocation = samples.getPosition(i, context.lightPosition);
+            // Checks if the lightRay hits any shape before it hits the Light, ignoring self Collision
+            if (!isOccluded(context, pointOfIntersection, lightLocation, ignoredPrimitive)) {
+                material.addDirectLight(pointOfIntersection, closestIntersection.getNormal(), lightLocation,
+                        samples.getColor(i, context.lightColor), samples.getWeight(i), viewVector, outColor);
+            }
+        }
+        return material.addAmbientLight(outColor);
+    }
+
+    /**
+     * Picks the points on the lights from which a shading point is lit, without testing their shadow rays.
+     * Every light is sampled at its sample positions, scenes with many lights only sample a few lights picked
+     * from the light tree.
+     * @param context The scratch objects of the render thread, its random numbers are used
+     * @param pointOfIntersection The shading point
+     * @param normal The normal at the shading point
+     * @param material The material at the shading point
+     * @return The light samples of the context
+     */
+    LightSamples sampleLights(TraceContext context, Vec3 pointOfIntersection, Vec3 normal, Material material) {
+        LightSamples samples = context.lightSamples;
+        samples.clear();
+        context.shadingCalls++;
+        if (!material.receivesLight()) {
+            return samples;
+        }
+        if (mLightTree != null) {
+            sampleLightTree(context, pointOfIntersection, normal, samples);
+            return samples;
+        }
 
-        // Get all Lights in the scene
         List<Light> sceneLights = mScene.getLightList();
-        // Light list for the Lights which hit the Intersection Point
-        List<Light> objectLights = new ArrayList<>();
-
-        // Rays for every light in our Lightlist
-        for (Light light : sceneLights) {
-            //System.out.println(light.getLocation().x + ", " + light.getLocation().z);
-            Ray secondaryRay = new Ray(pointOfIntersection, light.getLocation());
-            boolean hit = false;
-            List<Shape> shapeList = mScene.getShapeList();
-            for (Shape shape : shapeList) {
-                // Ignore self Collision
-                if (shape != closestShape) {
-                    Intersection intersectionLight = new Intersection(secondaryRay, shape);
-
-                    // Checks if the lightRay intersects a shape
-                    if (intersectionLight.isHit()) {
-                        // Check if the ray hits the Light before it hits the Object
-                        if (pointOfIntersection.sub(light.getLocation()).length() > (float) intersectionLight.getDistance()) {
-                            hit = true;
-                        }
-                    }
-                }
+        for (int i = 0; i < sceneLights.size(); i++) {
+            Light light = sceneLights.get(i);
+            int sampleCount = light.getSampleCount(mLightSamples);
+            // Every sample carries its share of the light
+            RgbColor sampleColor = context.lightColor.set(light.getColor());
+            if (sampleCount > 1) {
+                sampleColor.multScalarInPlace(1f / sampleCount);
             }
-            // Add light to a List if it isn't obscured
-            if (!hit) {
-                objectLights.add(light);
+
+            for (int sample = 0; sample < sampleCount; sample++) {
+                Vec3 lightLocation = light.getSamplePosition(sample, sampleCount, context.random.nextFloat(), context.random.nextFloat(), context.lightPosition);
+                samples.add(lightLocation, sampleColor, 1f);
             }
         }
-        RgbColor color = mBackgroundColor;
-        // If there is an intersection with the primary ray we calculate the color
-        if (closestShape != null) {
-            Vec3 viewVector = camera.getCameraPosition().sub(pointOfIntersection).normalize();
-            color = closestShape.getColor(objectLights, viewVector);
+        return samples;
+    }
+
+    /**
+     * Picks a few lights from the light tree. A picked light is divided by the probability of picking it,
+     * so the sum estimates the light of all lights. Area lights are sampled at a single random point.
+     */
+    private void sampleLightTree(TraceContext context, Vec3 pointOfIntersection, Vec3 normal, LightSamples samples) {
+        for (int i = 0; i < mLightsPerPoint; i++) {
+            Light light = mLightTree.sample(context, pointOfIntersection, normal);
+            if (light == null) {
+                return;
+            }
+            float weight = 1f / (context.lightProbability * mLightsPerPoint);
+            int sampleCount = light.getSampleCount(mLightSamples);
+            int sample = Math.min((int) (context.random.nextFloat() * sampleCount), sampleCount - 1);
+            Vec3 lightLocation = light.getSamplePosition(sample, sampleCount, context.random.nextFloat(), context.random.nextFloat(), context.lightPosition);
+            samples.add(lightLocation, light.getColor(), weight);
         }
-        return color;
+    }
+
+    /**
+     * Sends a shadow ray from a shading point towards a point on a light.
+     * @param context The scratch objects of the render thread
+     * @param pointOfIntersection The shading point
+     * @param lightLocation The point on the light
+     * @param ignoredPrimitive The index of the primitive which is skipped, -1 to test all of them
+     * @return true if a primitive blocks the light
+     */
+    boolean isOccluded(TraceContext context, Vec3 pointOfIntersection, Vec3 lightLocation, int ignoredPrimitive) {
+        Ray secondaryRay = context.shadowRay.set(pointOfIntersection, lightLocation);
+        context.shadowRays++;
+        float dx = pointOfIntersection.x - lightLocation.x;
+        float dy = pointOfIntersection.y - lightLocation.y;
+        float dz = pointOfIntersection.z - lightLocation.z;
+        float distanceToLight = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return mBVH.occluded(secondaryRay, distanceToLight, ignoredPrimitive);
+    }
+
+    /**
+     * Returns the primitive which shadow rays from a shading point skip, which is the hit primitive itself
+     * unless it can shadow itself.
+     * @param primitive The index of the hit primitive
+     * @return The index of the primitive, -1 if no primitive is skipped
+     */
+    int getIgnoredPrimitive(int primitive) {
+        return mBVH.getScene().canShadowItself(primitive) ? -1 : primitive;
     }
 
     /**
@@ -368,7 +1056,19 @@ public class Raytracer {
      * @return The corresponding Viewplane Coordinate.
      */
     public Vec2 normalizePixel(float x, float y) {
-        Vec2 viewplaneCoordinate = new Vec2(2 * (( x + 0.5f) / pixelWidth) - 1, 2 * (( y + 0.5f) / pixelHeight) - 1);
+        return normalizePixel(x, y, new Vec2());
+    }
+
+    /**
+     * Converts a Window-Pixel Coordinate to a Viewplane Coordinate, without creating a new vector.
+     *
+     * @param x The x coordinate of the window
+     * @param y The y coordinate of the window
+     * @param viewplaneCoordinate The vector which receives the Viewplane Coordinate
+     * @return viewplaneCoordinate
+     */
+    public Vec2 normalizePixel(float x, float y, Vec2 viewplaneCoordinate) {
+        viewplaneCoordinate.set(2 * (( x + 0.5f) / pixelWidth) - 1, 2 * (( y + 0.5f) / pixelHeight) - 1);
         viewplaneCoordinate.x = viewplaneCoordinate.x * (imageWidth / 2);
         viewplaneCoordinate.y = viewplaneCoordinate.y * (imageHeight / 2 * -1);
         return viewplaneCoordinate;
@@ -0,0 +1,115 @@
+package raytracer;
+
+import utils.algebra.Vec3;
+
+/**
+ * Class RenderJob
+ * A frame of a batch: the scene file to render, the image file to write and the settings which differ from the
+ * settings of the scene file. Everything which is not set is taken from the scene file.
+ */
+public class RenderJob {
+
+    private final String scenePath;
+    private final String outputPath;
+
+    private int width;
+    private int height;
+    private int recursions = -1;
+    private int antiAliasing;
+
+    private Vec3 cameraPosition;
+    private Vec3 lookAt;
+    private Vec3 upVector;
+    private float viewAngle;
+    private float focalLength;
+
+    /**
+     * @param _scenePath The path of the JSON or compiled scene file
+     * @param _outputPath The path of the image which is written, its extension selects PNG, PPM, PFM or OpenEXR
+     */
+    public RenderJob(String _scenePath, String _outputPath) {
+        this.scenePath = _scenePath;
+        this.outputPath = _outputPath;
+    }
+
+    /**
+     * Replaces the settings of the scene file by the settings of the job.
+     * @param settings A copy of the settings of the scene file
+     */
+    void apply(RenderSettings settings) {
+        if (width > 0 && height > 0) {
+            settings.setSize(width, height);
+        }
+        if (recursions >= 0) {
+            settings.setRecursions(recursions);
+        }
+        if (antiAliasing > 0) {
+            settings.setAntiAliasing(antiAliasing);
+        }
+    }
+
+    /**
+     * Returns if the job moves the camera of the scene or changes its lens.
+     * @return true if any camera setting is set
+     */
+    boolean hasCamera() {
+        return cameraPosition != null || lookAt != null || upVector != null || viewAngle > 0 || focalLength > 0;
+    }
+
+    /**
+     * Creates the camera of the job, which keeps every setting of the scene camera the job does not set.
+     * @param sceneCamera The camera of the scene file
+     * @return The camera
+     */
+    Camera createCamera(Camera sceneCamera) {
+        return new PerspCam(cameraPosition != null ? cameraPosition : sceneCamera.getCameraPosition(),
+                lookAt != null ? lookAt : sceneCamera.getCenterOfInterest(),
+                upVector != null ? upVector : sceneCamera.getUserUpVector(),
+                viewAngle > 0 ? viewAngle : sceneCamera.getViewAngle(),
+                focalLength > 0 ? focalLength : sceneCamera.getFocalLength());
+    }
+
+    public String getScenePath() {
+        return scenePath;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public void setSize(int _width, int _height) {
+        this.width = _width;
+        this.height = _height;
+    }
+
+    public void setRecursions(int _recursions) {
+        this.recursions = _recursions;
+    }
+
+    /**
+     * @param _antiAliasing The number of samples per pixel in each direction
+     */
+    public void setAntiAliasing(int _antiAliasing) {
+        this.antiAliasing = _antiAliasing;
+    }
+
+    public void setCameraPosition(Vec3 _cameraPosition) {
+        this.cameraPosition = _cameraPosition;
+    }
+
+    public void setLookAt(Vec3 _lookAt) {
+        this.lookAt = _lookAt;
+    }
+
+    public void setUpVector(Vec3 _upVector) {
+        this.upVector = _upVector;
+    }
+
+    public void setViewAngle(float _viewAngle) {
+        this.viewAngle = _viewAngle;
+    }
+
+    public void setFocalLength(float _focalLength) {
+        this.focalLength = _focalLength;
+    }
+}
@@ -0,0 +1,223 @@
+package raytracer;
+
+import scene.Scene;
+import ui.FrameBuffer;
+import utils.RgbColor;
+
+/**
+ * Class RenderSettings
+ * The settings of a rendering, which are either set in code or read from a scene file.
+ * Everything which is not set keeps the plain behaviour of the raytracer: one thread, no tiles, no progressive
+ * or adaptive rendering and the samples given by the lights.
+ */
+public class RenderSettings {
+
+    private int width = 800;
+    private int height = 600;
+    private int recursions = 2;
+    private int antiAliasing = 1;
+    private RgbColor backgroundColor = RgbColor.BLACK;
+    private RgbColor ambientLight = new RgbColor(0.125f, 0.125f, 0.125f);
+    private boolean showLabel = true;
+
+    private int lightSamples;
+    private int lightsPerPoint;
+    private int tileSize;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int progressiveBlockSize;
+    private float adaptiveThreshold;
+    private boolean wavefront;
+    private boolean export = true;
+
+    public RenderSettings() {
+    }
+
+    /**
+     * Creates a copy of other settings, which can be changed without changing them.
+     * @param other The settings to copy
+     */
+    public RenderSettings(RenderSettings other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.recursions = other.recursions;
+        this.antiAliasing = other.antiAliasing;
+        this.backgroundColor = other.backgroundColor;
+        this.ambientLight = other.ambientLight;
+        this.showLabel = other.showLabel;
+        this.lightSamples = other.lightSamples;
+        this.lightsPerPoint = other.lightsPerPoint;
+        this.tileSize = other.tileSize;
+        this.threads = other.threads;
+        this.progressiveBlockSize = other.progressiveBlockSize;
+        this.adaptiveThreshold = other.adaptiveThreshold;
+        this.wavefront = other.wavefront;
+        this.export = other.export;
+    }
+
+    /**
+     * Creates a raytracer for a scene with these settings.
+     * @param scene The scene to render
+     * @param frameBuffer The frame buffer receiving the image, of the size of these settings
+     * @return The raytracer
+     */
+    public Raytracer createRaytracer(Scene scene, FrameBuffer frameBuffer) {
+        Raytracer raytracer = new Raytracer(scene, frameBuffer, recursions, backgroundColor, ambientLight,
+                antiAliasing, showLabel, width, height);
+        raytracer.setLightSamples(lightSamples);
+        raytracer.setManyLightSampling(lightsPerPoint);
+        if (tileSize > 0) {
+            raytracer.setTiledRendering(tileSize, threads);
+        }
+        if (adaptiveThreshold > 0) {
+            raytracer.setAdaptiveAntiAliasing(adaptiveThreshold);
+        }
+        if (progressiveBlockSize > 0) {
+            raytracer.setProgressiveRendering(progressiveBlockSize);
+        }
+        raytracer.setWavefrontRendering(wavefront);
+        raytracer.setExportEnabled(export);
+        return raytracer;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRecursions() {
+        return recursions;
+    }
+
+    public int getAntiAliasing() {
+        return antiAliasing;
+    }
+
+    public RgbColor getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    /**
+     * Returns the ambient light, which is also the default ambient light of the materials of a scene file.
+     * @return The ambient light
+     */
+    public RgbColor getAmbientLight() {
+        return ambientLight;
+    }
+
+    public boolean isShowLabel() {
+        return showLabel;
+    }
+
+    public int getLightSamples() {
+        return lightSamples;
+    }
+
+    public int getLightsPerPoint() {
+        return lightsPerPoint;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getProgressiveBlockSize() {
+        return progressiveBlockSize;
+    }
+
+    public float getAdaptiveThreshold() {
+        return adaptiveThreshold;
+    }
+
+    public boolean isWavefront() {
+        return wavefront;
+    }
+
+    public boolean isExport() {
+        return export;
+    }
+
+    public void setSize(int _width, int _height) {
+        this.width = _width;
+        this.height = _height;
+    }
+
+    public void setRecursions(int _recursions) {
+        this.recursions = _recursions;
+    }
+
+    /**
+     * @param _antiAliasing The number of samples per pixel in each direction
+     */
+    public void setAntiAliasing(int _antiAliasing) {
+        this.antiAliasing = _antiAliasing;
+    }
+
+    public void setBackgroundColor(RgbColor _backgroundColor) {
+        this.backgroundColor = _backgroundColor;
+    }
+
+    public void setAmbientLight(RgbColor _ambientLight) {
+        this.ambientLight = _ambientLight;
+    }
+
+    public void setShowLabel(boolean _showLabel) {
+        this.showLabel = _showLabel;
+    }
+
+    /**
+     * @param _lightSamples The samples per area light and shading point, 0 to use the samples of the lights
+     */
+    public void setLightSamples(int _lightSamples) {
+        this.lightSamples = _lightSamples;
+    }
+
+    /**
+     * @param _lightsPerPoint The lights picked per shading point from a light tree, 0 to sample every light
+     */
+    public void setLightsPerPoint(int _lightsPerPoint) {
+        this.lightsPerPoint = _lightsPerPoint;
+    }
+
+    /**
+     * @param _tileSize The width and height of a tile, 0 to render the image as a single tile on the calling thread
+     */
+    public void setTileSize(int _tileSize) {
+        this.tileSize = _tileSize;
+    }
+
+    /**
+     * @param _threads The number of render threads, which render the tiles
+     */
+    public void setThreads(int _threads) {
+        this.threads = _threads;
+    }
+
+    /**
+     * @param _progressiveBlockSize The block size of the coarsest progressive pass, 0 to render in a single pass
+     */
+    public void setProgressiveBlockSize(int _progressiveBlockSize) {
+        this.progressiveBlockSize = _progressiveBlockSize;
+    }
+
+    /**
+     * @param _adaptiveThreshold The threshold of adaptive anti aliasing, 0 to send all samples of every pixel
+     */
+    public void setAdaptiveThreshold(float _adaptiveThreshold) {
+        this.adaptiveThreshold = _adaptiveThreshold;
+    }
+
+    public void setWavefront(boolean _wavefront) {
+        this.wavefront = _wavefront;
+    }
+
+    public void setExport(boolean _export) {
+        this.export = _export;
+    }
+}
@@ -0,0 +1,285 @@
+package raytracer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class RenderStats
+ * Counters of a rendering: the rays by kind, the intersection tests, the hits, the shading calls and the time
+ * spent on every tile. The render threads count into their trace context and add the counts of a tile once it is
+ * finished, so the counters are striped LongAdders which the threads rarely touch at the same time.
+ * After the rendering the statistics are printed as a summary and can be exported as JSON, which makes rays per
+ * second and tests per ray comparable across revisions of a scene.
+ */
+public class RenderStats {
+
+    private final LongAdder primaryRays = new LongAdder();
+    private final LongAdder reflectionRays = new LongAdder();
+    private final LongAdder refractionRays = new LongAdder();
+    private final LongAdder shadowRays = new LongAdder();
+    private final LongAdder boxTests = new LongAdder();
+    private final LongAdder primitiveTests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder shadingCalls = new LongAdder();
+
+    // Time spent on every tile over all passes in nanoseconds
+    private final Map<Tile, LongAdder> tileTimes = new ConcurrentHashMap<>();
+
+    private volatile long renderTime;
+    private volatile long exportTime;
+    private volatile int width;
+    private volatile int height;
+    private volatile int threads;
+
+    /**
+     * Clears all counters for the next rendering.
+     * @param _width The width of the image in pixels
+     * @param _height The height of the image in pixels
+     * @param _threads The number of render threads
+     */
+    void reset(int _width, int _height, int _threads) {
+        primaryRays.reset();
+        reflectionRays.reset();
+        refractionRays.reset();
+        shadowRays.reset();
+        boxTests.reset();
+        primitiveTests.reset();
+        hits.reset();
+        shadingCalls.reset();
+        tileTimes.clear();
+        this.renderTime = 0;
+        this.exportTime = 0;
+        this.width = _width;
+        this.height = _height;
+        this.threads = _threads;
+    }
+
+    /**
+     * Adds the counts of a finished tile and its render time.
+     * The counts of the context and of its rays are cleared, so the context can be used for the next tile.
+     * @param tile The finished tile
+     * @param context The trace context the tile was rendered with
+     * @param nanos The time spent on the tile in nanoseconds
+     */
+    void addTile(Tile tile, TraceContext context, long nanos) {
+        primaryRays.add(context.primaryRays);
+        reflectionRays.add(context.reflectionRays);
+        refractionRays.add(context.refractionRays);
+        shadowRays.add(context.shadowRays);
+        hits.add(context.hits);
+        shadingCalls.add(context.shadingCalls);
+        boxTests.add(context.ray.boxTests + context.shadowRay.boxTests);
+        primitiveTests.add(context.ray.primitiveTests + context.shadowRay.primitiveTests);
+        context.primaryRays = 0;
+        context.reflectionRays = 0;
+        context.refractionRays = 0;
+        context.shadowRays = 0;
+        context.hits = 0;
+        context.shadingCalls = 0;
+        context.ray.boxTests = 0;
+        context.ray.primitiveTests = 0;
+        context.shadowRay.boxTests = 0;
+        context.shadowRay.primitiveTests = 0;
+
+        tileTimes.computeIfAbsent(tile, t -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * Sets the time of the whole rendering.
+     * @param nanos The render time in nanoseconds
+     */
+    void setRenderTime(long nanos) {
+        this.renderTime = nanos;
+    }
+
+    public long getPrimaryRays() {
+        return primaryRays.sum();
+    }
+
+    public long getReflectionRays() {
+        return reflectionRays.sum();
+    }
+
+    public long getRefractionRays() {
+        return refractionRays.sum();
+    }
+
+    public long getShadowRays() {
+        return shadowRays.sum();
+    }
+
+    /**
+     * Returns the number of all rays traced through the scene.
+     * @return The primary, reflection, refraction and shadow rays
+     */
+    public long getTotalRays() {
+        return getPrimaryRays() + getReflectionRays() + getRefractionRays() + getShadowRays();
+    }
+
+    public long getBoxTests() {
+        return boxTests.sum();
+    }
+
+    /**
+     * Returns the number of intersection tests with primitives.
+     * @return The tests of spheres, squares, planes and other shapes, a triangle mesh counts as one test
+     */
+    public long getPrimitiveTests() {
+        return primitiveTests.sum();
+    }
+
+    /**
+     * Returns the number of rays from the camera, reflections and refractions which hit a primitive.
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of shading points, for which the lights are sampled.
+     * @return The number of shading calls
+     */
+    public long getShadingCalls() {
+        return shadingCalls.sum();
+    }
+
+    /**
+     * Returns the time of the last rendering.
+     * @return The render time in nanoseconds
+     */
+    public long getRenderTime() {
+        return renderTime;
+    }
+
+    /**
+     * Sets the time the renderer spent exporting the image after the rendering.
+     * @param nanos The export time in nanoseconds
+     */
+    void setExportTime(long nanos) {
+        this.exportTime = nanos;
+    }
+
+    /**
+     * Returns the time the renderer spent exporting the image, which is not part of the render time. With an
+     * export queue this is only the time to hand the image over, the encoding runs in the background.
+     * @return The export time in nanoseconds
+     */
+    public long getExportTime() {
+        return exportTime;
+    }
+
+    public double getRaysPerSecond() {
+        return renderTime > 0 ? getTotalRays() / (renderTime / 1e9) : 0;
+    }
+
+    public double getBoxTestsPerRay() {
+        long rays = getTotalRays();
+        return rays > 0 ? (double) getBoxTests() / rays : 0;
+    }
+
+    public double getPrimitiveTestsPerRay() {
+        long rays = getTotalRays();
+        return rays > 0 ? (double) getPrimitiveTests() / rays : 0;
+    }
+
+    /**
+     * Returns the tiles with their render times, sorted from top to bottom and left to right.
+     * @return The tiles
+     */
+    private List<Map.Entry<Tile, LongAdder>> getSortedTiles() {
+        List<Map.Entry<Tile, LongAdder>> tiles = new ArrayList<>(tileTimes.entrySet());
+        tiles.sort(Comparator.comparingInt((Map.Entry<Tile, LongAdder> entry) -> entry.getKey().getStartY())
+                .thenComparingInt(entry -> entry.getKey().getStartX()));
+        return tiles;
+    }
+
+    /**
+     * Returns a short summary of the statistics for the log.
+     * @return The summary in a few lines
+     */
+    public String getSummary() {
+        long slowestTile = 0;
+        long tileSum = 0;
+        for (LongAdder time : tileTimes.values()) {
+            long nanos = time.sum();
+            slowestTile = Math.max(slowestTile, nanos);
+            tileSum += nanos;
+        }
+        double averageTile = tileTimes.isEmpty() ? 0 : tileSum / (double) tileTimes.size();
+        return String.format(Locale.ROOT,
+                "%dx%d in %.1f ms on %d threads, %.0f rays per second%n"
+                        + "  rays: %d primary, %d reflection, %d refraction, %d shadow, %d total%n"
+                        + "  tests: %d boxes (%.2f per ray), %d primitives (%.2f per ray), %d hits, %d shading calls%n"
+                        + "  tiles: %d, average %.2f ms, slowest %.2f ms",
+                width, height, renderTime / 1e6, threads, getRaysPerSecond(),
+                getPrimaryRays(), getReflectionRays(), getRefractionRays(), getShadowRays(), getTotalRays(),
+                getBoxTests(), getBoxTestsPerRay(), getPrimitiveTests(), getPrimitiveTestsPerRay(), getHits(), getShadingCalls(),
+                tileTimes.size(), averageTile / 1e6, slowestTile / 1e6);
+    }
+
+    /**
+     * Returns the statistics as a JSON object, including the time of every tile.
+     * @return The JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"width\": ").append(width).append(",\n");
+        json.append("  \"height\": ").append(height).append(",\n");
+        json.append("  \"threads\": ").append(threads).append(",\n");
+        json.append("  \"renderTimeMs\": ").append(format(renderTime / 1e6)).append(",\n");
+        json.append("  \"exportTimeMs\": ").append(format(exportTime / 1e6)).append(",\n");
+        json.append("  \"rays\": {\"primary\": ").append(getPrimaryRays())
+                .append(", \"reflection\": ").append(getReflectionRays())
+                .append(", \"refraction\": ").append(getRefractionRays())
+                .append(", \"shadow\": ").append(getShadowRays())
+                .append(", \"total\": ").append(getTotalRays()).append("},\n");
+        json.append("  \"raysPerSecond\": ").append(format(getRaysPerSecond())).append(",\n");
+        json.append("  \"boxTests\": ").append(getBoxTests()).append(",\n");
+        json.append("  \"primitiveTests\": ").append(getPrimitiveTests()).append(",\n");
+        json.append("  \"boxTestsPerRay\": ").append(format(getBoxTestsPerRay())).append(",\n");
+        json.append("  \"primitiveTestsPerRay\": ").append(format(getPrimitiveTestsPerRay())).append(",\n");
+        json.append("  \"hits\": ").append(getHits()).append(",\n");
+        json.append("  \"shadingCalls\": ").append(getShadingCalls()).append(",\n");
+        json.append("  \"tiles\": [");
+        List<Map.Entry<Tile, LongAdder>> tiles = getSortedTiles();
+        for (int i = 0; i < tiles.size(); i++) {
+            Tile tile = tiles.get(i).getKey();
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"x\": ").append(tile.getStartX())
+                    .append(", \"y\": ").append(tile.getStartY())
+                    .append(", \"width\": ").append(tile.getEndX() - tile.getStartX())
+                    .append(", \"height\": ").append(tile.getEndY() - tile.getStartY())
+                    .append(", \"timeMs\": ").append(format(tiles.get(i).getValue().sum() / 1e6)).append("}");
+        }
+        json.append(tiles.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Writes the statistics as JSON into a file.
+     * @param fileName The name of the file
+     */
+    public void exportJson(String fileName) {
+        try {
+            Files.write(Paths.get(fileName), toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println(e.getMessage()); // print any export errors to stderr.
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package raytracer;
+
+import ui.ImageFrameBuffer;
+import utils.RgbColor;
+import utils.io.DataExporter;
+
+/**
+ * Class SampleBuffer
+ * Collects the samples of every pixel for the adaptive anti aliasing. For each pixel it keeps the sum and the
+ * sum of squares of the sample colors and the number of samples, so the mean and the variance are known
+ * without storing the single samples.
+ * Every pixel is only written by the thread rendering its tile.
+ */
+class SampleBuffer {
+
+    private final int width;
+    private final int height;
+
+    // Three floats per pixel, row by row
+    private final float[] sums;
+    private final float[] squares;
+    private final int[] sampleCounts;
+    private final boolean[] refine;
+
+    /**
+     * Creates an empty buffer for an image of the given size.
+     * @param _width The width of the image
+     * @param _height The height of the image
+     */
+    SampleBuffer(int _width, int _height) {
+        this.width = _width;
+        this.height = _height;
+        this.sums = new float[_width * _height * 3];
+        this.squares = new float[_width * _height * 3];
+        this.sampleCounts = new int[_width * _height];
+        this.refine = new boolean[_width * _height];
+    }
+
+    /**
+     * Adds a sample to a pixel.
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @param color The color of the sample
+     */
+    void add(int x, int y, RgbColor color) {
+        int pixel = y * width + x;
+        int index = pixel * 3;
+        sums[index] += color.red();
+        sums[index + 1] += color.green();
+        sums[index + 2] += color.blue();
+        squares[index] += color.red() * color.red();
+        squares[index + 1] += color.green() * color.green();
+        squares[index + 2] += color.blue() * color.blue();
+        sampleCounts[pixel]++;
+    }
+
+    /**
+     * Calculates the mean color of the samples of a pixel.
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @param outColor The color which receives the mean
+     * @return outColor
+     */
+    RgbColor getMean(int x, int y, RgbColor outColor) {
+        int pixel = y * width + x;
+        int count = Math.max(1, sampleCounts[pixel]);
+        return outColor.set(sums[pixel * 3] / count, sums[pixel * 3 + 1] / count, sums[pixel * 3 + 2] / count);
+    }
+
+    /**
+     * Decides if a pixel needs more samples. This is the case if the standard deviation of its samples or the
+     * difference between its mean and the mean of a direct neighbour exceeds the threshold in any channel.
+     * The neighbours are read, so this must only be called while no samples are added.
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @param threshold The largest accepted deviation of a channel
+     */
+    void decideRefinement(int x, int y, float threshold) {
+        int pixel = y * width + x;
+        boolean result = false;
+        for (int channel = 0; channel < 3 && !result; channel++) {
+            float mean = getChannelMean(pixel, channel);
+            float variance = squares[pixel * 3 + channel] / Math.max(1, sampleCounts[pixel]) - mean * mean;
+            result = variance > threshold * threshold
+                    || x > 0 && Math.abs(mean - getChannelMean(pixel - 1, channel)) > threshold
+                    || x < width - 1 && Math.abs(mean - getChannelMean(pixel + 1, channel)) > threshold
+                    || y > 0 && Math.abs(mean - getChannelMean(pixel - width, channel)) > threshold
+                    || y < height - 1 && Math.abs(mean - getChannelMean(pixel + width, channel)) > threshold;
+        }
+        refine[pixel] = result;
+    }
+
+    private float getChannelMean(int pixel, int channel) {
+        return sums[pixel * 3 + channel] / Math.max(1, sampleCounts[pixel]);
+    }
+
+    boolean needsRefinement(int x, int y) {
+        return refine[y * width + x];
+    }
+
+    /**
+     * Returns the average number of samples per pixel.
+     * @return The average number of samples
+     */
+    double getAverageSampleCount() {
+        long total = 0;
+        for (int count : sampleCounts) {
+            total += count;
+        }
+        return total / (double) sampleCounts.length;
+    }
+
+    /**
+     * Writes an image showing the number of samples of every pixel, from blue for few to red for many samples.
+     * @param maxSamples The largest possible number of samples of a pixel
+     * @param fileName The name of the PNG file
+     */
+    void exportHeatmap(int maxSamples, String fileName) {
+        ImageFrameBuffer heatmap = new ImageFrameBuffer(width, height);
+        RgbColor color = new RgbColor(0f, 0f, 0f);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float heat = sampleCounts[y * width + x] / (float) maxSamples;
+                heatmap.setPixel(x, y, color.set(heat, 0f, 1f - heat));
+            }
+        }
+        DataExporter.exportImageToPng(heatmap.getBufferedImage(), fileName);
+    }
+}
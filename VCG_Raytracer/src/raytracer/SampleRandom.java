@@ -0,0 +1,50 @@
+package raytracer;
+
+/**
+ * Class SampleRandom
+ * A small random number generator for the jitter of the light samples (SplitMix64).
+ * It is seeded with the position of every image sample, so a sample gets the same random numbers no matter
+ * which thread traces it or in which order, and tiled, progressive and adaptive rendering give the same image.
+ */
+class SampleRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /**
+     * Starts the random numbers of an image sample.
+     * @param x The x coordinate of the sample in pixels
+     * @param y The y coordinate of the sample in pixels
+     */
+    void seed(float x, float y) {
+        state = mix(((long) Float.floatToIntBits(x) << 32) ^ (Float.floatToIntBits(y) & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Returns the next random number.
+     * @return A number from 0 (inclusive) to 1 (exclusive)
+     */
+    float nextFloat() {
+        state += GOLDEN_GAMMA;
+        return (mix(state) >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * Returns the state, so a path can be put aside and continued later with the same random numbers.
+     * @return The state of the generator
+     */
+    long getState() {
+        return state;
+    }
+
+    void setState(long _state) {
+        this.state = _state;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,93 @@
+package raytracer;
+
+import utils.algebra.Vec3;
+
+/**
+ * Class ScalarIntersectionKernel
+ * The intersection kernels without the Vector API, testing one sphere or ray after another.
+ */
+class ScalarIntersectionKernel extends IntersectionKernel {
+
+    @Override
+    public int closestSphere(SpherePack spheres, int first, int count, int ignore, Vec3 start, Vec3 direction, float maxDistance) {
+        int closest = -1;
+        float closestDistance = maxDistance;
+        for (int i = first; i < first + count; i++) {
+            if (i == ignore) {
+                continue;
+            }
+            float distance = Math.abs(sphereParameter(spheres, i, start, direction));
+            if (distance > 0 && distance < closestDistance) {
+                closest = i;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Calculates the ray parameter of the intersection with a packed sphere, like Sphere.intersect() does in
+     * object space. The ray is moved so the sphere lies in the origin, the direction stays the same.
+     * @return The ray parameter, its absolute value is the distance. NaN if there is no usable intersection
+     */
+    static float sphereParameter(SpherePack spheres, int i, Vec3 start, Vec3 direction) {
+        float ox = start.x - spheres.centerX[i];
+        float oy = start.y - spheres.centerY[i];
+        float oz = start.z - spheres.centerZ[i];
+        float dx = direction.x;
+        float dy = direction.y;
+        float dz = direction.z;
+
+        float a = dx * dx + dy * dy + dz * dz;
+        float b = 2 * (ox * dx + oy * dy + oz * dz);
+        float c = ox * ox + oy * oy + oz * oz - spheres.radii[i] * spheres.radii[i];
+        float d = b * b - 4 * a * c;
+        if (!(d > 0)) {
+            return Float.NaN;
+        }
+        float root = (float) Math.sqrt(d);
+        float tZero = (-b - root) / (2 * a);
+        float tOne = (-b + root) / (2 * a);
+        if (!(tZero >= 0 || tOne >= 0)) {
+            return Float.NaN;
+        }
+        return tZero < tOne ? tZero : tOne;
+    }
+
+    @Override
+    public void intersectPlane(float normalX, float normalY, float normalZ, float originX, float originY, float originZ,
+                               RayPack rays, int count, int hit) {
+        for (int i = 0; i < count; i++) {
+            float t = planeParameter(normalX, normalY, normalZ, originX, originY, originZ,
+                    rays.startX[i], rays.startY[i], rays.startZ[i], rays.directionX[i], rays.directionY[i], rays.directionZ[i]);
+            if (t < rays.distances[i]) {
+                rays.distances[i] = t;
+                rays.hits[i] = hit;
+            }
+        }
+    }
+
+    /**
+     * Calculates the ray parameter of the intersection with the front of a plane, like Plane.intersect().
+     * @return The ray parameter, which is the distance for a normalized direction. NaN if the front is not hit
+     */
+    static float planeParameter(float normalX, float normalY, float normalZ, float originX, float originY, float originZ,
+                                float startX, float startY, float startZ, float directionX, float directionY, float directionZ) {
+        float scalar = normalX * directionX + normalY * directionY + normalZ * directionZ;
+        if (!(scalar < 0)) {
+            return Float.NaN;
+        }
+        float t = (normalX * (startX - originX) + normalY * (startY - originY) + normalZ * (startZ - originZ)) / scalar * -1;
+        return t > 0 ? t : Float.NaN;
+    }
+
+    @Override
+    public int getLaneCount() {
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
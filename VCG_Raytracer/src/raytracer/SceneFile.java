@@ -0,0 +1,462 @@
+package raytracer;
+
+import scene.AreaLight;
+import scene.Lambert;
+import scene.Light;
+import scene.Material;
+import scene.Phong;
+import scene.PointLight;
+import scene.Scene;
+import scene.Unlit;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class SceneFile
+ * A binary file of a compiled scene: the render settings, the camera, the materials, the lights, the arrays of the
+ * compiled primitives and the nodes of their prebuilt hierarchy. Loading it neither parses shapes nor builds a
+ * hierarchy, the file is mapped into memory and every array is copied out of the mapping in one piece. The arrays
+ * are copied onto the heap rather than traced inside the mapping, so loading needs about as much free heap as the
+ * file is large, in addition to the file being read once.
+ *
+ * All values are little endian ints and floats, arrays are preceded by their length:
+ *   header     "VCGS", version
+ *   settings   width, height, recursions, anti aliasing, background, ambient light, label, light samples,
+ *              lights per point, tile size, progressive block size, adaptive threshold, wavefront
+ *   camera     position, center of interest, up vector, view angle, focal length
+ *   materials  type, color, then ambient light for lambert and phong, then specular color, shininess,
+ *              reflectivity and refraction index for phong
+ *   lights     type, color, location, then size and samples for area lights
+ *   primitives the arrays of the compiled scene, see CompiledScene.write()
+ *   meshes     part of the primitives: every triangle mesh with its vertices, triangles and the nodes of its
+ *              own hierarchy, see CompiledScene.writeMesh()
+ *   hierarchy  the node and leaf arrays of the hierarchy, see BVH.write()
+ *
+ * Spheres, squares, planes and triangle meshes can be written, scenes with other shapes like transformed spheres
+ * can not. The render threads and the export are chosen by the machine which renders the file.
+ */
+public class SceneFile {
+
+    public static final String EXTENSION = ".vcgs";
+
+    private static final int MAGIC = 'V' | 'C' << 8 | 'G' << 16 | 'S' << 24;
+    private static final int VERSION = 3;
+
+    private static final int LAMBERT = 0;
+    private static final int PHONG = 1;
+    private static final int UNLIT = 2;
+
+    private static final int POINT_LIGHT = 0;
+    private static final int AREA_LIGHT = 1;
+
+    private SceneFile() {
+    }
+
+    /**
+     * Compiles a scene and writes it with its render settings into a file.
+     * The prebuilt hierarchy of the scene is written if it has one, otherwise the shape list is compiled.
+     * @param scene The scene, which may only contain spheres, squares, planes and triangle meshes
+     * @param settings The render settings stored with the scene
+     * @param path The path of the file
+     * @return true if the file has been written
+     */
+    public static boolean write(Scene scene, RenderSettings settings, String path) {
+        long tStart = System.nanoTime();
+        BVH bvh = scene.buildAccelerationStructure();
+        CompiledScene compiledScene = bvh.getScene();
+        if (!compiledScene.isWritable()) {
+            System.err.println("Could not write " + path + ": only spheres, squares, planes and triangle meshes can be written, the scene contains other shapes like transformed spheres");
+            return false;
+        }
+        if (scene.getCamera() == null) {
+            System.err.println("Could not write " + path + ": the scene has no camera");
+            return false;
+        }
+        try (Output out = new Output(FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeSettings(out, settings);
+            writeCamera(out, scene.getCamera());
+
+            Material[] materials = compiledScene.getMaterials();
+            out.writeInt(materials.length);
+            for (Material material : materials) {
+                writeMaterial(out, material);
+            }
+            out.writeInt(scene.getLightList().size());
+            for (Light light : scene.getLightList()) {
+                writeLight(out, light);
+            }
+
+            compiledScene.write(out);
+            bvh.write(out);
+            out.flush();
+            Log.print(SceneFile.class, "Wrote " + path + " in " + String.format("%.3f", (System.nanoTime() - tStart) / 1e9) + " s: "
+                    + compiledScene.getPrimitiveCount() + " primitives, " + bvh.getNodeCount() + " nodes, "
+                    + (out.getSize() / 1024) + " KB");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not write " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads a compiled scene file. The scene has no shape list, its prebuilt hierarchy holds the primitives.
+     * @param path The path of the file
+     * @param settings The settings which receive the render settings of the file, null to ignore them
+     * @return The scene, null if the file could not be read
+     */
+    public static Scene load(String path, RenderSettings settings) {
+        long tStart = System.nanoTime();
+        try (Input in = new Input(FileChannel.open(Paths.get(path), StandardOpenOption.READ))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a compiled scene file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("version " + version + " is not supported, only version " + VERSION);
+            }
+            readSettings(in, settings != null ? settings : new RenderSettings());
+
+            Scene scene = new Scene();
+            scene.createPerspCamera(in.readVector(), in.readVector(), in.readVector(), in.readFloat(), in.readFloat());
+
+            Material[] materials = new Material[in.readCount(4)];
+            for (int i = 0; i < materials.length; i++) {
+                materials[i] = readMaterial(in);
+            }
+            int lightCount = in.readCount(4);
+            for (int i = 0; i < lightCount; i++) {
+                scene.getLightList().add(readLight(in));
+            }
+
+            CompiledScene compiledScene = new CompiledScene(in, materials);
+            BVH bvh = new BVH(compiledScene, in);
+            scene.setAccelerationStructure(bvh);
+            Log.print(SceneFile.class, "Loaded " + path + " in " + String.format("%.3f", (System.nanoTime() - tStart) / 1e9) + " s: "
+                    + compiledScene.getPrimitiveCount() + " primitives, " + bvh.getNodeCount() + " nodes, "
+                    + lightCount + " lights, " + materials.length + " materials");
+            return scene;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not load " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeSettings(Output out, RenderSettings settings) throws IOException {
+        out.writeInt(settings.getWidth());
+        out.writeInt(settings.getHeight());
+        out.writeInt(settings.getRecursions());
+        out.writeInt(settings.getAntiAliasing());
+        out.writeColor(settings.getBackgroundColor());
+        out.writeColor(settings.getAmbientLight());
+        out.writeBoolean(settings.isShowLabel());
+        out.writeInt(settings.getLightSamples());
+        out.writeInt(settings.getLightsPerPoint());
+        out.writeInt(settings.getTileSize());
+        out.writeInt(settings.getProgressiveBlockSize());
+        out.writeFloat(settings.getAdaptiveThreshold());
+        out.writeBoolean(settings.isWavefront());
+    }
+
+    private static void readSettings(Input in, RenderSettings settings) throws IOException {
+        settings.setSize(in.readInt(), in.readInt());
+        settings.setRecursions(in.readInt());
+        settings.setAntiAliasing(in.readInt());
+        settings.setBackgroundColor(in.readColor());
+        settings.setAmbientLight(in.readColor());
+        settings.setShowLabel(in.readBoolean());
+        settings.setLightSamples(in.readInt());
+        settings.setLightsPerPoint(in.readInt());
+        settings.setTileSize(in.readInt());
+        settings.setProgressiveBlockSize(in.readInt());
+        settings.setAdaptiveThreshold(in.readFloat());
+        settings.setWavefront(in.readBoolean());
+    }
+
+    private static void writeCamera(Output out, Camera camera) throws IOException {
+        out.writeVector(camera.getCameraPosition());
+        out.writeVector(camera.getCenterOfInterest());
+        out.writeVector(camera.getUserUpVector());
+        out.writeFloat(camera.getViewAngle());
+        out.writeFloat(camera.getFocalLength());
+    }
+
+    private static void writeMaterial(Output out, Material material) throws IOException {
+        // Subclasses may shade differently, so only the exact types are written
+        if (material.getClass() == Lambert.class) {
+            out.writeInt(LAMBERT);
+            out.writeColor(material.getDiffusionColor());
+            out.writeColor(material.getAmbientLight());
+        } else if (material.getClass() == Phong.class) {
+            Phong phong = (Phong) material;
+            out.writeInt(PHONG);
+            out.writeColor(phong.getDiffusionColor());
+            out.writeColor(phong.getAmbientLight());
+            out.writeColor(phong.getSpecularColor());
+            out.writeFloat(phong.getSpecularReflectivity());
+            out.writeFloat(phong.getReflectivity());
+            out.writeFloat(phong.getRefractionIndex());
+        } else if (material.getClass() == Unlit.class) {
+            out.writeInt(UNLIT);
+            out.writeColor(material.getDiffusionColor());
+        } else {
+            throw new IOException("materials of type " + material.getClass().getSimpleName() + " can not be written");
+        }
+    }
+
+    private static Material readMaterial(Input in) throws IOException {
+        int type = in.readInt();
+        switch (type) {
+            case LAMBERT:
+                return new Lambert(in.readColor(), in.readColor());
+            case PHONG:
+                RgbColor color = in.readColor();
+                RgbColor ambientLight = in.readColor();
+                RgbColor specularColor = in.readColor();
+                return new Phong(color, specularColor, in.readFloat(), ambientLight, in.readFloat(), in.readFloat());
+            case UNLIT:
+                return new Unlit(in.readColor());
+            default:
+                throw new IOException("unknown material type " + type);
+        }
+    }
+
+    private static void writeLight(Output out, Light light) throws IOException {
+        if (light.getClass() == PointLight.class) {
+            out.writeInt(POINT_LIGHT);
+            out.writeColor(light.getColor());
+            out.writeVector(light.getLocation());
+        } else if (light.getClass() == AreaLight.class) {
+            AreaLight areaLight = (AreaLight) light;
+            out.writeInt(AREA_LIGHT);
+            out.writeColor(areaLight.getColor());
+            out.writeVector(areaLight.getLocation());
+            out.writeFloat(areaLight.getSize());
+            out.writeInt(areaLight.getSamples());
+        } else {
+            throw new IOException("lights of type " + light.getClass().getSimpleName() + " can not be written");
+        }
+    }
+
+    private static Light readLight(Input in) throws IOException {
+        int type = in.readInt();
+        switch (type) {
+            case POINT_LIGHT:
+                return new PointLight(in.readColor(), in.readVector());
+            case AREA_LIGHT:
+                return new AreaLight(in.readColor(), in.readVector(), in.readFloat(), in.readInt());
+            default:
+                throw new IOException("unknown light type " + type);
+        }
+    }
+
+    /**
+     * Writes the values of a scene file through a direct buffer. Arrays are put into the buffer in bulk.
+     */
+    static final class Output implements Closeable {
+
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long size;
+
+        private Output(FileChannel _channel) {
+            this.channel = _channel;
+        }
+
+        void writeInt(int value) throws IOException {
+            require(4);
+            buffer.putInt(value);
+        }
+
+        void writeFloat(float value) throws IOException {
+            require(4);
+            buffer.putFloat(value);
+        }
+
+        void writeBoolean(boolean value) throws IOException {
+            writeInt(value ? 1 : 0);
+        }
+
+        void writeVector(Vec3 vector) throws IOException {
+            writeFloat(vector.x);
+            writeFloat(vector.y);
+            writeFloat(vector.z);
+        }
+
+        void writeColor(RgbColor color) throws IOException {
+            writeFloat(color.red());
+            writeFloat(color.green());
+            writeFloat(color.blue());
+        }
+
+        /**
+         * Writes the first values of an array, without their length.
+         */
+        void writeFloats(float[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                require(4);
+                int n = Math.min(count - offset, buffer.remaining() / 4);
+                buffer.asFloatBuffer().put(values, offset, n);
+                buffer.position(buffer.position() + n * 4);
+                offset += n;
+            }
+        }
+
+        void writeInts(int[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                require(4);
+                int n = Math.min(count - offset, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, offset, n);
+                buffer.position(buffer.position() + n * 4);
+                offset += n;
+            }
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            size += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Returns the number of bytes written so far.
+         * @return The bytes written to the file
+         */
+        long getSize() {
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the values of a scene file from windows of the file mapped into memory, mapped ranges are limited to
+     * 2 GB each. Arrays are copied out of the mapping in bulk.
+     */
+    static final class Input implements Closeable {
+
+        private static final int WINDOW_SIZE = 1 << 30;
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+
+        private Input(FileChannel _channel) throws IOException {
+            this.channel = _channel;
+            this.size = _channel.size();
+        }
+
+        int readInt() throws IOException {
+            return require(4).getInt();
+        }
+
+        float readFloat() throws IOException {
+            return require(4).getFloat();
+        }
+
+        boolean readBoolean() throws IOException {
+            return readInt() != 0;
+        }
+
+        Vec3 readVector() throws IOException {
+            return new Vec3(readFloat(), readFloat(), readFloat());
+        }
+
+        RgbColor readColor() throws IOException {
+            return new RgbColor(readFloat(), readFloat(), readFloat());
+        }
+
+        /**
+         * Reads the length of an array and checks that the file is long enough to hold it.
+         * @param bytesPerElement The size of an element of the array in bytes
+         * @return The length
+         */
+        int readCount(int bytesPerElement) throws IOException {
+            int count = readInt();
+            if (count < 0 || (long) count * bytesPerElement > size - position) {
+                throw new IOException("invalid length " + count + " at byte " + (position - 4));
+            }
+            return count;
+        }
+
+        float[] readFloats(int count) throws IOException {
+            float[] values = new float[count];
+            readFloats(values, count);
+            return values;
+        }
+
+        /**
+         * Reads values into the start of an array, which may be longer than the values.
+         */
+        void readFloats(float[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                int n = Math.min(count - offset, WINDOW_SIZE / 4);
+                require(n * 4).asFloatBuffer().get(values, offset, n);
+                offset += n;
+            }
+        }
+
+        int[] readInts(int count) throws IOException {
+            int[] values = new int[count];
+            for (int offset = 0; offset < count; ) {
+                int n = Math.min(count - offset, WINDOW_SIZE / 4);
+                require(n * 4).asIntBuffer().get(values, offset, n);
+                offset += n;
+            }
+            return values;
+        }
+
+        /**
+         * Moves over the next bytes and returns the mapping positioned at them.
+         * A new window is mapped from the current position if the bytes do not lie inside the current window.
+         */
+        private ByteBuffer require(int bytes) throws IOException {
+            if (position + bytes > size) {
+                throw new EOFException("unexpected end of file at byte " + position);
+            }
+            if (window == null || position + bytes > windowStart + window.capacity()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+                window.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            window.position((int) (position - windowStart));
+            position += bytes;
+            return window;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
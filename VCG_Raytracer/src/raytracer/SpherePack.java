@@ -0,0 +1,77 @@
+package raytracer;
+
+import utils.algebra.Vec3;
+
+/**
+ * Class SpherePack
+ * Spheres stored value by value, one array per value, so an intersection kernel can load the same value of
+ * several spheres at once. Every sphere is kept as its center, its radius and the index of its material.
+ * The compiled scene keeps its spheres in a pack.
+ */
+public class SpherePack {
+
+    final float[] centerX;
+    final float[] centerY;
+    final float[] centerZ;
+    final float[] radii;
+    final int[] materials;
+
+    private final int size;
+
+    /**
+     * Creates a pack for the given number of spheres, which have to be set afterwards.
+     * @param _size The number of spheres
+     */
+    public SpherePack(int _size) {
+        this.size = _size;
+        // The arrays are longer than needed, so kernels can always load whole vectors
+        int length = _size + IntersectionKernel.MAX_LANES;
+        this.centerX = new float[length];
+        this.centerY = new float[length];
+        this.centerZ = new float[length];
+        this.radii = new float[length];
+        this.materials = new int[_size];
+    }
+
+    /**
+     * Stores a sphere in the pack.
+     * @param index The index of the sphere
+     * @param center The center of the sphere
+     * @param radius The radius of the sphere
+     * @param material The index of the material of the sphere
+     */
+    public void set(int index, Vec3 center, float radius, int material) {
+        centerX[index] = center.x;
+        centerY[index] = center.y;
+        centerZ[index] = center.z;
+        radii[index] = radius;
+        materials[index] = material;
+    }
+
+    /**
+     * Copies a sphere of another pack into this pack.
+     */
+    void set(int index, SpherePack source, int sourceIndex) {
+        centerX[index] = source.centerX[sourceIndex];
+        centerY[index] = source.centerY[sourceIndex];
+        centerZ[index] = source.centerZ[sourceIndex];
+        radii[index] = source.radii[sourceIndex];
+        materials[index] = source.materials[sourceIndex];
+    }
+
+    public int getMaterial(int index) {
+        return materials[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the memory used by the pack.
+     * @return The size of the arrays in bytes
+     */
+    public long getByteSize() {
+        return (long) centerX.length * 4 * 4 + (long) materials.length * 4;
+    }
+}
@@ -0,0 +1,50 @@
+package raytracer;
+
+/**
+ * Class Tile
+ * A rectangular region of the image, which is rendered as one unit of work.
+ */
+public class Tile {
+    private final int startX;
+    private final int startY;
+    private final int endX;
+    private final int endY;
+
+    /**
+     * Creates a tile covering the pixels from the start (inclusive) to the end (exclusive) coordinates.
+     * @param _startX The first x coordinate of the tile
+     * @param _startY The first y coordinate of the tile
+     * @param _endX The x coordinate after the last column of the tile
+     * @param _endY The y coordinate after the last row of the tile
+     */
+    public Tile(int _startX, int _startY, int _endX, int _endY) {
+        this.startX = _startX;
+        this.startY = _startY;
+        this.endX = _endX;
+        this.endY = _endY;
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    public int getEndX() {
+        return endX;
+    }
+
+    public int getEndY() {
+        return endY;
+    }
+
+    /**
+     * Returns the number of pixels in the tile.
+     * @return The number of pixels
+     */
+    public int getPixelCount() {
+        return (endX - startX) * (endY - startY);
+    }
+}
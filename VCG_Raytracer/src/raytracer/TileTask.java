@@ -0,0 +1,45 @@
+package raytracer;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Class TileTask
+ * Runs a render pass over a range of tiles. The range is split in halves until a single tile is left,
+ * so the ForkJoin pool can steal the unfinished halves of busy threads.
+ */
+class TileTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Consumer<Tile> pass;
+    private final List<Tile> tiles;
+    private final int from;
+    private final int to;
+
+    /**
+     * Creates a task for the tiles from index from (inclusive) to index to (exclusive).
+     * @param _pass The work done for every tile
+     * @param _tiles All tiles of the image
+     * @param _from The first tile index of the task
+     * @param _to The index after the last tile of the task
+     */
+    TileTask(Consumer<Tile> _pass, List<Tile> _tiles, int _from, int _to) {
+        this.pass = _pass;
+        this.tiles = _tiles;
+        this.from = _from;
+        this.to = _to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= 1) {
+            if (to > from) {
+                pass.accept(tiles.get(from));
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new TileTask(pass, tiles, from, middle), new TileTask(pass, tiles, middle, to));
+    }
+}
@@ -0,0 +1,56 @@
+package raytracer;
+
+import utils.RgbColor;
+import utils.algebra.Vec2;
+import utils.algebra.Vec3;
+
+/**
+ * Class TraceContext
+ * The scratch objects of one render thread. Everything a sample needs is created once and reused,
+ * so tracing and shading a sample does not create any objects.
+ */
+class TraceContext {
+
+    // The ray which is traced through the scene, set again for every reflection and refraction
+    final Ray ray = new Ray();
+    final Ray shadowRay = new Ray();
+    final Intersection hit = new Intersection();
+
+    // Ray generation
+    final Vec2 viewplanePoint = new Vec2();
+    final Vec3 destinationPoint = new Vec3();
+
+    // Reflection and refraction
+    final Vec3 incident = new Vec3();
+    final Vec3 normal = new Vec3();
+    final Vec3 direction = new Vec3();
+    final Vec3 startPoint = new Vec3();
+    final Vec3 endPoint = new Vec3();
+
+    // Shading
+    final Vec3 viewVector = new Vec3();
+    final Vec3 lightPosition = new Vec3();
+    final RgbColor lightColor = new RgbColor(0f, 0f, 0f);
+    final LightSamples lightSamples = new LightSamples();
+    final SampleRandom random = new SampleRandom();
+    // Probability of the light last picked from the light tree
+    float lightProbability;
+
+    // Color accumulation
+    final RgbColor sampleColor = new RgbColor(0f, 0f, 0f);
+    final RgbColor surfaceColor = new RgbColor(0f, 0f, 0f);
+    final RgbColor pixelColor = new RgbColor(0f, 0f, 0f);
+
+    // Render statistics of the tile, added to the RenderStats when the tile is finished.
+    // The intersection tests are counted by the rays
+    long primaryRays;
+    long reflectionRays;
+    long refractionRays;
+    long shadowRays;
+    long hits;
+    long shadingCalls;
+
+    // Wavefront renderer of the thread and the number of the rendering it has been created for
+    WavefrontRenderer wavefront;
+    int wavefrontRender;
+}
@@ -0,0 +1,139 @@
+package raytracer;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+import utils.algebra.Vec3;
+
+/**
+ * Class VectorIntersectionKernel
+ * The intersection kernels on the Vector API. A 256 bit kernel tests 8 spheres or rays at once, a 512 bit kernel 16.
+ * Only created through IntersectionKernel.createVector(), so nothing else depends on the incubator module.
+ */
+class VectorIntersectionKernel extends IntersectionKernel {
+
+    // The index of every lane
+    private static final float[] LANE_INDICES = new float[MAX_LANES];
+    static {
+        for (int i = 0; i < MAX_LANES; i++) {
+            LANE_INDICES[i] = i;
+        }
+    }
+
+    private final VectorSpecies<Float> species;
+    private final VectorSpecies<Integer> intSpecies;
+
+    /**
+     * Creates the kernel for the given width.
+     * @param vectorBits The width of the vectors, 0 for the preferred width of the CPU
+     */
+    VectorIntersectionKernel(int vectorBits) {
+        VectorSpecies<Float> preferred = FloatVector.SPECIES_PREFERRED;
+        if (vectorBits <= 0) {
+            this.species = preferred.length() <= MAX_LANES ? preferred : FloatVector.SPECIES_512;
+        } else {
+            this.species = VectorSpecies.of(float.class, VectorShape.forBitSize(vectorBits));
+        }
+        if (species.length() > MAX_LANES) {
+            throw new IllegalArgumentException("Vectors of " + species.length() + " floats are not supported");
+        }
+        this.intSpecies = VectorSpecies.of(int.class, species.vectorShape());
+    }
+
+    @Override
+    public int closestSphere(SpherePack spheres, int first, int count, int ignore, Vec3 start, Vec3 direction, float maxDistance) {
+        int end = first + count;
+        int closest = -1;
+        float closestDistance = maxDistance;
+        FloatVector laneIndices = FloatVector.fromArray(species, LANE_INDICES, 0);
+        // The direction is the same for all spheres
+        float a = direction.x * direction.x + direction.y * direction.y + direction.z * direction.z;
+        float a2 = 2 * a;
+        float a4 = 4 * a;
+        for (int i = first; i < end; i += species.length()) {
+            VectorMask<Float> lanes = species.indexInRange(i, end);
+            if (ignore >= i && ignore < i + species.length()) {
+                // Comparing the lane indices keeps the mask in a register, building a mask from bits creates objects
+                lanes = lanes.and(laneIndices.compare(VectorOperators.NE, ignore - i));
+            }
+
+            // The ray is moved so the spheres lie in the origin, the packs are padded, so whole vectors can be loaded
+            FloatVector ox = FloatVector.broadcast(species, start.x).sub(FloatVector.fromArray(species, spheres.centerX, i));
+            FloatVector oy = FloatVector.broadcast(species, start.y).sub(FloatVector.fromArray(species, spheres.centerY, i));
+            FloatVector oz = FloatVector.broadcast(species, start.z).sub(FloatVector.fromArray(species, spheres.centerZ, i));
+            FloatVector radii = FloatVector.fromArray(species, spheres.radii, i);
+
+            FloatVector b = ox.mul(direction.x).add(oy.mul(direction.y)).add(oz.mul(direction.z)).mul(2f);
+            FloatVector c = ox.mul(ox).add(oy.mul(oy)).add(oz.mul(oz)).sub(radii.mul(radii));
+            FloatVector d = b.mul(b).sub(c.mul(a4));
+            VectorMask<Float> hit = lanes.and(d.compare(VectorOperators.GT, 0f));
+            if (!hit.anyTrue()) {
+                continue;
+            }
+
+            FloatVector root = d.sqrt();
+            FloatVector tZero = b.neg().sub(root).div(a2);
+            FloatVector tOne = b.neg().add(root).div(a2);
+            hit = hit.and(tZero.compare(VectorOperators.GE, 0f).or(tOne.compare(VectorOperators.GE, 0f)));
+            FloatVector distance = tOne.blend(tZero, tZero.compare(VectorOperators.LT, tOne)).abs();
+            hit = hit.and(distance.compare(VectorOperators.GT, 0f)).and(distance.compare(VectorOperators.LT, closestDistance));
+            if (!hit.anyTrue()) {
+                continue;
+            }
+
+            // The first of the closest spheres, like testing them one after another
+            float minimum = distance.reduceLanes(VectorOperators.MIN, hit);
+            closest = i + distance.compare(VectorOperators.EQ, minimum).and(hit).firstTrue();
+            closestDistance = minimum;
+        }
+        return closest;
+    }
+
+    @Override
+    public void intersectPlane(float normalX, float normalY, float normalZ, float originX, float originY, float originZ,
+                               RayPack rays, int count, int hit) {
+        // Whole vectors first, the masked rest at the end
+        int bound = species.loopBound(count);
+        VectorMask<Float> all = species.maskAll(true);
+        for (int i = 0; i < bound; i += species.length()) {
+            intersectPlane(normalX, normalY, normalZ, originX, originY, originZ, rays, i, all, hit);
+        }
+        if (bound < count) {
+            intersectPlane(normalX, normalY, normalZ, originX, originY, originZ, rays, bound, species.indexInRange(bound, count), hit);
+        }
+    }
+
+    /**
+     * Intersects one vector of rays with the plane.
+     */
+    private void intersectPlane(float normalX, float normalY, float normalZ, float originX, float originY, float originZ,
+                                RayPack rays, int i, VectorMask<Float> lanes, int hit) {
+        FloatVector scalar = FloatVector.fromArray(species, rays.directionX, i).mul(normalX)
+                .add(FloatVector.fromArray(species, rays.directionY, i).mul(normalY))
+                .add(FloatVector.fromArray(species, rays.directionZ, i).mul(normalZ));
+        FloatVector t = FloatVector.fromArray(species, rays.startX, i).sub(originX).mul(normalX)
+                .add(FloatVector.fromArray(species, rays.startY, i).sub(originY).mul(normalY))
+                .add(FloatVector.fromArray(species, rays.startZ, i).sub(originZ).mul(normalZ))
+                .div(scalar).neg();
+        FloatVector distances = FloatVector.fromArray(species, rays.distances, i);
+        VectorMask<Float> closer = lanes.and(scalar.compare(VectorOperators.LT, 0f))
+                .and(t.compare(VectorOperators.GT, 0f)).and(t.compare(VectorOperators.LT, distances));
+        distances.blend(t, closer).intoArray(rays.distances, i);
+        // The mask is moved to the int lanes through its bits, which is much faster than casting it
+        VectorMask<Integer> hitLanes = closer.toVector().reinterpretAsInts().compare(VectorOperators.NE, 0);
+        IntVector.fromArray(intSpecies, rays.hits, i).blend(hit, hitLanes).intoArray(rays.hits, i);
+    }
+
+    @Override
+    public int getLaneCount() {
+        return species.length();
+    }
+
+    @Override
+    public String toString() {
+        return "vector " + species.vectorBitSize() + " bit";
+    }
+}
@@ -0,0 +1,409 @@
+package raytracer;
+
+import scene.Material;
+import ui.FrameBuffer;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+
+/**
+ * Class WavefrontRenderer
+ * Renders a tile breadth-first instead of following one sample from the camera to the lights at a time.
+ * The paths of a batch of pixels are kept in flat arrays. Every step runs one kind of work over the whole batch:
+ * intersecting all rays, continuing all paths while collecting their shading points and light samples,
+ * tracing all shadow rays and finally shading. Only the paths which are still alive take part in the next step.
+ *
+ * Every path keeps its own random numbers and adds its colors in the same order as the depth-first renderer,
+ * so both renderers produce the same image.
+ */
+class WavefrontRenderer {
+
+    // Number of paths traced together, at least the samples of one pixel
+    private static final int WAVE_SIZE = 4096;
+
+    private final Raytracer raytracer;
+    private final BVH bvh;
+    private final Camera camera;
+    private final FrameBuffer frameBuffer;
+    private final float[] gaussList;
+    private final int antiAliasingSamples;
+    private final int samplesPerPixel;
+    private final int maxRecursions;
+    private final RgbColor backgroundColor;
+
+    private final TraceContext context;
+    private final Vec3 point = new Vec3();
+    private final Vec3 normal = new Vec3();
+    private final RgbColor pathColor = new RgbColor(0f, 0f, 0f);
+
+    // Pixels of the wave
+    private final int pixelCapacity;
+    private final int[] pixelX;
+    private final int[] pixelY;
+    private int pixelCount;
+
+    // Paths: start point and direction of the current ray, the state of the path and its color so far
+    private final float[] rays;
+    private final float[] throughputs;
+    private final int[] reflections;
+    private final int[] depths;
+    private final long[] randomStates;
+    private final float[] colors;
+    // The paths which are still alive
+    private final int[] active;
+    private int activeCount;
+
+    // The rays of the active paths, packed for the intersection kernel
+    private final RayPack batch;
+
+    // The closest hit of every path, the material is null if the ray has left the scene
+    private final Material[] hitMaterials;
+    private final int[] hitPrimitives;
+    private final float[] hitDistances;
+    private final float[] hitPoints;
+    private final float[] hitNormals;
+
+    // Shading points of the current step and their light samples, the samples of a shading point follow
+    // each other and start at its first sample
+    private final int[] shadingPaths;
+    private final float[] shadingWeights;
+    private final Material[] shadingMaterials;
+    private final int[] shadingIgnoredPrimitives;
+    private final int[] shadingFirstSamples;
+    private int shadingCount;
+    private final LightSamples shadowSamples = new LightSamples();
+    private boolean[] occluded = new boolean[256];
+
+    WavefrontRenderer(Raytracer _raytracer, TraceContext _context, BVH _bvh, Camera _camera, FrameBuffer _frameBuffer, float[] _gaussList,
+                      int _antiAliasingSamples, int _maxRecursions, RgbColor _backgroundColor) {
+        this.raytracer = _raytracer;
+        this.context = _context;
+        this.bvh = _bvh;
+        this.camera = _camera;
+        this.frameBuffer = _frameBuffer;
+        this.gaussList = _gaussList;
+        this.antiAliasingSamples = _antiAliasingSamples;
+        this.samplesPerPixel = _antiAliasingSamples * _antiAliasingSamples;
+        this.maxRecursions = _maxRecursions;
+        this.backgroundColor = _backgroundColor;
+
+        this.pixelCapacity = Math.max(1, WAVE_SIZE / samplesPerPixel);
+        this.pixelX = new int[pixelCapacity];
+        this.pixelY = new int[pixelCapacity];
+
+        int paths = pixelCapacity * samplesPerPixel;
+        this.rays = new float[paths * 6];
+        this.throughputs = new float[paths];
+        this.reflections = new int[paths];
+        this.depths = new int[paths];
+        this.randomStates = new long[paths];
+        this.colors = new float[paths * 3];
+        this.active = new int[paths];
+        this.batch = new RayPack(paths);
+        this.hitMaterials = new Material[paths];
+        this.hitPrimitives = new int[paths];
+        this.hitDistances = new float[paths];
+        this.hitPoints = new float[paths * 3];
+        this.hitNormals = new float[paths * 3];
+        this.shadingPaths = new int[paths];
+        this.shadingWeights = new float[paths];
+        this.shadingMaterials = new Material[paths];
+        this.shadingIgnoredPrimitives = new int[paths];
+        this.shadingFirstSamples = new int[paths + 1];
+    }
+
+    /**
+     * Renders the pixels of a tile in waves and writes them into the frame buffer.
+     * The renderer can be used for any number of tiles, one after another.
+     * @param tile The tile to render
+     */
+    void renderTile(Tile tile) {
+        // A tile which has been aborted leaves its pixels behind
+        pixelCount = 0;
+        for (int y = tile.getEndY() - 1; y >= tile.getStartY(); y--) {
+            for (int x = tile.getEndX() - 1; x >= tile.getStartX(); x--) {
+                pixelX[pixelCount] = x;
+                pixelY[pixelCount] = y;
+                if (++pixelCount == pixelCapacity) {
+                    traceWave();
+                }
+            }
+        }
+        if (pixelCount > 0) {
+            traceWave();
+        }
+    }
+
+    /**
+     * Traces all samples of the pixels of the wave until every path has ended.
+     */
+    private void traceWave() {
+        generatePaths();
+        while (activeCount > 0) {
+            intersectPaths();
+            continuePaths();
+            traceShadowRays();
+            shadePaths();
+        }
+        writePixels();
+        pixelCount = 0;
+    }
+
+    /**
+     * Creates the camera rays of all anti aliasing samples, at the same positions as the depth-first renderer.
+     */
+    private void generatePaths() {
+        activeCount = 0;
+        for (int pixel = 0; pixel < pixelCount; pixel++) {
+            float xAntiAliasing = pixelX[pixel];
+            float yAntiAliasing = pixelY[pixel];
+            int path = pixel * samplesPerPixel;
+            for (int ySample = 0; ySample < antiAliasingSamples; ySample++) {
+                yAntiAliasing += gaussList[ySample];
+                for (int xSample = 0; xSample < antiAliasingSamples; xSample++) {
+                    xAntiAliasing += gaussList[xSample];
+
+                    context.random.seed(xAntiAliasing, yAntiAliasing);
+                    raytracer.setCameraRay(context, xAntiAliasing, yAntiAliasing);
+                    storeRay(path);
+                    randomStates[path] = context.random.getState();
+                    throughputs[path] = 1f;
+                    reflections[path] = 0;
+                    depths[path] = 0;
+                    colors[path * 3] = 0f;
+                    colors[path * 3 + 1] = 0f;
+                    colors[path * 3 + 2] = 0f;
+                    active[activeCount++] = path;
+                    path++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the closest hit of every active path.
+     * The primitives without bounds are tested first against the whole batch, infinite planes with the
+     * intersection kernel. Afterwards every ray continues through the hierarchy, like BVH.closestHit().
+     */
+    private void intersectPaths() {
+        Intersection hit = context.hit;
+        for (int i = 0; i < activeCount; i++) {
+            int r = active[i] * 6;
+            // Set the distance to a location very far away if nothing has been hit yet
+            batch.set(i, rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5], 99999f);
+        }
+
+        CompiledScene scene = bvh.getScene();
+        scene.intersectUnbounded(batch, activeCount, context.ray, hit);
+
+        for (int i = 0; i < activeCount; i++) {
+            int path = active[i];
+            batch.get(i, context.ray);
+            hit.reset(99999f);
+            // The closest unbounded primitive fills the hit record again, the hierarchy only accepts closer ones
+            if (batch.getHit(i) >= 0) {
+                scene.intersect(batch.getHit(i), context.ray, hit);
+            }
+            bvh.closestBoundedHit(context.ray, hit, -1);
+            if (!hit.isHit()) {
+                hitMaterials[path] = null;
+                continue;
+            }
+            context.hits++;
+            hitMaterials[path] = hit.getMaterial();
+            hitPrimitives[path] = hit.getPrimitive();
+            hitDistances[path] = hit.getDistance();
+            Vec3 p = hit.getPointOfIntersection();
+            Vec3 n = hit.getNormal();
+            hitPoints[path * 3] = p.x;
+            hitPoints[path * 3 + 1] = p.y;
+            hitPoints[path * 3 + 2] = p.z;
+            hitNormals[path * 3] = n.x;
+            hitNormals[path * 3 + 1] = n.y;
+            hitNormals[path * 3 + 2] = n.z;
+        }
+    }
+
+    /**
+     * Decides for every active path like the depth-first renderer, whether it is reflected, refracted or ends
+     * at its hit. Surfaces which are shaded get their light samples picked, the shadow rays are traced later.
+     * Paths which end are removed from the active paths.
+     */
+    private void continuePaths() {
+        shadingCount = 0;
+        shadowSamples.clear();
+        int alive = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int path = active[i];
+            Material material = hitMaterials[path];
+            if (material == null) {
+                addColor(path, backgroundColor, throughputs[path]);
+                continue;
+            }
+            boolean lastSegment = depths[path] + 1 >= Raytracer.MAX_PATH_DEPTH;
+            context.random.setState(randomStates[path]);
+
+            boolean continues = true;
+            if (material.isReflective() && reflections[path] < maxRecursions && !lastSegment) {
+                // The part of the light which is not reflected comes from the surface itself
+                float reflectivity = material.getReflectivity();
+                if (reflectivity < 1f) {
+                    addShadingPoint(path, material, throughputs[path] * (1f - reflectivity));
+                }
+                throughputs[path] *= reflectivity;
+                reflections[path]++;
+                loadRayAndHit(path);
+                raytracer.reflectRay(context, context.hit);
+                storeRay(path);
+            } else if (material.isTransmittive() && !lastSegment) {
+                loadRayAndHit(path);
+                float transmission = raytracer.refractRay(context, context.hit) * (1f - material.getReflectivity());
+                if (transmission < 1f) {
+                    addShadingPoint(path, material, throughputs[path] * (1f - transmission));
+                }
+                if (transmission == 0f) {
+                    continues = false;
+                } else {
+                    throughputs[path] *= transmission;
+                    storeRay(path);
+                }
+            } else {
+                addShadingPoint(path, material, throughputs[path]);
+                continues = false;
+            }
+
+            // Russian roulette
+            if (continues && throughputs[path] < Raytracer.ROULETTE_THRESHOLD) {
+                float survival = throughputs[path] / Raytracer.ROULETTE_THRESHOLD;
+                if (context.random.nextFloat() >= survival) {
+                    continues = false;
+                } else {
+                    throughputs[path] /= survival;
+                }
+            }
+            randomStates[path] = context.random.getState();
+            if (continues) {
+                depths[path]++;
+                active[alive++] = path;
+            }
+        }
+        activeCount = alive;
+        shadingFirstSamples[shadingCount] = shadowSamples.size();
+    }
+
+    /**
+     * Adds the hit of a path as a shading point and picks its light samples.
+     */
+    private void addShadingPoint(int path, Material material, float weight) {
+        int shading = shadingCount++;
+        shadingPaths[shading] = path;
+        shadingWeights[shading] = weight;
+        shadingMaterials[shading] = material;
+        shadingIgnoredPrimitives[shading] = raytracer.getIgnoredPrimitive(hitPrimitives[path]);
+        shadingFirstSamples[shading] = shadowSamples.size();
+
+        loadHit(path);
+        LightSamples samples = raytracer.sampleLights(context, point, normal, material);
+        for (int i = 0; i < samples.size(); i++) {
+            shadowSamples.add(samples, i);
+        }
+    }
+
+    /**
+     * Traces the shadow rays of all shading points.
+     */
+    private void traceShadowRays() {
+        int sampleCount = shadowSamples.size();
+        if (occluded.length < sampleCount) {
+            occluded = new boolean[Math.max(sampleCount, occluded.length * 2)];
+        }
+        for (int shading = 0; shading < shadingCount; shading++) {
+            loadHit(shadingPaths[shading]);
+            int ignoredPrimitive = shadingIgnoredPrimitives[shading];
+            for (int i = shadingFirstSamples[shading]; i < shadingFirstSamples[shading + 1]; i++) {
+                occluded[i] = raytracer.isOccluded(context, point, shadowSamples.getPosition(i, context.lightPosition), ignoredPrimitive);
+            }
+        }
+    }
+
+    /**
+     * Shades all shading points with their unblocked light samples and adds the colors to their paths.
+     */
+    private void shadePaths() {
+        for (int shading = 0; shading < shadingCount; shading++) {
+            int path = shadingPaths[shading];
+            Material material = shadingMaterials[shading];
+            loadHit(path);
+            Vec3 viewVector = context.viewVector.set(camera.getCameraPosition()).subInPlace(point).normalizeInPlace();
+
+            RgbColor surfaceColor = context.surfaceColor.set(0f, 0f, 0f);
+            for (int i = shadingFirstSamples[shading]; i < shadingFirstSamples[shading + 1]; i++) {
+                if (!occluded[i]) {
+                    material.addDirectLight(point, normal, shadowSamples.getPosition(i, context.lightPosition),
+                            shadowSamples.getColor(i, context.lightColor), shadowSamples.getWeight(i), viewVector, surfaceColor);
+                }
+            }
+            addColor(path, material.addAmbientLight(surfaceColor), shadingWeights[shading]);
+        }
+    }
+
+    /**
+     * Averages the samples of every pixel of the wave and writes the pixels into the frame buffer.
+     */
+    private void writePixels() {
+        for (int pixel = 0; pixel < pixelCount; pixel++) {
+            RgbColor colorFinal = context.pixelColor.set(0f, 0f, 0f);
+            for (int sample = 0; sample < samplesPerPixel; sample++) {
+                int path = pixel * samplesPerPixel + sample;
+                RgbColor color = context.sampleColor.set(colors[path * 3], colors[path * 3 + 1], colors[path * 3 + 2]);
+                if (antiAliasingSamples > 1) {
+                    color.divideInPlace(samplesPerPixel);
+                }
+                colorFinal.addInPlace(color);
+            }
+            frameBuffer.setPixel(pixelX[pixel], pixelY[pixel], colorFinal);
+        }
+    }
+
+    private void addColor(int path, RgbColor color, float weight) {
+        int c = path * 3;
+        Raytracer.addWeighted(pathColor.set(colors[c], colors[c + 1], colors[c + 2]), color, weight);
+        colors[c] = pathColor.red();
+        colors[c + 1] = pathColor.green();
+        colors[c + 2] = pathColor.blue();
+    }
+
+    private void storeRay(int path) {
+        Vec3 start = context.ray.getStartPoint();
+        Vec3 direction = context.ray.getDirection();
+        int r = path * 6;
+        rays[r] = start.x;
+        rays[r + 1] = start.y;
+        rays[r + 2] = start.z;
+        rays[r + 3] = direction.x;
+        rays[r + 4] = direction.y;
+        rays[r + 5] = direction.z;
+    }
+
+    private void loadRay(int path) {
+        int r = path * 6;
+        context.ray.set(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5]);
+    }
+
+    /**
+     * Loads the hit point and normal of a path into the scratch vectors.
+     */
+    private void loadHit(int path) {
+        int h = path * 3;
+        point.set(hitPoints[h], hitPoints[h + 1], hitPoints[h + 2]);
+        normal.set(hitNormals[h], hitNormals[h + 1], hitNormals[h + 2]);
+    }
+
+    /**
+     * Loads the ray and the hit of a path into the ray and hit record of the context.
+     */
+    private void loadRayAndHit(int path) {
+        loadRay(path);
+        loadHit(path);
+        context.hit.set(hitDistances[path], point, normal, hitPrimitives[path], hitMaterials[path]);
+    }
+}
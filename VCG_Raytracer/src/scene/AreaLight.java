@@ -1,70 +1,73 @@
 package scene;
 
 import utils.RgbColor;
+import utils.algebra.BoundingBox;
 import utils.algebra.Vec3;
 
-import java.util.LinkedList;
-import java.util.List;
-
 /**
  * class AreaLight
  * This class is responsible for creating an arealight for the scene.
+ * The light is a horizontal square around its location, which shines downwards. Instead of being split into
+ * point lights, it is sampled at every shading point: the square is divided into a grid of equally sized cells
+ * and every sample lies at a jittered position inside of its own cell.
  */
 public class AreaLight extends Light{
 
-
+    private float size;
     private int samples;
-    private Scene scene;
 
     /**
      * Constructor
      * Creates a light object with a color and position.
      *
      * @param _color    color of light
-     * @param _location location of light
+     * @param _location center of the light
+     * @param _size     width and depth of the light
+     * @param _samples  number of samples per shading point, used if the renderer does not choose one
      */
-    public AreaLight(RgbColor _color, Vec3 _location, int samples, Scene scene) {
+    public AreaLight(RgbColor _color, Vec3 _location, float _size, int _samples) {
         super(_color, _location);
-        this.samples = samples;
-        this.scene = scene;
-        createLights(samples);
+        this.size = _size;
+        this.samples = Math.max(1, _samples);
     }
+
     /**
-     * creates each light for the areaLight
-     * @param samples number of lights
+     * Returns the number of samples, rounded to a square number so the cells form a grid.
+     * @param requestedSamples The number of samples chosen by the renderer, 0 to use the samples of the light
+     * @return The number of samples
      */
-    public void createLights(int samples) {
-
-        RgbColor sampleColor = color.multScalar(1f/samples);
-
-        int i_sample = 1;
-        int direction = 1;
-        int radius = 1;
-        float scale = 0.3f;
+    @Override
+    public int getSampleCount(int requestedSamples) {
+        int cells = Math.max(1, Math.round((float) Math.sqrt(requestedSamples > 0 ? requestedSamples : samples)));
+        return cells * cells;
+    }
 
-        scene.createPointlight(sampleColor, new Vec3(location.x, location.y, location.z));
+    /**
+     * Returns a position inside the cell of the given sample.
+     */
+    @Override
+    public Vec3 getSamplePosition(int sample, int sampleCount, float u, float v, Vec3 outPosition) {
+        int cells = (int) Math.sqrt(sampleCount);
+        float column = (sample % cells + u) / cells - 0.5f;
+        float row = (sample / cells + v) / cells - 0.5f;
+        return outPosition.set(location.x + column * size, location.y, location.z + row * size);
+    }
 
-        while (i_sample < samples)
-        {
-            for (int i_2 = 0; i_2 < 2; i_2++)
-            {
-                //
-                for (int i_1 = 0; i_1 < radius; i_1++)
-                {
-                    i_sample++;
-                    if (i_sample > samples) break;
+    @Override
+    public BoundingBox getBounds() {
+        float half = size * 0.5f;
+        return new BoundingBox(new Vec3(location.x - half, location.y, location.z - half), new Vec3(location.x + half, location.y, location.z + half));
+    }
 
-                    if (direction % 4 == 1) location.x+=scale;
-                    else if (direction % 4 == 2) location.z+=scale;
-                    else if (direction % 4 == 3) location.x-=scale;
-                    else if (direction % 4 == 0) location.z-=scale;
+    public float getSize() {
+        return size;
+    }
 
-                    scene.createPointlight(sampleColor, new Vec3(location.x, location.y, location.z));
-                    System.out.println(location.x + ", " + location.z);
-                }
-                direction++;
-            }
-            radius++;
-        }
+    /**
+     * Returns the number of samples per shading point given to the light.
+     * @return The samples, before they are rounded to a grid
+     */
+    public int getSamples() {
+        return samples;
     }
 }
@@ -3,8 +3,6 @@ package scene;
 import utils.RgbColor;
 import utils.algebra.Vec3;
 
-import java.util.List;
-
 /**
  * Class Lambert
  * This class is responsible for providing the material for the Lambert lighting model.
@@ -22,47 +20,45 @@ public class Lambert extends Material {
     }
 
     /**
-     * returns color of the given point of intersection
+     * Adds the diffuse light of the Lambert lighting model for a single light position.
+     * The calculation works on the single channels, so no vectors or colors are created.
      * @param pointOfIntersection Point where the ray hits an object
      * @param normalVector normal vector
-     * @param lightList pointlights of the scene
-     * @return outcolor
+     * @param lightPosition position the light arrives from
+     * @param lightColor color of the light
+     * @param lightWeight factor the light is counted with
+     * @param directLight The direct light of the point so far, which receives the sum
      */
-    public RgbColor getColor(Vec3 pointOfIntersection, Vec3 normalVector, List<Light> lightList, Vec3 viewVector) {
-        // Initialize the return value
-        RgbColor outColor = new RgbColor(0f, 0f, 0f);
-
-        // Initialize the light portions
-        RgbColor ambient = this.ambientLight.multRGB(this.diffusionColor);
-        RgbColor diffuse = new RgbColor(0f, 0f,0f);
-
+    @Override
+    public void addDirectLight(Vec3 pointOfIntersection, Vec3 normalVector, Vec3 lightPosition, RgbColor lightColor, float lightWeight, Vec3 viewVector, RgbColor directLight) {
         // Normalize the normal Vector
-        normalVector = normalVector.normalize();
-
-        for (Light light: lightList) {
-            // Calculate light vector
-            Vec3 lightVector = light.location.sub(pointOfIntersection);
-            lightVector = lightVector.normalize();
-
-            // Calculate diffuse scalar (Angle between normal and light vector)
-            float diffusionScalar = normalVector.scalar(lightVector);
+        float normalLength = normalVector.length();
+        float normalX = normalVector.x / normalLength;
+        float normalY = normalVector.y / normalLength;
+        float normalZ = normalVector.z / normalLength;
 
-            // Angles bigger than 90 degree should not be taken into account
-            if (diffusionScalar < 0) {
-                diffusionScalar = 0;
-            }
+        // Calculate light vector
+        float lightX = lightPosition.x - pointOfIntersection.x;
+        float lightY = lightPosition.y - pointOfIntersection.y;
+        float lightZ = lightPosition.z - pointOfIntersection.z;
+        float lightLength = (float) Math.sqrt(lightX * lightX + lightY * lightY + lightZ * lightZ);
+        lightX = lightX / lightLength;
+        lightY = lightY / lightLength;
+        lightZ = lightZ / lightLength;
 
-            // Calculates how much Light hits and lights the surface
-            RgbColor diffuseAmount = diffusionColor.multScalar(diffusionScalar);
+        // Calculate diffuse scalar (Angle between normal and light vector)
+        float diffusionScalar = normalX * lightX + normalY * lightY + normalZ * lightZ;
 
-            // Calculate the color of the light hitting the surface and combine it witn the diffuse lighting of other the lights
-            diffuse = diffuse.add(diffuseAmount.multRGB(light.getColor()));
+        // Angles bigger than 90 degree should not be taken into account
+        if (diffusionScalar < 0) {
+            diffusionScalar = 0;
         }
-        // Combine the direct and ambient Light
-        outColor = ambient.add(diffuse);
 
-        // return calculated RGB color value
-        return outColor;
+        // Calculate the color of the light hitting the surface and combine it with the diffuse lighting of the other lights
+        directLight.set(
+                directLight.red() + diffusionColor.red() * diffusionScalar * lightColor.red() * lightWeight,
+                directLight.green() + diffusionColor.green() * diffusionScalar * lightColor.green() * lightWeight,
+                directLight.blue() + diffusionColor.blue() * diffusionScalar * lightColor.blue() * lightWeight);
     }
 
 }
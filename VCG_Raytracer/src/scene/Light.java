@@ -1,6 +1,7 @@
 package scene;
 
 import utils.RgbColor;
+import utils.algebra.BoundingBox;
 import utils.algebra.Vec3;
 
 /**
@@ -34,6 +35,44 @@ public abstract class Light {
         return color;
     }
 
+    /**
+     * Returns the power of the light, which is the brightness of its color as seen by the eye.
+     * @return The luminance of the color
+     */
+    public float getPower() {
+        return 0.2126f * color.red() + 0.7152f * color.green() + 0.0722f * color.blue();
+    }
+
+    /**
+     * Returns the area from which the light is sent.
+     * @return The bounds of the light, a single point unless the light overrides it
+     */
+    public BoundingBox getBounds() {
+        return new BoundingBox(location, location);
+    }
+
+    /**
+     * Returns how many samples are taken on the light for every shading point.
+     * @param requestedSamples The number of samples chosen by the renderer, 0 to use the samples of the light
+     * @return 1 for lights which are a single point
+     */
+    public int getSampleCount(int requestedSamples) {
+        return 1;
+    }
+
+    /**
+     * Returns a point on the light from which it is sampled.
+     * @param sample The index of the sample, from 0 to the sample count
+     * @param sampleCount The number of samples taken on the light
+     * @param u A random number from 0 to 1, which moves the sample inside of its area
+     * @param v A second random number from 0 to 1
+     * @param outPosition The vector which receives the position
+     * @return outPosition, the location for lights which are a single point
+     */
+    public Vec3 getSamplePosition(int sample, int sampleCount, float u, float v, Vec3 outPosition) {
+        return outPosition.set(location);
+    }
+
     /**
      * Returns the location of the light source.
      * @return location of light source
@@ -22,12 +22,98 @@ public abstract class Material {
     protected float refractionIndex;
 
 
-    public abstract RgbColor getColor(Vec3 pointOfIntersection, Vec3 normal, List<Light> lightList, Vec3 viewVector);
+    /**
+     * Calculates the color of the material at a point.
+     * @param pointOfIntersection The point on the shape
+     * @param normal The normal of the shape at the point
+     * @param lightList The Lights which hit the point
+     * @param viewVector The Vector between the point and the camera
+     * @return A new color object
+     */
+    public RgbColor getColor(Vec3 pointOfIntersection, Vec3 normal, List<Light> lightList, Vec3 viewVector) {
+        return getColor(pointOfIntersection, normal, lightList, viewVector, new RgbColor(0f, 0f, 0f));
+    }
+
+    /**
+     * Calculates the color of the material at a point without creating any objects.
+     * The lights are added one after another with addDirectLight(), the ambient light is added last.
+     * @param pointOfIntersection The point on the shape
+     * @param normal The normal of the shape at the point
+     * @param lightList The Lights which hit the point
+     * @param viewVector The Vector between the point and the camera
+     * @param outColor The color which receives the result
+     * @return outColor
+     */
+    public RgbColor getColor(Vec3 pointOfIntersection, Vec3 normal, List<Light> lightList, Vec3 viewVector, RgbColor outColor) {
+        outColor.set(0f, 0f, 0f);
+        for (int i = 0; i < lightList.size(); i++) {
+            Light light = lightList.get(i);
+            addDirectLight(pointOfIntersection, normal, light.getLocation(), light.getColor(), 1f, viewVector, outColor);
+        }
+        return addAmbientLight(outColor);
+    }
+
+    /**
+     * Adds the light arriving from a single point, for example a point light or a sample of an area light,
+     * to the direct light of a point.
+     * @param pointOfIntersection The point on the shape
+     * @param normal The normal of the shape at the point
+     * @param lightPosition The position the light arrives from
+     * @param lightColor The color of the light arriving from the position
+     * @param lightWeight The factor the light is counted with, 1 unless the light has been picked by chance
+     * @param viewVector The Vector between the point and the camera
+     * @param directLight The direct light of the point so far, which receives the sum
+     */
+    public abstract void addDirectLight(Vec3 pointOfIntersection, Vec3 normal, Vec3 lightPosition, RgbColor lightColor, float lightWeight, Vec3 viewVector, RgbColor directLight);
+
+    /**
+     * Adds the ambient light to the direct light of a point, which gives the final color of the material.
+     * @param directLight The direct light of the point, which receives the result
+     * @return directLight
+     */
+    public RgbColor addAmbientLight(RgbColor directLight) {
+        return directLight.set(
+                this.ambientLight.red() * this.diffusionColor.red() + directLight.red(),
+                this.ambientLight.green() * this.diffusionColor.green() + directLight.green(),
+                this.ambientLight.blue() * this.diffusionColor.blue() + directLight.blue());
+    }
+
+    /**
+     * Returns if the color of the material depends on the lights, so shadow rays are needed to shade it.
+     * @return true, unless the material overrides it
+     */
+    public boolean receivesLight() {
+        return true;
+    }
+
+    /**
+     * Returns the color of the surface, which is the only color of unlit materials.
+     * @return The diffuse color
+     */
+    public RgbColor getDiffusionColor() {
+        return diffusionColor;
+    }
+
+    /**
+     * Returns the ambient light the material adds to every point.
+     * @return The ambient light, null for materials which are not lit
+     */
+    public RgbColor getAmbientLight() {
+        return ambientLight;
+    }
 
     public boolean isReflective() {
         return isReflective;
     }
 
+    /**
+     * Returns the part of the light which is reflected like in a mirror.
+     * @return 1 for reflective materials, unless the material overrides it, 0 otherwise
+     */
+    public float getReflectivity() {
+        return isReflective ? 1f : 0f;
+    }
+
     public boolean isTransmittive(){
         return isTransmittive;
     }
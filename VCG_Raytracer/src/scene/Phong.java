@@ -3,8 +3,6 @@ package scene;
 import utils.RgbColor;
 import utils.algebra.Vec3;
 
-import java.util.List;
-
 public class Phong extends Material {
 
     private RgbColor specularColor;
@@ -30,59 +28,77 @@ public class Phong extends Material {
     }
 
 
+    /**
+     * Adds the diffuse and specular light of the Phong lighting model for a single light position.
+     * The calculation works on the single channels, so no vectors or colors are created.
+     */
     @Override
-    public RgbColor getColor(Vec3 pointOfIntersection, Vec3 normalVector, List<Light> lightList, Vec3 viewVector) {
-        // Initialize the return value
-        RgbColor outColor = new RgbColor(0f, 0f, 0f);
-
-        // Initialize the light portions
-        RgbColor ambient = this.ambientLight.multRGB(this.diffusionColor);
-        RgbColor directLight = new RgbColor(0f, 0f, 0f);
-
+    public void addDirectLight(Vec3 pointOfIntersection, Vec3 normalVector, Vec3 lightPosition, RgbColor lightColor, float lightWeight, Vec3 viewVector, RgbColor directLight) {
         // Normalize the normal Vector
-        normalVector = normalVector.normalize();
-
-        for (Light light : lightList) {
-            // Calculate light vector
-            Vec3 lightVector = light.location.sub(pointOfIntersection);
-            lightVector = lightVector.normalize();
-
-            // Calculate diffuse scalar (Angle between normal and light vector)
-            float diffusionScalar = normalVector.scalar(lightVector);
-
-            // Calculate the Reflection Vector
-            // R = 2 * (N * L) * N - L
-            Vec3 reflectionVector = normalVector.multScalar(diffusionScalar * 2).sub(lightVector);
-            reflectionVector = reflectionVector.normalize();
-
-            // Calculate specular scalar (Angle between view and reflection vector)
-            float specularScalar = viewVector.scalar(reflectionVector);
-
-            // Angles bigger than 90 degree should not be taken into account
-            if (diffusionScalar < 0) {
-                diffusionScalar = 0;
-            }
-            if (specularScalar < 0) {
-                specularScalar = 0;
-            }
+        float normalLength = normalVector.length();
+        float normalX = normalVector.x / normalLength;
+        float normalY = normalVector.y / normalLength;
+        float normalZ = normalVector.z / normalLength;
+
+        // Calculate light vector
+        float lightX = lightPosition.x - pointOfIntersection.x;
+        float lightY = lightPosition.y - pointOfIntersection.y;
+        float lightZ = lightPosition.z - pointOfIntersection.z;
+        float lightLength = (float) Math.sqrt(lightX * lightX + lightY * lightY + lightZ * lightZ);
+        lightX = lightX / lightLength;
+        lightY = lightY / lightLength;
+        lightZ = lightZ / lightLength;
+
+        // Calculate diffuse scalar (Angle between normal and light vector)
+        float diffusionScalar = normalX * lightX + normalY * lightY + normalZ * lightZ;
+
+        // Calculate the Reflection Vector
+        // R = 2 * (N * L) * N - L
+        float reflectionX = normalX * (diffusionScalar * 2) - lightX;
+        float reflectionY = normalY * (diffusionScalar * 2) - lightY;
+        float reflectionZ = normalZ * (diffusionScalar * 2) - lightZ;
+        float reflectionLength = (float) Math.sqrt(reflectionX * reflectionX + reflectionY * reflectionY + reflectionZ * reflectionZ);
+        reflectionX = reflectionX / reflectionLength;
+        reflectionY = reflectionY / reflectionLength;
+        reflectionZ = reflectionZ / reflectionLength;
+
+        // Calculate specular scalar (Angle between view and reflection vector)
+        float specularScalar = viewVector.x * reflectionX + viewVector.y * reflectionY + viewVector.z * reflectionZ;
+
+        // Angles bigger than 90 degree should not be taken into account
+        if (diffusionScalar < 0) {
+            diffusionScalar = 0;
+        }
+        if (specularScalar < 0) {
+            specularScalar = 0;
+        }
 
-            // Apply reflectivity of specular part to specular scalar
-            specularScalar = (float) Math.pow(specularScalar, specularReflectivity);
+        // Apply reflectivity of specular part to specular scalar
+        specularScalar = (float) Math.pow(specularScalar, specularReflectivity);
 
-            // Calculates how much Light hits and lights the surface
-            RgbColor diffuseAmount = diffusionColor.multScalar(diffusionScalar);
+        // Diffuse and specular amount of the light, combined with the direct lighting of the other lights.
+        // Nothing is clamped, so the weighted samples of picked lights add up to the light of all lights
+        directLight.set(
+                directLight.red() + (diffusionColor.red() * diffusionScalar + specularColor.red() * specularScalar) * lightColor.red() * lightWeight,
+                directLight.green() + (diffusionColor.green() * diffusionScalar + specularColor.green() * specularScalar) * lightColor.green() * lightWeight,
+                directLight.blue() + (diffusionColor.blue() * diffusionScalar + specularColor.blue() * specularScalar) * lightColor.blue() * lightWeight);
+    }
 
-            // Calculates how much Light is reflected
-            RgbColor specularAmount = specularColor.multScalar(specularScalar);
+    public RgbColor getSpecularColor() {
+        return this.specularColor;
+    }
 
-            // Calculate the color of the light hitting the surface and combine it witn the diffuse lighting of other the lights
-            directLight = directLight.add(diffuseAmount.add(specularAmount).multRGB(light.getColor()));
-        }
-        // Combine the direct and ambient Light
-        outColor = ambient.add(directLight);
+    /**
+     * Returns the exponent n of the specular highlight.
+     * @return The specular reflectivity
+     */
+    public float getSpecularReflectivity() {
+        return this.specularReflectivity;
+    }
 
-        // return calculated RGB color value
-        return outColor;
+    @Override
+    public float getReflectivity() {
+        return this.reflectivity;
     }
 
     public float getRefractionIndex() {
@@ -1,55 +1,106 @@
 package scene;
 
-import utils.RgbColor;
+import raytracer.Intersection;
+import raytracer.Ray;
 import utils.algebra.Matrix4x4;
 import utils.algebra.Vec3;
 
-import java.util.List;
-
 /**
  * Class Plane
  * This class provides the properties for a Plane Object.
  */
 public class Plane extends Shape{
 
+    // The normal and a point of the plane in world space
+    protected Vec3 normal;
+    protected Vec3 origin;
+
     // Creates an infinite plane
     public Plane (Vec3 _location, Vec3 _normal, Material _material){
+        this(_location, _normal, _material, new Matrix4x4());
+    }
+
+    /**
+     * Creates an infinite plane, which is additionally rotated around its location.
+     * @param _location A point of the plane
+     * @param _normal The normal of the plane before the transformation
+     * @param _material The material of the plane
+     * @param _transform transformation applied around the location
+     */
+    public Plane (Vec3 _location, Vec3 _normal, Material _material, Matrix4x4 _transform){
         this.location = _location;
-        this.normal = _normal.normalize();
         this.material = _material;
+        setTransform(Matrix4x4.translation(_location).mult(_transform));
+        // A plane is flat, so it can be intersected in world space with the transformed normal
+        this.normal = normalToWorld.transformVector(_normal.normalize()).normalize();
+        this.origin = objectToWorld.transformPoint(new Vec3());
     }
 
     @Override
     /**
      * Checks if a given Ray intersects with the plane.
-     * @param startPosition The Start Position of the Ray
-     * @param direction The direction of the Ray.
-     * @return The Distance from the start Position of the Ray to the Intersection Point.
+     * @param ray The Ray to test
+     * @param maxDistance The maximum distance of an intersection
+     * @param hit The hit record receiving the intersection
+     * @return true if the plane has been hit
      */
-    public float intersect(Vec3 _startPosition, Vec3 direction) {
-        // Translation of the plane
-        Matrix4x4 transformationMatrix = new Matrix4x4();
-        transformationMatrix.translateXYZ(this.location);
-        Vec3 startPosition = transformationMatrix.invert().multVec3(_startPosition, true);
-
-        float intersectionScalar = normal.scalar(direction.normalize());
-        float distance = 0f;
-        // if scalar between Pn and D is not 0(90°) calculate the point of intersection, else there is no intersection
-        Vec3 size = null;
-        if(intersectionScalar < 0){
-            // Calculate parameter t
-            float t = (normal.scalar(startPosition) / intersectionScalar) * -1;
-            // Calculate point of intersection
-            this.pointOfIntersection = calculatePointOfIntersection(startPosition, direction, t);
-            distance = startPosition.sub(pointOfIntersection).length();
-            // Backtranslation of the plane
-            this.pointOfIntersection = transformationMatrix.multVec3(this.pointOfIntersection, true);
+    public boolean intersect(Ray ray, float maxDistance, Intersection hit) {
+        float t = calculateParameter(ray);
+        if (!(t < maxDistance)) {
+            return false;
+        }
+        if (!contains(ray, t)) {
+            return false;
         }
-        return distance;
+        // The direction is normalized, so the parameter is the distance
+        hit.set(t, this);
+        hit.getPointOfIntersection().setPointAt(ray.getStartPoint(), ray.getDirection(), t);
+        hit.getNormal().set(this.normal);
+        return true;
     }
 
     @Override
-    public RgbColor getColor(List<Light> lightList, Vec3 viewVector) {
-        return this.material.getColor(this.pointOfIntersection, this.normal, lightList, viewVector);
+    public boolean occludes(Ray ray, float maxDistance) {
+        float t = calculateParameter(ray);
+        return t < maxDistance && contains(ray, t);
+    }
+
+    /**
+     * Calculates the ray parameter of the intersection with the plane.
+     * @param ray The Ray to test
+     * @return The ray parameter, NaN if the ray does not hit the front of the plane
+     */
+    private float calculateParameter(Ray ray) {
+        Vec3 start = ray.getStartPoint();
+        float intersectionScalar = normal.scalar(ray.getDirection());
+        // if scalar between Pn and D is not 0(90°) calculate the point of intersection, else there is no intersection
+        if (intersectionScalar >= 0) {
+            return Float.NaN;
+        }
+        // Calculate parameter t
+        float t = (normal.x * (start.x - origin.x) + normal.y * (start.y - origin.y) + normal.z * (start.z - origin.z)) / intersectionScalar * -1;
+        // The plane lies behind the start of the ray
+        if (t <= 0) {
+            return Float.NaN;
+        }
+        return t;
+    }
+
+    /**
+     * Checks if the point on the infinite plane at the given ray parameter belongs to the shape.
+     * @param ray The Ray which hit the plane
+     * @param t The ray parameter of the point on the plane
+     * @return true, since an infinite plane contains every point
+     */
+    protected boolean contains(Ray ray, float t) {
+        return true;
+    }
+
+    public Vec3 getNormal() {
+        return normal;
+    }
+
+    public Vec3 getOrigin() {
+        return origin;
     }
 }
@@ -1,13 +1,19 @@
 package scene;
 
 import org.w3c.dom.css.RGBColor;
+import raytracer.BVH;
 import raytracer.Camera;
+import raytracer.CompiledScene;
 import raytracer.PerspCam;
 import utils.RgbColor;
+import utils.algebra.Matrix4x4;
 import utils.algebra.Vec3;
+import utils.io.DataImporter;
 import utils.io.Log;
+import utils.io.MeshData;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -15,10 +21,15 @@ import java.util.List;
  * This class is responsible for creating a scene and adding objects to it.
  */
 public class Scene {
+    private static final float DEFAULT_AREA_LIGHT_SIZE = 2f;
+
     private List<Shape> shapeList;
     private List<Light> lightList;
     private Camera camera;
-
+    // Prebuilt hierarchy of a scene loaded from a compiled scene file, which holds the shapes instead of the list,
+    // or the hierarchy compiled from the shape list, which is kept for later renderings until a shape is added
+    private BVH accelerationStructure;
+    private boolean compiledFromShapes;
 
     /**
      * Constructor Scene
@@ -32,10 +43,22 @@ public class Scene {
 
     /**
      * Returns a list of shapes.
-     * @return The shape list
+     * Shapes are added with the create methods, so the scene knows when its compiled hierarchy is out of date.
+     * @return The shape list, which can not be changed
      */
     public List<Shape> getShapeList() {
-        return shapeList;
+        return Collections.unmodifiableList(shapeList);
+    }
+
+    /**
+     * Adds a shape and drops the hierarchy compiled from the previous shapes.
+     */
+    private void addShape(Shape shape) {
+        this.shapeList.add(shape);
+        if (compiledFromShapes) {
+            this.accelerationStructure = null;
+            this.compiledFromShapes = false;
+        }
     }
 
     /**
@@ -47,7 +70,18 @@ public class Scene {
      * @param material The Material of the Sphere
      */
     public void createSphere(float x, float y, float z, float radius, Material material) {
-        this.shapeList.add(new Sphere(new Vec3(x, y, z), radius, material));
+        addShape(new Sphere(new Vec3(x, y, z), radius, material));
+    }
+
+    /**
+     * Adds a sphere to the scene, which is additionally rotated or scaled around its center.
+     * @param location The Location of the Sphere
+     * @param radius The Radius of the Sphere
+     * @param material The Material of the Sphere
+     * @param transform The transformation applied around the center
+     */
+    public void createSphere(Vec3 location, float radius, Material material, Matrix4x4 transform) {
+        addShape(new Sphere(location, radius, material, transform));
     }
 
     /**
@@ -57,7 +91,18 @@ public class Scene {
      * @param material material of the plane
      */
     public void createPlane(Vec3 location, Vec3 normal, Material material) {
-        this.shapeList.add(new Plane(location, normal, material));
+        addShape(new Plane(location, normal, material));
+    }
+
+    /**
+     * Adds a plane to the scene, which is additionally rotated around its location.
+     * @param location location of the plane
+     * @param normal normal of the plane before the transformation
+     * @param material material of the plane
+     * @param transform The transformation applied around the location
+     */
+    public void createPlane(Vec3 location, Vec3 normal, Material material, Matrix4x4 transform) {
+        addShape(new Plane(location, normal, material, transform));
     }
 
     /**
@@ -68,7 +113,44 @@ public class Scene {
      * @param size size of the square
      */
     public void createSquare(Vec3 location, Vec3 normal, Material material, float size) {
-        this.shapeList.add(new Square(location, normal,size, material));
+        addShape(new Square(location, normal,size, material));
+    }
+
+    /**
+     * Adds a square to the scene, which is additionally rotated around its center.
+     * @param location location of the square
+     * @param normal normal of the square before the transformation
+     * @param material material of the square
+     * @param size size of the square
+     * @param transform The transformation applied around the center
+     */
+    public void createSquare(Vec3 location, Vec3 normal, Material material, float size, Matrix4x4 transform) {
+        addShape(new Square(location, normal, size, material, transform));
+    }
+
+    /**
+     * Adds a triangle mesh loaded from an OBJ file to the scene.
+     * @param path path of the OBJ file
+     * @param location location of the mesh
+     * @param material material of the mesh
+     */
+    public void createMesh(String path, Vec3 location, Material material) {
+        createMesh(path, location, material, new Matrix4x4());
+    }
+
+    /**
+     * Adds a triangle mesh loaded from an OBJ file to the scene, which is additionally rotated or scaled.
+     * Nothing is added if the file can not be loaded.
+     * @param path path of the OBJ file
+     * @param location location of the mesh
+     * @param material material of the mesh
+     * @param transform The transformation applied around the origin of the mesh
+     */
+    public void createMesh(String path, Vec3 location, Material material, Matrix4x4 transform) {
+        MeshData mesh = DataImporter.loadOBJ(path);
+        if (mesh != null) {
+            addShape(new TriangleMesh(mesh, location, material, transform));
+        }
     }
 
     /**
@@ -83,6 +165,14 @@ public class Scene {
         this.camera = new PerspCam(cameraPosition, centerOfInterest, userUpVector, viewAngle, focalLength);
     }
 
+    /**
+     * Replaces the camera of the Scene, for example to render a scene from several views.
+     * @param _camera The new camera
+     */
+    public void setCamera(Camera _camera) {
+        this.camera = _camera;
+    }
+
     /**
      * Returns the camera of the Scene
      * @return The camera of the Scene
@@ -106,7 +196,52 @@ public class Scene {
      * @param location the location of the light
      * @param samples number of samples
      */
-    public void createArealight(RgbColor color, Vec3 location, int samples){ new AreaLight(color, location, samples, this); }
+    public void createArealight(RgbColor color, Vec3 location, int samples){
+        createArealight(color, location, DEFAULT_AREA_LIGHT_SIZE, samples);
+    }
+
+    /**
+     * Creates a square area light and adds it to the lightlist of the scene.
+     * @param color the color of the light
+     * @param location the center of the light
+     * @param size the width and depth of the light
+     * @param samples number of samples per shading point, if the renderer does not choose one
+     */
+    public void createArealight(RgbColor color, Vec3 location, float size, int samples){
+        this.lightList.add(new AreaLight(color, location, size, samples));
+    }
+
+    /**
+     * Sets a prebuilt hierarchy with its compiled primitives, which the raytracer uses instead of compiling the
+     * shape list. Scenes loaded from a compiled scene file have no shapes besides it.
+     * @param _accelerationStructure The hierarchy, null to compile the shape list when it is needed
+     */
+    public void setAccelerationStructure(BVH _accelerationStructure) {
+        this.accelerationStructure = _accelerationStructure;
+        this.compiledFromShapes = false;
+    }
+
+    /**
+     * Returns the prebuilt hierarchy of the scene or the hierarchy compiled from its shapes.
+     * @return The hierarchy, null if the shape list has to be compiled
+     */
+    public BVH getAccelerationStructure() {
+        return accelerationStructure;
+    }
+
+    /**
+     * Returns the hierarchy of the scene and compiles the shape list if the scene has none yet. The compiled
+     * hierarchy is kept, so later renderings of the scene skip compiling it, until a shape is added.
+     * @return The hierarchy the scene is rendered with
+     */
+    public BVH buildAccelerationStructure() {
+        if (accelerationStructure == null) {
+            this.accelerationStructure = new BVH(new CompiledScene(this));
+            this.compiledFromShapes = true;
+        }
+        return accelerationStructure;
+    }
+
     /**
      * Returns the current lightlist.
      * @return lightlist
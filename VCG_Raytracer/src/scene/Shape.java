@@ -1,41 +1,123 @@
 package scene;
 
+import raytracer.Intersection;
+import raytracer.Ray;
 import utils.RgbColor;
+import utils.algebra.BoundingBox;
+import utils.algebra.Matrix4x4;
 import utils.algebra.Vec3;
 
 import java.util.List;
 
 /**
  * Represents any Shape that can be intersected with.
+ * A shape is not changed by an intersection test, so it can be shared between render threads.
  */
 public abstract class Shape extends SceneObject{
     protected Vec3 location;
     protected Material material;
-    protected Vec3 pointOfIntersection;
-    protected Vec3 normal;
+
+    // Transformations between the object space of the shape and the world, calculated once per shape
+    protected Matrix4x4 objectToWorld;
+    protected Matrix4x4 worldToObject;
+    protected Matrix4x4 normalToWorld;
+
+    /**
+     * Sets the transformation of the shape and caches its inverse and inverse transpose,
+     * so intersections do not need any matrix work besides applying them.
+     * @param _objectToWorld The transformation from object space to world space
+     */
+    protected void setTransform(Matrix4x4 _objectToWorld) {
+        this.objectToWorld = _objectToWorld;
+        this.worldToObject = _objectToWorld.invert();
+        this.normalToWorld = _objectToWorld.invertTranspose();
+    }
+
+    /**
+     * Transforms a box given in object space to the world and returns the box around it.
+     * @param min The minimum corner in object space
+     * @param max The maximum corner in object space
+     * @return The bounds in world space
+     */
+    protected BoundingBox transformBounds(Vec3 min, Vec3 max) {
+        BoundingBox bounds = new BoundingBox();
+        for (int corner = 0; corner < 8; corner++) {
+            Vec3 point = new Vec3((corner & 1) == 0 ? min.x : max.x, (corner & 2) == 0 ? min.y : max.y, (corner & 4) == 0 ? min.z : max.z);
+            objectToWorld.transformPoint(point, point);
+            bounds.extend(point.x, point.y, point.z);
+        }
+        return bounds;
+    }
 
     /**
      * Checks if a given Ray intersects with the shape.
-     * @param startPosition The Start Position of the Ray
-     * @param direction The direction of the Ray.
-     * @return The Distance from the start Position of the Ray to the Intersection Point.
+     * The hit record is only filled if the intersection is closer than the maximum distance.
+     * @param ray The Ray to test
+     * @param maxDistance The maximum distance of an intersection
+     * @param hit The hit record receiving the intersection
+     * @return true if the shape has been hit
      */
-    public abstract float intersect(Vec3 startPosition,Vec3 direction);
+    public abstract boolean intersect(Ray ray, float maxDistance, Intersection hit);
+
+    /**
+     * Checks if a given Ray intersects with the shape closer than the current distance of the hit record.
+     * @param ray The Ray to test
+     * @param hit The hit record receiving the intersection
+     * @return true if the shape has been hit
+     */
+    public boolean intersect(Ray ray, Intersection hit) {
+        return intersect(ray, hit.getDistance(), hit);
+    }
+
+    /**
+     * Checks if a given Ray hits the shape closer than the maximum distance.
+     * Unlike intersect() this only answers yes or no, so shapes can skip calculating the point and normal.
+     * @param ray The Ray to test
+     * @param maxDistance The maximum distance of an intersection
+     * @return true if the shape blocks the ray
+     */
+    public boolean occludes(Ray ray, float maxDistance) {
+        return intersect(ray, maxDistance, new Intersection(maxDistance));
+    }
+
+    /**
+     * Returns the axis aligned bounds of the shape in world space.
+     * @return The bounds, null if the shape is unbounded
+     */
+    public BoundingBox getBounds() {
+        return null;
+    }
+
+    /**
+     * Returns if the shape can cast shadows onto itself. Shadow rays of shapes which can not,
+     * like convex shapes and planes, skip the shape they start on.
+     * @return false, unless the shape overrides it
+     */
+    public boolean canShadowItself() {
+        return false;
+    }
 
     /**
      * Calculates the Color of a Shape at a Point using a Lighting Model
+     * @param hit The intersection with the shape
      * @param lightList The Lights which hit the Point on the Shape
      * @param viewVector The Vector between the camera and the point of intersection
      * @return The Color of a Shape at a Point
      */
-    public abstract RgbColor getColor(List<Light> lightList, Vec3 viewVector);
+    public RgbColor getColor(Intersection hit, List<Light> lightList, Vec3 viewVector) {
+        return this.material.getColor(hit.getPointOfIntersection(), hit.getNormal(), lightList, viewVector);
+    }
 
     /**
-     * Returns the point of intersection
-     * @return point of intersection
+     * Calculates the Color of a Shape at a Point using a Lighting Model, without creating a new color.
+     * @param hit The intersection with the shape
+     * @param lightList The Lights which hit the Point on the Shape
+     * @param viewVector The Vector between the camera and the point of intersection
+     * @param outColor The color which receives the result
+     * @return outColor
      */
-    public Vec3 getPointOfIntersection() {
-        return pointOfIntersection;
+    public RgbColor getColor(Intersection hit, List<Light> lightList, Vec3 viewVector, RgbColor outColor) {
+        return this.material.getColor(hit.getPointOfIntersection(), hit.getNormal(), lightList, viewVector, outColor);
     }
 
     /**
@@ -46,7 +128,17 @@ public abstract class Shape extends SceneObject{
         return startPosition.add(direction.multScalar(parameter));
     }
 
-    public Vec3 getNormal() { return normal;}
+    public Matrix4x4 getTransform() {
+        return objectToWorld;
+    }
+
+    public Matrix4x4 getInverseTransform() {
+        return worldToObject;
+    }
+
+    public Vec3 getLocation() {
+        return location;
+    }
 
     public boolean isReflective() {
         return material.isReflective();
@@ -1,11 +1,11 @@
 package scene;
 
-import utils.RgbColor;
+import raytracer.Intersection;
+import raytracer.Ray;
+import utils.algebra.BoundingBox;
 import utils.algebra.Matrix4x4;
 import utils.algebra.Vec3;
 
-import java.util.List;
-
 /**
  * Class Sphere
  * Represents the Sphere
@@ -13,7 +13,8 @@ import java.util.List;
 public class Sphere extends Shape{
 
     private float radius;
-    //private Vec3 location;
+    // Spheres which are only moved to their location can be stored by center and radius
+    private final boolean transformed;
 
     /**
      * Constructor Sphere
@@ -22,72 +23,106 @@ public class Sphere extends Shape{
      * @param _radius radius of the sphere
      */
     public Sphere(Vec3 _location, float _radius, Material _material) {
+        this(_location, _radius, _material, new Matrix4x4());
+    }
+
+    /**
+     * Constructor Sphere
+     * Creates a sphere with a given location and radius, which is additionally rotated or scaled around its center.
+     * @param _location Location of the sphere object
+     * @param _radius radius of the sphere
+     * @param _transform transformation applied around the center, for example a scaling into an ellipsoid
+     */
+    public Sphere(Vec3 _location, float _radius, Material _material, Matrix4x4 _transform) {
         this.location = _location;
         this.radius = _radius;
         this.material = _material;
+        this.transformed = !_transform.isIdentity();
+        setTransform(Matrix4x4.translation(_location).mult(_transform));
     }
 
     @Override
     /**
      * Checks if a given Ray intersects with the sphere.
-     * Calculates b, c and  the discriminant
-     * @param startPosition The Start Position of the Ray
-     * @param direction The direction of the Ray.
-     * @return The Distance from the start Position of the Ray to the Intersection Point.
+     * The ray is moved into the object space of the sphere, where the sphere lies in the origin.
+     * Calculates a, b, c and  the discriminant
+     * @param ray The Ray to test
+     * @param maxDistance The maximum distance of an intersection
+     * @param hit The hit record receiving the intersection
+     * @return true if the sphere has been hit
      */
-    public float intersect(Vec3 _startPosition, Vec3 direction) {
-        // Translation of the sphere
-        Matrix4x4 transformationMatrix = new Matrix4x4();
-        transformationMatrix.translateXYZ(this.location);
-        Vec3 startPosition = transformationMatrix.invert().multVec3(_startPosition, true);
-
-        // calculate B und C
-        // Math.pow() has to be casted to float because it returns double
-        // Intersection
-        float b = 2 * (startPosition.x * direction.x + startPosition.y * direction.y + startPosition.z * direction.z);
-        float c = (float) (Math.pow(startPosition.x, 2) + Math.pow(startPosition.y, 2) + Math.pow(startPosition.z, 2) - Math.pow(radius, 2));
-        float d = calculateDiscriminant(b, c);
-
-        // Check hit
-        float distance = 0f;
-        //if d>0 there is a intersection
-        if (d > 0) {
-            distance = calculateDistance(b, d, startPosition, direction);
-            if (this.pointOfIntersection != null) {
-                this.pointOfIntersection = transformationMatrix.multVec3(this.pointOfIntersection, true);
-                this.normal = this.pointOfIntersection.sub(this.location).normalize();
-            }
+    public boolean intersect(Ray ray, float maxDistance, Intersection hit) {
+        Ray objectRay = ray.toObjectSpace(worldToObject);
+        Vec3 startPosition = objectRay.getStartPoint();
+        Vec3 direction = objectRay.getDirection();
+
+        float t = calculateParameter(startPosition, direction);
+        // The world direction is normalized, so the distance is the length of the parameter
+        float distance = Math.abs(t);
+        if (!(distance > 0 && distance < maxDistance)) {
+            return false;
         }
-        return distance;
+
+        // Inserts the parameter into the Ray Formula to calculate the point in object space,
+        // the normal is taken from it before the point is moved into the world
+        hit.set(distance, this);
+        Vec3 point = hit.getPointOfIntersection().setPointAt(startPosition, direction, t);
+        normalToWorld.transformVector(point, hit.getNormal()).normalizeInPlace();
+        objectToWorld.transformPoint(point, point);
+        return true;
     }
 
     @Override
-    public RgbColor getColor(List<Light> lightList, Vec3 viewVector) {
-        return this.material.getColor(this.pointOfIntersection, this.normal, lightList, viewVector);
+    public boolean occludes(Ray ray, float maxDistance) {
+        Ray objectRay = ray.toObjectSpace(worldToObject);
+        float distance = Math.abs(calculateParameter(objectRay.getStartPoint(), objectRay.getDirection()));
+        return distance > 0 && distance < maxDistance;
+    }
+
+    /**
+     * Calculates the ray parameter of the intersection in object space.
+     * @param startPosition The start of the ray in object space
+     * @param direction The direction of the ray in object space
+     * @return The ray parameter, NaN if there is no usable intersection
+     */
+    private float calculateParameter(Vec3 startPosition, Vec3 direction) {
+        float a = direction.scalar(direction);
+        float b = 2 * startPosition.scalar(direction);
+        float c = startPosition.scalar(startPosition) - radius * radius;
+        float d = calculateDiscriminant(a, b, c);
+
+        //if d>0 there is a intersection
+        if (d <= 0) {
+            return Float.NaN;
+        }
+        return calculateParameter(a, b, d);
     }
 
     /**
      * Calculating the discriminant
+     * @param a parameter a of the function: A * t^2 + B * t + C = 0
      * @param b parameter b of the function: A * t^2 + B * t + C = 0
      * @param c parameter c of the function: A * t^2 + B * t + C = 0
      * @return discriminant
      */
-    private float calculateDiscriminant(float b, float c) {
-        return (float) Math.pow(b, 2) - 4 * c;
+    private float calculateDiscriminant(float a, float b, float c) {
+        return b * b - 4 * a * c;
     }
 
     /**
-     * Calculates the distance with B and the discriminant and t0 and t1.
+     * Calculates the ray parameter of the intersection with A, B and the discriminant and t0 and t1.
      * It uses the smaller t for the calculation.
-     * The Point of intersection is also calculated here.
+     * @param a parameter a of the function: A * t^2 + B * t + C = 0
      * @param b parameter b of the function: A * t^2 + B * t + C = 0
      * @param d discriminant
-     * @return distance
+     * @return The ray parameter, NaN if there is no usable intersection
      */
-    private float calculateDistance(float b, float d, Vec3 startPosition, Vec3 direction) {
-        float tZero = (float) ( -1 *  b - Math.sqrt(d)) / 2;
-        float tOne = (float) ( -1 *  b + Math.sqrt(d)) / 2;
-        // If both of the parameters are negative, set the distance to zero so that no hit is detected
+    private float calculateParameter(float a, float b, float d) {
+        // The root is taken once and in float, so the intersection kernels calculate exactly the same parameter
+        float root = (float) Math.sqrt(d);
+        float tZero = (-1 * b - root) / (2 * a);
+        float tOne = (-1 * b + root) / (2 * a);
+        // If both of the parameters are negative, there is no hit
         if(tZero >= 0 || tOne >= 0) {
             if (tZero < tOne) {
                 tOne = tZero;
@@ -98,18 +133,26 @@ public class Sphere extends Shape{
                     tOne = tZero;
                 }
             } else {
-                return 0;
+                return Float.NaN;
             }
         }
-        // Inserts the parameter into the Ray Formula to calculate the distance.
-        this.pointOfIntersection = calculatePointOfIntersection(startPosition, direction, tOne);
-        return startPosition.sub(pointOfIntersection).length();
+        return tOne;
     }
 
     @Override
-    public Vec3 getPointOfIntersection() {
-        return pointOfIntersection;
+    public BoundingBox getBounds() {
+        return transformBounds(new Vec3(-radius, -radius, -radius), new Vec3(radius, radius, radius));
     }
 
+    public float getRadius() {
+        return radius;
+    }
 
-}
\ No newline at end of file
+    /**
+     * Returns if the sphere is rotated or scaled around its center, besides being moved to its location.
+     * @return true if the sphere has a transformation
+     */
+    public boolean isTransformed() {
+        return transformed;
+    }
+}
@@ -1,5 +1,8 @@
 package scene;
 
+import raytracer.Ray;
+import utils.algebra.BoundingBox;
+import utils.algebra.Matrix4x4;
 import utils.algebra.Vec3;
 
 /**
@@ -8,8 +11,6 @@ import utils.algebra.Vec3;
 public class Square extends Plane {
 
     private float size;
-    //descripes if the intersection point is in the square
-    private boolean isInSquare;
 
     /**
      * Creates a new Plane for a given size.
@@ -19,38 +20,57 @@ public class Square extends Plane {
      * @param _material The Material of the Square
      */
     public Square(Vec3 _location, Vec3 _normal, float _size, Material _material) {
-        super(_location, _normal, _material);
-        this.size = _size;
+        this(_location, _normal, _size, _material, new Matrix4x4());
     }
 
-    @Override
-    public float intersect(Vec3 _startPosition, Vec3 direction) {
-        float distance = super.intersect(_startPosition, direction);
-        if (pointOfIntersection != null) {
-            if (isInSquare()) {
-                return distance;
-            }
-        }
-        return 0f;
+    /**
+     * Creates a new Plane for a given size, which is additionally rotated around its center.
+     * @param _location The Center Point of the Square
+     * @param _normal The direction in which the Square is facing before the transformation
+     * @param _size The horizontal and vertical size of the square
+     * @param _material The Material of the Square
+     * @param _transform transformation applied around the center
+     */
+    public Square(Vec3 _location, Vec3 _normal, float _size, Material _material, Matrix4x4 _transform) {
+        super(_location, _normal, _material, _transform);
+        this.size = _size;
     }
 
     /**
      * Checks if intersection point is in square
+     * The point is calculated in object space, where the ray parameter is the same as in world space.
+     * @param ray The Ray which hit the plane of the square
+     * @param t The ray parameter of the point on the plane of the square
      * @return true if intersection point is inside square
      * @return false if intersection point is outside square
      */
-    private boolean isInSquare() {
-        Vec3 normalizedPOI = pointOfIntersection.sub(location);
-        if (normalizedPOI.x > -size / 2 &&
-                normalizedPOI.x < size / 2 &&
-                normalizedPOI.y > -size / 2 &&
-                normalizedPOI.y < size / 2 &&
-                normalizedPOI.z > -size / 2 &&
-                normalizedPOI.z < size / 2) {
+    @Override
+    protected boolean contains(Ray ray, float t) {
+        Ray objectRay = ray.toObjectSpace(worldToObject);
+        Vec3 start = objectRay.getStartPoint();
+        Vec3 direction = objectRay.getDirection();
+        float x = start.x + direction.x * t;
+        float y = start.y + direction.y * t;
+        float z = start.z + direction.z * t;
+        if (x > -size / 2 &&
+                x < size / 2 &&
+                y > -size / 2 &&
+                y < size / 2 &&
+                z > -size / 2 &&
+                z < size / 2) {
             return true;
         } else {
             return false;
         }
     }
 
+    @Override
+    public BoundingBox getBounds() {
+        // Points are only accepted inside this box, see contains()
+        return transformBounds(new Vec3(-size / 2, -size / 2, -size / 2), new Vec3(size / 2, size / 2, size / 2));
+    }
+
+    public float getSize() {
+        return size;
+    }
 }
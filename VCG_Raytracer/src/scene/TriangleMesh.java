@@ -0,0 +1,425 @@
+package scene;
+
+import raytracer.BVH;
+import raytracer.BVHBuilder;
+import raytracer.Intersection;
+import raytracer.Ray;
+import utils.algebra.BoundingBox;
+import utils.algebra.Matrix4x4;
+import utils.algebra.Vec3;
+import utils.io.Log;
+import utils.io.MeshData;
+
+/**
+ * Class TriangleMesh
+ * Represents a mesh of triangles, for example loaded from an OBJ file.
+ * The vertices are transformed into the world once and kept in flat arrays together with the triangle indices,
+ * so a mesh of millions of triangles does not create an object per triangle. The triangles are sorted into
+ * their own bounding volume hierarchy, which the mesh traverses when it is hit by a ray.
+ */
+public class TriangleMesh extends Shape {
+
+    // Fraction of the mesh size a ray has to travel before it can hit the mesh, so shadow rays starting
+    // on the mesh do not hit the triangle they start on
+    private static final float SELF_INTERSECTION_EPSILON = 1e-5f;
+
+    private final float[] positions;
+    private final float[] normals;
+    // Three indices per triangle, sorted in the order of the hierarchy
+    private final int[] positionIndices;
+    private final int[] normalIndices;
+    private final int triangleCount;
+
+    private final float[] nodeBounds;
+    private final int[] nodeOffsets;
+    private final int[] nodeCounts;
+    private final int stackSize;
+
+    private final BoundingBox bounds;
+    private final float epsilon;
+
+    /**
+     * Constructor TriangleMesh
+     * Creates a mesh from loaded triangles, which is placed at the given location.
+     * @param _mesh The triangles in object space
+     * @param _location Location of the mesh
+     * @param _material Material of the mesh
+     */
+    public TriangleMesh(MeshData _mesh, Vec3 _location, Material _material) {
+        this(_mesh, _location, _material, new Matrix4x4());
+    }
+
+    /**
+     * Constructor TriangleMesh
+     * Creates a mesh from loaded triangles, which is placed at the given location and additionally rotated or scaled.
+     * @param _mesh The triangles in object space
+     * @param _location Location of the mesh
+     * @param _material Material of the mesh
+     * @param _transform transformation applied around the origin of the mesh
+     */
+    public TriangleMesh(MeshData _mesh, Vec3 _location, Material _material, Matrix4x4 _transform) {
+        long tStart = System.nanoTime();
+        this.location = _location;
+        this.material = _material;
+        setTransform(Matrix4x4.translation(_location).mult(_transform));
+
+        this.triangleCount = _mesh.getTriangleCount();
+        this.positions = transform(_mesh.getPositions(), objectToWorld, true);
+        this.normals = _mesh.getNormalIndices() == null ? null : transform(_mesh.getNormals(), normalToWorld, false);
+
+        this.bounds = boundsOf(positions);
+        this.epsilon = epsilonOf(bounds);
+
+        BVHBuilder builder = new BVHBuilder(triangleBounds(_mesh.getPositionIndices()), triangleCount);
+        int[] order = builder.getPrimitiveOrder();
+        this.positionIndices = reorder(_mesh.getPositionIndices(), order);
+        this.normalIndices = normals == null ? null : reorder(_mesh.getNormalIndices(), order);
+        this.nodeBounds = builder.getNodeBounds();
+        this.nodeOffsets = builder.getNodeOffsets();
+        this.nodeCounts = builder.getNodeCounts();
+        this.stackSize = builder.getMaxDepth() + 1;
+
+        Log.print(this, "Built for " + triangleCount + " triangles in " + ((System.nanoTime() - tStart) / 1000000.0)
+                + " ms: " + builder.getNodeCount() + " nodes, depth " + builder.getMaxDepth() + ", "
+                + (triangleCount == 0 ? 0 : getByteSize() / triangleCount) + " bytes per triangle");
+    }
+
+    /**
+     * Constructor TriangleMesh
+     * Creates a mesh from triangles which are already in world space and sorted into their hierarchy,
+     * like a mesh read from a compiled scene file. Nothing is transformed or built again.
+     * @param _mesh The triangles in world space in the order of the hierarchy, see getMeshData()
+     * @param _nodeBounds The bounds of the nodes of the hierarchy
+     * @param _nodeOffsets The second child of every inner node and the first triangle of every leaf
+     * @param _nodeCounts The number of triangles of every leaf, 0 for inner nodes
+     * @param _stackSize The traversal stack size the hierarchy needs
+     * @param _location Location of the mesh
+     * @param _material Material of the mesh
+     * @param _objectToWorld The transformation the vertices have been transformed into the world with
+     */
+    public TriangleMesh(MeshData _mesh, float[] _nodeBounds, int[] _nodeOffsets, int[] _nodeCounts, int _stackSize,
+                        Vec3 _location, Material _material, Matrix4x4 _objectToWorld) {
+        this.location = _location;
+        this.material = _material;
+        setTransform(_objectToWorld);
+
+        this.triangleCount = _mesh.getTriangleCount();
+        this.positions = _mesh.getPositions();
+        this.normals = _mesh.getNormalIndices() == null ? null : _mesh.getNormals();
+        this.positionIndices = _mesh.getPositionIndices();
+        this.normalIndices = _mesh.getNormalIndices();
+        this.nodeBounds = _nodeBounds;
+        this.nodeOffsets = _nodeOffsets;
+        this.nodeCounts = _nodeCounts;
+        this.stackSize = _stackSize;
+
+        this.bounds = boundsOf(positions);
+        this.epsilon = epsilonOf(bounds);
+    }
+
+    /**
+     * Calculates the bounds of the vertices.
+     */
+    private static BoundingBox boundsOf(float[] positions) {
+        BoundingBox bounds = new BoundingBox();
+        for (int i = 0; i < positions.length; i += 3) {
+            bounds.extend(positions[i], positions[i + 1], positions[i + 2]);
+        }
+        return bounds;
+    }
+
+    /**
+     * Calculates the distance a ray has to travel before it can hit the mesh from the diagonal of its bounds.
+     */
+    private static float epsilonOf(BoundingBox bounds) {
+        float dx = bounds.maxX - bounds.minX;
+        float dy = bounds.maxY - bounds.minY;
+        float dz = bounds.maxZ - bounds.minZ;
+        return SELF_INTERSECTION_EPSILON * (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Transforms points or normals given as x, y, z into a new array.
+     */
+    private static float[] transform(float[] values, Matrix4x4 matrix, boolean points) {
+        float[] result = new float[values.length];
+        Vec3 value = new Vec3();
+        for (int i = 0; i < values.length; i += 3) {
+            value.set(values[i], values[i + 1], values[i + 2]);
+            if (points) {
+                matrix.transformPoint(value, value);
+            } else {
+                matrix.transformVector(value, value).normalizeInPlace();
+            }
+            result[i] = value.x;
+            result[i + 1] = value.y;
+            result[i + 2] = value.z;
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the bounds of every triangle for the hierarchy builder.
+     */
+    private float[] triangleBounds(int[] indices) {
+        float[] result = new float[triangleCount * 6];
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            int b = triangle * 6;
+            for (int axis = 0; axis < 3; axis++) {
+                result[b + axis] = Float.POSITIVE_INFINITY;
+                result[b + axis + 3] = Float.NEGATIVE_INFINITY;
+            }
+            for (int corner = 0; corner < 3; corner++) {
+                int p = indices[triangle * 3 + corner] * 3;
+                for (int axis = 0; axis < 3; axis++) {
+                    float value = positions[p + axis];
+                    if (value < result[b + axis]) result[b + axis] = value;
+                    if (value > result[b + axis + 3]) result[b + axis + 3] = value;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sorts the three indices of every triangle into the order of the hierarchy.
+     */
+    private static int[] reorder(int[] indices, int[] order) {
+        int[] result = new int[order.length * 3];
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(indices, order[i] * 3, result, i * 3, 3);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if a given Ray intersects with the mesh by traversing the hierarchy of its triangles.
+     * The triangles are two-sided, the normal is interpolated from the vertex normals if the mesh has them.
+     * @param ray The Ray to test
+     * @param maxDistance The maximum distance of an intersection
+     * @param hit The hit record receiving the intersection
+     * @return true if a triangle has been hit
+     */
+    @Override
+    public boolean intersect(Ray ray, float maxDistance, Intersection hit) {
+        if (triangleCount == 0) {
+            return false;
+        }
+        Vec3 start = ray.getStartPoint();
+        Vec3 direction = ray.getDirection();
+        float invX = 1f / direction.x;
+        float invY = 1f / direction.y;
+        float invZ = 1f / direction.z;
+
+        float closest = maxDistance;
+        int closestTriangle = -1;
+
+        int[] stack = ray.getShapeTraversalStack(stackSize + 1);
+        int stackPointer = 0;
+        stack[stackPointer++] = 0;
+        while (stackPointer > 0) {
+            int node = stack[--stackPointer];
+            if (BVH.intersectBox(nodeBounds, node, start, invX, invY, invZ, closest) == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            int count = nodeCounts[node];
+            if (count == 0) {
+                stack[stackPointer++] = nodeOffsets[node];
+                stack[stackPointer++] = node + 1;
+                continue;
+            }
+            int first = nodeOffsets[node];
+            for (int triangle = first; triangle < first + count; triangle++) {
+                float t = intersectTriangle(triangle, start, direction, closest);
+                if (t < closest) {
+                    closest = t;
+                    closestTriangle = triangle;
+                }
+            }
+        }
+        if (closestTriangle < 0) {
+            return false;
+        }
+
+        hit.set(closest, this);
+        hit.getPointOfIntersection().setPointAt(start, direction, closest);
+        calculateNormal(closestTriangle, hit.getPointOfIntersection(), hit.getNormal());
+        return true;
+    }
+
+    @Override
+    public boolean occludes(Ray ray, float maxDistance) {
+        if (triangleCount == 0) {
+            return false;
+        }
+        Vec3 start = ray.getStartPoint();
+        Vec3 direction = ray.getDirection();
+        float invX = 1f / direction.x;
+        float invY = 1f / direction.y;
+        float invZ = 1f / direction.z;
+
+        int[] stack = ray.getShapeTraversalStack(stackSize + 1);
+        int stackPointer = 0;
+        stack[stackPointer++] = 0;
+        while (stackPointer > 0) {
+            int node = stack[--stackPointer];
+            if (BVH.intersectBox(nodeBounds, node, start, invX, invY, invZ, maxDistance) == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            int count = nodeCounts[node];
+            if (count == 0) {
+                stack[stackPointer++] = nodeOffsets[node];
+                stack[stackPointer++] = node + 1;
+                continue;
+            }
+            int first = nodeOffsets[node];
+            for (int triangle = first; triangle < first + count; triangle++) {
+                if (intersectTriangle(triangle, start, direction, maxDistance) < maxDistance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Intersects the ray with a triangle using the Möller-Trumbore algorithm.
+     * @return The ray parameter, positive infinity if the triangle is missed or not closer than the maximum distance
+     */
+    private float intersectTriangle(int triangle, Vec3 start, Vec3 direction, float maxDistance) {
+        int i0 = positionIndices[triangle * 3] * 3;
+        int i1 = positionIndices[triangle * 3 + 1] * 3;
+        int i2 = positionIndices[triangle * 3 + 2] * 3;
+        float v0x = positions[i0], v0y = positions[i0 + 1], v0z = positions[i0 + 2];
+        float e1x = positions[i1] - v0x, e1y = positions[i1 + 1] - v0y, e1z = positions[i1 + 2] - v0z;
+        float e2x = positions[i2] - v0x, e2y = positions[i2 + 1] - v0y, e2z = positions[i2 + 2] - v0z;
+
+        // p = direction x e2
+        float px = direction.y * e2z - direction.z * e2y;
+        float py = direction.z * e2x - direction.x * e2z;
+        float pz = direction.x * e2y - direction.y * e2x;
+        float determinant = e1x * px + e1y * py + e1z * pz;
+        // The ray is parallel to the triangle
+        if (determinant > -1e-12f && determinant < 1e-12f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float inverse = 1f / determinant;
+
+        float sx = start.x - v0x, sy = start.y - v0y, sz = start.z - v0z;
+        float u = (sx * px + sy * py + sz * pz) * inverse;
+        if (u < 0f || u > 1f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        // q = s x e1
+        float qx = sy * e1z - sz * e1y;
+        float qy = sz * e1x - sx * e1z;
+        float qz = sx * e1y - sy * e1x;
+        float v = (direction.x * qx + direction.y * qy + direction.z * qz) * inverse;
+        if (v < 0f || u + v > 1f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float t = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+        return t > epsilon && t < maxDistance ? t : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculates the normal of a triangle at a point on it. Vertex normals are interpolated if every corner
+     * has one, otherwise the normal of the triangle plane is used.
+     * The barycentric coordinates are only calculated here for the closest hit, so the triangle tests stay cheap.
+     */
+    private void calculateNormal(int triangle, Vec3 point, Vec3 out) {
+        int t = triangle * 3;
+        int i0 = positionIndices[t] * 3;
+        int i1 = positionIndices[t + 1] * 3;
+        int i2 = positionIndices[t + 2] * 3;
+        float e1x = positions[i1] - positions[i0], e1y = positions[i1 + 1] - positions[i0 + 1], e1z = positions[i1 + 2] - positions[i0 + 2];
+        float e2x = positions[i2] - positions[i0], e2y = positions[i2 + 1] - positions[i0 + 1], e2z = positions[i2 + 2] - positions[i0 + 2];
+        // Normal of the triangle plane
+        float nx = e1y * e2z - e1z * e2y;
+        float ny = e1z * e2x - e1x * e2z;
+        float nz = e1x * e2y - e1y * e2x;
+
+        if (normalIndices != null && normalIndices[t] >= 0 && normalIndices[t + 1] >= 0 && normalIndices[t + 2] >= 0) {
+            // Barycentric coordinates from the areas of the sub triangles opposite to the corners 1 and 2
+            float px = point.x - positions[i0], py = point.y - positions[i0 + 1], pz = point.z - positions[i0 + 2];
+            float area = nx * nx + ny * ny + nz * nz;
+            float u = (nx * (py * e2z - pz * e2y) + ny * (pz * e2x - px * e2z) + nz * (px * e2y - py * e2x)) / area;
+            float v = (nx * (e1y * pz - e1z * py) + ny * (e1z * px - e1x * pz) + nz * (e1x * py - e1y * px)) / area;
+            int n0 = normalIndices[t] * 3;
+            int n1 = normalIndices[t + 1] * 3;
+            int n2 = normalIndices[t + 2] * 3;
+            float w = 1f - u - v;
+            out.set(w * normals[n0] + u * normals[n1] + v * normals[n2],
+                    w * normals[n0 + 1] + u * normals[n1 + 1] + v * normals[n2 + 1],
+                    w * normals[n0 + 2] + u * normals[n1 + 2] + v * normals[n2 + 2]);
+        } else {
+            out.set(nx, ny, nz);
+        }
+        out.normalizeInPlace();
+    }
+
+    @Override
+    public BoundingBox getBounds() {
+        return triangleCount == 0 ? null : bounds;
+    }
+
+    /**
+     * Returns if the mesh can cast shadows onto itself. A shadow ray starting on one triangle can be blocked
+     * by another triangle of the same mesh.
+     * @return true
+     */
+    @Override
+    public boolean canShadowItself() {
+        return true;
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Returns the triangles of the mesh in world space, sorted in the order of its hierarchy.
+     * The arrays are not copied.
+     * @return The vertices, normals and indices of the triangles
+     */
+    public MeshData getMeshData() {
+        return new MeshData(positions, normals == null ? new float[0] : normals, positionIndices, normalIndices);
+    }
+
+    /**
+     * Returns the bounds of the nodes of the hierarchy as minX, minY, minZ, maxX, maxY, maxZ.
+     * @return The node bounds, not copied
+     */
+    public float[] getNodeBounds() {
+        return nodeBounds;
+    }
+
+    /**
+     * Returns the second child of every inner node and the first triangle of every leaf.
+     * @return The node offsets, not copied
+     */
+    public int[] getNodeOffsets() {
+        return nodeOffsets;
+    }
+
+    /**
+     * Returns the number of triangles of every leaf, 0 for inner nodes.
+     * @return The node counts, not copied
+     */
+    public int[] getNodeCounts() {
+        return nodeCounts;
+    }
+
+    public int getStackSize() {
+        return stackSize;
+    }
+
+    /**
+     * Returns the memory used by the vertices, the triangles and the hierarchy of the mesh.
+     * @return The size in bytes
+     */
+    public long getByteSize() {
+        return 4L * (positions.length + (normals == null ? 0 : normals.length) + positionIndices.length
+                + (normalIndices == null ? 0 : normalIndices.length) + nodeBounds.length + nodeOffsets.length + nodeCounts.length);
+    }
+}
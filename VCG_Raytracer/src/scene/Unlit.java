@@ -22,4 +22,23 @@ public class Unlit extends Material {
     public RgbColor getColor(Vec3 pointOfIntersection, Vec3 normal, List<Light> lightList, Vec3 viewVector) {
         return this.diffusionColor;
     }
+
+    @Override
+    public RgbColor getColor(Vec3 pointOfIntersection, Vec3 normal, List<Light> lightList, Vec3 viewVector, RgbColor outColor) {
+        return outColor.set(this.diffusionColor);
+    }
+
+    @Override
+    public void addDirectLight(Vec3 pointOfIntersection, Vec3 normal, Vec3 lightPosition, RgbColor lightColor, float lightWeight, Vec3 viewVector, RgbColor directLight) {
+    }
+
+    @Override
+    public RgbColor addAmbientLight(RgbColor directLight) {
+        return directLight.set(this.diffusionColor);
+    }
+
+    @Override
+    public boolean receivesLight() {
+        return false;
+    }
 }
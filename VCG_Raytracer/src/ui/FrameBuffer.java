@@ -0,0 +1,101 @@
+package ui;
+
+import utils.RgbColor;
+import utils.io.DataExporter;
+import utils.io.ImageExportQueue;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Class FrameBuffer
+ * The image the raytracer renders into. It does not depend on a display, a Window can show it while rendering.
+ * Render threads write different pixels at the same time, so implementations must not share state between pixels.
+ */
+public abstract class FrameBuffer {
+
+    protected int mWidth;
+    protected int mHeight;
+
+    /**
+     Create a frame buffer with the given dimensions
+     **/
+    public FrameBuffer(int width, int height){
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     Write the color of a pixel
+     **/
+    public abstract void setPixel(int x, int y, RgbColor color);
+
+    /**
+     Show a color for a pixel which is not finished yet, like the blocks of the coarse progressive passes
+     **/
+    public void setPreviewPixel(int x, int y, RgbColor color){
+        setPixel(x, y, color);
+    }
+
+    /**
+     Get a float buffer the renderer sums up the samples of the pixels in, three floats per pixel, row by row.
+     Every pixel is written by setPixel() with its final color once its samples are complete
+     **/
+    public float[] getAccumulationBuffer(){
+        return new float[mWidth * mHeight * 3];
+    }
+
+    /**
+     Get the image which shows the current state of the buffer
+     **/
+    public abstract BufferedImage getBufferedImage();
+
+    public int getWidth(){
+        return mWidth;
+    }
+
+    public int getHeight(){
+        return mHeight;
+    }
+
+    /**
+     Export the rendering to an PNG image with rendering information, returns false if it could not be written
+     **/
+    public boolean exportRendering(String text, int recursions, int antiAliasing, boolean showLabel){
+        return exportRendering(text, recursions, antiAliasing, showLabel, "raytracing.png");
+    }
+
+    /**
+     Export the rendering to the given image with rendering information, as PPM for .ppm files and as PNG otherwise.
+     Returns false if it could not be written
+     **/
+    public boolean exportRendering(String text, int recursions, int antiAliasing, boolean showLabel, String fileName){
+        if(showLabel) {
+            setOutputLabel(text, recursions, antiAliasing);
+        }
+        return DataExporter.exportImage(getBufferedImage(), fileName);
+    }
+
+    /**
+     Queue a copy of the rendering with rendering information for writing in the background, the queue counts
+     the images which could not be written
+     **/
+    public void exportRendering(String text, int recursions, int antiAliasing, boolean showLabel, String fileName, ImageExportQueue queue){
+        if(showLabel) {
+            setOutputLabel(text, recursions, antiAliasing);
+        }
+        queue.submit(getBufferedImage(), fileName);
+    }
+
+    /**
+     Draw debug information
+     **/
+    protected void setOutputLabel(String text, int recursions, int antiAliasing){
+        Graphics graphic = getBufferedImage().getGraphics();
+        graphic.setColor(Color.black);
+        graphic.fill3DRect(0,mHeight - 30,mWidth,mHeight,true);
+        graphic.setColor(Color.green);
+        graphic.drawString("Elapsed rendering time: " + text + " sec, Recursions: " + recursions + ", AA: x" + antiAliasing, 10, mHeight - 10);
+        graphic.dispose();
+    }
+}
@@ -0,0 +1,108 @@
+package ui;
+
+import utils.RgbColor;
+import utils.io.DataExporter;
+import utils.io.ImageExportQueue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Class HdrFrameBuffer
+ * A frame buffer which keeps the float colors of the rendering besides the display image. The colors are the
+ * unclamped light of the pixels, the progressive renderer sums its samples up directly in them, and the display
+ * image is derived from the floats by a tone mapper, which is the only place the colors are clamped and quantized.
+ * Changing the tone mapping or writing the floats as PFM or OpenEXR for compositing therefore never needs the
+ * scene to be rendered again.
+ */
+public class HdrFrameBuffer extends FrameBuffer {
+
+    // Red, green and blue of every pixel, row by row from the top
+    private final float[] mColors;
+
+    private BufferedImage mBufferedImage;
+    private int[] mPixels;
+    private ToneMapper mToneMapper = ToneMapper.CLAMP;
+
+    /**
+     Create the frame buffer with the given dimensions
+     **/
+    public HdrFrameBuffer(int width, int height){
+        super(width, height);
+
+        mColors = new float[width * height * 3];
+        mBufferedImage = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_RGB);
+        mPixels = ((DataBufferInt) mBufferedImage.getRaster().getDataBuffer()).getData();
+    }
+
+    @Override
+    public void setPixel(int x, int y, RgbColor color){
+        int pixel = y * mWidth + x;
+        mColors[pixel * 3] = color.red();
+        mColors[pixel * 3 + 1] = color.green();
+        mColors[pixel * 3 + 2] = color.blue();
+        mPixels[pixel] = mToneMapper.map(color.red(), color.green(), color.blue());
+    }
+
+    /**
+     Only the display image shows the preview, the float colors keep the samples summed up so far
+     **/
+    @Override
+    public void setPreviewPixel(int x, int y, RgbColor color){
+        mPixels[y * mWidth + x] = mToneMapper.map(color.red(), color.green(), color.blue());
+    }
+
+    /**
+     The samples are summed up in the float colors themselves
+     **/
+    @Override
+    public float[] getAccumulationBuffer(){
+        return mColors;
+    }
+
+    @Override
+    public BufferedImage getBufferedImage(){
+        return mBufferedImage;
+    }
+
+    /**
+     Get the float colors of the rendering, three per pixel, row by row from the top
+     **/
+    public float[] getColors(){
+        return mColors;
+    }
+
+    public ToneMapper getToneMapper(){
+        return mToneMapper;
+    }
+
+    /**
+     Change the tone mapping, the display image is mapped again from the float colors
+     **/
+    public void setToneMapper(ToneMapper toneMapper){
+        mToneMapper = toneMapper;
+        for (int pixel = 0; pixel < mPixels.length; pixel++) {
+            mPixels[pixel] = toneMapper.map(mColors[pixel * 3], mColors[pixel * 3 + 1], mColors[pixel * 3 + 2]);
+        }
+    }
+
+    /**
+     Export the float colors to PFM and OpenEXR files, other files get the display image with rendering information
+     **/
+    @Override
+    public boolean exportRendering(String text, int recursions, int antiAliasing, boolean showLabel, String fileName){
+        if (DataExporter.isHdrFile(fileName)) {
+            return DataExporter.exportColors(mColors, mWidth, mHeight, fileName);
+        }
+        return super.exportRendering(text, recursions, antiAliasing, showLabel, fileName);
+    }
+
+    @Override
+    public void exportRendering(String text, int recursions, int antiAliasing, boolean showLabel, String fileName, ImageExportQueue queue){
+        if (DataExporter.isHdrFile(fileName)) {
+            queue.submit(mColors, mWidth, mHeight, fileName);
+        } else {
+            super.exportRendering(text, recursions, antiAliasing, showLabel, fileName, queue);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ui;
+
+import utils.RgbColor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Class ImageFrameBuffer
+ * A frame buffer which renders straight into the pixels of an image, without any display.
+ * Used on its own for headless rendering and shown by a Window for the preview.
+ */
+public class ImageFrameBuffer extends FrameBuffer {
+
+    private BufferedImage mBufferedImage;
+    // The pixels of the image, one packed RGB value per pixel, row by row
+    private int[] mPixels;
+
+    /**
+     Create the frame buffer with the given dimensions
+     **/
+    public ImageFrameBuffer(int width, int height){
+        super(width, height);
+
+        mBufferedImage = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_RGB);
+        mPixels = ((DataBufferInt) mBufferedImage.getRaster().getDataBuffer()).getData();
+    }
+
+    @Override
+    public void setPixel(int x, int y, RgbColor color){
+        mPixels[y * mWidth + x] = color.getRGB();
+    }
+
+    @Override
+    public BufferedImage getBufferedImage(){
+        return mBufferedImage;
+    }
+}
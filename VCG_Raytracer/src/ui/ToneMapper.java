@@ -0,0 +1,61 @@
+package ui;
+
+/**
+ * Class ToneMapper
+ * Turns the float colors of a rendering into the 8 bit pixels of the display image. The color is scaled by the
+ * exposure, optionally compressed with the Reinhard operator c / (1 + c), clamped to [0, 1], gamma corrected and
+ * quantized. The default mapper only clamps and quantizes, exactly like RgbColor.getRGB().
+ */
+public class ToneMapper {
+
+    // Clamps and quantizes without changing the colors, the pixels of RgbColor.getRGB()
+    public static final ToneMapper CLAMP = new ToneMapper(1f, 1f, false);
+
+    private final float exposure;
+    private final float gamma;
+    private final boolean reinhard;
+
+    /**
+     * @param _exposure The factor every color is scaled by
+     * @param _gamma The display gamma, 1 to keep the colors linear and 2.2 for a common monitor
+     * @param _reinhard true to compress bright colors smoothly instead of clamping them
+     */
+    public ToneMapper(float _exposure, float _gamma, boolean _reinhard) {
+        this.exposure = _exposure;
+        this.gamma = _gamma;
+        this.reinhard = _reinhard;
+    }
+
+    /**
+     * Maps a color to a pixel of the display image.
+     * @return The packed RGB value
+     */
+    public int map(float red, float green, float blue) {
+        return (mapChannel(red) << 16) + (mapChannel(green) << 8) + mapChannel(blue);
+    }
+
+    private int mapChannel(float value) {
+        value *= exposure;
+        if (reinhard) {
+            value = value / (1f + value);
+        }
+        if (value > 1f) value = 1f;
+        if (!(value > 0f)) value = 0f;
+        if (gamma != 1f) {
+            value = (float) Math.pow(value, 1.0 / gamma);
+        }
+        return (int) (value * 255f);
+    }
+
+    public float getExposure() {
+        return exposure;
+    }
+
+    public float getGamma() {
+        return gamma;
+    }
+
+    public boolean isReinhard() {
+        return reinhard;
+    }
+}
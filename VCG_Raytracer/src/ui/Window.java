@@ -1,37 +1,36 @@
 package ui;
 
-import utils.RgbColor;
-import utils.algebra.Vec2;
-import utils.io.DataExporter;
-
 import javax.swing.*;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class Window
+ * An optional preview of a frame buffer. The renderer never talks to the window, instead the window
+ * repaints itself at a fixed frame rate from its own thread while the frame buffer is filled.
+ */
 public class Window {
 
-    private int mWidth;
-    private int mHeight;
-
-    private BufferedImage mBufferedImage;
+    private FrameBuffer mFrameBuffer;
+    private int mFramesPerSecond;
 
     private JFrame mFrame;
+    private ScheduledExecutorService mRefresher;
 
     /**
-     Create render window with the given dimensions
+     Create a preview for the given frame buffer, which is refreshed with the given frame rate
      **/
-    public Window(int width, int height){
-        mWidth = width;
-        mHeight = height;
-
-        // we are using only one frame
-        mBufferedImage = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_RGB);
+    public Window(FrameBuffer frameBuffer, int framesPerSecond){
+        mFrameBuffer = frameBuffer;
+        mFramesPerSecond = Math.max(1, framesPerSecond);
 
         createFrame();
+        startRefresh();
     }
 
-    public BufferedImage getBufferedImage(){
-        return mBufferedImage;
+    public FrameBuffer getFrameBuffer(){
+        return mFrameBuffer;
     }
 
     /**
@@ -40,8 +39,7 @@ public class Window {
     private void createFrame(){
         JFrame frame = new JFrame();
 
-        frame.getContentPane().add(new JLabel(new ImageIcon(mBufferedImage)));
-        frame.setSize(mBufferedImage.getHeight() + frame.getSize().height, mBufferedImage.getWidth() + frame.getSize().width);
+        frame.getContentPane().add(new JLabel(new ImageIcon(mFrameBuffer.getBufferedImage())));
         frame.pack();
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         frame.setVisible(true);
@@ -50,36 +48,23 @@ public class Window {
     }
 
     /**
-     Draw debug information
+     Repaint the frame periodically, the repaint itself is queued on the Swing thread
      **/
-    private void setOutputLabel(String text, int recursions, int antiAliasing){
-        Graphics graphic = mBufferedImage.getGraphics();
-        graphic.setColor(Color.black);
-        graphic.fill3DRect(0,mHeight - 30,mWidth,mHeight,true);
-        graphic.setColor(Color.green);
-        graphic.drawString("Elapsed rendering time: " + text + " sec, Recursions: " + recursions + ", AA: x" + antiAliasing, 10, mHeight - 10);
-
-        mFrame.repaint();
+    private void startRefresh(){
+        mRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Preview");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = 1000000000L / mFramesPerSecond;
+        mRefresher.scheduleAtFixedRate(mFrame::repaint, 0, period, TimeUnit.NANOSECONDS);
     }
 
     /**
-     Draw pixel to our render frame
+     Stop refreshing and show the final state of the frame buffer once more
      **/
-    public void setPixel(BufferedImage bufferedImage, RgbColor color, Vec2 screenPosition){
-        bufferedImage.setRGB((int)screenPosition.x, (int)screenPosition.y, color.getRGB());
+    public void stopRefresh(){
+        mRefresher.shutdown();
         mFrame.repaint();
     }
-
-    /**
-     Export the rendering to an PNG image with rendering information
-     **/
-    public void exportRendering(String text, int recursions, int antiAliasing, boolean showLabel){
-
-        if(showLabel) {
-            setOutputLabel(text, recursions, antiAliasing);
-        }
-        DataExporter.exportImageToPng(mBufferedImage, "raytracing.png");
-    }
-
-
 }
@@ -2,12 +2,21 @@ package utils;
 
 import utils.algebra.Vec3;
 
+/**
+ * Class RgbColor
+ * A color or an amount of light. The channels are not limited, so light brighter than 1 is kept through the whole
+ * path until the color is quantized by getRGB() or by the tone mapper of the frame buffer.
+ */
 public class RgbColor {
 
-    public Vec3 colors;
-    public float red(){ return colors.x; }
-    public float green(){ return colors.y; }
-    public float blue(){ return colors.z; }
+    // The channels are stored directly, so a color is a single small object
+    private float r;
+    private float g;
+    private float b;
+
+    public float red(){ return r; }
+    public float green(){ return g; }
+    public float blue(){ return b; }
 
     public static RgbColor DARK_CUSTOM = new RgbColor(0.02f, 0.01f, 0.01f);
     public static RgbColor RED = new RgbColor(0.5f, 0, 0);
@@ -27,67 +36,95 @@ public class RgbColor {
     public static RgbColor DARK_GRAY = new RgbColor(0.1f, 0.1f, 0.1f);
 
     public RgbColor(float r, float g, float b){
-        colors = new Vec3(r, g, b);
-
-        this.clamp();
+        this.r = r;
+        this.g = g;
+        this.b = b;
     }
 
     public RgbColor(Vec3 color){
-        colors = color;
-
-        this.clamp();
+        this(color.x, color.y, color.z);
     }
 
     public void add(float r, float g, float b){
-        colors.x += r;
-        colors.y += g;
-        colors.z += b;
-
-        this.clamp();
+        this.r += r;
+        this.g += g;
+        this.b += b;
     }
 
     public void sub(float r, float g, float b){
-        colors.x -= r;
-        colors.y -= g;
-        colors.z -= b;
-
-        this.clamp();
+        this.r -= r;
+        this.g -= g;
+        this.b -= b;
     }
 
     public RgbColor sub(RgbColor color){
-        return new RgbColor( colors.sub(color.colors) );
+        return new RgbColor( r - color.r, g - color.g, b - color.b );
     }
 
     public RgbColor add(RgbColor color){
-        return new RgbColor( colors.add(color.colors) );
+        return new RgbColor( r + color.r, g + color.g, b + color.b );
     }
 
     public RgbColor multRGB(RgbColor color){
-        return new RgbColor( colors.x * color.red(),
-                             colors.y * color.green(),
-                             colors.z * color.blue() );
+        return new RgbColor( r * color.r,
+                             g * color.g,
+                             b * color.b );
     }
 
     public RgbColor multScalar(float value){
-        return new RgbColor( colors.multScalar(value) );
+        return new RgbColor( r * value, g * value, b * value );
+    }
+
+    /*
+     In-place operations - they change the color itself and return it, so no new object is created.
+     Never use them on the shared constants or material colors.
+     */
+
+    public RgbColor set(float r, float g, float b){
+        this.r = r;
+        this.g = g;
+        this.b = b;
+        return this;
+    }
+
+    public RgbColor set(RgbColor color){
+        this.r = color.r;
+        this.g = color.g;
+        this.b = color.b;
+        return this;
     }
 
+    public RgbColor addInPlace(RgbColor color){
+        return set( r + color.r, g + color.g, b + color.b );
+    }
+
+    public RgbColor multRGBInPlace(RgbColor color){
+        return set( r * color.r, g * color.g, b * color.b );
+    }
+
+    public RgbColor multScalarInPlace(float value){
+        return set( r * value, g * value, b * value );
+    }
+
+    public RgbColor divideInPlace(int divisor){
+        return set( r / divisor, g / divisor, b / divisor );
+    }
+
+    /**
+     Quantizes the color to a packed 8 bit RGB value, the channels are clamped to [0, 1]
+     **/
     public int getRGB(){
-        return ((int) (this.red() * 255f) << 16) + ((int) (this.green() * 255f) << 8) + ((int) (this.blue() * 255f));
+        return (quantize(r) << 16) + (quantize(g) << 8) + quantize(b);
     }
 
     public RgbColor square(){
         return new RgbColor(this.red() * this.red(), this.green() * this.green(),this.blue() * this.blue());
     }
 
-    private void clamp(){
-        if( this.red() > 1 ) colors.x = 1f;
-        if( this.green() > 1 ) colors.y = 1f;
-        if( this.blue() > 1 ) colors.z = 1f;
-
-        if( this.red() < 0 ) colors.x = 0f;
-        if( this.green() < 0 ) colors.y = 0f;
-        if( this.blue() < 0 ) colors.z = 0f;
+    private static int quantize(float value){
+        if( value > 1 ) value = 1f;
+        if( !(value > 0) ) value = 0f;
+        return (int) (value * 255f);
     }
 
     @Override
@@ -100,10 +137,6 @@ public class RgbColor {
     }
 
     public RgbColor divide(int mAntiAliasingSamples) {
-        float r = this.colors.x/mAntiAliasingSamples;
-        float g = this.colors.y/mAntiAliasingSamples;
-        float b = this.colors.z/mAntiAliasingSamples;
-
-        return new RgbColor(r, g, b);
+        return new RgbColor(r / mAntiAliasingSamples, g / mAntiAliasingSamples, b / mAntiAliasingSamples);
     }
 }
@@ -0,0 +1,97 @@
+package utils.algebra;
+
+public class BoundingBox {
+    public float minX;
+    public float minY;
+    public float minZ;
+    public float maxX;
+    public float maxY;
+    public float maxZ;
+
+    /**
+     Standard constructor creating an empty box, which contains no point
+     **/
+    public BoundingBox(){
+        this.minX = Float.POSITIVE_INFINITY;
+        this.minY = Float.POSITIVE_INFINITY;
+        this.minZ = Float.POSITIVE_INFINITY;
+        this.maxX = Float.NEGATIVE_INFINITY;
+        this.maxY = Float.NEGATIVE_INFINITY;
+        this.maxZ = Float.NEGATIVE_INFINITY;
+    }
+
+    /**
+     Constructor taking the minimum and maximum corner of the box
+     **/
+    public BoundingBox(Vec3 min, Vec3 max){
+        this.minX = min.x;
+        this.minY = min.y;
+        this.minZ = min.z;
+        this.maxX = max.x;
+        this.maxY = max.y;
+        this.maxZ = max.z;
+    }
+
+    /**
+     Check if the box does not contain any point
+     **/
+    public boolean isEmpty(){
+        return minX > maxX || minY > maxY || minZ > maxZ;
+    }
+
+    /**
+     Grow the box so it contains the given point
+     **/
+    public void extend(float x, float y, float z){
+        if (x < minX) minX = x;
+        if (y < minY) minY = y;
+        if (z < minZ) minZ = z;
+        if (x > maxX) maxX = x;
+        if (y > maxY) maxY = y;
+        if (z > maxZ) maxZ = z;
+    }
+
+    /**
+     Grow the box so it contains the given box
+     **/
+    public void extend(BoundingBox box){
+        if (box.minX < minX) minX = box.minX;
+        if (box.minY < minY) minY = box.minY;
+        if (box.minZ < minZ) minZ = box.minZ;
+        if (box.maxX > maxX) maxX = box.maxX;
+        if (box.maxY > maxY) maxY = box.maxY;
+        if (box.maxZ > maxZ) maxZ = box.maxZ;
+    }
+
+    /**
+     Get the center of the box along the axis 0 (x), 1 (y) or 2 (z)
+     **/
+    public float getCenter(int axis){
+        switch (axis){
+            case 0: return (minX + maxX) * 0.5f;
+            case 1: return (minY + maxY) * 0.5f;
+            default: return (minZ + maxZ) * 0.5f;
+        }
+    }
+
+    /**
+     Get the surface area of the box
+     **/
+    public float surfaceArea(){
+        if (isEmpty()) {
+            return 0f;
+        }
+        float dx = maxX - minX;
+        float dy = maxY - minY;
+        float dz = maxZ - minZ;
+        return 2f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     Print values
+     **/
+    @Override
+    public String toString(){
+        return "[ ( " + minX + ", " + minY + ", " + minZ + " ), ( " + maxX + ", " + maxY + ", " + maxZ + " ) ]";
+    }
+}
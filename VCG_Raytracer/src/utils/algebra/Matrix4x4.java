@@ -1,29 +1,97 @@
 package utils.algebra;
 
+/**
+ A 4x4 matrix stored row by row in a flat float[16].
+ Affine matrices (last row 0, 0, 0, 1) are inverted without a general decomposition.
+ The inverse and the inverse transpose are calculated once and cached until the matrix is changed.
+ **/
 public class Matrix4x4 {
 
-	private Matrix mBaseMatrix;
+	private final float[] m;
+
+	private Matrix4x4 mInverse;
+	private Matrix4x4 mInverseTranspose;
 
 	/**
 	 The standard constructor will produce an identity matrix
 	 **/
 	public Matrix4x4(){
-		mBaseMatrix = Matrix.identity(4,4);
+		m = new float[16];
+		m[0] = 1f;
+		m[5] = 1f;
+		m[10] = 1f;
+		m[15] = 1f;
+	}
+
+	private Matrix4x4(float[] values){
+		m = values;
 	}
 
-	private Matrix4x4(Matrix mat){
-		mBaseMatrix = mat;
+	/**
+	 Create a matrix translating by the given vector
+	 **/
+	public static Matrix4x4 translation(Vec3 vec){
+		return new Matrix4x4().translateXYZ(vec);
+	}
+
+	/**
+	 Create a matrix scaling by x, y and z
+	 **/
+	public static Matrix4x4 scaling(Vec3 vec){
+		return new Matrix4x4().scale(vec);
 	}
 
 	/**
-	 Translate Matrix in 3D
+	 Create a matrix rotating around the x axis by the given angle in degrees
+	 **/
+	public static Matrix4x4 rotationX(float angle){
+		float cos = (float) Math.cos(Math.toRadians(angle));
+		float sin = (float) Math.sin(Math.toRadians(angle));
+		Matrix4x4 out = new Matrix4x4();
+		out.m[5] = cos;
+		out.m[6] = -sin;
+		out.m[9] = sin;
+		out.m[10] = cos;
+		return out;
+	}
+
+	/**
+	 Create a matrix rotating around the y axis by the given angle in degrees
+	 **/
+	public static Matrix4x4 rotationY(float angle){
+		float cos = (float) Math.cos(Math.toRadians(angle));
+		float sin = (float) Math.sin(Math.toRadians(angle));
+		Matrix4x4 out = new Matrix4x4();
+		out.m[0] = cos;
+		out.m[2] = sin;
+		out.m[8] = -sin;
+		out.m[10] = cos;
+		return out;
+	}
+
+	/**
+	 Create a matrix rotating around the z axis by the given angle in degrees
+	 **/
+	public static Matrix4x4 rotationZ(float angle){
+		float cos = (float) Math.cos(Math.toRadians(angle));
+		float sin = (float) Math.sin(Math.toRadians(angle));
+		Matrix4x4 out = new Matrix4x4();
+		out.m[0] = cos;
+		out.m[1] = -sin;
+		out.m[4] = sin;
+		out.m[5] = cos;
+		return out;
+	}
+
+	/**
+	 Translate Matrix in 3D - returns a copy with the translation column set to the vector
 	 **/
 	public Matrix4x4 translateXYZ(Vec3 vec){
-		Matrix4x4 out = new Matrix4x4(mBaseMatrix);
+		Matrix4x4 out = new Matrix4x4(m.clone());
 
-		out.setValueAt( 0, 3, vec.x );
-		out.setValueAt( 1, 3, vec.y );
-		out.setValueAt( 2, 3, vec.z );
+		out.m[3] = vec.x;
+		out.m[7] = vec.y;
+		out.m[11] = vec.z;
 
 		return out;
 	}
@@ -32,12 +100,12 @@ public class Matrix4x4 {
 	 Translate Matrix in 4D - watch for the homogeneous coordinate
 	 **/
 	public Matrix4x4 translateXYZW(Vec4 vec){
-		Matrix4x4 out = new Matrix4x4(mBaseMatrix);
+		Matrix4x4 out = new Matrix4x4(m.clone());
 
-		out.setValueAt( 0, 3, vec.x );
-		out.setValueAt( 1, 3, vec.y );
-		out.setValueAt( 2, 3, vec.z );
-		out.setValueAt( 3, 3, vec.w );
+		out.m[3] = vec.x;
+		out.m[7] = vec.y;
+		out.m[11] = vec.z;
+		out.m[15] = vec.w;
 
 		return out;
 	}
@@ -46,24 +114,18 @@ public class Matrix4x4 {
 	 Scale uniform by factor s
 	 **/
 	public Matrix4x4 scale(double s){
-		Matrix4x4 out = new Matrix4x4(mBaseMatrix);
-
-		out.setValueAt( 0, 0, s );
-		out.setValueAt( 1, 1, s );
-		out.setValueAt( 2, 2, s );
-
-		return out;
+		return scale(new Vec3((float) s, (float) s, (float) s));
 	}
 
 	/**
 	 Scale non-uniform by x, y and z
 	 **/
 	public Matrix4x4 scale(Vec3 vec){
-		Matrix4x4 out = new Matrix4x4(mBaseMatrix);
+		Matrix4x4 out = new Matrix4x4(m.clone());
 
-		out.setValueAt( 0, 0, vec.x );
-		out.setValueAt( 1, 1, vec.y );
-		out.setValueAt( 2, 2, vec.z );
+		out.m[0] = vec.x;
+		out.m[5] = vec.y;
+		out.m[10] = vec.z;
 
 		return out;
 	}
@@ -72,112 +134,194 @@ public class Matrix4x4 {
 	 Transpose matrix
 	 **/
 	public Matrix4x4 transpose(){
-		return new Matrix4x4( mBaseMatrix.transpose() );
+		float[] out = new float[16];
+		for(int r = 0; r < 4; r++){
+			for(int c = 0; c < 4; c++){
+				out[c * 4 + r] = m[r * 4 + c];
+			}
+		}
+		return new Matrix4x4(out);
 	}
 
 	/**
-	 Invert matrix
+	 Invert matrix - the result is cached and shared, do not modify it
 	 **/
 	public Matrix4x4 invert(){
-		return new Matrix4x4( mBaseMatrix.inverse() );
+		if(mInverse == null){
+			mInverse = new Matrix4x4(isAffine() ? invertAffine() : invertGeneral());
+			mInverse.mInverse = this;
+		}
+		return mInverse;
+	}
+
+	/**
+	 Get the transpose of the inverse, which transforms normals - cached like the inverse
+	 **/
+	public Matrix4x4 invertTranspose(){
+		if(mInverseTranspose == null){
+			mInverseTranspose = invert().transpose();
+		}
+		return mInverseTranspose;
+	}
+
+	/**
+	 Check if the matrix is the identity matrix
+	 **/
+	public boolean isIdentity(){
+		for (int i = 0; i < 16; i++) {
+			if (m[i] != (i % 5 == 0 ? 1f : 0f)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 Check if the last row is (0, 0, 0, 1)
+	 **/
+	public boolean isAffine(){
+		return m[12] == 0f && m[13] == 0f && m[14] == 0f && m[15] == 1f;
+	}
+
+	/**
+	 Inverse of the upper 3x3 part, the translation is moved back by it
+	 **/
+	private float[] invertAffine(){
+		float c00 = m[5] * m[10] - m[6] * m[9];
+		float c01 = m[2] * m[9] - m[1] * m[10];
+		float c02 = m[1] * m[6] - m[2] * m[5];
+		float c10 = m[6] * m[8] - m[4] * m[10];
+		float c11 = m[0] * m[10] - m[2] * m[8];
+		float c12 = m[2] * m[4] - m[0] * m[6];
+		float c20 = m[4] * m[9] - m[5] * m[8];
+		float c21 = m[1] * m[8] - m[0] * m[9];
+		float c22 = m[0] * m[5] - m[1] * m[4];
+
+		float det = m[0] * c00 + m[1] * c10 + m[2] * c20;
+		if(det == 0f){
+			throw new ArithmeticException("Matrix is singular");
+		}
+		float invDet = 1f / det;
+
+		float[] out = new float[16];
+		out[0] = c00 * invDet; out[1] = c01 * invDet; out[2] = c02 * invDet;
+		out[4] = c10 * invDet; out[5] = c11 * invDet; out[6] = c12 * invDet;
+		out[8] = c20 * invDet; out[9] = c21 * invDet; out[10] = c22 * invDet;
+		out[3] = -(out[0] * m[3] + out[1] * m[7] + out[2] * m[11]);
+		out[7] = -(out[4] * m[3] + out[5] * m[7] + out[6] * m[11]);
+		out[11] = -(out[8] * m[3] + out[9] * m[7] + out[10] * m[11]);
+		out[15] = 1f;
+		return out;
+	}
+
+	/**
+	 Inverse of a general 4x4 matrix through its cofactors
+	 **/
+	private float[] invertGeneral(){
+		float[] inv = new float[16];
+
+		inv[0] = m[5] * m[10] * m[15] - m[5] * m[11] * m[14] - m[9] * m[6] * m[15] + m[9] * m[7] * m[14] + m[13] * m[6] * m[11] - m[13] * m[7] * m[10];
+		inv[4] = -m[4] * m[10] * m[15] + m[4] * m[11] * m[14] + m[8] * m[6] * m[15] - m[8] * m[7] * m[14] - m[12] * m[6] * m[11] + m[12] * m[7] * m[10];
+		inv[8] = m[4] * m[9] * m[15] - m[4] * m[11] * m[13] - m[8] * m[5] * m[15] + m[8] * m[7] * m[13] + m[12] * m[5] * m[11] - m[12] * m[7] * m[9];
+		inv[12] = -m[4] * m[9] * m[14] + m[4] * m[10] * m[13] + m[8] * m[5] * m[14] - m[8] * m[6] * m[13] - m[12] * m[5] * m[10] + m[12] * m[6] * m[9];
+		inv[1] = -m[1] * m[10] * m[15] + m[1] * m[11] * m[14] + m[9] * m[2] * m[15] - m[9] * m[3] * m[14] - m[13] * m[2] * m[11] + m[13] * m[3] * m[10];
+		inv[5] = m[0] * m[10] * m[15] - m[0] * m[11] * m[14] - m[8] * m[2] * m[15] + m[8] * m[3] * m[14] + m[12] * m[2] * m[11] - m[12] * m[3] * m[10];
+		inv[9] = -m[0] * m[9] * m[15] + m[0] * m[11] * m[13] + m[8] * m[1] * m[15] - m[8] * m[3] * m[13] - m[12] * m[1] * m[11] + m[12] * m[3] * m[9];
+		inv[13] = m[0] * m[9] * m[14] - m[0] * m[10] * m[13] - m[8] * m[1] * m[14] + m[8] * m[2] * m[13] + m[12] * m[1] * m[10] - m[12] * m[2] * m[9];
+		inv[2] = m[1] * m[6] * m[15] - m[1] * m[7] * m[14] - m[5] * m[2] * m[15] + m[5] * m[3] * m[14] + m[13] * m[2] * m[7] - m[13] * m[3] * m[6];
+		inv[6] = -m[0] * m[6] * m[15] + m[0] * m[7] * m[14] + m[4] * m[2] * m[15] - m[4] * m[3] * m[14] - m[12] * m[2] * m[7] + m[12] * m[3] * m[6];
+		inv[10] = m[0] * m[5] * m[15] - m[0] * m[7] * m[13] - m[4] * m[1] * m[15] + m[4] * m[3] * m[13] + m[12] * m[1] * m[7] - m[12] * m[3] * m[5];
+		inv[14] = -m[0] * m[5] * m[14] + m[0] * m[6] * m[13] + m[4] * m[1] * m[14] - m[4] * m[2] * m[13] - m[12] * m[1] * m[6] + m[12] * m[2] * m[5];
+		inv[3] = -m[1] * m[6] * m[11] + m[1] * m[7] * m[10] + m[5] * m[2] * m[11] - m[5] * m[3] * m[10] - m[9] * m[2] * m[7] + m[9] * m[3] * m[6];
+		inv[7] = m[0] * m[6] * m[11] - m[0] * m[7] * m[10] - m[4] * m[2] * m[11] + m[4] * m[3] * m[10] + m[8] * m[2] * m[7] - m[8] * m[3] * m[6];
+		inv[11] = -m[0] * m[5] * m[11] + m[0] * m[7] * m[9] + m[4] * m[1] * m[11] - m[4] * m[3] * m[9] - m[8] * m[1] * m[7] + m[8] * m[3] * m[5];
+		inv[15] = m[0] * m[5] * m[10] - m[0] * m[6] * m[9] - m[4] * m[1] * m[10] + m[4] * m[2] * m[9] + m[8] * m[1] * m[6] - m[8] * m[2] * m[5];
+
+		float det = m[0] * inv[0] + m[1] * inv[4] + m[2] * inv[8] + m[3] * inv[12];
+		if(det == 0f){
+			throw new ArithmeticException("Matrix is singular");
+		}
+		float invDet = 1f / det;
+		for(int i = 0; i < 16; i++){
+			inv[i] *= invDet;
+		}
+		return inv;
 	}
 
 	/**
 	 Set 'value' in matrix at position row and column
 	 **/
 	public void setValueAt(int row, int col, double value){
-		mBaseMatrix.set( row, col, value );
+		m[row * 4 + col] = (float) value;
+		mInverse = null;
+		mInverseTranspose = null;
 	}
 
 	/**
 	 Get 'value' in matrix from position row and column
 	 **/
 	public double getValueAt(int row, int col){
-		return mBaseMatrix.get(row, col);
+		return m[row * 4 + col];
 	}
 
 	/**
 	 Get 'column' in matrix from position index
 	 **/
 	public Vec4 getColumn(int index){
-		Vec4 outVec = new Vec4();
-
-		for(int i = 0; i < 4; i++){
-			outVec.setValue(i, (float) this.getValueAt(i, index));
-		}
-		return outVec;
+		return new Vec4(m[index], m[4 + index], m[8 + index], m[12 + index]);
 	}
 
 	/**
-	 Get 'column' in matrix from position index
+	 Get 'row' in matrix from position index
 	 **/
 	public Vec4 getRow(int index){
-		Vec4 outVec = new Vec4();
-
-		for(int i = 0; i < 4; i++){
-			outVec.setValue(i, (float) this.getValueAt(index, i));
-		}
-		return outVec;
+		return new Vec4(m[index * 4], m[index * 4 + 1], m[index * 4 + 2], m[index * 4 + 3]);
 	}
 
 	/**
 	 Add another matrix
 	 **/
 	public Matrix4x4 add(Matrix4x4 mat){
-		Matrix4x4 outMat = new Matrix4x4();
-
-		for(int r = 0; r < 4; r++){
-			for(int c = 0; c < 4; c++){
-				outMat.setValueAt(r,c, this.getValueAt(r,c) + mat.getValueAt(r,c));
-			}
+		float[] out = new float[16];
+		for(int i = 0; i < 16; i++){
+			out[i] = m[i] + mat.m[i];
 		}
-
-		return outMat;
+		return new Matrix4x4(out);
 	}
 
 	/**
 	 Sub another matrix
 	 **/
 	public Matrix4x4 sub(Matrix4x4 mat){
-		Matrix4x4 outMat = new Matrix4x4();
-
-		for(int r = 0; r < 4; r++){
-			for(int c = 0; c < 4; c++){
-				outMat.setValueAt(r,c, this.getValueAt(r,c) - mat.getValueAt(r,c));
-			}
+		float[] out = new float[16];
+		for(int i = 0; i < 16; i++){
+			out[i] = m[i] - mat.m[i];
 		}
-
-		return outMat;
+		return new Matrix4x4(out);
 	}
 
 	/**
 	 Mult a single value
 	 **/
 	public Matrix4x4 multScalar(float scalar){
-		Matrix4x4 outMat = new Matrix4x4();
-
-		for(int r = 0; r < 4; r++){
-			for(int c = 0; c < 4; c++){
-				outMat.setValueAt(r,c, this.getValueAt(r,c) * scalar);
-			}
+		float[] out = new float[16];
+		for(int i = 0; i < 16; i++){
+			out[i] = m[i] * scalar;
 		}
-
-		return outMat;
+		return new Matrix4x4(out);
 	}
 
 	/**
-	 Multiply another matrix
+	 Multiply another matrix - the given matrix is applied first
 	 **/
 	public Matrix4x4 mult(Matrix4x4 mat){
-		Matrix4x4 outMat = new Matrix4x4();
-
-		for(int r1 = 0; r1 < 4; r1++){
-			for(int c1 = 0; c1 < 4; c1++) {
-				outMat.setValueAt(r1, c1, this.getRow(r1).scalar(mat.getColumn(c1)));
+		float[] out = new float[16];
+		for(int r = 0; r < 4; r++){
+			for(int c = 0; c < 4; c++){
+				out[r * 4 + c] = m[r * 4] * mat.m[c] + m[r * 4 + 1] * mat.m[4 + c] + m[r * 4 + 2] * mat.m[8 + c] + m[r * 4 + 3] * mat.m[12 + c];
 			}
 		}
-
-		return outMat;
+		return new Matrix4x4(out);
 	}
 
 	/**
@@ -185,10 +329,10 @@ public class Matrix4x4 {
 	 **/
 	public Vec4 multVec3(Vec4 vec){
 		return new Vec4(
-				vec.x * ( float ) this.getValueAt(0,0) + vec.y * ( float ) this.getValueAt(0,1) + vec.z * ( float ) this.getValueAt(0,2) + vec.w * ( float ) this.getValueAt(0,3),
-				vec.x * ( float ) this.getValueAt(1,0) + vec.y * ( float ) this.getValueAt(1,1) + vec.z * ( float ) this.getValueAt(1,2) + vec.w * ( float ) this.getValueAt(1,3),
-				vec.x * ( float ) this.getValueAt(2,0) + vec.y * ( float ) this.getValueAt(2,1) + vec.z * ( float ) this.getValueAt(2,2) + vec.w * ( float ) this.getValueAt(2,3),
-				vec.x * ( float ) this.getValueAt(3,0) + vec.y * ( float ) this.getValueAt(3,1) + vec.z * ( float ) this.getValueAt(3,2) + vec.w * ( float ) this.getValueAt(3,3)
+				vec.x * m[0] + vec.y * m[1] + vec.z * m[2] + vec.w * m[3],
+				vec.x * m[4] + vec.y * m[5] + vec.z * m[6] + vec.w * m[7],
+				vec.x * m[8] + vec.y * m[9] + vec.z * m[10] + vec.w * m[11],
+				vec.x * m[12] + vec.y * m[13] + vec.z * m[14] + vec.w * m[15]
 		);
 	}
 
@@ -196,686 +340,65 @@ public class Matrix4x4 {
 	 Multiply a 3D point OR vector with the matrix
 	 **/
 	public Vec3 multVec3(Vec3 vec, Boolean isPoint){
-
-		float w = isPoint ? 1 : 0;
-
-		Vec4 out = new Vec4(
-				vec.x * ( float ) this.getValueAt(0,0) + vec.y * ( float ) this.getValueAt(0,1) + vec.z * ( float ) this.getValueAt(0,2) + w * ( float ) this.getValueAt(0,3),
-				vec.x * ( float ) this.getValueAt(1,0) + vec.y * ( float ) this.getValueAt(1,1) + vec.z * ( float ) this.getValueAt(1,2) + w * ( float ) this.getValueAt(1,3),
-				vec.x * ( float ) this.getValueAt(2,0) + vec.y * ( float ) this.getValueAt(2,1) + vec.z * ( float ) this.getValueAt(2,2) + w * ( float ) this.getValueAt(2,3),
-				vec.x * ( float ) this.getValueAt(3,0) + vec.y * ( float ) this.getValueAt(3,1) + vec.z * ( float ) this.getValueAt(3,2) + w * ( float ) this.getValueAt(3,3)
-		);
-
-		return new Vec3(out.x, out.y, out.z);
+		return isPoint ? transformPoint(vec) : transformVector(vec);
 	}
 
 	/**
-	 Print values of matrix
+	 Transform a point, the matrix is expected to be affine
 	 **/
-	@Override
-	public String toString(){
-		return  "\n" +
-				this.getValueAt(0,0) + "\t\t\t\t\t\t" + this.getValueAt(0,1) + "\t\t\t\t\t\t" + this.getValueAt(0,2) + "\t\t\t\t\t\t" + this.getValueAt(0,3) + "\t\t\n" +
-				this.getValueAt(1,0) + "\t\t\t\t\t\t" + this.getValueAt(1,1) + "\t\t\t\t\t\t" + this.getValueAt(1,2) + "\t\t\t\t\t\t" + this.getValueAt(1,3) + "\t\t\n" +
-				this.getValueAt(2,0) + "\t\t\t\t\t\t" + this.getValueAt(2,1) + "\t\t\t\t\t\t" + this.getValueAt(2,2) + "\t\t\t\t\t\t" + this.getValueAt(2,3) + "\t\t\n" +
-				this.getValueAt(3,0) + "\t\t\t\t\t\t" + this.getValueAt(3,1) + "\t\t\t\t\t\t" + this.getValueAt(3,2) + "\t\t\t\t\t\t" + this.getValueAt(3,3) + "\t\t\n" ;
+	public Vec3 transformPoint(Vec3 vec){
+		return transformPoint(vec, new Vec3());
 	}
 
 	/**
-	 Here's the background calculation...
+	 Transform a point into the given output vector, which may be the input vector itself
 	 **/
-	private static class Matrix implements Cloneable, java.io.Serializable {
-
-		private double[][] A;
-		private int m, n;
-
-		public Matrix (int m, int n) {
-			this.m = m;
-			this.n = n;
-			A = new double[m][n];
-		}
-
-		public Matrix (int m, int n, double s) {
-			this.m = m;
-			this.n = n;
-			A = new double[m][n];
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					A[i][j] = s;
-				}
-			}
-		}
-
-		public Matrix (double[][] A) {
-			m = A.length;
-			n = A[0].length;
-			for (int i = 0; i < m; i++) {
-				if (A[i].length != n) {
-					throw new IllegalArgumentException("All rows must have the same length.");
-				}
-			}
-			this.A = A;
-		}
-
-		public Matrix (double[][] A, int m, int n) {
-			this.A = A;
-			this.m = m;
-			this.n = n;
-		}
-
-		public Matrix (double vals[], int m) {
-			this.m = m;
-			n = (m != 0 ? vals.length/m : 0);
-			if (m*n != vals.length) {
-				throw new IllegalArgumentException("Array length must be a multiple of m.");
-			}
-			A = new double[m][n];
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					A[i][j] = vals[i+j*m];
-				}
-			}
-		}
-
-		public static Matrix constructWithCopy(double[][] A) {
-			int m = A.length;
-			int n = A[0].length;
-			Matrix X = new Matrix(m,n);
-			double[][] C = X.getArray();
-			for (int i = 0; i < m; i++) {
-				if (A[i].length != n) {
-					throw new IllegalArgumentException
-							("All rows must have the same length.");
-				}
-				for (int j = 0; j < n; j++) {
-					C[i][j] = A[i][j];
-				}
-			}
-			return X;
-		}
-
-		public Matrix copy () {
-			Matrix X = new Matrix(m,n);
-			double[][] C = X.getArray();
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					C[i][j] = A[i][j];
-				}
-			}
-			return X;
-		}
-
-		public Object clone () {
-			return this.copy();
-		}
-
-		public double[][] getArray () {
-			return A;
-		}
-
-		public double[][] getArrayCopy () {
-			double[][] C = new double[m][n];
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					C[i][j] = A[i][j];
-				}
-			}
-			return C;
-		}
-
-		public double[] getColumnPackedCopy () {
-			double[] vals = new double[m*n];
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					vals[i+j*m] = A[i][j];
-				}
-			}
-			return vals;
-		}
-
-		public double[] getRowPackedCopy () {
-			double[] vals = new double[m*n];
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					vals[i*n+j] = A[i][j];
-				}
-			}
-			return vals;
-		}
-
-		public int getRowDimension () {
-			return m;
-		}
-
-		public int getColumnDimension () {
-			return n;
-		}
-
-		public double get (int i, int j) {
-			return A[i][j];
-		}
-
-		public Matrix getMatrix (int i0, int i1, int j0, int j1) {
-			Matrix X = new Matrix(i1-i0+1,j1-j0+1);
-			double[][] B = X.getArray();
-			try {
-				for (int i = i0; i <= i1; i++) {
-					for (int j = j0; j <= j1; j++) {
-						B[i-i0][j-j0] = A[i][j];
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-			return X;
-		}
-
-		public Matrix getMatrix (int[] r, int[] c) {
-			Matrix X = new Matrix(r.length,c.length);
-			double[][] B = X.getArray();
-			try {
-				for (int i = 0; i < r.length; i++) {
-					for (int j = 0; j < c.length; j++) {
-						B[i][j] = A[r[i]][c[j]];
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-			return X;
-		}
-
-		public Matrix getMatrix (int i0, int i1, int[] c) {
-			Matrix X = new Matrix(i1-i0+1,c.length);
-			double[][] B = X.getArray();
-			try {
-				for (int i = i0; i <= i1; i++) {
-					for (int j = 0; j < c.length; j++) {
-						B[i-i0][j] = A[i][c[j]];
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-			return X;
-		}
-
-		public Matrix getMatrix (int[] r, int j0, int j1) {
-			Matrix X = new Matrix(r.length,j1-j0+1);
-			double[][] B = X.getArray();
-			try {
-				for (int i = 0; i < r.length; i++) {
-					for (int j = j0; j <= j1; j++) {
-						B[i][j-j0] = A[r[i]][j];
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-			return X;
-		}
-
-		public void set (int i, int j, double s) {
-			A[i][j] = s;
-		}
-
-		public void setMatrix (int i0, int i1, int j0, int j1, Matrix X) {
-			try {
-				for (int i = i0; i <= i1; i++) {
-					for (int j = j0; j <= j1; j++) {
-						A[i][j] = X.get(i-i0,j-j0);
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-		}
-
-		public void setMatrix (int[] r, int[] c, Matrix X) {
-			try {
-				for (int i = 0; i < r.length; i++) {
-					for (int j = 0; j < c.length; j++) {
-						A[r[i]][c[j]] = X.get(i,j);
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-		}
-
-		public void setMatrix (int[] r, int j0, int j1, Matrix X) {
-			try {
-				for (int i = 0; i < r.length; i++) {
-					for (int j = j0; j <= j1; j++) {
-						A[r[i]][j] = X.get(i,j-j0);
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-		}
-
-		public void setMatrix (int i0, int i1, int[] c, Matrix X) {
-			try {
-				for (int i = i0; i <= i1; i++) {
-					for (int j = 0; j < c.length; j++) {
-						A[i][c[j]] = X.get(i-i0,j);
-					}
-				}
-			} catch(ArrayIndexOutOfBoundsException e) {
-				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
-			}
-		}
-
-		public Matrix transpose () {
-			Matrix X = new Matrix(n,m);
-			double[][] C = X.getArray();
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					C[j][i] = A[i][j];
-				}
-			}
-			return X;
-		}
-
-		public double trace () {
-			double t = 0;
-			for (int i = 0; i < Math.min(m,n); i++) {
-				t += A[i][i];
-			}
-			return t;
-		}
-
-		public static Matrix random (int m, int n) {
-			Matrix A = new Matrix(m,n);
-			double[][] X = A.getArray();
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					X[i][j] = Math.random();
-				}
-			}
-			return A;
-		}
-
-		public static Matrix identity (int m, int n) {
-			Matrix A = new Matrix(m,n);
-			double[][] X = A.getArray();
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					X[i][j] = (i == j ? 1.0 : 0.0);
-				}
-			}
-			return A;
-		}
-
-		private void checkMatrixDimensions (Matrix B) {
-			if (B.m != m || B.n != n) {
-				throw new IllegalArgumentException("Matrix dimensions must agree.");
-			}
-		}
-
-		public Matrix solve (Matrix B) {
-			return (m == n ? (new LUDecomposition(this)).solve(B) :
-					(new QRDecomposition(this)).solve(B));
-		}
-
-		public Matrix solveTranspose (Matrix B) {
-			return transpose().solve(B.transpose());
-		}
-
-		public Matrix inverse () {
-			return solve(identity(m,m));
-		}
-
-		public double det () {
-			return new LUDecomposition(this).det();
-		}
-
-		private static final long serialVersionUID = 1;
+	public Vec3 transformPoint(Vec3 vec, Vec3 out){
+		float x = vec.x * m[0] + vec.y * m[1] + vec.z * m[2] + m[3];
+		float y = vec.x * m[4] + vec.y * m[5] + vec.z * m[6] + m[7];
+		float z = vec.x * m[8] + vec.y * m[9] + vec.z * m[10] + m[11];
+		out.x = x;
+		out.y = y;
+		out.z = z;
+		return out;
 	}
 
-	private static class Maths {
-
-		public static double hypot(double a, double b) {
-			double r;
-			if (Math.abs(a) > Math.abs(b)) {
-				r = b/a;
-				r = Math.abs(a)*Math.sqrt(1+r*r);
-			} else if (b != 0) {
-				r = a/b;
-				r = Math.abs(b)*Math.sqrt(1+r*r);
-			} else {
-				r = 0.0;
-			}
-			return r;
-		}
+	/**
+	 Transform a direction, the translation is ignored
+	 **/
+	public Vec3 transformVector(Vec3 vec){
+		return transformVector(vec, new Vec3());
 	}
-	public static class LUDecomposition implements java.io.Serializable {
-
-		private double[][] LU;
-		private int m, n, pivsign;
-		private int[] piv;
-
-		public LUDecomposition (Matrix A) {
-
-			// Use a "left-looking", dot-product, Crout/Doolittle algorithm.
-
-			LU = A.getArrayCopy();
-			m = A.getRowDimension();
-			n = A.getColumnDimension();
-			piv = new int[m];
-			for (int i = 0; i < m; i++) {
-				piv[i] = i;
-			}
-			pivsign = 1;
-			double[] LUrowi;
-			double[] LUcolj = new double[m];
-
-			// Outer loop.
-
-			for (int j = 0; j < n; j++) {
-
-				// Make a copy of the j-th column to localize references.
-
-				for (int i = 0; i < m; i++) {
-					LUcolj[i] = LU[i][j];
-				}
-
-				// Apply previous transformations.
-
-				for (int i = 0; i < m; i++) {
-					LUrowi = LU[i];
-
-					// Most of the time is spent in the following dot product.
 
-					int kmax = Math.min(i,j);
-					double s = 0.0;
-					for (int k = 0; k < kmax; k++) {
-						s += LUrowi[k]*LUcolj[k];
-					}
-
-					LUrowi[j] = LUcolj[i] -= s;
-				}
-
-				// Find pivot and exchange if necessary.
-
-				int p = j;
-				for (int i = j+1; i < m; i++) {
-					if (Math.abs(LUcolj[i]) > Math.abs(LUcolj[p])) {
-						p = i;
-					}
-				}
-				if (p != j) {
-					for (int k = 0; k < n; k++) {
-						double t = LU[p][k]; LU[p][k] = LU[j][k]; LU[j][k] = t;
-					}
-					int k = piv[p]; piv[p] = piv[j]; piv[j] = k;
-					pivsign = -pivsign;
-				}
-
-				// Compute multipliers.
-
-				if (j < m & LU[j][j] != 0.0) {
-					for (int i = j+1; i < m; i++) {
-						LU[i][j] /= LU[j][j];
-					}
-				}
-			}
-		}
-
-		public boolean isNonsingular () {
-			for (int j = 0; j < n; j++) {
-				if (LU[j][j] == 0)
-					return false;
-			}
-			return true;
-		}
-
-		public Matrix getL () {
-			Matrix X = new Matrix(m,n);
-			double[][] L = X.getArray();
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					if (i > j) {
-						L[i][j] = LU[i][j];
-					} else if (i == j) {
-						L[i][j] = 1.0;
-					} else {
-						L[i][j] = 0.0;
-					}
-				}
-			}
-			return X;
-		}
-
-		public Matrix getU () {
-			Matrix X = new Matrix(n,n);
-			double[][] U = X.getArray();
-			for (int i = 0; i < n; i++) {
-				for (int j = 0; j < n; j++) {
-					if (i <= j) {
-						U[i][j] = LU[i][j];
-					} else {
-						U[i][j] = 0.0;
-					}
-				}
-			}
-			return X;
-		}
-
-		public int[] getPivot () {
-			int[] p = new int[m];
-			for (int i = 0; i < m; i++) {
-				p[i] = piv[i];
-			}
-			return p;
-		}
-
-		public double[] getDoublePivot () {
-			double[] vals = new double[m];
-			for (int i = 0; i < m; i++) {
-				vals[i] = (double) piv[i];
-			}
-			return vals;
-		}
-
-		public double det () {
-			if (m != n) {
-				throw new IllegalArgumentException("Matrix must be square.");
-			}
-			double d = (double) pivsign;
-			for (int j = 0; j < n; j++) {
-				d *= LU[j][j];
-			}
-			return d;
-		}
-
-		public Matrix solve (Matrix B) {
-			if (B.getRowDimension() != m) {
-				throw new IllegalArgumentException("Matrix row dimensions must agree.");
-			}
-			if (!this.isNonsingular()) {
-				throw new RuntimeException("Matrix is singular.");
-			}
-
-			// Copy right hand side with pivoting
-			int nx = B.getColumnDimension();
-			Matrix Xmat = B.getMatrix(piv,0,nx-1);
-			double[][] X = Xmat.getArray();
-
-			// Solve L*Y = B(piv,:)
-			for (int k = 0; k < n; k++) {
-				for (int i = k+1; i < n; i++) {
-					for (int j = 0; j < nx; j++) {
-						X[i][j] -= X[k][j]*LU[i][k];
-					}
-				}
-			}
-			// Solve U*X = Y;
-			for (int k = n-1; k >= 0; k--) {
-				for (int j = 0; j < nx; j++) {
-					X[k][j] /= LU[k][k];
-				}
-				for (int i = 0; i < k; i++) {
-					for (int j = 0; j < nx; j++) {
-						X[i][j] -= X[k][j]*LU[i][k];
-					}
-				}
-			}
-			return Xmat;
-		}
-		private static final long serialVersionUID = 1;
-	}
-
-	public static class QRDecomposition implements java.io.Serializable {
-
-		private double[][] QR;
-		private int m, n;
-		private double[] Rdiag;
-
-		public QRDecomposition (Matrix A) {
-			// Initialize.
-			QR = A.getArrayCopy();
-			m = A.getRowDimension();
-			n = A.getColumnDimension();
-			Rdiag = new double[n];
-
-			// Main loop.
-			for (int k = 0; k < n; k++) {
-				// Compute 2-norm of k-th column without under/overflow.
-				double nrm = 0;
-				for (int i = k; i < m; i++) {
-					nrm = Maths.hypot(nrm,QR[i][k]);
-				}
-
-				if (nrm != 0.0) {
-					// Form k-th Householder vector.
-					if (QR[k][k] < 0) {
-						nrm = -nrm;
-					}
-					for (int i = k; i < m; i++) {
-						QR[i][k] /= nrm;
-					}
-					QR[k][k] += 1.0;
-
-					// Apply transformation to remaining columns.
-					for (int j = k+1; j < n; j++) {
-						double s = 0.0;
-						for (int i = k; i < m; i++) {
-							s += QR[i][k]*QR[i][j];
-						}
-						s = -s/QR[k][k];
-						for (int i = k; i < m; i++) {
-							QR[i][j] += s*QR[i][k];
-						}
-					}
-				}
-				Rdiag[k] = -nrm;
-			}
-		}
-
-		public boolean isFullRank () {
-			for (int j = 0; j < n; j++) {
-				if (Rdiag[j] == 0)
-					return false;
-			}
-			return true;
-		}
-
-		public Matrix getH () {
-			Matrix X = new Matrix(m,n);
-			double[][] H = X.getArray();
-			for (int i = 0; i < m; i++) {
-				for (int j = 0; j < n; j++) {
-					if (i >= j) {
-						H[i][j] = QR[i][j];
-					} else {
-						H[i][j] = 0.0;
-					}
-				}
-			}
-			return X;
-		}
-
-		public Matrix getR () {
-			Matrix X = new Matrix(n,n);
-			double[][] R = X.getArray();
-			for (int i = 0; i < n; i++) {
-				for (int j = 0; j < n; j++) {
-					if (i < j) {
-						R[i][j] = QR[i][j];
-					} else if (i == j) {
-						R[i][j] = Rdiag[i];
-					} else {
-						R[i][j] = 0.0;
-					}
-				}
-			}
-			return X;
-		}
-
-		public Matrix getQ () {
-			Matrix X = new Matrix(m,n);
-			double[][] Q = X.getArray();
-			for (int k = n-1; k >= 0; k--) {
-				for (int i = 0; i < m; i++) {
-					Q[i][k] = 0.0;
-				}
-				Q[k][k] = 1.0;
-				for (int j = k; j < n; j++) {
-					if (QR[k][k] != 0) {
-						double s = 0.0;
-						for (int i = k; i < m; i++) {
-							s += QR[i][k]*Q[i][j];
-						}
-						s = -s/QR[k][k];
-						for (int i = k; i < m; i++) {
-							Q[i][j] += s*QR[i][k];
-						}
-					}
-				}
-			}
-			return X;
-		}
+	/**
+	 Transform a direction into the given output vector, which may be the input vector itself
+	 **/
+	public Vec3 transformVector(Vec3 vec, Vec3 out){
+		float x = vec.x * m[0] + vec.y * m[1] + vec.z * m[2];
+		float y = vec.x * m[4] + vec.y * m[5] + vec.z * m[6];
+		float z = vec.x * m[8] + vec.y * m[9] + vec.z * m[10];
+		out.x = x;
+		out.y = y;
+		out.z = z;
+		return out;
+	}
 
-		public Matrix solve (Matrix B) {
-			if (B.getRowDimension() != m) {
-				throw new IllegalArgumentException("Matrix row dimensions must agree.");
-			}
-			if (!this.isFullRank()) {
-				throw new RuntimeException("Matrix is rank deficient.");
-			}
+	/**
+	 Transform a normal with the inverse transpose, the result is not normalized
+	 **/
+	public Vec3 transformNormal(Vec3 vec, Vec3 out){
+		return invertTranspose().transformVector(vec, out);
+	}
 
-			// Copy right hand side
-			int nx = B.getColumnDimension();
-			double[][] X = B.getArrayCopy();
-
-			// Compute Y = transpose(Q)*B
-			for (int k = 0; k < n; k++) {
-				for (int j = 0; j < nx; j++) {
-					double s = 0.0;
-					for (int i = k; i < m; i++) {
-						s += QR[i][k]*X[i][j];
-					}
-					s = -s/QR[k][k];
-					for (int i = k; i < m; i++) {
-						X[i][j] += s*QR[i][k];
-					}
-				}
-			}
-			// Solve R*X = Y;
-			for (int k = n-1; k >= 0; k--) {
-				for (int j = 0; j < nx; j++) {
-					X[k][j] /= Rdiag[k];
-				}
-				for (int i = 0; i < k; i++) {
-					for (int j = 0; j < nx; j++) {
-						X[i][j] -= X[k][j]*QR[i][k];
-					}
-				}
-			}
-			return (new Matrix(X,n,nx).getMatrix(0,n-1,0,nx-1));
-		}
-		private static final long serialVersionUID = 1;
+	/**
+	 Print values of matrix
+	 **/
+	@Override
+	public String toString(){
+		return  "\n" +
+				m[0] + "\t\t\t\t\t\t" + m[1] + "\t\t\t\t\t\t" + m[2] + "\t\t\t\t\t\t" + m[3] + "\t\t\n" +
+				m[4] + "\t\t\t\t\t\t" + m[5] + "\t\t\t\t\t\t" + m[6] + "\t\t\t\t\t\t" + m[7] + "\t\t\n" +
+				m[8] + "\t\t\t\t\t\t" + m[9] + "\t\t\t\t\t\t" + m[10] + "\t\t\t\t\t\t" + m[11] + "\t\t\n" +
+				m[12] + "\t\t\t\t\t\t" + m[13] + "\t\t\t\t\t\t" + m[14] + "\t\t\t\t\t\t" + m[15] + "\t\t\n" ;
 	}
 }
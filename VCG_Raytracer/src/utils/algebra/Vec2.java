@@ -21,6 +21,15 @@ public class Vec2 {
         this.y = 0;
     }
 
+    /**
+     Set all values - changes the vector itself
+     **/
+    public Vec2 set(float x, float y){
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
     /**
      Compare two vectors to check if they are equal
      **/
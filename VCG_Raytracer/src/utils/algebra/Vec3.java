@@ -91,6 +91,104 @@ public class Vec3 {
         );
     }
 
+    /**
+     In-place operations - they change the vector itself and return it, so no new object is created.
+     Meant for the ray hot path, the operations above are meant for setting up a scene.
+     **/
+
+    /**
+     Set all values
+     **/
+    public Vec3 set(float x, float y, float z){
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     Set all values to the values of the given vector
+     **/
+    public Vec3 set(Vec3 inputVec){
+        this.x = inputVec.x;
+        this.y = inputVec.y;
+        this.z = inputVec.z;
+        return this;
+    }
+
+    /**
+     Add the given vector to the vector
+     **/
+    public Vec3 addInPlace(Vec3 inputVec){
+        this.x += inputVec.x;
+        this.y += inputVec.y;
+        this.z += inputVec.z;
+        return this;
+    }
+
+    /**
+     Subtract the given vector from the vector
+     **/
+    public Vec3 subInPlace(Vec3 inputVec){
+        this.x -= inputVec.x;
+        this.y -= inputVec.y;
+        this.z -= inputVec.z;
+        return this;
+    }
+
+    /**
+     Multiply every component with the given value
+     **/
+    public Vec3 multScalarInPlace(float value){
+        this.x *= value;
+        this.y *= value;
+        this.z *= value;
+        return this;
+    }
+
+    /**
+     Turn the vector into its opposite
+     **/
+    public Vec3 negateInPlace(){
+        this.x = -this.x;
+        this.y = -this.y;
+        this.z = -this.z;
+        return this;
+    }
+
+    /**
+     Normalize the vector
+     **/
+    public Vec3 normalizeInPlace(){
+        float length = this.length();
+        this.x = this.x / length;
+        this.y = this.y / length;
+        this.z = this.z / length;
+        return this;
+    }
+
+    /**
+     Set the vector to the cross product of the vector and the given vector
+     **/
+    public Vec3 crossInPlace(Vec3 inputVec){
+        return set(
+                this.y * inputVec.z - inputVec.y * this.z,
+                this.z * inputVec.x - inputVec.z * this.x,
+                this.x * inputVec.y - inputVec.x * this.y
+        );
+    }
+
+    /**
+     Set the vector to the point at the given parameter of a ray: start + direction * parameter
+     **/
+    public Vec3 setPointAt(Vec3 start, Vec3 direction, float parameter){
+        return set(
+                start.x + direction.x * parameter,
+                start.y + direction.y * parameter,
+                start.z + direction.z * parameter
+        );
+    }
+
     /**
      Print values
      **/
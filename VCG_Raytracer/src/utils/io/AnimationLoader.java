@@ -0,0 +1,188 @@
+package utils.io;
+
+import raytracer.Animation;
+import utils.algebra.Vec3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Class AnimationLoader
+ * Loads an animation from a JSON file. The output is a pattern for the frame number, the camera keys have the
+ * fields of the camera of a scene file and the objects move the shapes of the scene file, which are counted in the
+ * order of its shapes list, by a translation from their location in the scene file.
+ *
+ * {
+ *   "scene": "scenes/cornell.json",
+ *   "output": "frames/orbit_%04d.png",
+ *   "frames": 48,
+ *   "camera": [
+ *     {"frame": 0, "position": [0, 0, 17], "lookAt": [0, 0, 0]},
+ *     {"frame": 47, "position": [6, 1, 15]}
+ *   ],
+ *   "objects": [
+ *     {"shape": 6, "keys": [{"frame": 0, "translation": [0, 0, 0]}, {"frame": 47, "translation": [0, 2, 0]}]}
+ *   ]
+ * }
+ *
+ * Camera fields which are not given keep the value of the scene camera. Unknown fields are skipped with a warning.
+ */
+public class AnimationLoader {
+
+    private final JsonReader reader;
+    private Animation animation;
+
+    // Fields of the key which is read, reset for every key
+    private int frame;
+    private Vec3 position;
+    private Vec3 lookAt;
+    private Vec3 up;
+    private float viewAngle;
+    private float focalLength;
+    private Vec3 translation;
+
+    private AnimationLoader(Reader _reader) {
+        this.reader = new JsonReader(_reader);
+    }
+
+    /**
+     * Loads an animation.
+     * @param path The path of the JSON file
+     * @return The animation, null if the file could not be read
+     */
+    public static Animation load(String path) {
+        try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8))) {
+            AnimationLoader loader = new AnimationLoader(reader);
+            loader.readAnimation();
+            Log.print(loader, "Loaded " + loader.animation.getFrameCount() + " frames with "
+                    + loader.animation.getObjectTracks().size() + " moving shapes from " + path);
+            return loader.animation;
+        } catch (Exception e) {
+            System.err.println("Could not load " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void readAnimation() throws IOException {
+        String scene = null;
+        String output = null;
+        int frames = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "scene": scene = reader.nextString(); break;
+                case "output": output = reader.nextString(); break;
+                case "frames": frames = reader.nextInt(); break;
+                case "camera": requireHeader(scene, output, frames); readCameraKeys(); break;
+                case "objects": requireHeader(scene, output, frames); readObjects(); break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        requireHeader(scene, output, frames);
+    }
+
+    /**
+     * Creates the animation from the scene, the output and the frame count, which have to come before the keys.
+     */
+    private void requireHeader(String scene, String output, int frames) throws IOException {
+        if (animation != null) {
+            return;
+        }
+        if (scene == null || output == null || frames <= 0) {
+            throw new IOException("line " + reader.getLine() + ": an animation needs a scene, an output and frames before its keys");
+        }
+        animation = new Animation(scene, output, frames);
+    }
+
+    private void readCameraKeys() throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            frame = 0;
+            position = null;
+            lookAt = null;
+            up = null;
+            viewAngle = 0;
+            focalLength = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "frame": frame = reader.nextInt(); break;
+                    case "position": position = readVector(); break;
+                    case "lookAt": lookAt = readVector(); break;
+                    case "up": up = readVector(); break;
+                    case "viewAngle": viewAngle = reader.nextFloat(); break;
+                    case "focalLength": focalLength = reader.nextFloat(); break;
+                    default: skipUnknown(name);
+                }
+            }
+            reader.endObject();
+            animation.addCameraKey(frame, position, lookAt, up, viewAngle, focalLength);
+        }
+        reader.endArray();
+    }
+
+    private void readObjects() throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int shape = -1;
+            reader.beginObject();
+            int line = reader.getLine();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "shape": shape = reader.nextInt(); break;
+                    case "keys": readObjectKeys(shape, line); break;
+                    default: skipUnknown(name);
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private void readObjectKeys(int shape, int line) throws IOException {
+        if (shape < 0) {
+            throw new IOException("line " + line + ": an object needs its shape before its keys");
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            frame = 0;
+            translation = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "frame": frame = reader.nextInt(); break;
+                    case "translation": translation = readVector(); break;
+                    default: skipUnknown(name);
+                }
+            }
+            reader.endObject();
+            if (translation == null) {
+                throw new IOException("line " + reader.getLine() + ": an object key needs a translation");
+            }
+            animation.addObjectKey(shape, frame, translation);
+        }
+        reader.endArray();
+    }
+
+    private Vec3 readVector() throws IOException {
+        Vec3 vector = new Vec3();
+        reader.nextVector(vector);
+        return vector;
+    }
+
+    private void skipUnknown(String name) throws IOException {
+        Log.warn(this, "Skipping unknown field " + name + " in line " + reader.getLine());
+        reader.skipValue();
+    }
+}
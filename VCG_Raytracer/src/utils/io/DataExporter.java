@@ -1,17 +1,140 @@
 package utils.io;
 
 
-import javax.imageio.ImageIO;
+import utils.jfr.ExportEvent;
+
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class DataExporter {
-    public static void exportImageToPng(BufferedImage image, String fileName){
-        File outFile = new File(fileName);
-        try {
-            ImageIO.write(image, "png", outFile);
+
+    // Images whose file ends with this are written as uncompressed PPM, all others as PNG
+    public static final String PPM_EXTENSION = ".ppm";
+    // Files with these extensions get the float colors of the rendering, as Portable Float Map or OpenEXR
+    public static final String PFM_EXTENSION = ".pfm";
+    public static final String EXR_EXTENSION = ".exr";
+
+    private static final PngEncoder PNG_ENCODER = new PngEncoder();
+
+    /**
+     * Writes an image in the format of its file name: PPM for .ppm files, PNG for all others. PFM and OpenEXR files
+     * are refused, an 8 bit image has no float colors to write, see exportColors().
+     * @param image The image
+     * @param fileName The name of the file
+     * @return false if the image could not be written
+     */
+    public static boolean exportImage(BufferedImage image, String fileName){
+        if (isHdrFile(fileName)) {
+            System.err.println("Could not export " + fileName + ": PFM and OpenEXR files need float colors, render into an HdrFrameBuffer");
+            return false;
+        }
+        if (fileName.toLowerCase().endsWith(PPM_EXTENSION)) {
+            return exportImageToPpm(image, fileName);
+        }
+        return exportImageToPng(image, fileName);
+    }
+
+    /**
+     * @return true if the file takes float colors, which is the case for PFM and OpenEXR files
+     */
+    public static boolean isHdrFile(String fileName){
+        String name = fileName.toLowerCase();
+        return name.endsWith(PFM_EXTENSION) || name.endsWith(EXR_EXTENSION);
+    }
+
+    /**
+     * Writes float colors without quantizing them: as uncompressed OpenEXR for .exr files and as PFM for all others.
+     * @param colors The red, green and blue of every pixel, row by row from the top
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param fileName The name of the file
+     * @return false if the colors could not be written
+     */
+    public static boolean exportColors(float[] colors, int width, int height, String fileName){
+        if (fileName.toLowerCase().endsWith(EXR_EXTENSION)) {
+            return export(fileName, "exr", width, height, out -> ExrEncoder.write(colors, width, height, out));
+        }
+        return export(fileName, "pfm", width, height, out -> writePfm(colors, width, height, out));
+    }
+
+    /**
+     * Writes an image as PNG, which is deflated on several threads, see PngEncoder.
+     * @return false if the image could not be written
+     */
+    public static boolean exportImageToPng(BufferedImage image, String fileName){
+        return export(fileName, "png", image.getWidth(), image.getHeight(), out -> PNG_ENCODER.write(image, out));
+    }
+
+    /**
+     * Writes an image as binary PPM, which needs no compression and is written about as fast as the disk allows.
+     * @return false if the image could not be written
+     */
+    public static boolean exportImageToPpm(BufferedImage image, String fileName){
+        return export(fileName, "ppm", image.getWidth(), image.getHeight(), out -> writePpm(image, out));
+    }
+
+    private static boolean export(String fileName, String format, int width, int height, Encoder encoder){
+        ExportEvent event = new ExportEvent();
+        event.begin();
+        boolean success = true;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(fileName)), 1 << 16)) {
+            encoder.write(out);
         } catch (Exception e) {
-            System.err.println(e.getMessage()); // print any DataExporter errors to stderr.
+            System.err.println("Could not export " + fileName + ": " + e.getMessage()); // print any DataExporter errors to stderr.
+            success = false;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = fileName;
+            event.format = format;
+            event.width = width;
+            event.height = height;
+            event.commit();
+        }
+        return success;
+    }
+
+    private static void writePpm(BufferedImage image, OutputStream out) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+        int[] pixels = new int[width];
+        byte[] row = new byte[width * 3];
+        for (int y = 0; y < height; y++) {
+            PngEncoder.readRow(image, y, pixels);
+            for (int x = 0, i = 0; x < width; x++, i += 3) {
+                row[i] = (byte) (pixels[x] >> 16);
+                row[i + 1] = (byte) (pixels[x] >> 8);
+                row[i + 2] = (byte) pixels[x];
+            }
+            out.write(row);
         }
     }
+
+    /**
+     * PFM stores little endian floats, marked by the negative scale, with the bottom row first.
+     */
+    private static void writePfm(float[] colors, int width, int height, OutputStream out) throws IOException {
+        if (colors.length < width * height * 3) {
+            throw new IllegalArgumentException("Expected " + width * height * 3 + " colors, got " + colors.length);
+        }
+        out.write(("PF\n" + width + " " + height + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer row = ByteBuffer.allocate(width * 12).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = height - 1; y >= 0; y--) {
+            row.clear();
+            row.asFloatBuffer().put(colors, y * width * 3, width * 3);
+            out.write(row.array());
+        }
+    }
+
+    private interface Encoder {
+        void write(OutputStream out) throws IOException;
+    }
 }
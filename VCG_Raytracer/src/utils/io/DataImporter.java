@@ -1,22 +1,169 @@
 package utils.io;
 
-//import com.interactivemesh.jfx.importer.obj.ObjModelImporter;
-//import javafx.scene.shape.MeshView;
-
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DataImporter {
 
+	// Chunks of an OBJ file which are parsed in parallel, every thread gets several to balance the load
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+
 	public DataImporter() {}
 
-	public static void loadOBJ(String path) {
+	/**
+	 * Loads the triangles of an OBJ file. The file is memory mapped in chunks, which end on a line break
+	 * and are parsed in parallel, so loading scales with the cores and never copies the whole file into the heap.
+	 * Vertices, normals and faces are read, everything else (texture coordinates, groups, materials) is skipped.
+	 * @param path The path of the OBJ file
+	 * @return The triangles of the file, null if the file could not be read
+	 */
+	public static MeshData loadOBJ(String path) {
 		File file = loadFile(path);
+		long tStart = System.nanoTime();
 
-		//ObjModelImporter importer = new ObjModelImporter();
-//		importer.read(file);
-		//MeshView[] meshes = importer.getImport();
+		MeshData mesh;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			mesh = parseOBJ(channel);
+		} catch (Exception e) {
+			System.err.println("Could not load " + path + ": " + e.getMessage());
+			return null;
+		}
 
-		Log.print(DataImporter.class, "... done!");
+		double seconds = (System.nanoTime() - tStart) / 1e9;
+		Log.print(DataImporter.class, "... done in " + String.format("%.3f", seconds) + " s: "
+				+ mesh.getTriangleCount() + " triangles, " + mesh.getVertexCount() + " vertices, "
+				+ (file.length() >> 20) + " MB read, "
+				+ (mesh.getTriangleCount() == 0 ? 0 : mesh.getByteSize() / mesh.getTriangleCount()) + " bytes per triangle");
+		return mesh;
+	}
+
+	private static MeshData parseOBJ(FileChannel channel) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<ObjParser> parsers = new ArrayList<>();
+		for (long[] chunk : splitChunks(channel, threads * CHUNKS_PER_THREAD)) {
+			parsers.add(new ObjParser(channel, chunk[0], chunk[1]));
+		}
+
+		if (parsers.size() == 1) {
+			parsers.get(0).parse();
+		} else {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, parsers.size()));
+			try {
+				List<Future<ObjParser>> results = new ArrayList<>();
+				for (ObjParser parser : parsers) {
+					results.add(executor.submit(parser::parse));
+				}
+				for (Future<ObjParser> result : results) {
+					try {
+						result.get();
+					} catch (ExecutionException e) {
+						// Report the error of the parser, not the wrapper around it
+						throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}
+			} finally {
+				executor.shutdown();
+			}
+		}
+		return merge(parsers);
+	}
+
+	/**
+	 * Splits the file into chunks of about the same size, every chunk except the last one ends after a line break.
+	 * @return The start (inclusive) and end (exclusive) of every chunk
+	 */
+	private static List<long[]> splitChunks(FileChannel channel, int chunkCount) throws IOException {
+		long size = channel.size();
+		long chunkSize = Math.max(MIN_CHUNK_SIZE, size / chunkCount + 1);
+		List<long[]> chunks = new ArrayList<>();
+		ByteBuffer probe = ByteBuffer.allocate(256);
+		long start = 0;
+		while (start < size) {
+			long end = Math.min(size, start + chunkSize);
+			// Move the end behind the next line break
+			while (end < size) {
+				probe.clear();
+				int read = channel.read(probe, end);
+				int lineBreak = -1;
+				for (int i = 0; i < read && lineBreak < 0; i++) {
+					if (probe.get(i) == '\n') {
+						lineBreak = i;
+					}
+				}
+				if (lineBreak >= 0) {
+					end += lineBreak + 1;
+					break;
+				}
+				end += Math.max(read, 0);
+			}
+			chunks.add(new long[]{start, Math.min(end, size)});
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Copies the results of the chunks behind each other. Indices of a face which count back from the last vertex
+	 * are resolved here, when the number of vertices in the chunks before is known, and every index is checked
+	 * against the vertices and normals of the whole file, so a broken file is rejected while it is loaded
+	 * instead of failing when the mesh is built or hit by a ray.
+	 * @throws IOException if an index refers to a vertex or normal the file does not have
+	 */
+	private static MeshData merge(List<ObjParser> parsers) throws IOException {
+		int positionCount = 0;
+		int normalCount = 0;
+		int indexCount = 0;
+		boolean hasNormals = false;
+		for (ObjParser parser : parsers) {
+			parser.resolveRelativeIndices(positionCount / 3, normalCount / 3);
+			positionCount += parser.positionCount;
+			normalCount += parser.normalCount;
+			indexCount += parser.indexCount;
+			hasNormals |= parser.hasNormals;
+		}
+
+		float[] positions = new float[positionCount];
+		float[] normals = new float[hasNormals ? normalCount : 0];
+		int[] positionIndices = new int[indexCount];
+		int[] normalIndices = hasNormals ? new int[indexCount] : null;
+		int positionOffset = 0;
+		int normalOffset = 0;
+		int indexOffset = 0;
+		for (ObjParser parser : parsers) {
+			System.arraycopy(parser.positions, 0, positions, positionOffset, parser.positionCount);
+			System.arraycopy(parser.positionIndices, 0, positionIndices, indexOffset, parser.indexCount);
+			if (hasNormals) {
+				System.arraycopy(parser.normals, 0, normals, normalOffset, parser.normalCount);
+				System.arraycopy(parser.normalIndices, 0, normalIndices, indexOffset, parser.indexCount);
+			}
+			positionOffset += parser.positionCount;
+			normalOffset += parser.normalCount;
+			indexOffset += parser.indexCount;
+		}
+
+		int vertexCount = positionCount / 3;
+		int normalVectorCount = normals.length / 3;
+		for (int i = 0; i < indexCount; i++) {
+			if (positionIndices[i] < 0 || positionIndices[i] >= vertexCount) {
+				throw new IOException("triangle " + (i / 3 + 1) + " refers to vertex " + (positionIndices[i] + 1)
+						+ ", the file has " + vertexCount + " vertices");
+			}
+			if (hasNormals && normalIndices[i] >= normalVectorCount) {
+				throw new IOException("triangle " + (i / 3 + 1) + " refers to normal " + (normalIndices[i] + 1)
+						+ ", the file has " + normalVectorCount + " normals");
+			}
+		}
+		return new MeshData(positions, normals, positionIndices, normalIndices);
 	}
 
 	public static void loadTexture(String path) {
@@ -0,0 +1,112 @@
+package utils.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class ExrEncoder
+ * Writes float colors as OpenEXR files. Only the simplest form of the format is written: a single part scanline
+ * image without compression, with 32 bit float channels R, G and B and one row per chunk. Every reader of OpenEXR
+ * supports this form, and since nothing is compressed the file is written about as fast as the disk allows.
+ */
+public class ExrEncoder {
+
+    private static final int MAGIC = 20000630;
+    // Version 2 of the file format, single part scanline image with short names
+    private static final int VERSION = 2;
+    // The channels are stored in alphabetical order of their names
+    private static final String[] CHANNELS = {"B", "G", "R"};
+    // The index of the channels in the interleaved RGB colors
+    private static final int[] CHANNEL_OFFSETS = {2, 1, 0};
+    private static final int PIXEL_TYPE_FLOAT = 2;
+    private static final int NO_COMPRESSION = 0;
+    private static final int INCREASING_Y = 0;
+
+    /**
+     * Writes an image as uncompressed OpenEXR.
+     * @param colors The red, green and blue of every pixel, row by row from the top
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param out The stream to write to, it is not closed
+     */
+    public static void write(float[] colors, int width, int height, OutputStream out) throws IOException {
+        if (colors.length < width * height * 3) {
+            throw new IllegalArgumentException("Expected " + width * height * 3 + " colors, got " + colors.length);
+        }
+        ByteBuffer header = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+
+        putAttribute(header, "channels", "chlist", CHANNELS.length * 18 + 1);
+        for (String channel : CHANNELS) {
+            putString(header, channel);
+            header.putInt(PIXEL_TYPE_FLOAT);
+            header.put((byte) 0);                   // not perceptually linear
+            header.put(new byte[3]);                // reserved
+            header.putInt(1);                       // x sampling
+            header.putInt(1);                       // y sampling
+        }
+        header.put((byte) 0);
+        putAttribute(header, "compression", "compression", 1);
+        header.put((byte) NO_COMPRESSION);
+        putAttribute(header, "dataWindow", "box2i", 16);
+        putBox(header, width, height);
+        putAttribute(header, "displayWindow", "box2i", 16);
+        putBox(header, width, height);
+        putAttribute(header, "lineOrder", "lineOrder", 1);
+        header.put((byte) INCREASING_Y);
+        putAttribute(header, "pixelAspectRatio", "float", 4);
+        header.putFloat(1f);
+        putAttribute(header, "screenWindowCenter", "v2f", 8);
+        header.putFloat(0f);
+        header.putFloat(0f);
+        putAttribute(header, "screenWindowWidth", "float", 4);
+        header.putFloat(1f);
+        header.put((byte) 0);
+        out.write(header.array(), 0, header.position());
+
+        // The offset table holds the position of every row in the file
+        int rowBytes = 8 + width * 4 * CHANNELS.length;
+        ByteBuffer offsets = ByteBuffer.allocate(height * 8).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = header.position() + (long) height * 8;
+        for (int y = 0; y < height; y++) {
+            offsets.putLong(offset);
+            offset += rowBytes;
+        }
+        out.write(offsets.array());
+
+        ByteBuffer row = ByteBuffer.allocate(rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < height; y++) {
+            row.clear();
+            row.putInt(y);
+            row.putInt(rowBytes - 8);
+            for (int channelOffset : CHANNEL_OFFSETS) {
+                for (int x = 0, i = y * width * 3 + channelOffset; x < width; x++, i += 3) {
+                    row.putFloat(colors[i]);
+                }
+            }
+            out.write(row.array());
+        }
+    }
+
+    private static void putAttribute(ByteBuffer header, String name, String type, int size) {
+        putString(header, name);
+        putString(header, type);
+        header.putInt(size);
+    }
+
+    private static void putString(ByteBuffer header, String text) {
+        header.put(text.getBytes(StandardCharsets.US_ASCII));
+        header.put((byte) 0);
+    }
+
+    private static void putBox(ByteBuffer header, int width, int height) {
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(width - 1);
+        header.putInt(height - 1);
+    }
+}
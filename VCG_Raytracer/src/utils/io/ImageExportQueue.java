@@ -0,0 +1,158 @@
+package utils.io;
+
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Class ImageExportQueue
+ * Writes images on a background thread, so the renderer continues with the next frame while the last one is
+ * encoded. The image is copied when it is submitted and the frame buffer can be reused right away. The queue holds
+ * a limited number of images: when the export falls behind, submit() waits until an image has been written, so
+ * finished frames can not pile up in memory.
+ */
+public class ImageExportQueue {
+
+    private final ExecutorService writer;
+    private final Semaphore slots;
+    private final int capacity;
+
+    private final AtomicInteger images = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong encodeTime = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * @param _capacity The number of images which may wait for the export, besides the one being written
+     */
+    public ImageExportQueue(int _capacity) {
+        this.capacity = Math.max(1, _capacity);
+        this.slots = new Semaphore(capacity + 1);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Export");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Copies an image and queues it for writing in the format of its file name, see DataExporter.exportImage().
+     * Waits while the queue is full.
+     * @param image The image
+     * @param fileName The name of the file
+     * @return The time spent waiting for room in the queue and copying the image in nanoseconds
+     */
+    public long submit(BufferedImage image, String fileName) {
+        long tStart = System.nanoTime();
+        acquire(tStart);
+        BufferedImage copy = new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+        execute(fileName, () -> DataExporter.exportImage(copy, fileName));
+        return System.nanoTime() - tStart;
+    }
+
+    /**
+     * Copies float colors and queues them for writing as PFM or OpenEXR, see DataExporter.exportColors().
+     * Waits while the queue is full.
+     * @param colors The red, green and blue of every pixel, row by row from the top
+     * @param width The width of the image
+     * @param height The height of the image
+     * @param fileName The name of the file
+     * @return The time spent waiting for room in the queue and copying the colors in nanoseconds
+     */
+    public long submit(float[] colors, int width, int height, String fileName) {
+        long tStart = System.nanoTime();
+        acquire(tStart);
+        float[] copy = colors.clone();
+        execute(fileName, () -> DataExporter.exportColors(copy, width, height, fileName));
+        return System.nanoTime() - tStart;
+    }
+
+    private void acquire(long tStart) {
+        slots.acquireUninterruptibly();
+        waitTime.addAndGet(System.nanoTime() - tStart);
+    }
+
+    private void execute(String fileName, BooleanSupplier export) {
+        writer.execute(() -> {
+            try {
+                long tEncode = System.nanoTime();
+                boolean success = export.getAsBoolean();
+                long nanos = System.nanoTime() - tEncode;
+                encodeTime.addAndGet(nanos);
+                images.incrementAndGet();
+                if (!success) {
+                    failed.incrementAndGet();
+                }
+                Log.print(this, String.format(Locale.ROOT, "Wrote %s in %.1f ms", fileName, nanos / 1e6));
+            } finally {
+                slots.release();
+            }
+        });
+    }
+
+    /**
+     * Waits until every queued image has been written.
+     */
+    public void flush() {
+        slots.acquireUninterruptibly(capacity + 1);
+        slots.release(capacity + 1);
+    }
+
+    /**
+     * Writes the queued images and stops the background thread, the queue can not be used afterwards.
+     */
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The number of images which have been written or failed
+     */
+    public int getImageCount() {
+        return images.get();
+    }
+
+    /**
+     * @return The number of images which could not be written
+     */
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the time the background thread spent encoding and writing images, which runs alongside the rendering.
+     * @return The time in nanoseconds
+     */
+    public long getEncodeTime() {
+        return encodeTime.get();
+    }
+
+    /**
+     * Returns the time submit() waited for room in the queue, which is the part of the export the renderer waits for.
+     * @return The time in nanoseconds
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+
+    /**
+     * Returns a short summary of the export for the log.
+     * @return The summary
+     */
+    public String getSummary() {
+        int count = images.get();
+        return String.format(Locale.ROOT, "Wrote %d images (%d failed), encoding %.1f ms per image in the background, waited %.1f ms for the queue",
+                count, failed.get(), count == 0 ? 0 : encodeTime.get() / 1e6 / count, waitTime.get() / 1e6);
+    }
+}
@@ -0,0 +1,161 @@
+package utils.io;
+
+import raytracer.RenderJob;
+import utils.algebra.Vec3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class JobManifest
+ * Loads the jobs of a batch from a JSON manifest. Every job renders a scene file into an image, the other fields
+ * replace the settings and the camera of the scene file for this job only.
+ *
+ * {
+ *   "jobs": [
+ *     {"scene": "scenes/cornell.json", "output": "frames/front.png"},
+ *     {"scene": "scenes/cornell.json", "output": "frames/side.png", "width": 320, "height": 240,
+ *      "recursions": 4, "antiAliasing": 2, "camera": {"position": [4, 0, 8], "lookAt": [0, -2, 0]}}
+ *   ]
+ * }
+ *
+ * The camera of a job has the fields of the camera of a scene file, fields which are not given keep the value
+ * of the scene camera. Unknown fields are skipped with a warning.
+ */
+public class JobManifest {
+
+    private final JsonReader reader;
+    private final List<RenderJob> jobs = new ArrayList<>();
+
+    // Fields of the job which is read, reset for every job
+    private String scene;
+    private String output;
+    private int width;
+    private int height;
+    private int recursions;
+    private int antiAliasing;
+    private Vec3 position;
+    private Vec3 lookAt;
+    private Vec3 up;
+    private float viewAngle;
+    private float focalLength;
+
+    private JobManifest(Reader _reader) {
+        this.reader = new JsonReader(_reader);
+    }
+
+    /**
+     * Loads the jobs of a manifest.
+     * @param path The path of the JSON manifest
+     * @return The jobs in the order of the manifest, null if the file could not be read
+     */
+    public static List<RenderJob> load(String path) {
+        try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8))) {
+            JobManifest manifest = new JobManifest(reader);
+            manifest.readManifest();
+            Log.print(manifest, "Loaded " + manifest.jobs.size() + " jobs from " + path);
+            return manifest.jobs;
+        } catch (Exception e) {
+            System.err.println("Could not load " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void readManifest() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("jobs")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    jobs.add(readJob());
+                }
+                reader.endArray();
+            } else {
+                skipUnknown(name);
+            }
+        }
+        reader.endObject();
+    }
+
+    private RenderJob readJob() throws IOException {
+        scene = null;
+        output = null;
+        width = 0;
+        height = 0;
+        recursions = -1;
+        antiAliasing = 0;
+        position = null;
+        lookAt = null;
+        up = null;
+        viewAngle = 0;
+        focalLength = 0;
+        reader.beginObject();
+        int line = reader.getLine();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "scene": scene = reader.nextString(); break;
+                case "output": output = reader.nextString(); break;
+                case "width": width = reader.nextInt(); break;
+                case "height": height = reader.nextInt(); break;
+                case "recursions": recursions = reader.nextInt(); break;
+                case "antiAliasing": antiAliasing = reader.nextInt(); break;
+                case "camera": readCamera(); break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        if (scene == null || output == null) {
+            throw new IOException("line " + line + ": a job needs a scene and an output");
+        }
+        if ((width > 0) != (height > 0)) {
+            throw new IOException("line " + line + ": a job has to set both width and height");
+        }
+
+        RenderJob job = new RenderJob(scene, output);
+        job.setSize(width, height);
+        job.setRecursions(recursions);
+        job.setAntiAliasing(antiAliasing);
+        job.setCameraPosition(position);
+        job.setLookAt(lookAt);
+        job.setUpVector(up);
+        job.setViewAngle(viewAngle);
+        job.setFocalLength(focalLength);
+        return job;
+    }
+
+    private void readCamera() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "position": position = readVector(); break;
+                case "lookAt": lookAt = readVector(); break;
+                case "up": up = readVector(); break;
+                case "viewAngle": viewAngle = reader.nextFloat(); break;
+                case "focalLength": focalLength = reader.nextFloat(); break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+    }
+
+    private Vec3 readVector() throws IOException {
+        Vec3 vector = new Vec3();
+        reader.nextVector(vector);
+        return vector;
+    }
+
+    private void skipUnknown(String name) throws IOException {
+        Log.warn(this, "Skipping unknown field " + name + " in line " + reader.getLine());
+        reader.skipValue();
+    }
+}
@@ -0,0 +1,326 @@
+package utils.io;
+
+import utils.algebra.Vec3;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Class JsonReader
+ * Reads a JSON document token by token from a stream, without building a tree of the whole document.
+ * The caller walks through the document in the order it is written: beginObject(), hasNext() and nextName()
+ * for every field, the value methods and endObject(), and the same for arrays. Values which are not needed are
+ * skipped with skipValue(). Syntax errors are reported as IOExceptions with the line of the error.
+ */
+class JsonReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_DEPTH = 64;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    // Whether the next element of the open object or array at every depth is its first one
+    private final boolean[] first = new boolean[MAX_DEPTH];
+    private int depth;
+
+    private final StringBuilder string = new StringBuilder();
+
+    JsonReader(Reader _reader) {
+        this.reader = _reader;
+    }
+
+    /**
+     * Returns the line the reader is in, for error messages.
+     * @return The line, starting at 1
+     */
+    int getLine() {
+        return line;
+    }
+
+    void beginObject() throws IOException {
+        open('{');
+    }
+
+    void endObject() throws IOException {
+        close('}');
+    }
+
+    void beginArray() throws IOException {
+        open('[');
+    }
+
+    void endArray() throws IOException {
+        close(']');
+    }
+
+    /**
+     * Checks if the open object or array has another element and moves behind the comma before it.
+     * @return false if the object or array ends
+     */
+    boolean hasNext() throws IOException {
+        char c = peek();
+        if (c == '}' || c == ']') {
+            return false;
+        }
+        if (first[depth]) {
+            first[depth] = false;
+        } else {
+            expect(',');
+        }
+        return true;
+    }
+
+    /**
+     * Reads the name of the next field of an object and the colon behind it.
+     * @return The name
+     */
+    String nextName() throws IOException {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Returns the next character which is not white space, without consuming it.
+     * @return The character, 0 at the end of the document
+     */
+    char peek() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return 0;
+            }
+            char c = buffer[position];
+            if (c == '\n') {
+                line++;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    String nextString() throws IOException {
+        expect('"');
+        string.setLength(0);
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return string.toString();
+            }
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                    case 'n': c = '\n'; break;
+                    case 't': c = '\t'; break;
+                    case 'r': c = '\r'; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'u': c = (char) Integer.parseInt("" + next() + next() + next() + next(), 16); break;
+                    default: break;
+                }
+            } else if (c == '\n') {
+                throw error("line break in string");
+            }
+            string.append(c);
+        }
+    }
+
+    boolean nextBoolean() throws IOException {
+        String word = nextWord();
+        if (word.equals("true")) {
+            return true;
+        }
+        if (word.equals("false")) {
+            return false;
+        }
+        throw error("expected true or false instead of " + word);
+    }
+
+    int nextInt() throws IOException {
+        double value = nextDouble();
+        if (value != (int) value) {
+            throw error("expected an integer instead of " + value);
+        }
+        return (int) value;
+    }
+
+    float nextFloat() throws IOException {
+        return (float) nextDouble();
+    }
+
+    /**
+     * Parses a number like -1.25e-3 like the OBJ parser, without creating a string for it.
+     * @return The number
+     */
+    double nextDouble() throws IOException {
+        char c = peek();
+        boolean negative = c == '-';
+        if (negative || c == '+') {
+            position++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        boolean any = false;
+        while (position < limit || fill()) {
+            c = buffer[position];
+            if (c >= '0' && c <= '9') {
+                // Digits beyond the precision of a long only shift the exponent
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    if (fraction) exponent--;
+                } else if (!fraction) {
+                    exponent++;
+                }
+                any = true;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (!any) {
+            throw error("expected a number");
+        }
+        if ((position < limit || fill()) && (buffer[position] == 'e' || buffer[position] == 'E')) {
+            position++;
+            exponent += (int) nextDouble();
+        }
+        double value = mantissa;
+        if (exponent < 0) {
+            value = exponent >= -22 ? value / POWERS_OF_TEN[-exponent] : value * Math.pow(10, exponent);
+        } else if (exponent > 0) {
+            value = exponent <= 22 ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+        }
+        return negative ? -value : value;
+    }
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Reads an array of three numbers, like a location or a color.
+     * @param target The vector which receives the numbers
+     */
+    void nextVector(Vec3 target) throws IOException {
+        beginArray();
+        float x = nextComponent();
+        float y = nextComponent();
+        float z = nextComponent();
+        endArray();
+        target.set(x, y, z);
+    }
+
+    private float nextComponent() throws IOException {
+        if (!hasNext()) {
+            throw error("expected three numbers");
+        }
+        return nextFloat();
+    }
+
+    /**
+     * Skips the next value with everything inside of it.
+     */
+    void skipValue() throws IOException {
+        char c = peek();
+        if (c == '{') {
+            beginObject();
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+        } else if (c == '[') {
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+            endArray();
+        } else if (c == '"') {
+            nextString();
+        } else if (c == '-' || c == '+' || c >= '0' && c <= '9') {
+            nextDouble();
+        } else {
+            nextWord();
+        }
+    }
+
+    /**
+     * Reads a word of letters, like true, false or null.
+     */
+    private String nextWord() throws IOException {
+        peek();
+        string.setLength(0);
+        while ((position < limit || fill()) && Character.isLetter(buffer[position])) {
+            string.append(buffer[position++]);
+        }
+        if (string.length() == 0) {
+            throw error("unexpected " + describe(peek()));
+        }
+        return string.toString();
+    }
+
+    private void open(char bracket) throws IOException {
+        expect(bracket);
+        if (++depth == MAX_DEPTH) {
+            throw error("nested too deep");
+        }
+        first[depth] = true;
+    }
+
+    private void close(char bracket) throws IOException {
+        expect(bracket);
+        depth--;
+    }
+
+    private void expect(char expected) throws IOException {
+        char c = peek();
+        if (c != expected) {
+            throw error("expected '" + expected + "' instead of " + describe(c));
+        }
+        position++;
+    }
+
+    private char next() throws IOException {
+        if (position == limit && !fill()) {
+            throw error("unexpected end of file");
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private static String describe(char c) {
+        return c == 0 ? "end of file" : "'" + c + "'";
+    }
+
+    IOException error(String message) {
+        return new IOException("line " + line + ": " + message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
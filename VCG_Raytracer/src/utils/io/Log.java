@@ -2,15 +2,28 @@ package utils.io;
 
 
 public class Log {
+    // Informative messages can be switched off, for example while benchmarking. Warnings and errors stay.
+    private static volatile boolean enabled = true;
+
+    public static void setEnabled(boolean enabled){
+        Log.enabled = enabled;
+    }
+
+    // Static methods log with their class instead of an object
+    private static String getName(Object classObj){
+        return classObj instanceof Class ? ((Class<?>) classObj).getSimpleName() : classObj.getClass().getSimpleName();
+    }
+
     public static void print(Object classObj, String message){
-        System.out.println((char)27 +  "[36m" + String.valueOf("VCG Raytracer >> " + classObj.getClass().getSimpleName()) + " :: " + message);
+        if (!enabled) return;
+        System.out.println((char)27 +  "[36m" + String.valueOf("VCG Raytracer >> " + getName(classObj)) + " :: " + message);
     }
 
     public static void warn(Object classObj, String message){
-        System.out.println((char)27 +  "[33m" + String.valueOf("VCG Raytracer >> " + classObj.getClass().getSimpleName()) + " :: " + message);
+        System.out.println((char)27 +  "[33m" + String.valueOf("VCG Raytracer >> " + getName(classObj)) + " :: " + message);
     }
 
     public static void error(Object classObj, String message){
-        System.out.println((char)27 +  "[31m" + String.valueOf("VCG Raytracer >> " + classObj.getClass().getSimpleName()) + " :: " + message);
+        System.out.println((char)27 +  "[31m" + String.valueOf("VCG Raytracer >> " + getName(classObj)) + " :: " + message);
     }
 }
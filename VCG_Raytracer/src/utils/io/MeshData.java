@@ -0,0 +1,58 @@
+package utils.io;
+
+/**
+ * Class MeshData
+ * The triangles of a loaded model in flat arrays, without any object per vertex or triangle.
+ * Indices are zero based. Normal indices are -1 for corners without a normal, the array is null
+ * if the model has no normals at all.
+ */
+public class MeshData {
+
+    // x, y, z of every vertex
+    private final float[] positions;
+    // x, y, z of every normal, may be empty
+    private final float[] normals;
+    // Three vertex indices per triangle
+    private final int[] positionIndices;
+    // Three normal indices per triangle or null
+    private final int[] normalIndices;
+
+    public MeshData(float[] _positions, float[] _normals, int[] _positionIndices, int[] _normalIndices) {
+        this.positions = _positions;
+        this.normals = _normals;
+        this.positionIndices = _positionIndices;
+        this.normalIndices = _normalIndices;
+    }
+
+    public float[] getPositions() {
+        return positions;
+    }
+
+    public float[] getNormals() {
+        return normals;
+    }
+
+    public int[] getPositionIndices() {
+        return positionIndices;
+    }
+
+    public int[] getNormalIndices() {
+        return normalIndices;
+    }
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    public int getTriangleCount() {
+        return positionIndices.length / 3;
+    }
+
+    /**
+     * Returns the memory used by the arrays.
+     * @return The size of the arrays in bytes
+     */
+    public long getByteSize() {
+        return 4L * (positions.length + normals.length + positionIndices.length + (normalIndices == null ? 0 : normalIndices.length));
+    }
+}
@@ -0,0 +1,353 @@
+package utils.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Class ObjParser
+ * Parses one chunk of an OBJ file, which starts and ends on a line break. The chunk is memory mapped and read
+ * byte by byte, the results are kept in growing primitive arrays.
+ * Only vertices (v), normals (vn) and faces (f) are read, faces with more than three corners are split into a fan.
+ *
+ * Positive indices of a face refer to the whole file and are stored zero based. Negative indices count back
+ * from the last vertex of the file read so far, which depends on the chunks before. They are stored relative
+ * to this chunk and resolved with resolveRelativeIndices() once the vertex counts of the previous chunks are known.
+ * A face corner which is not an index, like 1.0, a name or a line continued with a backslash, is an error which
+ * is reported with its line in the file, as is an index of 0.
+ */
+class ObjParser {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+
+    float[] positions = new float[INITIAL_CAPACITY];
+    int positionCount;
+    float[] normals = new float[INITIAL_CAPACITY];
+    int normalCount;
+    int[] positionIndices = new int[INITIAL_CAPACITY];
+    int[] normalIndices = new int[INITIAL_CAPACITY];
+    int indexCount;
+    boolean hasNormals;
+
+    // Positions in the index arrays which are relative to the vertices or normals before this chunk
+    private int[] relativePositions = new int[16];
+    private int relativePositionCount;
+    private int[] relativeNormals = new int[16];
+    private int relativeNormalCount;
+
+    // Corners of the face which is parsed at the moment
+    private int[] facePositions = new int[16];
+    private int[] faceNormals = new int[16];
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * Creates a parser for the bytes from start (inclusive) to end (exclusive) of the file.
+     */
+    ObjParser(FileChannel _channel, long _start, long _end) {
+        this.channel = _channel;
+        this.start = _start;
+        this.end = _end;
+    }
+
+    /**
+     * Parses the chunk.
+     * @return The parser itself, holding the results
+     */
+    ObjParser parse() throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int length = buffer.limit();
+        int position = 0;
+        while (position < length) {
+            position = parseLine(position, length);
+        }
+        buffer = null;
+        return this;
+    }
+
+    /**
+     * Parses the line starting at the given position.
+     * @return The position after the line
+     */
+    private int parseLine(int position, int length) throws IOException {
+        position = skipSpaces(position, length);
+        if (position >= length) {
+            return position;
+        }
+        byte first = buffer.get(position);
+        byte second = position + 1 < length ? buffer.get(position + 1) : (byte) '\n';
+        if (first == 'v' && isSpace(second)) {
+            position = parseVector(position + 2, length, false);
+        } else if (first == 'v' && second == 'n') {
+            position = parseVector(position + 2, length, true);
+        } else if (first == 'f' && isSpace(second)) {
+            position = parseFace(position + 2, length);
+        }
+        return skipLine(position, length);
+    }
+
+    private int parseVector(int position, int length, boolean normal) {
+        float[] target = normal ? normals : positions;
+        int count = normal ? normalCount : positionCount;
+        if (count + 3 > target.length) {
+            target = Arrays.copyOf(target, target.length * 2);
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            position = skipSpaces(position, length);
+            position = parseFloat(position, length, target, count + axis);
+        }
+        if (normal) {
+            normals = target;
+            normalCount += 3;
+        } else {
+            positions = target;
+            positionCount += 3;
+        }
+        return position;
+    }
+
+    private int parseFace(int position, int length) throws IOException {
+        int corners = 0;
+        while (true) {
+            position = skipSpaces(position, length);
+            if (position >= length || isLineEnd(buffer.get(position))) {
+                break;
+            }
+            if (corners == facePositions.length) {
+                facePositions = Arrays.copyOf(facePositions, corners * 2);
+                faceNormals = Arrays.copyOf(faceNormals, corners * 2);
+            }
+            // v, v/vt, v//vn or v/vt/vn
+            position = parseIndex(position, length);
+            facePositions[corners] = parsedInt;
+            faceNormals[corners] = 0;
+            if (position < length && buffer.get(position) == '/') {
+                position++;
+                if (position < length && buffer.get(position) != '/') {
+                    position = parseInt(position, length);
+                }
+                if (position < length && buffer.get(position) == '/') {
+                    position = parseIndex(position + 1, length);
+                    faceNormals[corners] = parsedInt;
+                }
+            }
+            corners++;
+        }
+        for (int corner = 2; corner < corners; corner++) {
+            addCorner(0);
+            addCorner(corner - 1);
+            addCorner(corner);
+        }
+        return position;
+    }
+
+    /**
+     * Adds a corner of the current face as the next index of the triangles.
+     */
+    private void addCorner(int corner) {
+        if (indexCount == positionIndices.length) {
+            positionIndices = Arrays.copyOf(positionIndices, indexCount * 2);
+            normalIndices = Arrays.copyOf(normalIndices, indexCount * 2);
+        }
+        int positionIndex = facePositions[corner];
+        if (positionIndex < 0) {
+            relativePositions = addIndex(relativePositions, relativePositionCount++, indexCount);
+            positionIndex = positionCount / 3 + positionIndex;
+        } else {
+            positionIndex--;
+        }
+        int normalIndex = faceNormals[corner];
+        if (normalIndex < 0) {
+            relativeNormals = addIndex(relativeNormals, relativeNormalCount++, indexCount);
+            normalIndex = normalCount / 3 + normalIndex;
+            hasNormals = true;
+        } else if (normalIndex > 0) {
+            normalIndex--;
+            hasNormals = true;
+        } else {
+            normalIndex = -1;
+        }
+        positionIndices[indexCount] = positionIndex;
+        normalIndices[indexCount] = normalIndex;
+        indexCount++;
+    }
+
+    private static int[] addIndex(int[] array, int count, int value) {
+        if (count == array.length) {
+            array = Arrays.copyOf(array, count * 2);
+        }
+        array[count] = value;
+        return array;
+    }
+
+    /**
+     * Moves the relative indices of this chunk behind the vertices and normals of the previous chunks.
+     * @param positionOffset The number of vertices in the previous chunks
+     * @param normalOffset The number of normals in the previous chunks
+     * @throws IOException if an index counts back past the first vertex or normal of the file
+     */
+    void resolveRelativeIndices(int positionOffset, int normalOffset) throws IOException {
+        for (int i = 0; i < relativePositionCount; i++) {
+            positionIndices[relativePositions[i]] += positionOffset;
+            if (positionIndices[relativePositions[i]] < 0) {
+                throw new IOException("a face counts back past the first vertex of the file");
+            }
+        }
+        for (int i = 0; i < relativeNormalCount; i++) {
+            normalIndices[relativeNormals[i]] += normalOffset;
+            // -1 stands for a corner without a normal, so it has to be caught here
+            if (normalIndices[relativeNormals[i]] < 0) {
+                throw new IOException("a face counts back past the first normal of the file");
+            }
+        }
+    }
+
+    // Result of the last parseInt(), kept in a field so parsing does not create objects
+    private int parsedInt;
+
+    private int parseInt(int position, int length) {
+        boolean negative = false;
+        if (position < length && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position) == '-';
+            position++;
+        }
+        int value = 0;
+        while (position < length) {
+            byte b = buffer.get(position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            position++;
+        }
+        parsedInt = negative ? -value : value;
+        return position;
+    }
+
+    /**
+     * Parses a vertex or normal index of a face, which has to consist of digits with an optional sign and must
+     * not be 0. Whether it refers to an existing vertex or normal is checked once the whole file is read.
+     * @return The position after the index
+     */
+    private int parseIndex(int position, int length) throws IOException {
+        int first = position < length && (buffer.get(position) == '-' || buffer.get(position) == '+') ? position + 1 : position;
+        if (first >= length || buffer.get(first) < '0' || buffer.get(first) > '9') {
+            throw error("expected an index in the face", position);
+        }
+        position = parseInt(position, length);
+        if (parsedInt == 0) {
+            throw error("index 0 in the face, indices start at 1", position);
+        }
+        return position;
+    }
+
+    /**
+     * Parses a decimal number like -1.25e-3 into the target array.
+     * @return The position after the number
+     */
+    private int parseFloat(int position, int length, float[] target, int index) {
+        boolean negative = false;
+        if (position < length && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position) == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        while (position < length) {
+            byte b = buffer.get(position);
+            if (b >= '0' && b <= '9') {
+                // Digits beyond the precision of a long only shift the exponent
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    if (fraction) exponent--;
+                } else if (!fraction) {
+                    exponent++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (position < length && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+            position = parseInt(position + 1, length);
+            exponent += parsedInt;
+        }
+        double value = mantissa;
+        if (exponent < 0) {
+            value = exponent >= -22 ? value / POWERS_OF_TEN[-exponent] : value * Math.pow(10, exponent);
+        } else if (exponent > 0) {
+            value = exponent <= 22 ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+        }
+        target[index] = (float) (negative ? -value : value);
+        return position;
+    }
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private int skipSpaces(int position, int length) {
+        while (position < length) {
+            if (!isSpace(buffer.get(position))) {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private int skipLine(int position, int length) {
+        while (position < length && buffer.get(position) != '\n') {
+            position++;
+        }
+        return position + 1;
+    }
+
+    /**
+     * Creates an error with the line of a position in the chunk. The lines are only counted for the error,
+     * the lines of the chunks before are counted by reading the file up to this chunk.
+     */
+    private IOException error(String message, int position) throws IOException {
+        long line = 1;
+        ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+        for (long offset = 0; offset < start; ) {
+            bytes.clear();
+            bytes.limit((int) Math.min(bytes.capacity(), start - offset));
+            int read = channel.read(bytes, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (bytes.get(i) == '\n') line++;
+            }
+            offset += read;
+        }
+        for (int i = 0; i < position; i++) {
+            if (buffer.get(i) == '\n') line++;
+        }
+        return new IOException("line " + line + ": " + message);
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r' || b == '#';
+    }
+}
@@ -0,0 +1,317 @@
+package utils.io;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Class PngEncoder
+ * Encodes images as 8 bit RGB PNG files on several threads. The rows are split into blocks, every block is
+ * filtered and deflated on its own and the compressed blocks are joined into one zlib stream: all blocks but the
+ * last end with a sync flush, so they end on a byte boundary and the next block continues the stream, and the
+ * checksums of the blocks are combined into the checksum of the whole stream. Every block is deflated with the end
+ * of the block before as its dictionary, so matches across the block borders are found as by a single deflater.
+ * The compressed blocks are written in order as soon as they are done, each as one IDAT chunk.
+ */
+public class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    // The window of deflate, the largest distance of a match
+    private static final int DICTIONARY_SIZE = 32768;
+    // Blocks are at least this large, smaller blocks compress worse and cost more to schedule than they save
+    private static final int MIN_BLOCK_BYTES = 256 * 1024;
+    // The level of the PNG writer of ImageIO, higher levels are much slower for a few percent smaller files
+    private static final int DEFAULT_LEVEL = 4;
+    // Modulus of the Adler-32 checksum of zlib
+    private static final int ADLER_BASE = 65521;
+
+    private final ForkJoinPool pool;
+    private final int compressionLevel;
+
+    /**
+     * Creates an encoder on the common pool with the compression level of the PNG writer of ImageIO.
+     */
+    public PngEncoder() {
+        this(ForkJoinPool.commonPool(), DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param _pool The threads which deflate the blocks
+     * @param _compressionLevel The level of deflate from 0 (stored) to 9 (smallest), or Deflater.DEFAULT_COMPRESSION
+     */
+    public PngEncoder(ForkJoinPool _pool, int _compressionLevel) {
+        this.pool = _pool;
+        this.compressionLevel = _compressionLevel;
+    }
+
+    /**
+     * A block of rows after it has been filtered and deflated.
+     */
+    private static final class Block {
+        byte[] data;
+        int length;
+        // The checksum and the length of the filtered rows before they were deflated
+        long adler;
+        long rawLength;
+    }
+
+    /**
+     * Encodes an image and writes it to a stream.
+     * @param image The image, its alpha channel is dropped
+     * @param out The stream, which is not closed
+     */
+    public void write(BufferedImage image, OutputStream out) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rowBytes = 1 + width * 3;
+        int rowsPerBlock = Math.max(1, Math.min(height, Math.max(MIN_BLOCK_BYTES / rowBytes, height / (pool.getParallelism() * 4))));
+
+        List<Future<Block>> blocks = new ArrayList<>();
+        for (int start = 0; start < height; start += rowsPerBlock) {
+            int first = start;
+            int end = Math.min(height, start + rowsPerBlock);
+            blocks.add(pool.submit(() -> encodeBlock(image, first, end, end == height)));
+        }
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;  // bits per channel
+        header[9] = 2;  // RGB
+        writeChunk(out, "IHDR", header, header.length);
+
+        // The zlib stream: a header, the raw deflate blocks and the checksum of the uncompressed data
+        long adler = 1;
+        boolean first = true;
+        for (Future<Block> future : blocks) {
+            Block block = join(future);
+            if (first) {
+                byte[] data = new byte[block.length + 2];
+                data[0] = 0x78;
+                data[1] = (byte) 0x9C;
+                System.arraycopy(block.data, 0, data, 2, block.length);
+                block.data = data;
+                block.length += 2;
+                first = false;
+            }
+            adler = combineAdler(adler, block.adler, block.rawLength);
+            writeChunk(out, "IDAT", block.data, block.length);
+        }
+        byte[] checksum = new byte[4];
+        putInt(checksum, 0, (int) adler);
+        writeChunk(out, "IDAT", checksum, 4);
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    /**
+     * Filters and deflates the rows of a block.
+     */
+    private Block encodeBlock(BufferedImage image, int start, int end, boolean last) {
+        int width = image.getWidth();
+        int rowBytes = 1 + width * 3;
+        // The rows before the block are filtered again for the dictionary
+        int dictionaryRows = Math.min(start, (DICTIONARY_SIZE + rowBytes - 1) / rowBytes);
+        int first = start - dictionaryRows;
+        byte[] raw = new byte[(end - first) * rowBytes];
+        int[] pixels = new int[width];
+        // Rows start with a pixel of zeros as the left neighbour of the first pixel
+        byte[] previous = new byte[3 + width * 3];
+        byte[] current = new byte[3 + width * 3];
+        byte[][] scratch = new byte[4][width * 3];
+        if (first > 0) {
+            toBytes(readRow(image, first - 1, pixels), previous);
+        }
+        for (int y = first; y < end; y++) {
+            toBytes(readRow(image, y, pixels), current);
+            filterRow(current, previous, scratch, raw, (y - first) * rowBytes);
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        int offset = dictionaryRows * rowBytes;
+        int length = raw.length - offset;
+        Block block = new Block();
+        Adler32 checksum = new Adler32();
+        checksum.update(raw, offset, length);
+        block.adler = checksum.getValue();
+        block.rawLength = length;
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (offset > 0) {
+                int dictionary = Math.min(offset, DICTIONARY_SIZE);
+                deflater.setDictionary(raw, offset - dictionary, dictionary);
+            }
+            deflater.setInput(raw, offset, length);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] data = new byte[Math.max(64, length / 2)];
+            int size = 0;
+            while (true) {
+                if (size == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                int count = deflater.deflate(data, size, data.length - size, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                size += count;
+                // A sync flush is complete once it leaves room in the buffer
+                if (last ? deflater.finished() : size < data.length) {
+                    break;
+                }
+            }
+            block.data = data;
+            block.length = size;
+        } finally {
+            deflater.end();
+        }
+        return block;
+    }
+
+    /**
+     * Reads the packed RGB values of a row. Images with packed int pixels, like the frame buffers, are copied out
+     * of their raster without converting every pixel through the color model.
+     */
+    static int[] readRow(BufferedImage image, int y, int[] pixels) {
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+            return (int[]) image.getRaster().getDataElements(0, y, pixels.length, 1, pixels);
+        }
+        return image.getRGB(0, y, pixels.length, 1, pixels, 0, pixels.length);
+    }
+
+    private static void toBytes(int[] pixels, byte[] bytes) {
+        for (int x = 0, i = 3; x < pixels.length; x++, i += 3) {
+            int rgb = pixels[x];
+            bytes[i] = (byte) (rgb >> 16);
+            bytes[i + 1] = (byte) (rgb >> 8);
+            bytes[i + 2] = (byte) rgb;
+        }
+    }
+
+    /**
+     * Filters a row with the filter whose result has the smallest sum of absolute values, the heuristic of libpng.
+     * Rendered images have smooth gradients, which the Sub, Up and Paeth filters turn into small values.
+     * All filters are applied in one loop into the scratch rows, the best row is copied into the output.
+     * @param row The bytes of the row after a pixel of zeros, which is the left neighbour of the first pixel
+     * @param previous The bytes of the row above in the same layout, zeros for the first row
+     */
+    private static void filterRow(byte[] row, byte[] previous, byte[][] scratch, byte[] out, int offset) {
+        int length = row.length - 3;
+        byte[] sub = scratch[0];
+        byte[] up = scratch[1];
+        byte[] average = scratch[2];
+        byte[] paeth = scratch[3];
+        long noneSum = 0;
+        long subSum = 0;
+        long upSum = 0;
+        long averageSum = 0;
+        long paethSum = 0;
+        for (int i = 0; i < length; i++) {
+            int x = row[i + 3] & 0xFF;
+            int a = row[i] & 0xFF;
+            int b = previous[i + 3] & 0xFF;
+            int c = previous[i] & 0xFF;
+            byte subValue = (byte) (x - a);
+            byte upValue = (byte) (x - b);
+            byte averageValue = (byte) (x - ((a + b) >>> 1));
+            byte paethValue = (byte) (x - paeth(a, b, c));
+            sub[i] = subValue;
+            up[i] = upValue;
+            average[i] = averageValue;
+            paeth[i] = paethValue;
+            noneSum += Math.abs((byte) x);
+            subSum += Math.abs(subValue);
+            upSum += Math.abs(upValue);
+            averageSum += Math.abs(averageValue);
+            paethSum += Math.abs(paethValue);
+        }
+
+        long[] sums = {noneSum, subSum, upSum, averageSum, paethSum};
+        int bestFilter = 0;
+        for (int filter = 1; filter < 5; filter++) {
+            if (sums[filter] < sums[bestFilter]) {
+                bestFilter = filter;
+            }
+        }
+        out[offset] = (byte) bestFilter;
+        if (bestFilter == 0) {
+            System.arraycopy(row, 3, out, offset + 1, length);
+        } else {
+            System.arraycopy(scratch[bestFilter - 1], 0, out, offset + 1, length);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two pieces of data into the checksum of both, like adler32_combine() of zlib.
+     * @param adler1 The checksum of the first piece
+     * @param adler2 The checksum of the second piece
+     * @param length2 The length of the second piece
+     * @return The checksum of the first piece followed by the second
+     */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = remainder * sum1 % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= 2L * ADLER_BASE) sum2 -= 2L * ADLER_BASE;
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(typeBytes, 0, header, 4, 4);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(header);
+        out.write(data, 0, length);
+        out.write(trailer);
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static Block join(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Could not encode a block", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding", e);
+        }
+    }
+}
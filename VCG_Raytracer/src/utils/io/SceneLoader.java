@@ -0,0 +1,353 @@
+package utils.io;
+
+import raytracer.RenderSettings;
+import scene.Lambert;
+import scene.Material;
+import scene.Phong;
+import scene.Scene;
+import scene.Unlit;
+import utils.RgbColor;
+import utils.algebra.Matrix4x4;
+import utils.algebra.Vec3;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class SceneLoader
+ * Loads a scene with its render settings from a JSON scene file. The file is read as a stream, every shape is
+ * added to the scene as soon as its object is read, so files with millions of shapes never exist as a whole
+ * in memory. Because of that, materials have to be defined before the shapes which use them, and the ambient
+ * light of the settings only applies to materials defined after the settings.
+ *
+ * {
+ *   "settings": {"width": 800, "height": 600, "recursions": 2, "antiAliasing": 4, "background": [0, 0, 0],
+ *                "ambient": [0.125, 0.125, 0.125], "lightSamples": 16, "lightsPerPoint": 8, "tileSize": 32,
+ *                "threads": 8, "progressive": 8, "adaptive": 0.02, "wavefront": false},
+ *   "camera": {"position": [0, 0, 9], "lookAt": [0, 0, 0], "up": [0, 1, 0], "viewAngle": 70, "focalLength": 1},
+ *   "materials": {
+ *     "white": {"type": "lambert", "color": [1, 1, 1]},
+ *     "mirror": {"type": "phong", "color": [1, 1, 1], "specular": [1, 1, 1], "shininess": 80, "reflectivity": 1},
+ *     "glass": {"type": "phong", "color": [0, 1, 1], "refraction": 1.5},
+ *     "lamp": {"type": "unlit", "color": [1, 1, 1]}
+ *   },
+ *   "shapes": [
+ *     {"type": "sphere", "location": [0, 0, 0], "radius": 1, "material": "mirror"},
+ *     {"type": "plane", "location": [0, -4.5, 0], "normal": [0, 1, 0], "material": "white"},
+ *     {"type": "square", "location": [0, 4.3, 0], "normal": [0, -1, 0], "size": 2, "material": "lamp"},
+ *     {"type": "mesh", "file": "bunny.obj", "location": [0, 0, 0], "material": "white"}
+ *   ],
+ *   "lights": [
+ *     {"type": "point", "color": [1, 1, 1], "location": [0, 4, 0]},
+ *     {"type": "area", "color": [1, 1, 1], "location": [0, 4, 0], "size": 2, "samples": 40}
+ *   ]
+ * }
+ *
+ * Every section is optional. Shapes can be scaled and rotated around their location with "scale": [x, y, z]
+ * and "rotation": [x, y, z] in degrees, the rotation is applied around x, then y, then z. Unknown fields are
+ * skipped with a warning.
+ */
+public class SceneLoader {
+
+    private final JsonReader reader;
+    private final Scene scene;
+    private final RenderSettings settings;
+    private final Map<String, Material> materials = new HashMap<>();
+
+    // Fields of the shape or light which is read, reused for every one of them
+    private String type;
+    private final Vec3 location = new Vec3();
+    private final Vec3 normal = new Vec3();
+    private final Vec3 scale = new Vec3();
+    private final Vec3 rotation = new Vec3();
+    private float radius;
+    private float size;
+    private int samples;
+    private Material material;
+    private String file;
+    private RgbColor color;
+
+    private SceneLoader(Reader _reader, RenderSettings _settings) {
+        this.reader = new JsonReader(_reader);
+        this.scene = new Scene();
+        this.settings = _settings;
+    }
+
+    /**
+     * Loads a scene file.
+     * @param path The path of the JSON scene file
+     * @param settings The settings which receive the render settings of the file, null to ignore them
+     * @return The scene, null if the file could not be read
+     */
+    public static Scene load(String path, RenderSettings settings) {
+        long tStart = System.nanoTime();
+        try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8))) {
+            SceneLoader loader = new SceneLoader(reader, settings != null ? settings : new RenderSettings());
+            loader.readScene();
+            Log.print(loader, "Loaded " + path + " in " + String.format("%.3f", (System.nanoTime() - tStart) / 1e9) + " s: "
+                    + loader.scene.getShapeList().size() + " shapes, " + loader.scene.getLightList().size() + " lights, "
+                    + loader.materials.size() + " materials");
+            return loader.scene;
+        } catch (Exception e) {
+            System.err.println("Could not load " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void readScene() throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "settings":
+                    readSettings();
+                    break;
+                case "camera":
+                    readCamera();
+                    break;
+                case "materials":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String materialName = reader.nextName();
+                        materials.put(materialName, readMaterial());
+                    }
+                    reader.endObject();
+                    break;
+                case "shapes":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readShape();
+                    }
+                    reader.endArray();
+                    break;
+                case "lights":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readLight();
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        if (scene.getCamera() == null) {
+            throw reader.error("the scene has no camera");
+        }
+    }
+
+    private void readSettings() throws IOException {
+        int width = settings.getWidth();
+        int height = settings.getHeight();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "width": width = reader.nextInt(); break;
+                case "height": height = reader.nextInt(); break;
+                case "recursions": settings.setRecursions(reader.nextInt()); break;
+                case "antiAliasing": settings.setAntiAliasing(reader.nextInt()); break;
+                case "background": settings.setBackgroundColor(readColor()); break;
+                case "ambient": settings.setAmbientLight(readColor()); break;
+                case "label": settings.setShowLabel(reader.nextBoolean()); break;
+                case "lightSamples": settings.setLightSamples(reader.nextInt()); break;
+                case "lightsPerPoint": settings.setLightsPerPoint(reader.nextInt()); break;
+                case "tileSize": settings.setTileSize(reader.nextInt()); break;
+                case "threads": settings.setThreads(reader.nextInt()); break;
+                case "progressive": settings.setProgressiveBlockSize(reader.nextInt()); break;
+                case "adaptive": settings.setAdaptiveThreshold(reader.nextFloat()); break;
+                case "wavefront": settings.setWavefront(reader.nextBoolean()); break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        if (width <= 0 || height <= 0) {
+            throw reader.error("the image size has to be positive");
+        }
+        settings.setSize(width, height);
+    }
+
+    private void readCamera() throws IOException {
+        Vec3 position = new Vec3(0, 0, 9);
+        Vec3 lookAt = new Vec3(0, 0, 0);
+        Vec3 up = new Vec3(0, 1, 0);
+        float viewAngle = 70f;
+        float focalLength = 1f;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "position": readVector(position); break;
+                case "lookAt": readVector(lookAt); break;
+                case "up": readVector(up); break;
+                case "viewAngle": viewAngle = reader.nextFloat(); break;
+                case "focalLength": focalLength = reader.nextFloat(); break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        scene.createPerspCamera(position, lookAt, up, viewAngle, focalLength);
+    }
+
+    private Material readMaterial() throws IOException {
+        String materialType = null;
+        RgbColor materialColor = RgbColor.WHITE;
+        RgbColor specular = RgbColor.WHITE;
+        RgbColor ambient = settings.getAmbientLight();
+        float shininess = 80f;
+        float reflectivity = 0f;
+        float refraction = 0f;
+        reader.beginObject();
+        int line = reader.getLine();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "type": materialType = reader.nextString(); break;
+                case "color": materialColor = readColor(); break;
+                case "specular": specular = readColor(); break;
+                case "ambient": ambient = readColor(); break;
+                case "shininess": shininess = reader.nextFloat(); break;
+                case "reflectivity": reflectivity = reader.nextFloat(); break;
+                case "refraction": refraction = reader.nextFloat(); break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        if ("lambert".equals(materialType)) {
+            return new Lambert(materialColor, ambient);
+        } else if ("phong".equals(materialType)) {
+            return new Phong(materialColor, specular, shininess, ambient, reflectivity, refraction);
+        } else if ("unlit".equals(materialType)) {
+            return new Unlit(materialColor);
+        }
+        throw new IOException("line " + line + ": unknown material type " + materialType);
+    }
+
+    private void readShape() throws IOException {
+        type = null;
+        location.set(0, 0, 0);
+        normal.set(0, 1, 0);
+        scale.set(1, 1, 1);
+        rotation.set(0, 0, 0);
+        radius = 1f;
+        size = 1f;
+        material = null;
+        file = null;
+        reader.beginObject();
+        int line = reader.getLine();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "type": type = reader.nextString(); break;
+                case "location": readVector(location); break;
+                case "normal": readVector(normal); break;
+                case "scale": readVector(scale); break;
+                case "rotation": readVector(rotation); break;
+                case "radius": radius = reader.nextFloat(); break;
+                case "size": size = reader.nextFloat(); break;
+                case "file": file = reader.nextString(); break;
+                case "material":
+                    String materialName = reader.nextString();
+                    material = materials.get(materialName);
+                    if (material == null) {
+                        throw reader.error("unknown material " + materialName + ", materials have to be defined before the shapes");
+                    }
+                    break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        if (material == null) {
+            throw new IOException("line " + line + ": the shape has no material");
+        }
+
+        boolean transformed = scale.x != 1 || scale.y != 1 || scale.z != 1 || rotation.x != 0 || rotation.y != 0 || rotation.z != 0;
+        if ("sphere".equals(type)) {
+            if (transformed) {
+                scene.createSphere(new Vec3(location.x, location.y, location.z), radius, material, getTransform());
+            } else {
+                scene.createSphere(location.x, location.y, location.z, radius, material);
+            }
+        } else if ("plane".equals(type)) {
+            if (transformed) {
+                scene.createPlane(copy(location), copy(normal), material, getTransform());
+            } else {
+                scene.createPlane(copy(location), copy(normal), material);
+            }
+        } else if ("square".equals(type)) {
+            if (transformed) {
+                scene.createSquare(copy(location), copy(normal), material, size, getTransform());
+            } else {
+                scene.createSquare(copy(location), copy(normal), material, size);
+            }
+        } else if ("mesh".equals(type)) {
+            if (file == null) {
+                throw new IOException("line " + line + ": the mesh has no file");
+            }
+            scene.createMesh(file, copy(location), material, getTransform());
+        } else {
+            throw new IOException("line " + line + ": unknown shape type " + type);
+        }
+    }
+
+    private Matrix4x4 getTransform() {
+        return Matrix4x4.rotationZ(rotation.z).mult(Matrix4x4.rotationY(rotation.y)).mult(Matrix4x4.rotationX(rotation.x))
+                .mult(Matrix4x4.scaling(scale));
+    }
+
+    private void readLight() throws IOException {
+        type = null;
+        color = RgbColor.WHITE;
+        location.set(0, 0, 0);
+        size = 2f;
+        samples = 1;
+        reader.beginObject();
+        int line = reader.getLine();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "type": type = reader.nextString(); break;
+                case "color": color = readColor(); break;
+                case "location": readVector(location); break;
+                case "size": size = reader.nextFloat(); break;
+                case "samples": samples = reader.nextInt(); break;
+                default: skipUnknown(name);
+            }
+        }
+        reader.endObject();
+        if ("point".equals(type)) {
+            scene.createPointlight(color, copy(location));
+        } else if ("area".equals(type)) {
+            scene.createArealight(color, copy(location), size, samples);
+        } else {
+            throw new IOException("line " + line + ": unknown light type " + type);
+        }
+    }
+
+    private void readVector(Vec3 target) throws IOException {
+        reader.nextVector(target);
+    }
+
+    private RgbColor readColor() throws IOException {
+        Vec3 value = new Vec3();
+        readVector(value);
+        return new RgbColor(value);
+    }
+
+    private static Vec3 copy(Vec3 vector) {
+        return new Vec3(vector.x, vector.y, vector.z);
+    }
+
+    private void skipUnknown(String name) throws IOException {
+        Log.warn(this, "Skipping unknown field " + name + " in line " + reader.getLine());
+        reader.skipValue();
+    }
+}
@@ -0,0 +1,28 @@
+package utils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Class AccelerationBuildEvent
+ * Flight recorder event for compiling the scene and building the bounding volume hierarchy and the light tree.
+ */
+@Name("raytracer.AccelerationBuild")
+@Label("Acceleration Structure Build")
+@Category("VCG Raytracer")
+@Description("Compiling the scene geometry and building the bounding volume hierarchy and the light tree")
+public class AccelerationBuildEvent extends jdk.jfr.Event {
+
+    @Label("Primitives")
+    public int primitives;
+
+    @Label("Hierarchy Nodes")
+    public int nodes;
+
+    @Label("Compiled Scene Size")
+    @DataAmount
+    public long compiledBytes;
+}
@@ -0,0 +1,29 @@
+package utils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Class ExportEvent
+ * Flight recorder event for writing an image file.
+ */
+@Name("raytracer.Export")
+@Label("Image Export")
+@Category("VCG Raytracer")
+@Description("Encoding and writing an image file")
+public class ExportEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Format")
+    public String format;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+}
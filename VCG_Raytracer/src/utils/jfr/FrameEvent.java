@@ -0,0 +1,37 @@
+package utils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Class FrameEvent
+ * Flight recorder event for a whole frame, from building the acceleration structures to the exported image.
+ * The events of the raytracer are recorded with the usual flight recorder options, for example
+ * java -XX:StartFlightRecording=filename=render.jfr Main. Without a recording they cost next to nothing,
+ * since an event which is not enabled is neither filled nor written.
+ */
+@Name("raytracer.Frame")
+@Label("Frame")
+@Category("VCG Raytracer")
+@Description("Rendering a whole frame")
+public class FrameEvent extends jdk.jfr.Event {
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Threads")
+    public int threads;
+
+    @Label("Samples")
+    @Description("Primary rays sent through the pixels")
+    public long samples;
+
+    @Label("Rays")
+    @Description("Primary, reflection, refraction and shadow rays")
+    public long rays;
+}
@@ -0,0 +1,23 @@
+package utils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Class SceneSetupEvent
+ * Flight recorder event for creating the shapes, lights and camera of a scene.
+ */
+@Name("raytracer.SceneSetup")
+@Label("Scene Setup")
+@Category("VCG Raytracer")
+@Description("Creating the shapes, lights and camera of the scene")
+public class SceneSetupEvent extends jdk.jfr.Event {
+
+    @Label("Shapes")
+    public int shapes;
+
+    @Label("Lights")
+    public int lights;
+}
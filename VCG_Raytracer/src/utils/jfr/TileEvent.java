@@ -0,0 +1,43 @@
+package utils.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Class TileEvent
+ * Flight recorder event for one render pass over one tile. Progressive and adaptive rendering visit every tile
+ * in several passes, which are told apart by the pass name.
+ */
+@Name("raytracer.Tile")
+@Label("Tile")
+@Category("VCG Raytracer")
+@Description("One render pass over one tile of the image")
+@StackTrace(false)
+public class TileEvent extends jdk.jfr.Event {
+
+    @Label("Pass")
+    public String pass;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Samples")
+    @Description("Primary rays sent through the pixels of the tile")
+    public long samples;
+
+    @Label("Rays")
+    @Description("Primary, reflection, refraction and shadow rays")
+    public long rays;
+}
@@ -0,0 +1,132 @@
+package raytracer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import scene.Lambert;
+import scene.Material;
+import scene.Scene;
+import scene.Shape;
+import utils.RgbColor;
+import utils.algebra.Matrix4x4;
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Class BVHTest
+ * Traces random rays through the hierarchy of a random scene and compares the hits with a test of every shape.
+ */
+class BVHTest {
+
+    private static final int RAYS = 20000;
+
+    @TempDir
+    static Path directory;
+
+    private static Scene scene;
+    private static BVH bvh;
+
+    @BeforeAll
+    static void createScene() throws IOException {
+        Log.setEnabled(false);
+        Path pyramid = directory.resolve("pyramid.obj");
+        Files.write(pyramid, "v -1 0 -1\nv 1 0 -1\nv 0 1.5 0\nv 0 0 1\nf 1 2 3\nf 2 4 3\nf 4 1 3\n".getBytes(StandardCharsets.US_ASCII));
+
+        Random random = new Random(3);
+        scene = new Scene();
+        for (int i = 0; i < 300; i++) {
+            Material material = new Lambert(new RgbColor(random.nextFloat(), random.nextFloat(), random.nextFloat()), new RgbColor(0, 0, 0));
+            Vec3 location = randomPoint(random, 10f);
+            switch (i % 5) {
+                case 0:
+                case 1:
+                    scene.createSphere(location.x, location.y, location.z, 0.1f + random.nextFloat(), material);
+                    break;
+                case 2:
+                    scene.createSquare(location, randomDirection(random), material, 0.2f + random.nextFloat() * 2f);
+                    break;
+                case 3:
+                    scene.createSphere(location, 0.1f + random.nextFloat(), material,
+                            Matrix4x4.rotationY(random.nextFloat() * 3f).mult(Matrix4x4.scaling(new Vec3(1.5f, 0.5f, 1f))));
+                    break;
+                default:
+                    scene.createMesh(pyramid.toString(), location, material, Matrix4x4.rotationY(random.nextFloat() * 3f));
+                    break;
+            }
+        }
+        scene.createPlane(new Vec3(0, -12, 0), new Vec3(0, 1, 0), new Lambert(new RgbColor(1, 1, 1), new RgbColor(0, 0, 0)));
+        bvh = new BVH(new CompiledScene(scene));
+    }
+
+    private static Vec3 randomPoint(Random random, float extent) {
+        return new Vec3((random.nextFloat() * 2 - 1) * extent, (random.nextFloat() * 2 - 1) * extent, (random.nextFloat() * 2 - 1) * extent);
+    }
+
+    private static Vec3 randomDirection(Random random) {
+        Vec3 direction;
+        do {
+            direction = randomPoint(random, 1f);
+        } while (direction.length() < 0.1f || direction.length() > 1f);
+        return direction.normalize();
+    }
+
+    /**
+     * Finds the closest hit by testing every shape of the scene.
+     */
+    private static float closestShapeHit(Ray ray, float maxDistance) {
+        Intersection hit = new Intersection(maxDistance);
+        for (Shape shape : scene.getShapeList()) {
+            shape.intersect(ray, hit);
+        }
+        return hit.isHit() ? hit.getDistance() : Float.POSITIVE_INFINITY;
+    }
+
+    @Test
+    void findsTheClosestHitOfEveryShape() {
+        Random random = new Random(7);
+        Ray ray = new Ray();
+        Intersection hit = new Intersection();
+        for (int i = 0; i < RAYS; i++) {
+            Vec3 start = randomPoint(random, 14f);
+            ray.set(start, randomDirection(random).add(start));
+            float expected = closestShapeHit(ray, 99999f);
+
+            hit.reset(99999f);
+            boolean found = bvh.closestHit(ray, hit);
+            assertEquals(expected != Float.POSITIVE_INFINITY, found, "ray " + i);
+            if (found) {
+                assertEquals(expected, hit.getDistance(), expected * 1e-4f, "ray " + i);
+            }
+        }
+    }
+
+    @Test
+    void findsEveryOccludingShape() {
+        Random random = new Random(11);
+        Ray ray = new Ray();
+        int occluded = 0;
+        for (int i = 0; i < RAYS; i++) {
+            Vec3 start = randomPoint(random, 14f);
+            ray.set(start, randomDirection(random).add(start));
+            float maxDistance = random.nextFloat() * 20f;
+            boolean expected = false;
+            for (Shape shape : scene.getShapeList()) {
+                expected |= shape.occludes(ray, maxDistance);
+            }
+            assertEquals(expected, bvh.occluded(ray, maxDistance, -1), "ray " + i);
+            occluded += expected ? 1 : 0;
+        }
+        // Both answers have to be checked
+        assertTrue(occluded > RAYS / 10 && occluded < RAYS * 9 / 10, occluded + " occluded rays");
+    }
+}
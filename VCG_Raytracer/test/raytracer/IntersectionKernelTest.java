@@ -0,0 +1,130 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import utils.algebra.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Class IntersectionKernelTest
+ * Runs the vector kernels of every width next to the scalar kernel, which have to find the same hits at the
+ * same distances.
+ */
+class IntersectionKernelTest {
+
+    private static final int SPHERES = 203;
+    private static final int RAYS = 2000;
+
+    private final IntersectionKernel scalar = IntersectionKernel.createScalar();
+
+    /**
+     * Creates the vector kernels of the preferred width and of every width the JVM supports.
+     */
+    private static List<IntersectionKernel> createVectorKernels() {
+        assertTrue(IntersectionKernel.isVectorAvailable(), "the tests run with the Vector API");
+        List<IntersectionKernel> kernels = new ArrayList<>();
+        for (int bits : new int[]{0, 128, 256, 512}) {
+            try {
+                IntersectionKernel kernel = IntersectionKernel.createVector(bits);
+                if (kernel != null) {
+                    kernels.add(kernel);
+                }
+            } catch (IllegalArgumentException e) {
+                // The JVM does not support vectors of this width
+            }
+        }
+        assertFalse(kernels.isEmpty());
+        return kernels;
+    }
+
+    private static Vec3 randomPoint(Random random, float extent) {
+        return new Vec3((random.nextFloat() * 2 - 1) * extent, (random.nextFloat() * 2 - 1) * extent, (random.nextFloat() * 2 - 1) * extent);
+    }
+
+    private static Vec3 randomDirection(Random random) {
+        Vec3 direction;
+        do {
+            direction = randomPoint(random, 1f);
+        } while (direction.length() < 0.1f || direction.length() > 1f);
+        return direction.normalize();
+    }
+
+    @Test
+    void findTheSameClosestSpheres() {
+        Random random = new Random(13);
+        SpherePack spheres = new SpherePack(SPHERES);
+        for (int i = 0; i < SPHERES; i++) {
+            spheres.set(i, randomPoint(random, 8f), 0.2f + random.nextFloat(), 0);
+        }
+        // Two spheres at the same place, the first one has to win in every kernel
+        spheres.set(SPHERES - 1, new Vec3(0, 0, 0), 1f, 0);
+        spheres.set(SPHERES - 2, new Vec3(0, 0, 0), 1f, 0);
+
+        for (IntersectionKernel kernel : createVectorKernels()) {
+            int hits = 0;
+            for (int i = 0; i < RAYS; i++) {
+                Vec3 start = randomPoint(random, 10f);
+                Vec3 direction = i % 10 == 0 ? new Vec3(0, 0, 0).sub(start).normalize() : randomDirection(random);
+                // Runs of every length and position, so some end in the middle of a vector
+                int first = random.nextInt(SPHERES);
+                int count = 1 + random.nextInt(SPHERES - first);
+                if (i % 10 == 0) {
+                    first = 0;
+                    count = SPHERES;
+                }
+                int ignore = random.nextBoolean() ? first + random.nextInt(count) : -1;
+                float maxDistance = 2f + random.nextFloat() * 20f;
+
+                int expected = scalar.closestSphere(spheres, first, count, ignore, start, direction, maxDistance);
+                int actual = kernel.closestSphere(spheres, first, count, ignore, start, direction, maxDistance);
+                assertEquals(expected, actual, kernel + ", ray " + i);
+                if (expected >= 0) {
+                    hits++;
+                    assertEquals(ScalarIntersectionKernel.sphereParameter(spheres, expected, start, direction),
+                            ScalarIntersectionKernel.sphereParameter(spheres, actual, start, direction));
+                }
+            }
+            assertTrue(hits > RAYS / 10 && hits < RAYS * 9 / 10, kernel + ": " + hits + " hits");
+        }
+    }
+
+    @Test
+    void findTheSamePlaneHits() {
+        Random random = new Random(17);
+        int rays = 1003;
+        RayPack expected = new RayPack(rays);
+        RayPack actual = new RayPack(rays);
+        Ray ray = new Ray();
+        for (IntersectionKernel kernel : createVectorKernels()) {
+            for (int i = 0; i < rays; i++) {
+                Vec3 start = randomPoint(random, 10f);
+                ray.set(start, randomDirection(random).add(start));
+                float maxDistance = random.nextFloat() * 30f;
+                expected.set(i, ray, maxDistance);
+                actual.set(i, ray, maxDistance);
+            }
+            // Several planes one after another, only closer hits replace the hits of the planes before
+            for (int plane = 0; plane < 6; plane++) {
+                Vec3 normal = randomDirection(random);
+                Vec3 origin = randomPoint(random, 5f);
+                // Batches which do not fill the last vector
+                int count = rays - plane;
+                scalar.intersectPlane(normal.x, normal.y, normal.z, origin.x, origin.y, origin.z, expected, count, plane);
+                kernel.intersectPlane(normal.x, normal.y, normal.z, origin.x, origin.y, origin.z, actual, count, plane);
+            }
+            int hits = 0;
+            for (int i = 0; i < rays; i++) {
+                assertEquals(expected.getHit(i), actual.getHit(i), kernel + ", ray " + i);
+                assertEquals(expected.getDistance(i), actual.getDistance(i), kernel + ", ray " + i);
+                hits += expected.getHit(i) >= 0 ? 1 : 0;
+            }
+            assertTrue(hits > rays / 10, kernel + ": " + hits + " hits");
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package raytracer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import scene.AreaLight;
+import scene.Light;
+import scene.PointLight;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Class LightTreeTest
+ * Picks lights for shading points from a tree of many lights and compares the estimate of the picked lights
+ * with the sum over all lights.
+ */
+class LightTreeTest {
+
+    private static final int SAMPLES = 200000;
+
+    private static List<Light> lights;
+    private static LightTree tree;
+
+    @BeforeAll
+    static void createLights() {
+        Log.setEnabled(false);
+        Random random = new Random(5);
+        lights = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            RgbColor color = new RgbColor(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            Vec3 location = new Vec3(random.nextFloat() * 20 - 10, random.nextFloat() * 8, random.nextFloat() * 20 - 10);
+            lights.add(i % 10 == 0 ? new AreaLight(color, location, 1.5f, 4) : new PointLight(color, location));
+        }
+        tree = new LightTree(lights);
+    }
+
+    /**
+     * The diffuse light a light sends to a shading point, without shadows.
+     */
+    private static float diffuseLight(Light light, Vec3 point, Vec3 normal) {
+        Vec3 toLight = light.getLocation().sub(point);
+        float distanceSquared = toLight.scalar(toLight);
+        float cosine = toLight.normalize().scalar(normal);
+        return light.getPower() * Math.max(cosine, 0f) / distanceSquared;
+    }
+
+    @Test
+    void estimatesTheLightOfAllLights() {
+        TraceContext context = new TraceContext();
+        Vec3[] points = {new Vec3(0, 0, 0), new Vec3(8, 1, -8), new Vec3(-3, 4, 2)};
+        Vec3[] normals = {new Vec3(0, 1, 0), new Vec3(-1, 0.5f, 1).normalize(), new Vec3(1, 0, 0)};
+        for (int p = 0; p < points.length; p++) {
+            double expected = 0;
+            for (Light light : lights) {
+                expected += diffuseLight(light, points[p], normals[p]);
+            }
+
+            context.random.seed(p, 0.5f);
+            double estimate = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                Light light = tree.sample(context, points[p], normals[p]);
+                assertNotNull(light);
+                estimate += diffuseLight(light, points[p], normals[p]) / context.lightProbability;
+            }
+            estimate /= SAMPLES;
+            assertEquals(expected, estimate, expected * 0.02, "shading point " + p);
+        }
+    }
+
+    @Test
+    void givesEveryLightAProbability() {
+        TraceContext context = new TraceContext();
+        Vec3 point = new Vec3(2, 0, -1);
+        Vec3 normal = new Vec3(0, 1, 0);
+        Map<Light, Float> probabilities = new HashMap<>();
+        context.random.seed(1, 2);
+        for (int i = 0; i < SAMPLES; i++) {
+            Light light = tree.sample(context, point, normal);
+            Float known = probabilities.put(light, context.lightProbability);
+            if (known != null) {
+                assertEquals(known, context.lightProbability, known * 1e-5f);
+            }
+        }
+        // Every light can be picked, also the lights far away, and the probabilities add up to 1
+        assertEquals(lights.size(), probabilities.size());
+        double sum = 0;
+        for (float probability : probabilities.values()) {
+            sum += probability;
+        }
+        assertEquals(1.0, sum, 1e-4);
+    }
+}
@@ -0,0 +1,122 @@
+package raytracer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import scene.Lambert;
+import scene.Material;
+import scene.Phong;
+import scene.Scene;
+import ui.ImageFrameBuffer;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Class RaytracerTest
+ * Renders small scenes in the different ways of the depth-first renderer and checks the images and traced paths.
+ */
+class RaytracerTest {
+
+    @BeforeAll
+    static void disableLog() {
+        Log.setEnabled(false);
+    }
+
+    @Test
+    void rendersTheSameImageOnTiles() {
+        Scene scene = TestScenes.createScene();
+        RenderSettings settings = TestScenes.createSettings();
+        int[] singleThreaded = TestScenes.render(scene, settings);
+
+        // Tiles which do not divide the image, so the last row and column of tiles are cut off
+        settings.setTileSize(7);
+        settings.setThreads(4);
+        assertArrayEquals(singleThreaded, TestScenes.render(scene, settings));
+        settings.setTileSize(64);
+        settings.setThreads(1);
+        assertArrayEquals(singleThreaded, TestScenes.render(scene, settings));
+    }
+
+    @Test
+    void rendersTheSameImageProgressively() {
+        Scene scene = TestScenes.createScene();
+        RenderSettings settings = TestScenes.createSettings();
+        settings.setAntiAliasing(3);
+        int[] plain = TestScenes.render(scene, settings);
+
+        settings.setProgressiveBlockSize(8);
+        assertArrayEquals(plain, TestScenes.render(scene, settings));
+        // Tiles are rounded up to the coarsest block
+        settings.setTileSize(6);
+        settings.setThreads(4);
+        assertArrayEquals(plain, TestScenes.render(scene, settings));
+    }
+
+    /**
+     * Renders with adaptive anti aliasing, which is set on the raytracer, as the settings take 0 for none.
+     */
+    private static Raytracer renderAdaptive(Scene scene, RenderSettings settings, float threshold, ImageFrameBuffer frameBuffer) {
+        Raytracer raytracer = settings.createRaytracer(scene, frameBuffer);
+        raytracer.setAdaptiveAntiAliasing(threshold);
+        raytracer.renderScene();
+        return raytracer;
+    }
+
+    /**
+     * Compares two images whose colors may differ by rounding, as their samples are summed up in another order.
+     */
+    private static void assertSimilar(int[] expected, int[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift < 24; shift += 8) {
+                int difference = Math.abs((expected[i] >> shift & 0xff) - (actual[i] >> shift & 0xff));
+                assertTrue(difference <= 1, "pixel " + i + ": " + Integer.toHexString(actual[i]) + " instead of " + Integer.toHexString(expected[i]));
+            }
+        }
+    }
+
+    @Test
+    void refinesEveryPixelWhichDiffersAtAThresholdOfZero() {
+        Scene scene = TestScenes.createScene();
+        RenderSettings settings = TestScenes.createSettings();
+        settings.setAntiAliasing(3);
+        int[] plain = TestScenes.render(scene, settings);
+
+        ImageFrameBuffer frameBuffer = new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+        renderAdaptive(scene, settings, 0f, frameBuffer);
+        assertSimilar(plain, TestScenes.pixels(frameBuffer));
+        settings.setProgressiveBlockSize(4);
+        settings.setTileSize(8);
+        renderAdaptive(scene, settings, 0f, frameBuffer);
+        assertSimilar(plain, TestScenes.pixels(frameBuffer));
+
+        // A threshold of 1 accepts every pixel after its four corner samples
+        RenderStats stats = renderAdaptive(scene, settings, 1f, frameBuffer).getRenderStats();
+        assertEquals(TestScenes.WIDTH * TestScenes.HEIGHT * 4, stats.getPrimaryRays());
+    }
+
+    @Test
+    void endsGlassPathsByRussianRoulette() {
+        // A diamond sphere filling the image, every refraction passes on only a part of the light
+        Material diamond = new Phong(new RgbColor(0f, 1f, 1f), new RgbColor(1, 1, 1), 80f, new RgbColor(0.1f, 0.1f, 0.1f), 0f, 2.4f);
+        Scene scene = new Scene();
+        scene.createPerspCamera(new Vec3(0, 0, 4), new Vec3(0, 0, 0), new Vec3(0, 1, 0), 30, 1);
+        scene.createSphere(0, 0, 0, 1.5f, diamond);
+        scene.createPlane(new Vec3(0, 0, -3), new Vec3(0, 0, 1), new Lambert(new RgbColor(0.9f, 0.9f, 0.9f), new RgbColor(0.1f, 0.1f, 0.1f)));
+        scene.createPointlight(new RgbColor(1, 1, 1), new Vec3(2, 2, 4));
+
+        RenderSettings settings = TestScenes.createSettings();
+        settings.setSize(16, 16);
+        ImageFrameBuffer frameBuffer = new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+        Raytracer raytracer = settings.createRaytracer(scene, frameBuffer);
+        raytracer.renderScene();
+        RenderStats stats = raytracer.getRenderStats();
+        // The refracted rays start outside of the sphere and hit it again and again. Without the roulette every
+        // path would be refracted until it reaches MAX_PATH_DEPTH
+        long refractionsUntilMaxDepth = stats.getPrimaryRays() * (Raytracer.MAX_PATH_DEPTH - 1);
+        assertTrue(stats.getRefractionRays() < refractionsUntilMaxDepth * 0.8, stats.getRefractionRays() + " refractions");
+    }
+}
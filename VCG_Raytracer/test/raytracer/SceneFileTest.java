@@ -0,0 +1,212 @@
+package raytracer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import scene.Lambert;
+import scene.Material;
+import scene.Phong;
+import scene.Scene;
+import scene.Unlit;
+import ui.ImageFrameBuffer;
+import utils.RgbColor;
+import utils.algebra.Matrix4x4;
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Class SceneFileTest
+ * Writes scenes with every kind of primitive into scene files and loads them again. A loaded scene has to
+ * keep its settings and camera and has to render exactly like the scene it has been written from.
+ */
+class SceneFileTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void disableLog() {
+        Log.setEnabled(false);
+    }
+
+    private static RenderSettings createSettings() {
+        RenderSettings settings = new RenderSettings();
+        settings.setSize(48, 36);
+        settings.setRecursions(3);
+        settings.setAntiAliasing(2);
+        settings.setBackgroundColor(new RgbColor(0.1f, 0.2f, 0.3f));
+        settings.setAmbientLight(new RgbColor(0.05f, 0.05f, 0.05f));
+        settings.setShowLabel(false);
+        settings.setLightSamples(4);
+        settings.setLightsPerPoint(2);
+        settings.setTileSize(16);
+        settings.setProgressiveBlockSize(0);
+        settings.setAdaptiveThreshold(0.25f);
+        settings.setWavefront(true);
+        return settings;
+    }
+
+    private Scene createScene() throws IOException {
+        Path ball = directory.resolve("ball.obj");
+        StringBuilder obj = new StringBuilder();
+        int segments = 12;
+        int rings = 8;
+        for (int ring = 0; ring <= rings; ring++) {
+            double theta = Math.PI * ring / rings;
+            for (int segment = 0; segment < segments; segment++) {
+                double phi = 2 * Math.PI * segment / segments;
+                String vertex = (float) (Math.sin(theta) * Math.cos(phi)) + " " + (float) Math.cos(theta) + " "
+                        + (float) (Math.sin(theta) * Math.sin(phi));
+                obj.append("v ").append(vertex).append('\n').append("vn ").append(vertex).append('\n');
+            }
+        }
+        for (int ring = 0; ring < rings; ring++) {
+            for (int segment = 0; segment < segments; segment++) {
+                int a = ring * segments + segment + 1;
+                int b = ring * segments + (segment + 1) % segments + 1;
+                obj.append("f ").append(a).append("//").append(a).append(' ').append(b).append("//").append(b).append(' ')
+                        .append(b + segments).append("//").append(b + segments).append(' ')
+                        .append(a + segments).append("//").append(a + segments).append('\n');
+            }
+        }
+        Files.write(ball, obj.toString().getBytes(StandardCharsets.US_ASCII));
+        Path pyramid = directory.resolve("pyramid.obj");
+        Files.write(pyramid, "v -1 0 -1\nv 1 0 -1\nv 0 1.5 0\nv 0 0 1\nf 1 2 3\nf 2 4 3\nf 4 1 3\n".getBytes(StandardCharsets.US_ASCII));
+
+        Material white = new Lambert(new RgbColor(0.9f, 0.9f, 0.9f), new RgbColor(0.1f, 0.1f, 0.1f));
+        Material red = new Phong(new RgbColor(0.8f, 0.2f, 0.2f), new RgbColor(1, 1, 1), 20f, new RgbColor(0.1f, 0.1f, 0.1f), 0.3f, 1f);
+        Material glass = new Phong(new RgbColor(0.1f, 0.1f, 0.1f), new RgbColor(1, 1, 1), 50f, new RgbColor(0, 0, 0), 0.1f, 1.5f);
+
+        Scene scene = new Scene();
+        scene.createPerspCamera(new Vec3(0, 0.5f, 6), new Vec3(0, 0, 0), new Vec3(0, 1, 0), 60, 1);
+        scene.createPlane(new Vec3(0, -2, 0), new Vec3(0, 1, 0), white);
+        scene.createPlane(new Vec3(0, 0, -4), new Vec3(0, 0, 1), white);
+        scene.createSphere(-1.5f, -1, 0, 0.8f, red);
+        scene.createSphere(1.2f, -1.2f, 1, 0.6f, glass);
+        scene.createSquare(new Vec3(0, 2.5f, 0), new Vec3(0, -1, 0), new Unlit(new RgbColor(1, 1, 1)), 1.5f);
+        scene.createMesh(ball.toString(), new Vec3(0, 0, -1), red, Matrix4x4.rotationY(0.5f).mult(Matrix4x4.scaling(new Vec3(1.2f, 0.8f, 1.2f))));
+        scene.createMesh(pyramid.toString(), new Vec3(1.5f, -2, -1), white);
+        scene.createPointlight(new RgbColor(0.6f, 0.6f, 0.6f), new Vec3(2, 2, 3));
+        scene.createArealight(new RgbColor(0.8f, 0.8f, 0.8f), new Vec3(0, 2.4f, 0), 1.5f, 4);
+        return scene;
+    }
+
+    private static int[] render(Scene scene, RenderSettings settings) {
+        settings.setExport(false);
+        settings.setThreads(2);
+        ImageFrameBuffer frameBuffer = new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+        settings.createRaytracer(scene, frameBuffer).renderScene();
+        return frameBuffer.getBufferedImage().getRGB(0, 0, settings.getWidth(), settings.getHeight(), null, 0, settings.getWidth());
+    }
+
+    private static void assertVector(Vec3 expected, Vec3 actual) {
+        assertEquals(expected.x, actual.x);
+        assertEquals(expected.y, actual.y);
+        assertEquals(expected.z, actual.z);
+    }
+
+    private static void assertColor(RgbColor expected, RgbColor actual) {
+        assertEquals(expected.red(), actual.red());
+        assertEquals(expected.green(), actual.green());
+        assertEquals(expected.blue(), actual.blue());
+    }
+
+    @Test
+    void keepsSettingsCameraAndPrimitives() throws IOException {
+        Scene scene = createScene();
+        RenderSettings settings = createSettings();
+        String path = directory.resolve("scene" + SceneFile.EXTENSION).toString();
+        assertTrue(SceneFile.write(scene, settings, path));
+
+        RenderSettings loadedSettings = new RenderSettings();
+        Scene loaded = SceneFile.load(path, loadedSettings);
+        assertNotNull(loaded);
+
+        assertEquals(settings.getWidth(), loadedSettings.getWidth());
+        assertEquals(settings.getHeight(), loadedSettings.getHeight());
+        assertEquals(settings.getRecursions(), loadedSettings.getRecursions());
+        assertEquals(settings.getAntiAliasing(), loadedSettings.getAntiAliasing());
+        assertColor(settings.getBackgroundColor(), loadedSettings.getBackgroundColor());
+        assertColor(settings.getAmbientLight(), loadedSettings.getAmbientLight());
+        assertEquals(settings.isShowLabel(), loadedSettings.isShowLabel());
+        assertEquals(settings.getLightSamples(), loadedSettings.getLightSamples());
+        assertEquals(settings.getLightsPerPoint(), loadedSettings.getLightsPerPoint());
+        assertEquals(settings.getTileSize(), loadedSettings.getTileSize());
+        assertEquals(settings.getProgressiveBlockSize(), loadedSettings.getProgressiveBlockSize());
+        assertEquals(settings.getAdaptiveThreshold(), loadedSettings.getAdaptiveThreshold());
+        assertEquals(settings.isWavefront(), loadedSettings.isWavefront());
+
+        Camera camera = scene.getCamera();
+        Camera loadedCamera = loaded.getCamera();
+        assertVector(camera.getCameraPosition(), loadedCamera.getCameraPosition());
+        assertVector(camera.getCenterOfInterest(), loadedCamera.getCenterOfInterest());
+        assertVector(camera.getUserUpVector(), loadedCamera.getUserUpVector());
+        assertEquals(camera.getViewAngle(), loadedCamera.getViewAngle());
+        assertEquals(camera.getFocalLength(), loadedCamera.getFocalLength());
+
+        assertEquals(scene.getLightList().size(), loaded.getLightList().size());
+        CompiledScene written = new BVH(new CompiledScene(scene)).getScene();
+        CompiledScene read = loaded.getAccelerationStructure().getScene();
+        assertEquals(written.getPrimitiveCount(), read.getPrimitiveCount());
+        assertEquals(written.getSphereCount(), read.getSphereCount());
+        assertEquals(written.getSquareCount(), read.getSquareCount());
+        assertEquals(written.getBoundedShapeCount(), read.getBoundedShapeCount());
+        assertEquals(written.getMaterials().length, read.getMaterials().length);
+        assertEquals(written.getShapeCount(), read.getShapeCount());
+        for (int shape = 0; shape < written.getShapeCount(); shape++) {
+            assertEquals(written.getPrimitiveOfShape(shape), read.getPrimitiveOfShape(shape));
+        }
+    }
+
+    @Test
+    void rendersLikeTheWrittenScene() throws IOException {
+        Scene scene = createScene();
+        RenderSettings settings = createSettings();
+        String path = directory.resolve("scene" + SceneFile.EXTENSION).toString();
+        assertTrue(SceneFile.write(scene, settings, path));
+        Scene loaded = SceneFile.load(path, null);
+        assertNotNull(loaded);
+        assertArrayEquals(render(scene, settings), render(loaded, settings));
+    }
+
+    @Test
+    void refusesShapesWithoutArrays() {
+        Scene scene = new Scene();
+        scene.createPerspCamera(new Vec3(0, 0, 5), new Vec3(0, 0, 0), new Vec3(0, 1, 0), 60, 1);
+        scene.createSphere(new Vec3(0, 0, 0), 1, new Lambert(new RgbColor(1, 1, 1), new RgbColor(0, 0, 0)),
+                Matrix4x4.scaling(new Vec3(2, 1, 1)));
+        Path path = directory.resolve("transformed" + SceneFile.EXTENSION);
+        assertFalse(SceneFile.write(scene, createSettings(), path.toString()));
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void refusesDamagedFiles() throws IOException {
+        String path = directory.resolve("scene" + SceneFile.EXTENSION).toString();
+        assertTrue(SceneFile.write(createScene(), createSettings(), path));
+        Path truncated = directory.resolve("truncated" + SceneFile.EXTENSION);
+        Files.copy(Path.of(path), truncated);
+        try (FileChannel channel = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+        assertNull(SceneFile.load(truncated.toString(), null));
+
+        Path other = directory.resolve("other" + SceneFile.EXTENSION);
+        Files.write(other, "not a scene".getBytes(StandardCharsets.US_ASCII));
+        assertNull(SceneFile.load(other.toString(), null));
+    }
+}
@@ -0,0 +1,81 @@
+package raytracer;
+
+import scene.Lambert;
+import scene.Material;
+import scene.Phong;
+import scene.Scene;
+import scene.Unlit;
+import ui.ImageFrameBuffer;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+
+/**
+ * Class TestScenes
+ * A small scene with every kind of material and light which the rendering tests render in different ways.
+ */
+final class TestScenes {
+
+    static final int WIDTH = 40;
+    static final int HEIGHT = 30;
+
+    private TestScenes() {
+    }
+
+    /**
+     * Creates a box of planes with a diffuse, a mirroring and a glass sphere, lit by point lights and an area light.
+     */
+    static Scene createScene() {
+        Material white = new Lambert(new RgbColor(0.9f, 0.9f, 0.9f), new RgbColor(0.1f, 0.1f, 0.1f));
+        Material red = new Phong(new RgbColor(0.8f, 0.2f, 0.2f), new RgbColor(1, 1, 1), 20f, new RgbColor(0.1f, 0.1f, 0.1f), 0f, 1f);
+        Material mirror = new Phong(new RgbColor(0.2f, 0.2f, 0.3f), new RgbColor(1, 1, 1), 40f, new RgbColor(0.05f, 0.05f, 0.05f), 0.6f, 1f);
+        Material glass = new Phong(new RgbColor(0.1f, 0.1f, 0.1f), new RgbColor(1, 1, 1), 50f, new RgbColor(0, 0, 0), 0.1f, 1.5f);
+
+        Scene scene = new Scene();
+        scene.createPerspCamera(new Vec3(0, 0.5f, 6), new Vec3(0, 0, 0), new Vec3(0, 1, 0), 60, 1);
+        scene.createPlane(new Vec3(0, -2, 0), new Vec3(0, 1, 0), white);
+        scene.createPlane(new Vec3(0, 0, -4), new Vec3(0, 0, 1), white);
+        scene.createPlane(new Vec3(-3, 0, 0), new Vec3(1, 0, 0), red);
+        scene.createSphere(-1.5f, -1, 0, 0.8f, red);
+        scene.createSphere(0.2f, -0.6f, -1.5f, 1f, mirror);
+        scene.createSphere(1.2f, -1.2f, 1, 0.6f, glass);
+        scene.createSquare(new Vec3(0, 2.5f, 0), new Vec3(0, -1, 0), new Unlit(new RgbColor(1, 1, 1)), 1.5f);
+        scene.createPointlight(new RgbColor(0.5f, 0.5f, 0.5f), new Vec3(2, 2, 3));
+        scene.createPointlight(new RgbColor(0.3f, 0.2f, 0.2f), new Vec3(-2, 1, 4));
+        scene.createArealight(new RgbColor(0.8f, 0.8f, 0.8f), new Vec3(0, 2.4f, 0), 1.5f, 4);
+        return scene;
+    }
+
+    /**
+     * Creates settings which render the scene small, without writing any files.
+     */
+    static RenderSettings createSettings() {
+        RenderSettings settings = new RenderSettings();
+        settings.setSize(WIDTH, HEIGHT);
+        settings.setRecursions(4);
+        settings.setAntiAliasing(2);
+        settings.setBackgroundColor(new RgbColor(0.1f, 0.2f, 0.3f));
+        settings.setAmbientLight(new RgbColor(0.05f, 0.05f, 0.05f));
+        settings.setShowLabel(false);
+        settings.setExport(false);
+        return settings;
+    }
+
+    /**
+     * Renders a scene with the given settings.
+     * @return The pixels of the image, row by row
+     */
+    static int[] render(Scene scene, RenderSettings settings) {
+        ImageFrameBuffer frameBuffer = new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+        settings.createRaytracer(scene, frameBuffer).renderScene();
+        return pixels(frameBuffer);
+    }
+
+    /**
+     * Returns the pixels of a frame buffer, row by row.
+     */
+    static int[] pixels(ImageFrameBuffer frameBuffer) {
+        int width = frameBuffer.getBufferedImage().getWidth();
+        int height = frameBuffer.getBufferedImage().getHeight();
+        return frameBuffer.getBufferedImage().getRGB(0, 0, width, height, null, 0, width);
+    }
+}
@@ -0,0 +1,52 @@
+package raytracer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import scene.Scene;
+import ui.ImageFrameBuffer;
+import utils.io.Log;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Class WavefrontRendererTest
+ * Renders the test scene breadth-first and depth-first, which has to give the same image.
+ */
+class WavefrontRendererTest {
+
+    @BeforeAll
+    static void disableLog() {
+        Log.setEnabled(false);
+    }
+
+    @Test
+    void rendersLikeTheDepthFirstRenderer() {
+        Scene scene = TestScenes.createScene();
+        RenderSettings settings = TestScenes.createSettings();
+        int[] depthFirst = TestScenes.render(scene, settings);
+        settings.setWavefront(true);
+        assertArrayEquals(depthFirst, TestScenes.render(scene, settings));
+    }
+
+    @Test
+    void reusesItsRendererForTilesAndRenderings() {
+        Scene scene = TestScenes.createScene();
+        RenderSettings settings = TestScenes.createSettings();
+        int[] depthFirst = TestScenes.render(scene, settings);
+
+        // Many small tiles on two threads, so every thread renders several tiles with the same renderer
+        settings.setTileSize(7);
+        settings.setThreads(2);
+        settings.setWavefront(true);
+        ImageFrameBuffer frameBuffer = new ImageFrameBuffer(settings.getWidth(), settings.getHeight());
+        Raytracer raytracer = settings.createRaytracer(scene, frameBuffer);
+        raytracer.renderScene();
+        assertArrayEquals(depthFirst, TestScenes.pixels(frameBuffer));
+        // A second rendering with other settings must not use the renderer of the first one
+        raytracer.setLightSamples(1);
+        raytracer.renderScene();
+        settings.setLightSamples(1);
+        settings.setWavefront(false);
+        assertArrayEquals(TestScenes.render(scene, settings), TestScenes.pixels(frameBuffer));
+    }
+}
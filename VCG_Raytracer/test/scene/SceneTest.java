@@ -0,0 +1,73 @@
+package scene;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import raytracer.BVH;
+import raytracer.CompiledScene;
+import raytracer.RenderSettings;
+import ui.ImageFrameBuffer;
+import utils.RgbColor;
+import utils.algebra.Vec3;
+import utils.io.Log;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Class SceneTest
+ * Checks that a scene keeps the hierarchy compiled from its shapes until a shape is added.
+ */
+class SceneTest {
+
+    private static final Material WHITE = new Lambert(new RgbColor(1, 1, 1), new RgbColor(0, 0, 0));
+
+    @BeforeAll
+    static void disableLog() {
+        Log.setEnabled(false);
+    }
+
+    private static Scene createScene() {
+        Scene scene = new Scene();
+        scene.createPerspCamera(new Vec3(0, 0, 5), new Vec3(0, 0, 0), new Vec3(0, 1, 0), 60, 1);
+        scene.createSphere(0, 0, 0, 1, WHITE);
+        scene.createPlane(new Vec3(0, -1, 0), new Vec3(0, 1, 0), WHITE);
+        scene.createPointlight(new RgbColor(1, 1, 1), new Vec3(0, 3, 3));
+        return scene;
+    }
+
+    @Test
+    void keepsTheCompiledHierarchyForLaterRenderings() {
+        Scene scene = createScene();
+        RenderSettings settings = new RenderSettings();
+        settings.setSize(8, 6);
+        settings.setExport(false);
+        settings.createRaytracer(scene, new ImageFrameBuffer(8, 6)).renderScene();
+        BVH compiled = scene.getAccelerationStructure();
+        assertEquals(2, compiled.getScene().getPrimitiveCount());
+        settings.createRaytracer(scene, new ImageFrameBuffer(8, 6)).renderScene();
+        assertSame(compiled, scene.getAccelerationStructure());
+        assertSame(compiled, scene.buildAccelerationStructure());
+    }
+
+    @Test
+    void compilesAgainWhenAShapeIsAdded() {
+        Scene scene = createScene();
+        BVH compiled = scene.buildAccelerationStructure();
+        scene.createSquare(new Vec3(0, 2, 0), new Vec3(0, -1, 0), WHITE, 1);
+        BVH recompiled = scene.buildAccelerationStructure();
+        assertNotSame(compiled, recompiled);
+        assertEquals(3, recompiled.getScene().getPrimitiveCount());
+        assertThrows(UnsupportedOperationException.class, () -> scene.getShapeList().add(new Sphere(new Vec3(), 1, WHITE)));
+    }
+
+    @Test
+    void keepsAPrebuiltHierarchyWhenAShapeIsAdded() {
+        Scene scene = new Scene();
+        BVH prebuilt = new BVH(new CompiledScene(createScene()));
+        scene.setAccelerationStructure(prebuilt);
+        scene.createSphere(0, 3, 0, 1, WHITE);
+        assertSame(prebuilt, scene.buildAccelerationStructure());
+    }
+}
@@ -0,0 +1,63 @@
+package ui;
+
+import org.junit.jupiter.api.Test;
+import utils.RgbColor;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Class ToneMapperTest
+ * Checks that the default tone mapping gives exactly the pixels RgbColor.getRGB() gave before the float colors.
+ */
+class ToneMapperTest {
+
+    @Test
+    void clampsLikeGetRgb() {
+        float[] values = {0f, -0f, -1f, 1f, 2f, 0.5f, 1f / 255f, 254.5f / 255f, Math.nextDown(1f), Float.NaN,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MIN_VALUE};
+        for (float red : values) {
+            for (float green : values) {
+                for (float blue : values) {
+                    assertEquals(new RgbColor(red, green, blue).getRGB(), ToneMapper.CLAMP.map(red, green, blue),
+                            red + " " + green + " " + blue);
+                }
+            }
+        }
+
+        Random random = new Random(5);
+        for (int i = 0; i < 100000; i++) {
+            float red = random.nextFloat() * 1.2f - 0.1f;
+            float green = random.nextFloat() * 1.2f - 0.1f;
+            float blue = random.nextFloat() * 1.2f - 0.1f;
+            assertEquals(new RgbColor(red, green, blue).getRGB(), ToneMapper.CLAMP.map(red, green, blue));
+        }
+    }
+
+    @Test
+    void showsTheColorsOfTheFrameBufferLikeGetRgb() {
+        HdrFrameBuffer frameBuffer = new HdrFrameBuffer(3, 2);
+        RgbColor[] colors = {new RgbColor(0.25f, 0.5f, 0.75f), new RgbColor(3f, -1f, 0f), new RgbColor(1f, 1f, 1f),
+                new RgbColor(0.001f, 0.999f, 0.5f), new RgbColor(0f, 0f, 0f), new RgbColor(Float.NaN, 2f, 0.1f)};
+        for (int pixel = 0; pixel < colors.length; pixel++) {
+            frameBuffer.setPixel(pixel % 3, pixel / 3, colors[pixel]);
+        }
+        for (int pixel = 0; pixel < colors.length; pixel++) {
+            int rgb = frameBuffer.getBufferedImage().getRGB(pixel % 3, pixel / 3) & 0xffffff;
+            assertEquals(colors[pixel].getRGB(), rgb, "pixel " + pixel);
+            assertEquals(colors[pixel].red(), frameBuffer.getColors()[pixel * 3], 0f);
+        }
+    }
+
+    @Test
+    void compressesAndCorrectsTheGamma() {
+        ToneMapper mapper = new ToneMapper(2f, 2.2f, true);
+        // 0.5 is doubled to 1, which Reinhard compresses to 0.5, gamma corrected to 0.5^(1/2.2)
+        int expected = (int) ((float) Math.pow(0.5f, 1.0 / 2.2) * 255f);
+        assertEquals(expected, mapper.map(0.5f, 0f, 0f) >> 16);
+        assertEquals(0, mapper.map(0f, 0f, 0f));
+        // Reinhard never reaches white, however bright the color is
+        assertEquals(254, mapper.map(1000f, 0f, 0f) >> 16);
+    }
+}
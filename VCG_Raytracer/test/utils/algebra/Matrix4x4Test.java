@@ -0,0 +1,105 @@
+package utils.algebra;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Class Matrix4x4Test
+ * Compares inverted matrices and transformed normals with results which are known in advance.
+ */
+class Matrix4x4Test {
+
+    private static final float EPSILON = 1e-5f;
+
+    private static Matrix4x4 matrix(float... rows) {
+        Matrix4x4 matrix = new Matrix4x4();
+        for (int i = 0; i < 16; i++) {
+            matrix.setValueAt(i / 4, i % 4, rows[i]);
+        }
+        return matrix;
+    }
+
+    private static void assertMatrix(Matrix4x4 expected, Matrix4x4 actual) {
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                assertEquals(expected.getValueAt(row, col), actual.getValueAt(row, col), EPSILON, "row " + row + ", column " + col);
+            }
+        }
+    }
+
+    private static void assertVector(float x, float y, float z, Vec3 actual) {
+        assertEquals(x, actual.x, EPSILON);
+        assertEquals(y, actual.y, EPSILON);
+        assertEquals(z, actual.z, EPSILON);
+    }
+
+    @Test
+    void invertsAffineMatrices() {
+        Matrix4x4 transform = Matrix4x4.translation(new Vec3(1, 2, 3)).mult(Matrix4x4.scaling(new Vec3(2, 4, 0.5f)));
+        assertMatrix(Matrix4x4.scaling(new Vec3(0.5f, 0.25f, 2)).mult(Matrix4x4.translation(new Vec3(-1, -2, -3))), transform.invert());
+
+        // The inverse of a rotation is its transpose
+        Matrix4x4 rotation = Matrix4x4.rotationX(30).mult(Matrix4x4.rotationY(-75)).mult(Matrix4x4.rotationZ(140));
+        assertMatrix(rotation.transpose(), rotation.invert());
+        assertMatrix(new Matrix4x4(), rotation.mult(rotation.invert()));
+    }
+
+    @Test
+    void invertsGeneralMatrices() {
+        Matrix4x4 projection = matrix(
+                1, 0, 0, 0,
+                0, 1, 0, 0,
+                0, 0, 1, 0,
+                0, 0, 1, 1);
+        assertMatrix(matrix(
+                1, 0, 0, 0,
+                0, 1, 0, 0,
+                0, 0, 1, 0,
+                0, 0, -1, 1), projection.invert());
+
+        Matrix4x4 general = matrix(
+                2, 0, 0, 1,
+                0, 1, 0, 0,
+                0, 0, 4, 0,
+                1, 0, 0, 1);
+        assertMatrix(matrix(
+                1, 0, 0, -1,
+                0, 1, 0, 0,
+                0, 0, 0.25f, 0,
+                -1, 0, 0, 2), general.invert());
+        assertMatrix(new Matrix4x4(), general.invert().mult(general));
+    }
+
+    @Test
+    void cachesTheInverseUntilAValueChanges() {
+        Matrix4x4 transform = Matrix4x4.scaling(new Vec3(2, 2, 2));
+        Matrix4x4 inverse = transform.invert();
+        assertSame(inverse, transform.invert());
+        assertSame(transform, inverse.invert());
+        transform.setValueAt(0, 0, 4);
+        assertEquals(0.25f, transform.invert().getValueAt(0, 0), EPSILON);
+        assertThrows(ArithmeticException.class, () -> Matrix4x4.scaling(new Vec3(1, 0, 1)).invert());
+    }
+
+    @Test
+    void transformsNormalsWithTheInverseTranspose() {
+        // Stretching along x tilts the normal of a diagonal plane towards y
+        Matrix4x4 stretch = Matrix4x4.translation(new Vec3(5, 6, 7)).mult(Matrix4x4.scaling(new Vec3(2, 1, 1)));
+        assertVector(0.5f, 1, 0, stretch.transformNormal(new Vec3(1, 1, 0), new Vec3()));
+
+        // A transformed normal stays perpendicular to the transformed surface
+        Matrix4x4 transform = Matrix4x4.rotationY(35).mult(Matrix4x4.scaling(new Vec3(3, 0.5f, 1.5f))).mult(Matrix4x4.rotationZ(20));
+        Vec3 normal = transform.transformNormal(new Vec3(0, 1, 1), new Vec3());
+        assertEquals(0f, normal.scalar(transform.transformVector(new Vec3(1, 0, 0), new Vec3())), EPSILON);
+        assertEquals(0f, normal.scalar(transform.transformVector(new Vec3(0, 1, -1), new Vec3())), EPSILON);
+
+        // Rotations keep normals like any other vector
+        Matrix4x4 rotation = Matrix4x4.rotationZ(90);
+        Vec3 rotated = rotation.transformNormal(new Vec3(1, 0, 0), new Vec3());
+        Vec3 expected = rotation.transformVector(new Vec3(1, 0, 0), new Vec3());
+        assertVector(expected.x, expected.y, expected.z, rotated);
+    }
+}
@@ -0,0 +1,139 @@
+package utils.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Class DataExporterTest
+ * Writes float colors as PFM and OpenEXR and reads the files back the way other programs read them.
+ */
+class DataExporterTest {
+
+    private static final int WIDTH = 5;
+    private static final int HEIGHT = 3;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Colors which differ in every pixel and channel, including values outside of [0, 1].
+     */
+    private static float[] createColors() {
+        float[] colors = new float[WIDTH * HEIGHT * 3];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 0.25f - 2f;
+        }
+        return colors;
+    }
+
+    private static float color(float[] colors, int x, int y, int channel) {
+        return colors[(y * WIDTH + x) * 3 + channel];
+    }
+
+    @Test
+    void writesPfmWithTheBottomRowFirst() throws IOException {
+        float[] colors = createColors();
+        Path file = directory.resolve("image.pfm");
+        assertTrue(DataExporter.exportColors(colors, WIDTH, HEIGHT, file.toString()));
+
+        byte[] bytes = Files.readAllBytes(file);
+        String header = "PF\n" + WIDTH + " " + HEIGHT + "\n-1.0\n";
+        assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII));
+        assertEquals(header.length() + colors.length * 4, bytes.length);
+
+        ByteBuffer data = ByteBuffer.wrap(bytes, header.length(), colors.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = HEIGHT - 1; y >= 0; y--) {
+            for (int x = 0; x < WIDTH; x++) {
+                for (int channel = 0; channel < 3; channel++) {
+                    assertEquals(color(colors, x, y, channel), data.getFloat(), 0f, x + ", " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void writesUncompressedExr() throws IOException {
+        float[] colors = createColors();
+        Path file = directory.resolve("image.exr");
+        assertTrue(DataExporter.isHdrFile(file.toString()));
+        assertTrue(DataExporter.exportColors(colors, WIDTH, HEIGHT, file.toString()));
+
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x01312f76, in.getInt());
+        assertEquals(2, in.getInt());
+
+        String[] channels = null;
+        int[] dataWindow = null;
+        int compression = -1;
+        int lineOrder = -1;
+        for (String name = readString(in); !name.isEmpty(); name = readString(in)) {
+            readString(in);
+            int size = in.getInt();
+            int end = in.position() + size;
+            switch (name) {
+                case "channels":
+                    channels = new String[3];
+                    for (int channel = 0; channel < 3; channel++) {
+                        channels[channel] = readString(in);
+                        assertEquals(2, in.getInt(), "pixel type of " + channels[channel]);
+                        in.position(in.position() + 12);
+                    }
+                    assertEquals(0, in.get());
+                    break;
+                case "compression":
+                    compression = in.get();
+                    break;
+                case "dataWindow":
+                    dataWindow = new int[]{in.getInt(), in.getInt(), in.getInt(), in.getInt()};
+                    break;
+                case "lineOrder":
+                    lineOrder = in.get();
+                    break;
+                default:
+                    break;
+            }
+            in.position(end);
+        }
+        assertEquals("B G R", String.join(" ", channels));
+        assertEquals(0, compression);
+        assertEquals(0, lineOrder);
+        assertEquals("0 0 " + (WIDTH - 1) + " " + (HEIGHT - 1),
+                dataWindow[0] + " " + dataWindow[1] + " " + dataWindow[2] + " " + dataWindow[3]);
+
+        // The offset table points to the rows, every row holds the channels one after the other
+        long[] offsets = new long[HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            offsets[y] = in.getLong();
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            in.position((int) offsets[y]);
+            assertEquals(y, in.getInt());
+            assertEquals(WIDTH * 12, in.getInt());
+            for (int channel = 2; channel >= 0; channel--) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertEquals(color(colors, x, y, channel), in.getFloat(), 0f, x + ", " + y);
+                }
+            }
+        }
+        assertFalse(in.hasRemaining());
+    }
+
+    private static String readString(ByteBuffer in) {
+        StringBuilder text = new StringBuilder();
+        for (byte b = in.get(); b != 0; b = in.get()) {
+            text.append((char) b);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package utils.io;
+
+import org.junit.jupiter.api.Test;
+import utils.algebra.Vec3;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Class JsonReaderTest
+ * Walks through small documents the way SceneLoader does and checks the values and the reported errors.
+ */
+class JsonReaderTest {
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    @Test
+    void readsObjectsArraysAndValues() throws IOException {
+        JsonReader in = reader("{\"name\": \"box\", \"visible\": true, \"count\": 3,\n \"location\": [1, -2.5, 0.25], \"tags\": []}");
+        in.beginObject();
+        assertTrue(in.hasNext());
+        assertEquals("name", in.nextName());
+        assertEquals("box", in.nextString());
+        assertTrue(in.hasNext());
+        assertEquals("visible", in.nextName());
+        assertTrue(in.nextBoolean());
+        assertTrue(in.hasNext());
+        assertEquals("count", in.nextName());
+        assertEquals(3, in.nextInt());
+        assertTrue(in.hasNext());
+        assertEquals("location", in.nextName());
+        in.beginArray();
+        for (float expected : new float[]{1f, -2.5f, 0.25f}) {
+            assertTrue(in.hasNext());
+            assertEquals(expected, in.nextFloat());
+        }
+        assertFalse(in.hasNext());
+        in.endArray();
+        assertTrue(in.hasNext());
+        assertEquals("tags", in.nextName());
+        in.beginArray();
+        assertFalse(in.hasNext());
+        in.endArray();
+        assertFalse(in.hasNext());
+        in.endObject();
+        assertEquals(2, in.getLine());
+    }
+
+    @Test
+    void parsesNumbers() throws IOException {
+        JsonReader in = reader("[0, -0.5, 1.5e+02, 1.5E2, 2.5e-3, +7, 12345678901234567890, 0.1]");
+        in.beginArray();
+        double[] expected = {0, -0.5, 150, 150, 0.0025, 7, 12345678901234567890.0, 0.1};
+        for (double value : expected) {
+            assertTrue(in.hasNext());
+            assertEquals(value, in.nextDouble(), Math.abs(value) * 1e-15);
+        }
+        assertFalse(in.hasNext());
+        in.endArray();
+    }
+
+    @Test
+    void readsVectors() throws IOException {
+        JsonReader in = reader("[[1, -2.5, 0.25], [1e+1, 0, -0]]");
+        in.beginArray();
+        Vec3 vector = new Vec3();
+        assertTrue(in.hasNext());
+        in.nextVector(vector);
+        assertEquals(1f, vector.x);
+        assertEquals(-2.5f, vector.y);
+        assertEquals(0.25f, vector.z);
+        assertTrue(in.hasNext());
+        in.nextVector(vector);
+        assertEquals(10f, vector.x);
+        assertFalse(in.hasNext());
+        in.endArray();
+
+        assertThrows(IOException.class, () -> reader("[1, 2]").nextVector(new Vec3()));
+        assertThrows(IOException.class, () -> reader("[1, 2, 3, 4]").nextVector(new Vec3()));
+    }
+
+    @Test
+    void readsEscapedStrings() throws IOException {
+        assertEquals("a\"b\\c\tdé", reader("\"a\\\"b\\\\c\\td\\u00e9\"").nextString());
+    }
+
+    @Test
+    void skipsNestedValues() throws IOException {
+        JsonReader in = reader("{\"skip\": {\"a\": [1, {\"b\": null}, \"x\"], \"c\": false}, \"keep\": 4}");
+        in.beginObject();
+        assertTrue(in.hasNext());
+        assertEquals("skip", in.nextName());
+        in.skipValue();
+        assertTrue(in.hasNext());
+        assertEquals("keep", in.nextName());
+        assertEquals(4, in.nextInt());
+        assertFalse(in.hasNext());
+        in.endObject();
+    }
+
+    @Test
+    void reportsErrorsWithTheirLine() {
+        IOException missingComma = assertThrows(IOException.class, () -> {
+            JsonReader in = reader("[1,\n2\n3]");
+            in.beginArray();
+            while (in.hasNext()) {
+                in.nextInt();
+            }
+        });
+        assertEquals("line 3: expected ',' instead of '3'", missingComma.getMessage());
+
+        assertThrows(IOException.class, () -> reader("1.5").nextInt());
+        assertThrows(IOException.class, () -> reader("maybe").nextBoolean());
+        assertThrows(IOException.class, () -> reader("\"open").nextString());
+    }
+}
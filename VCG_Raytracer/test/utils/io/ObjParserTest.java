@@ -0,0 +1,158 @@
+package utils.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Class ObjParserTest
+ * Loads small OBJ files through DataImporter.loadOBJ(), which splits them into chunks for ObjParser.
+ */
+class ObjParserTest {
+
+    @TempDir
+    Path directory;
+
+    private MeshData load(String obj) throws IOException {
+        Path file = directory.resolve("mesh.obj");
+        Files.write(file, obj.getBytes(StandardCharsets.US_ASCII));
+        return DataImporter.loadOBJ(file.toString());
+    }
+
+    @Test
+    void readsVerticesAndTriangles() throws IOException {
+        MeshData mesh = load("# a triangle\nv 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\ng group\nf 1 2 3\n");
+        assertArrayEquals(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, mesh.getPositions());
+        assertArrayEquals(new int[]{0, 1, 2}, mesh.getPositionIndices());
+        assertNull(mesh.getNormalIndices());
+        assertEquals(1, mesh.getTriangleCount());
+    }
+
+    @Test
+    void parsesNumberFormats() throws IOException {
+        MeshData mesh = load("v 1.5e+02 -2.5E-1 +3\nv .5 0 1e2\nv 7 8 9\nf 1 2 3\n");
+        assertArrayEquals(new float[]{150f, -0.25f, 3f, 0.5f, 0f, 100f, 7f, 8f, 9f}, mesh.getPositions());
+    }
+
+    @Test
+    void acceptsTabsAndCarriageReturns() throws IOException {
+        MeshData mesh = load("v\t0\t0\t0\r\nv\t1 0\t0\r\nv 0\t1 0\r\nf\t1\t2 3\r\n");
+        assertEquals(9, mesh.getPositions().length);
+        assertArrayEquals(new int[]{0, 1, 2}, mesh.getPositionIndices());
+    }
+
+    @Test
+    void splitsPolygonsIntoFans() throws IOException {
+        MeshData mesh = load("v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nv -1 1 0\nf 1 2 3 4 5\n");
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3, 0, 3, 4}, mesh.getPositionIndices());
+    }
+
+    @Test
+    void readsNormalsOfEveryCornerFormat() throws IOException {
+        MeshData mesh = load("v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvn 0 0 1\nvn 0 0 -1\n"
+                + "f 1//1 2/1/2 3\n");
+        assertArrayEquals(new float[]{0, 0, 1, 0, 0, -1}, mesh.getNormals());
+        assertArrayEquals(new int[]{0, 1, 2}, mesh.getPositionIndices());
+        assertArrayEquals(new int[]{0, 1, -1}, mesh.getNormalIndices());
+    }
+
+    @Test
+    void resolvesNegativeIndices() throws IOException {
+        MeshData mesh = load("v 0 0 0\nv 1 0 0\nv 0 1 0\nvn 0 0 1\nf -3//-1 -2//-1 -1//-1\n"
+                + "v 5 5 5\nf 1 -1 -2\n");
+        assertArrayEquals(new int[]{0, 1, 2, 0, 3, 2}, mesh.getPositionIndices());
+        assertArrayEquals(new int[]{0, 0, 0, -1, -1, -1}, mesh.getNormalIndices());
+    }
+
+    @Test
+    void resolvesNegativeIndicesAcrossChunks() throws IOException {
+        // Large enough to be split into several chunks, every quad refers back to its own four vertices
+        int quads = 40000;
+        StringBuilder obj = new StringBuilder();
+        for (int quad = 0; quad < quads; quad++) {
+            for (int corner = 0; corner < 4; corner++) {
+                obj.append("v ").append(quad).append(".25 ").append(corner).append(" -1.5e+00\n");
+            }
+            obj.append("f -4 -3 -2 -1\n");
+        }
+        MeshData mesh = load(obj.toString());
+        assertEquals(quads * 4, mesh.getVertexCount());
+        assertEquals(quads * 2, mesh.getTriangleCount());
+        int[] indices = mesh.getPositionIndices();
+        for (int quad = 0; quad < quads; quad++) {
+            int first = quad * 4;
+            assertArrayEquals(new int[]{first, first + 1, first + 2, first, first + 2, first + 3},
+                    Arrays.copyOfRange(indices, quad * 6, quad * 6 + 6), "quad " + quad);
+        }
+        assertEquals(quads - 1 + 0.25f, mesh.getPositions()[(quads * 4 - 1) * 3]);
+        assertEquals(-1.5f, mesh.getPositions()[(quads * 4 - 1) * 3 + 2]);
+    }
+
+    @Test
+    void rejectsFacesWithoutIndices() throws IOException {
+        String vertices = "v 0 0 0\nv 1 0 0\nv 0 1 0\n";
+        assertNull(load(vertices + "f 1.0 2 3\n"));
+        assertNull(load(vertices + "f a b c\n"));
+        assertNull(load(vertices + "f 1 2 \\\n3\n"));
+        assertNull(load(vertices + "f 1//x 2 3\n"));
+    }
+
+    /**
+     * Loads a file which can not be loaded and returns the error printed for it.
+     */
+    private String loadError(String obj) throws IOException {
+        PrintStream err = System.err;
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(messages, true, StandardCharsets.UTF_8));
+        try {
+            assertNull(load(obj));
+        } finally {
+            System.setErr(err);
+        }
+        return messages.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void reportsTheLineOfAMalformedFace() throws IOException {
+        String error = loadError("v 0 0 0\nv 1 0 0\n\nv 0 1 0\nf 1 2 3\nf 1.0 2 3\n");
+        assertTrue(error.contains(": line 6: expected an index in the face"), error);
+
+        // The lines of the chunks before the one with the error are counted as well
+        StringBuilder obj = new StringBuilder();
+        for (int vertex = 0; vertex < 200000; vertex++) {
+            obj.append("v ").append(vertex).append(".125 1.5 -2.25\n");
+        }
+        obj.append("f 1 2 3\nf 1 2 three\n");
+        error = loadError(obj.toString());
+        assertTrue(error.contains(": line 200002: expected an index in the face"), error);
+    }
+
+    @Test
+    void rejectsIndicesOutOfRange() throws IOException {
+        String vertices = "v 0 0 0\nv 1 0 0\nv 0 1 0\nvn 0 0 1\n";
+        assertTrue(loadError(vertices + "f 0 1 2\n").contains(": line 5: index 0 in the face"));
+        assertTrue(loadError(vertices + "f 1//0 2 3\n").contains(": line 5: index 0 in the face"));
+        assertTrue(loadError(vertices + "f 1 2 4\n").contains("triangle 1 refers to vertex 4, the file has 3 vertices"));
+        assertTrue(loadError(vertices + "f 1 2 3\nf 1//1 2//2 3//1\n").contains("triangle 2 refers to normal 2, the file has 1 normals"));
+        assertTrue(loadError(vertices + "f -4 -3 -2\n").contains("counts back past the first vertex"));
+        assertTrue(loadError(vertices + "f 1//-2 2 3\n").contains("counts back past the first normal"));
+        assertTrue(loadError("v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1//1 2//1 3//1\n").contains("refers to normal 1, the file has 0 normals"));
+    }
+
+    @Test
+    void returnsNullForMissingFiles() {
+        assertNull(DataImporter.loadOBJ(directory.resolve("missing.obj").toString()));
+    }
+}
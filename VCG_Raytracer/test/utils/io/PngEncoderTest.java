@@ -0,0 +1,83 @@
+package utils.io;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Class PngEncoderTest
+ * Encodes images with PngEncoder and decodes them again with ImageIO, the pixels have to come back unchanged.
+ */
+class PngEncoderTest {
+
+    /**
+     * Creates an image of smooth gradients with noise, which exercises every filter and long matches.
+     */
+    private static BufferedImage createImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / Math.max(1, width - 1)) ^ (random.nextInt(8));
+                int g = y * 255 / Math.max(1, height - 1);
+                int b = (x + y) % 7 == 0 ? random.nextInt(256) : 128;
+                image.setRGB(x, y, 0xff000000 | r << 16 | g << 8 | b);
+            }
+        }
+        return image;
+    }
+
+    private static void assertRoundTrip(BufferedImage image, PngEncoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.write(image, out);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        int width = image.getWidth();
+        int height = image.getHeight();
+        assertEquals(width, decoded.getWidth());
+        assertEquals(height, decoded.getHeight());
+        int[] expected = image.getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] |= 0xff000000;
+        }
+        assertArrayEquals(expected, decoded.getRGB(0, 0, width, height, null, 0, width));
+    }
+
+    @Test
+    void encodesSmallImages() throws IOException {
+        PngEncoder encoder = new PngEncoder();
+        assertRoundTrip(createImage(1, 1, BufferedImage.TYPE_INT_RGB), encoder);
+        assertRoundTrip(createImage(3, 17, BufferedImage.TYPE_INT_RGB), encoder);
+        assertRoundTrip(createImage(160, 120, BufferedImage.TYPE_INT_RGB), encoder);
+    }
+
+    @Test
+    void joinsBlocksIntoOneStream() throws IOException {
+        // Several blocks of at least 256 KB of rows, deflated in parallel with the end of the block before
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertRoundTrip(createImage(1024, 700, BufferedImage.TYPE_INT_RGB), new PngEncoder(pool, 4));
+            assertRoundTrip(createImage(999, 501, BufferedImage.TYPE_INT_RGB), new PngEncoder(pool, Deflater.BEST_SPEED));
+            assertRoundTrip(createImage(640, 480, BufferedImage.TYPE_INT_RGB), new PngEncoder(pool, Deflater.NO_COMPRESSION));
+            assertRoundTrip(createImage(640, 480, BufferedImage.TYPE_INT_RGB), new PngEncoder(pool, Deflater.BEST_COMPRESSION));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void dropsTheAlphaChannel() throws IOException {
+        BufferedImage image = createImage(300, 200, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(5, 5, 0x00123456);
+        assertRoundTrip(image, new PngEncoder());
+    }
+}